@@ -20,17 +20,25 @@
  */
 package PamModel;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.IntStream;
 
 import javax.swing.JFrame;
 
@@ -114,6 +122,22 @@ final public class PamModel implements PamModelInterface, PamSettings {
 	 */
 	private static final String pluginsFolder = "plugins"; 
 	
+	/**
+	 * Manifest attributes which plugin jars can use to list their PamPluginInterface and DaqSystemInterface classes 
+	 */
+	public static final String MANIFEST_PLUGIN_ATTRIBUTE = "PamGuard-Plugin";
+	public static final String MANIFEST_DAQ_ATTRIBUTE = "PamGuard-DaqSystem";
+	
+	/**
+	 * File caching the classes found in each plugin jar, so that unchanged jars aren't searched every time PAMGuard starts
+	 */
+	private static final String SCAN_CACHE_FILE = "PluginScanCache.txt";
+	
+	/**
+	 * Times taken to search plugin jars, create plugins and register modules
+	 */
+	private final StartupTimer startupTimer = new StartupTimer();
+	
 	/**
 	 * Name of plugin currently being loaded.  "none" indicates we are not currently loading any plugins
 	 */
@@ -170,6 +194,8 @@ final public class PamModel implements PamModelInterface, PamSettings {
 	 * maximum numbers of each type of module that may get created. 
 	 */
 	public void createPamModel() {
+		
+		startupTimer.reset();
 
 		/*
 		 * Make a series of module menu groups and add most of the 
@@ -221,12 +247,12 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		//		mi.setMinNumber(1);
 		//		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("NMEA.NMEAControl", "NMEA Data Collection");
+		mi = registerModule("NMEA.NMEAControl", "NMEA Data Collection");
 		mi.setModulesMenuGroup(mapsGroup);
 		mi.setToolTipText("Collects NMEA data from a serial port");
 		mi.setMinNumber(0);
 
-		mi = PamModuleInfo.registerControlledUnit("GPS.GPSControl", "GPS Processing");
+		mi = registerModule("GPS.GPSControl", "GPS Processing");
 		mi.setModulesMenuGroup(mapsGroup);
 		mi.setToolTipText("Interprets NMEA data to extract GPS data");
 		mi.setMinNumber(0);
@@ -235,7 +261,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 			mi.setMaxNumber(1);		
 		}
 
-		mi = PamModuleInfo.registerControlledUnit("Map.MapController", "Map");	
+		mi = registerModule("Map.MapController", "Map");	
 		mi.addDependency(new PamDependency(GpsDataUnit.class, "GPS.GPSControl"));
 		mi.setToolTipText("Displays a map of vessel position and detections");
 		mi.setModulesMenuGroup(mapsGroup);
@@ -257,20 +283,20 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //		mi.setMaxNumber(1);
 		//		mi.setMaxNumber(1);
 		
-		mi = PamModuleInfo.registerControlledUnit("AIS.AISControl", "AIS Processing");
+		mi = registerModule("AIS.AISControl", "AIS Processing");
 		mi.addDependency(new PamDependency(NMEADataUnit.class, "NMEA.NMEAControl"));
 		mi.setToolTipText("Interprets NMEA data to extract AIS data");
 		mi.setModulesMenuGroup(mapsGroup);
 		mi.setMinNumber(0);
 		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("AirgunDisplay.AirgunControl", "Airgun Display");
+		mi = registerModule("AirgunDisplay.AirgunControl", "Airgun Display");
 		mi.setModulesMenuGroup(mapsGroup);
 		mi.setToolTipText("Shows the position of airguns (or any other source) on the map");
 		mi.setMinNumber(0);
 		//		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("landMarks.LandmarkControl", "Fixed Landmarks");
+		mi = registerModule("landMarks.LandmarkControl", "Fixed Landmarks");
 		mi.setModulesMenuGroup(mapsGroup);
 		mi.setToolTipText("Place object symbols on the PAMGuard map");
 		
@@ -299,7 +325,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		 * ************* Start Utilities Group *******************
 		 */
 
-		mi = PamModuleInfo.registerControlledUnit("generalDatabase.DBControlUnit", "Database");
+		mi = registerModule("generalDatabase.DBControlUnit", "Database");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setToolTipText("Stores PAMGuard data in a database");
 		mi.addGUICompatabilityFlag(PamGUIManager.FX);
@@ -308,7 +334,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		}
 		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("binaryFileStorage.BinaryStore", "Binary Storage");
+		mi = registerModule("binaryFileStorage.BinaryStore", "Binary Storage");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setToolTipText("Stores PAMGuard data in files on the hard drive");
 		//		if (PamController.getInstance().getRunMode() == PamController.RUN_PAMVIEW) {
@@ -319,14 +345,14 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //		mi.setMaxNumber(SMRUEnable.isEnable() ? 2 : 1);
 		
 
-		mi = PamModuleInfo.registerControlledUnit(SecondaryBinaryStore.class.getName(), SecondaryBinaryStore.unitType);
+		mi = registerModule(SecondaryBinaryStore.class.getName(), SecondaryBinaryStore.unitType);
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setToolTipText("Additional binary data from 2nd, 3rd, etc. moorings.");
 		mi.setHidden(isViewer == false || SMRUEnable.isEnable() == false);
 
 
 		//		if (isSMRU) {
-		mi = PamModuleInfo.registerControlledUnit("networkTransfer.send.NetworkSender", "Network Sender");
+		mi = registerModule("networkTransfer.send.NetworkSender", "Network Sender");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setToolTipText("Sends PAMGuard data over a network to other computers");
 		mi.setHidden(SMRUEnable.isEnable() == false);
@@ -340,7 +366,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 
 		if (pamController.getRunMode() == PamController.RUN_NETWORKRECEIVER ||
 				pamController.getRunMode() == PamController.RUN_NORMAL) {
-			mi = PamModuleInfo.registerControlledUnit("networkTransfer.receive.NetworkReceiver", "Network Receiver");
+			mi = registerModule("networkTransfer.receive.NetworkReceiver", "Network Receiver");
 			mi.setModulesMenuGroup(utilitiesGroup);
 			mi.setToolTipText("Receives PAMGuard data sent over the network from the Network Sender module");
 			mi.setMaxNumber(1);
@@ -361,7 +387,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		//		}
 
 		if (isViewer) {
-			mi = PamModuleInfo.registerControlledUnit(DataMapControl.class.getName(), "Data Map");
+			mi = registerModule(DataMapControl.class.getName(), "Data Map");
 			mi.setModulesMenuGroup(utilitiesGroup);
 			mi.setToolTipText("Shows a summary of data density over time for large datasets");
 			if (isViewer) {
@@ -370,17 +396,17 @@ final public class PamModel implements PamModelInterface, PamSettings {
 			mi.setMaxNumber(1);
 		}
 
-		mi = PamModuleInfo.registerControlledUnit("UserInput.UserInputController", "User input");	
+		mi = registerModule("UserInput.UserInputController", "User input");	
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setToolTipText("Creates a form for the user to type comments into");
 		mi.setMinNumber(0);
 		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("listening.ListeningControl", "Aural Listening Form");
+		mi = registerModule("listening.ListeningControl", "Aural Listening Form");
 		mi.setToolTipText("Creates a form for the user to manually log things they hear");
 		mi.setModulesMenuGroup(utilitiesGroup);		
 		
-		mi = PamModuleInfo.registerControlledUnit(qa.QAControl.class.getName(), "Signal Injection and Detector Evaluation (SIDE)");	
+		mi = registerModule(qa.QAControl.class.getName(), "Signal Injection and Detector Evaluation (SIDE)");	
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setToolTipText("Signal injection and real time performance tests");
 		mi.setMaxNumber(1);
@@ -392,28 +418,28 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //			mi.setModulesMenuGroup(utilitiesGroup);
 //			mi.setHidden(SMRUEnable.isEnable() == false);
 
-			mi = PamModuleInfo.registerControlledUnit("offlineProcessing.OfflineProcessingControlledUnit", "Offline Processing");
+			mi = registerModule("offlineProcessing.OfflineProcessingControlledUnit", "Offline Processing");
 			mi.setModulesMenuGroup(utilitiesGroup);
 			mi.setMinNumber(0);
 			mi.setMaxNumber(1);
 			mi.setHidden(SMRUEnable.isEnable() == false);
 			
 
-			mi = PamModuleInfo.registerControlledUnit(TurbineOperationControl.class.getName(), TurbineOperationControl.unitType);
+			mi = registerModule(TurbineOperationControl.class.getName(), TurbineOperationControl.unitType);
 			mi.setModulesMenuGroup(utilitiesGroup);
 			mi.setHidden(SMRUEnable.isEnable() == false);
 		}
 
-		mi = PamModuleInfo.registerControlledUnit("alarm.AlarmControl", "Alarm");
+		mi = registerModule("alarm.AlarmControl", "Alarm");
 		mi.setToolTipText("Alerts the operator when certain detections are made");
 		mi.setModulesMenuGroup(utilitiesGroup);
 
 //		if (isViewer) {
-			mi = PamModuleInfo.registerControlledUnit("annotationMark.spectrogram.SpectrogramAnnotationModule", "Spectrogram Annotation");
+			mi = registerModule("annotationMark.spectrogram.SpectrogramAnnotationModule", "Spectrogram Annotation");
 			mi.setToolTipText("Offline marking on the spectrogram display");
 			mi.setModulesMenuGroup(utilitiesGroup);
 			
-		mi = PamModuleInfo.registerControlledUnit("quickAnnotation.QuickAnnotationModule", "Quick Spectrogram Annotation");
+		mi = registerModule("quickAnnotation.QuickAnnotationModule", "Quick Spectrogram Annotation");
 		mi.setToolTipText("Manual marking on the spectrogram display using user-defined 'quick' annotations");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setHidden(SMRUEnable.isEnable() == false);
@@ -424,7 +450,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //		mi.setModulesMenuGroup(utilitiesGroup);
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 		
-		mi = PamModuleInfo.registerControlledUnit(PrintScreenControl.class.getName(), "Print Screen");
+		mi = registerModule(PrintScreenControl.class.getName(), "Print Screen");
 		mi.setToolTipText(PrintScreenControl.getToolTip());
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setMaxNumber(1);
@@ -435,27 +461,27 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 //		}
 
-		mi = PamModuleInfo.registerControlledUnit(RockBlockControl.class.getName(), "Short Burst Data Service Communication");
+		mi = registerModule(RockBlockControl.class.getName(), "Short Burst Data Service Communication");
 		mi.setToolTipText("Communication with the Iridium SBD service via a RockBlock+ unit");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setHidden(SMRUEnable.isEnable() == false);
 		
 
-		mi = PamModuleInfo.registerControlledUnit(MeygenTurbine.class.getName(), MeygenTurbine.unitType);
+		mi = registerModule(MeygenTurbine.class.getName(), MeygenTurbine.unitType);
 		mi.setToolTipText("Show turbine location on map");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setHidden(SMRUEnable.isEnable() == false);
 		mi.setMaxNumber(1);
 		
 
-		mi = PamModuleInfo.registerControlledUnit(EffortControl.class.getName(), EffortControl.unitType);
+		mi = registerModule(EffortControl.class.getName(), EffortControl.unitType);
 		mi.setToolTipText("Record observer monitoring effort");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setHidden(SMRUEnable.isEnable() == false);
 		mi.setToolTipText("Enables an observer to enter their name and infomation about which displays are being monitored");
 		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit(BackupManager.class.getName(), BackupManager.defaultName);
+		mi = registerModule(BackupManager.class.getName(), BackupManager.defaultName);
 		mi.setToolTipText("Manage automated data backups");
 		mi.setModulesMenuGroup(utilitiesGroup);
 		mi.setMaxNumber(1);
@@ -469,43 +495,43 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		/*
 		 * ************* Start Sensors Group ********************
 		 */		
-		mi = PamModuleInfo.registerControlledUnit(ArraySensorControl.class.getName(), "Analog Array Sensors");
+		mi = registerModule(ArraySensorControl.class.getName(), "Analog Array Sensors");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Reads Depth, Heading, Pitch and Roll) using analog sensors");
 		mi.setMaxNumber(1);
 		
-		mi = PamModuleInfo.registerControlledUnit("depthReadout.DepthControl", "Hydrophone Depth Readout");
+		mi = registerModule("depthReadout.DepthControl", "Hydrophone Depth Readout");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Reads and displays hydrophone depth information");
 		
-		mi = PamModuleInfo.registerControlledUnit("ArrayAccelerometer.ArrayAccelControl", "Array Accelerometer");
+		mi = registerModule("ArrayAccelerometer.ArrayAccelControl", "Array Accelerometer");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Reads and accelerometer to orientate a hydrophone array");
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 		mi.setMaxNumber(1);
 		
-		mi = PamModuleInfo.registerControlledUnit("angleMeasurement.AngleControl", "Angle Measurement");
+		mi = registerModule("angleMeasurement.AngleControl", "Angle Measurement");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Reads angles from a Fluxgate World shaft angle encoder. (Can be used to read angle of binocular stands)");
 
-		mi = PamModuleInfo.registerControlledUnit("IMU.IMUControl", "IMU Measurement");
+		mi = registerModule("IMU.IMUControl", "IMU Measurement");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Reads IMU data (heading, pitch and roll) from file or instrument");
 		mi.setHidden(SMRUEnable.isEnable() == false);
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 
-		mi = PamModuleInfo.registerControlledUnit("d3.D3Control", "D3 Sensor Data");
+		mi = registerModule("d3.D3Control", "D3 Sensor Data");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Display sensor data from D3 recorders / DTags, etc");
 		mi.setHidden(SMRUEnable.isEnable() == false);
 
-		mi = PamModuleInfo.registerControlledUnit("soundtrap.STToolsControl", "SoundTrap Detector Import");
+		mi = registerModule("soundtrap.STToolsControl", "SoundTrap Detector Import");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Tools for import of SoundTrap detector data");
 		mi.setHidden(isViewer == false);
 		mi.setMaxNumber(1);
 		
-		mi = PamModuleInfo.registerControlledUnit("cpod.CPODControl2", "CPOD Detector Import");
+		mi = registerModule("cpod.CPODControl2", "CPOD Detector Import");
 		mi.setModulesMenuGroup(sensorsGroup);
 		mi.setToolTipText("Imports CPOD data");
 		mi.setHidden(SMRUEnable.isEnable() == false);
@@ -514,20 +540,20 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		 * ************* Start Displays  Group *******************
 		 */
 
-		mi = PamModuleInfo.registerControlledUnit("userDisplay.UserDisplayControl", "User Display");
+		mi = registerModule("userDisplay.UserDisplayControl", "User Display");
 		mi.setToolTipText("Creates an empty display panel which the user can add spectrograms and other displays to");		
 		mi.setModulesMenuGroup(displaysGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("localTime.LocalTime", "Local Time");		
+		mi = registerModule("localTime.LocalTime", "Local Time");		
 		mi.setToolTipText("Shows local time on the display");
 		mi.setModulesMenuGroup(displaysGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("levelMeter.LevelMeterControl", "Level Meter");	
+		mi = registerModule("levelMeter.LevelMeterControl", "Level Meter");	
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Shows signal level meters");
 		mi.setModulesMenuGroup(displaysGroup);
 
-		mi = PamModuleInfo.registerControlledUnit(ArraySidePanelControl.class.getName(), "Array Orientation");
+		mi = registerModule(ArraySidePanelControl.class.getName(), "Array Orientation");
 		mi.setModulesMenuGroup(displaysGroup);
 		mi.setToolTipText("Displays array depth and orientation data");
 		mi.setMaxNumber(1);
@@ -541,7 +567,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		 * ************* Start Sound Processing  Group *******************
 		 */
 
-		mi = PamModuleInfo.registerControlledUnit("Acquisition.AcquisitionControl", "Sound Acquisition");	
+		mi = registerModule("Acquisition.AcquisitionControl", "Sound Acquisition");	
 		mi.setToolTipText("Controls input of sound data from sound cards, NI cards, etc. ");
 		mi.setModulesMenuGroup(processingGroup);
 		mi.addGUICompatabilityFlag(PamGUIManager.FX); //has FX enabled GUI.
@@ -552,7 +578,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //		mi.setHidden(isViewer == false);
 //		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("soundPlayback.PlaybackControl", "Sound Output");	
+		mi = registerModule("soundPlayback.PlaybackControl", "Sound Output");	
 		mi.setToolTipText("Controls output of sound data for listening to on headphones");
 		mi.setModulesMenuGroup(processingGroup);
 		mi.addGUICompatabilityFlag(PamGUIManager.FX); //has FX enabled GUI.
@@ -561,50 +587,50 @@ final public class PamModel implements PamModelInterface, PamSettings {
 			mi.setMaxNumber(1);
 		}
 
-		mi = PamModuleInfo.registerControlledUnit("fftManager.PamFFTControl", "FFT (Spectrogram) Engine");
+		mi = registerModule("fftManager.PamFFTControl", "FFT (Spectrogram) Engine");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));
 		mi.addGUICompatabilityFlag(PamGUIManager.FX); //has FX enabled GUI.
 		mi.setToolTipText("Computes spectrograms of audio data");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("Filters.FilterControl", "Filters (IIR and FIR)");
+		mi = registerModule("Filters.FilterControl", "Filters (IIR and FIR)");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Filters audio data");
 		mi.setModulesMenuGroup(processingGroup);
 		mi.addGUICompatabilityFlag(PamGUIManager.FX); //has FX enabled GUI.
 
 
-		mi = PamModuleInfo.registerControlledUnit("decimator.DecimatorControl", "Decimator");	
+		mi = registerModule("decimator.DecimatorControl", "Decimator");	
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Decimates (reduces the frequency of) audio data");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit(CepstrumControl.class.getName(), CepstrumControl.unitType);	
+		mi = registerModule(CepstrumControl.class.getName(), CepstrumControl.unitType);	
 		mi.addDependency(new PamDependency(FFTDataUnit.class, PamFFTControl.class.getName()));	
 		mi.setToolTipText("Calculates a continuous Cepstrum from FFT Data");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("SoundRecorder.RecorderControl", "Sound recorder");	
+		mi = registerModule("SoundRecorder.RecorderControl", "Sound recorder");	
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Records audio data to wav of AIF files");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("clipgenerator.ClipControl", "Clip generator");	
+		mi = registerModule("clipgenerator.ClipControl", "Clip generator");	
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Generates and stores short clips of sound data in response to detections");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("amplifier.AmpControl", "Signal Amplifier");	
+		mi = registerModule("amplifier.AmpControl", "Signal Amplifier");	
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Amplifies (or attenuates) audio data");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("patchPanel.PatchPanelControl", "Patch Panel");	
+		mi = registerModule("patchPanel.PatchPanelControl", "Patch Panel");	
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Reorganises and mixes audio data between channels");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("KernelSmoothing.KernelSmoothingControl", "Spectrogram smoothing kernel");	
+		mi = registerModule("KernelSmoothing.KernelSmoothingControl", "Spectrogram smoothing kernel");	
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));		
 		mi.setToolTipText("Smooths a spectrogram of audio data");
 		mi.setModulesMenuGroup(processingGroup);
@@ -613,45 +639,45 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		//		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));		
 		//		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("seismicVeto.VetoController", "Seismic Veto");
+		mi = registerModule("seismicVeto.VetoController", "Seismic Veto");
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));	
 		mi.setToolTipText("Cuts out loud sounds from audio data");	
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("noiseMonitor.NoiseControl", "Noise Monitor");
+		mi = registerModule("noiseMonitor.NoiseControl", "Noise Monitor");
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));
 		mi.setToolTipText("Measures noise in predefined frequency bands (e.g. thrid octave)");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("noiseBandMonitor.NoiseBandControl", "Noise Band Monitor");
+		mi = registerModule("noiseBandMonitor.NoiseBandControl", "Noise Band Monitor");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));
 		mi.setToolTipText("");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("dbht.DbHtControl", "dBHt Measurement");
+		mi = registerModule("dbht.DbHtControl", "dBHt Measurement");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));
 		mi.setToolTipText("Measure noise relative to animal hearing threshold");		
 		mi.setModulesMenuGroup(processingGroup);
 		mi.setHidden(SMRUEnable.isEnable() == false);
 
-		mi = PamModuleInfo.registerControlledUnit("noiseOneBand.OneBandControl", "Filtered Noise Measurement");
+		mi = registerModule("noiseOneBand.OneBandControl", "Filtered Noise Measurement");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));
 		mi.setToolTipText("Measure noise in a single arbitrary filter band (replaces dBHt module)");		
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("ltsa.LtsaControl", "Long Term Spectral Average");
+		mi = registerModule("ltsa.LtsaControl", "Long Term Spectral Average");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "fftManager.PamFFTControl"));	
 		mi.setToolTipText("Make Long Term Spectral Average Measurements");
 		mi.setModulesMenuGroup(processingGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("envelopeTracer.EnvelopeControl", "Envelope Tracing");
+		mi = registerModule("envelopeTracer.EnvelopeControl", "Envelope Tracing");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("");
 		mi.setModulesMenuGroup(processingGroup);
 		mi.setModulesMenuGroup(processingGroup);
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 		
-		mi = PamModuleInfo.registerControlledUnit(BeamFormerControl.class.getName(), BeamFormerControl.unitType);	
+		mi = registerModule(BeamFormerControl.class.getName(), BeamFormerControl.unitType);	
 		mi.setModulesMenuGroup(processingGroup);
 		mi.setToolTipText("Continuous Frequency Domain Beamforming");
 //		mi.setHidden(SMRUEnable.isEnable() == false);
@@ -667,64 +693,64 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		 * ************* Start Detectors Group *******************
 		 */
 
-		mi = PamModuleInfo.registerControlledUnit("clickDetector.ClickControl", "Click Detector");
+		mi = registerModule("clickDetector.ClickControl", "Click Detector");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setToolTipText("Searches for transient sounds, attempts to assign species, measure "
 				+ "bearings to source, group into click trains, etc.");
 		mi.setModulesMenuGroup(detectorsGroup);
 		mi.addGUICompatabilityFlag(PamGUIManager.FX);
 		
-		mi = PamModuleInfo.registerControlledUnit("soundtrap.STClickControl", "SoundTrap Click Detector");
+		mi = registerModule("soundtrap.STClickControl", "SoundTrap Click Detector");
 		mi.setModulesMenuGroup(detectorsGroup);
 		mi.setToolTipText("Click Detector module for Soundtrap detector data");
 		mi.setHidden(isViewer == false);
 
-		mi = PamModuleInfo.registerControlledUnit("clickTrainDetector.ClickTrainControl", "Click Train Detector");
+		mi = registerModule("clickTrainDetector.ClickTrainControl", "Click Train Detector");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "clickDetector.ClickControl"));	
 		mi.setToolTipText("Searches for click trains in detected clicks.");
 		mi.addGUICompatabilityFlag(PamGUIManager.FX);
 		mi.setModulesMenuGroup(detectorsGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("whistlesAndMoans.WhistleMoanControl", 
+		mi = registerModule("whistlesAndMoans.WhistleMoanControl", 
 				"Whistle and Moan Detector");	
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));		
 		mi.setToolTipText("Searches for tonal noises. Measures bearings and locations of source. Replaces older Whistle Detector");
 		mi.setModulesMenuGroup(detectorsGroup);
 		mi.addGUICompatabilityFlag(PamGUIManager.FX);
 
-		mi = PamModuleInfo.registerControlledUnit("whistleDetector.WhistleControl", "Whistle Detector");	
+		mi = registerModule("whistleDetector.WhistleControl", "Whistle Detector");	
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));		
 		mi.setToolTipText("Searches for tonal noises. Measures bearings and locations of source");
 		mi.setModulesMenuGroup(detectorsGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("IshmaelDetector.EnergySumControl", "Ishmael energy sum");
+		mi = registerModule("IshmaelDetector.EnergySumControl", "Ishmael energy sum");
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));		
 		mi.setModulesMenuGroup(detectorsGroup);
 		mi.setToolTipText("Detects sounds with energy in a specific frequency band");
 
-		mi = PamModuleInfo.registerControlledUnit("IshmaelDetector.SgramCorrControl", "Ishmael spectrogram correlation");
+		mi = registerModule("IshmaelDetector.SgramCorrControl", "Ishmael spectrogram correlation");
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));		
 		mi.setToolTipText("Detects sounds matching a user defined 'shape' on a spectrogram");
 		mi.setModulesMenuGroup(detectorsGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("IshmaelDetector.MatchFiltControl", "Ishmael matched filtering");	
+		mi = registerModule("IshmaelDetector.MatchFiltControl", "Ishmael matched filtering");	
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));
 		mi.setToolTipText("Detects sounds using a user defined matched filter");	
 		mi.setModulesMenuGroup(detectorsGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("likelihoodDetectionModule.LikelihoodDetectionUnit", "Likelihood Detector" );
+		mi = registerModule("likelihoodDetectionModule.LikelihoodDetectionUnit", "Likelihood Detector" );
 		mi.addDependency( new PamDependency( RawDataUnit.class, "Acquisition.AcquisitionControl" ) );
 		mi.setToolTipText("An implementation of a likelihood ratio test");
 		mi.setModulesMenuGroup(detectorsGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("RightWhaleEdgeDetector.RWEControl", "Right Whale Edge Detector");
+		mi = registerModule("RightWhaleEdgeDetector.RWEControl", "Right Whale Edge Detector");
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));
 		mi.setToolTipText("Detects right whale upsweep calls");
 		mi.setModulesMenuGroup(detectorsGroup);	
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 		
 		// remove GPL detector - too slow for real-time use
-		mi = PamModuleInfo.registerControlledUnit("gpl.GPLControlledUnit", "Generalised Power Law Detector");
+		mi = registerModule("gpl.GPLControlledUnit", "Generalised Power Law Detector");
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));
 		mi.setToolTipText("Generalised Power Law Detector for tonal sounds");
 		mi.setModulesMenuGroup(detectorsGroup);	
@@ -750,25 +776,25 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		 * 
 		 */
 		
-		mi = PamModuleInfo.registerControlledUnit("whistleClassifier.WhistleClassifierControl", "Whistle Classifier");	
+		mi = registerModule("whistleClassifier.WhistleClassifierControl", "Whistle Classifier");	
 		mi.addDependency(new PamDependency(AbstractWhistleDataUnit.class, "whistlesAndMoans.WhistleMoanControl"));	
 		mi.setToolTipText("Analyses multiple whistle contours to assign to species");
 		mi.setModulesMenuGroup(classifierGroup);
 
-		mi = PamModuleInfo.registerControlledUnit("rocca.RoccaControl", "Rocca");
+		mi = registerModule("rocca.RoccaControl", "Rocca");
 		mi.addDependency(new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));	
 		mi.setToolTipText("Classifies dolphin whistles selected from the spectrogram display");
 		mi.setToolTipText("");
 		mi.setModulesMenuGroup(classifierGroup);
 		
-		mi = PamModuleInfo.registerControlledUnit("matchedTemplateClassifer.MTClassifierControl", "Matched Template Click Classifer");
+		mi = registerModule("matchedTemplateClassifer.MTClassifierControl", "Matched Template Click Classifer");
 		mi.addDependency(new PamDependency(ClickDetection.class, "clickDetector.ClickControl"));	
 		mi.setToolTipText("Classifies clicks based on an ideal template to match and a template to reject. "
 				+ "An example of this is to classify beaked whale clicks in an environment with dolphin clicks");
 		mi.setModulesMenuGroup(classifierGroup);
 		
 		
-		mi = PamModuleInfo.registerControlledUnit("rawDeepLearningClassifier.DLControl", "Deep Learning Classifier");
+		mi = registerModule("rawDeepLearningClassifier.DLControl", "Deep Learning Classifier");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));
 		mi.setToolTipText("Classifies sections of raw acoustic data based on an imported deep learning classifier");
 		mi.setModulesMenuGroup(classifierGroup);
@@ -782,18 +808,18 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		/*
 		 * ************* Start Localisation Group **************
 		 */
-		mi = PamModuleInfo.registerControlledUnit(BearingLocaliserControl.class.getName(), "Bearing Localiser");	
+		mi = registerModule(BearingLocaliserControl.class.getName(), "Bearing Localiser");	
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("Estimate bearing to detections or spectrogram marks from small aperture arrays");
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 
 		
-		mi = PamModuleInfo.registerControlledUnit(Group3DLocaliserControl.class.getName(), Group3DLocaliserControl.unitType);	
+		mi = registerModule(Group3DLocaliserControl.class.getName(), Group3DLocaliserControl.unitType);	
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("2D and 3D Localisation for large aperture arrays");
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 
-		mi = PamModuleInfo.registerControlledUnit(DetectionGroupControl.class.getName(), "Detection Grouper");	
+		mi = registerModule(DetectionGroupControl.class.getName(), "Detection Grouper");	
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("Groups detections and other data using manual annotations on PAMGuard displays");
 
@@ -808,11 +834,11 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //		mi.setToolTipText("Localise by crossing bearings from multiple hydrophone groups");
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 
-		mi = PamModuleInfo.registerControlledUnit("IshmaelLocator.IshLocControl", "Ishmael Locator");	
+		mi = registerModule("IshmaelLocator.IshLocControl", "Ishmael Locator");	
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("Locates sounds extracted either from areas marked out on a spectrogram display or using output from a detector");
 
-		mi = PamModuleInfo.registerControlledUnit("loc3d_Thode.TowedArray3DController", "Multipath 3D Localiser");
+		mi = registerModule("loc3d_Thode.TowedArray3DController", "Multipath 3D Localiser");
 		mi.addDependency(new PamDependency(ClickDetection.class, "clickDetector.ClickControl"));
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("Locates sounds detected by the click detector using surface echo's to obtain slant angles and generate a 3-D location");
@@ -830,18 +856,18 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //		mi.setMaxNumber(1);
 //		mi.setHidden(SMRUEnable.isEnable() == false);
 		// TODO: Move all DIFAR modules into sub-menu under localisation>DIFAR>
-		mi = PamModuleInfo.registerControlledUnit("Azigram.AzigramControl", "DIFAR Azigram Engine");
+		mi = registerModule("Azigram.AzigramControl", "DIFAR Azigram Engine");
 		mi.addDependency( new PamDependency(FFTDataUnit.class, "fftManager.PamFFTControl"));
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("(BETA) Azigram engine for multiplexed DIFAR data (BETA)");
 		
-		mi = PamModuleInfo.registerControlledUnit("difar.beamforming.BeamformControl", "DIFAR Directional Audio");
+		mi = registerModule("difar.beamforming.BeamformControl", "DIFAR Directional Audio");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));
 		mi.addDependency(new PamDependency(GpsDataUnit.class, "GPS.GPSControl"));
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("Audio from a DIFAR sonobuoy that has been beamformed at a user-specified single steering angle. This module can be used to reduce directional masking noise.");
 		
-		mi = PamModuleInfo.registerControlledUnit("difar.DifarControl", "DIFAR Localisation");
+		mi = registerModule("difar.DifarControl", "DIFAR Localisation");
 		mi.addDependency(new PamDependency(RawDataUnit.class, "Acquisition.AcquisitionControl"));	
 		mi.setModulesMenuGroup(localiserGroup);
 		mi.setToolTipText("DIFAR Sonobuoy localisation module - takes raw data source with multiplexed directional audio data");
@@ -856,12 +882,12 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		 */
 		//the displays group is only used in the PAMGuard FX gui so far.  
 		if (PamGUIManager.isFX()) {
-			mi = PamModuleInfo.registerControlledUnit("dataPlotsFX.TDDisplayController", "Time Display" );
+			mi = registerModule("dataPlotsFX.TDDisplayController", "Time Display" );
 			mi.setToolTipText("Display time series data");
 			mi.setModulesMenuGroup(displaysGroup);
 			mi.addGUICompatabilityFlag(PamGUIManager.FX);
 
-			mi = PamModuleInfo.registerControlledUnit("detectionPlotFX.DetectionDisplayControl", "Detection Display" );
+			mi = registerModule("detectionPlotFX.DetectionDisplayControl", "Detection Display" );
 			mi.setToolTipText("Display detection data");
 			mi.setModulesMenuGroup(displaysGroup);
 			mi.addGUICompatabilityFlag(PamGUIManager.FX);
@@ -882,17 +908,17 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		//	mi.setMaxNumber(1);
 		//		}
 
-		mi = PamModuleInfo.registerControlledUnit("videoRangePanel.VRControl", "Video Range");
+		mi = registerModule("videoRangePanel.VRControl", "Video Range");
 		mi.setModulesMenuGroup(visualGroup);
 		mi.setToolTipText("Calculates ranges based on angles measured from video, observer height and earth radius");
 		//		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("videoRangeLegacy.VRControl", "Video Range old version");
+		mi = registerModule("videoRangeLegacy.VRControl", "Video Range old version");
 		mi.setModulesMenuGroup(visualGroup);
 		mi.setToolTipText("Calculates ranges based on angles measured from video, observer height and earth radius");
 		//		mi.setMaxNumber(1);
 
-		mi = PamModuleInfo.registerControlledUnit("loggerForms.FormsControl", "Logger Forms");
+		mi = registerModule("loggerForms.FormsControl", "Logger Forms");
 		mi.setModulesMenuGroup(visualGroup);
 		mi.addDependency(new PamDependency(null, "generalDatabase.DBControlUnit"));
 		mi.setToolTipText("Replicates the functionality of User Defined Forms in the IFAW Logger software");
@@ -935,6 +961,22 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		// load any plugins in the plugin folder
 		loadPlugins(mi);
 		
+		if (StartupTimer.isVerbose()) {
+			System.out.print(startupTimer.getReport());
+		}
+	}
+	
+	/**
+	 * Register a module and record how long it took. 
+	 * @param className - class name of the PamControlledUnit
+	 * @param defaultName - default name for the module
+	 * @return the module information
+	 */
+	private PamModuleInfo registerModule(String className, String defaultName) {
+		long startTime = System.nanoTime();
+		PamModuleInfo mi = PamModuleInfo.registerControlledUnit(className, defaultName);
+		startupTimer.add(StartupTimer.MODULE, className, System.nanoTime() - startTime);
+		return mi;
 	}
 
 	/* (non-Javadoc)
@@ -1112,156 +1154,50 @@ final public class PamModel implements PamModelInterface, PamSettings {
 //				return;
 			}
 			
-			// loop through the jar files, looking for class files implementing PamPluginInterface or DaqSystemInterface.
-			// There are a lot of references to the method getPluginBeingLoaded, which should return the name of the
-			// class that is currently being accessed.  If the PamExceptionHandler catches a runtime error it will
-			// clear this variable, which means we can use it as a de facto flag to indicate whether or not there are
-			// problems with the plugin.  Since the plugin could fail in any spot, the variable is tested in quite
-			// a few places to stop execution in case of an error
-			for (int i=0; i<jarList.size(); i++) {
+			// add all of the jars to the class loader first, so that the jars can be searched at the same time and so that
+			// a plugin can use classes from another jar.
+			for (File jar : jarList) {
 				try {
-					
-					String jarName = jarList.get(i).getAbsolutePath();
-					JarFile jarFile = new JarFile(jarName);
-					Enumeration<JarEntry> e = jarFile.entries();
-					
-					// cycle through the jar file.  Load the classes found and test all interfaces
-					while (e.hasMoreElements()) {
-					    JarEntry je = e.nextElement();
-					    if(je.isDirectory() || !je.getName().endsWith(".class")){
-					        continue;
-					    }
-
-					    // convert the controller class name to binary format
-						String className = je.getName().substring(0,je.getName().length()-6);	// get rid of the .class at the end
-					    className = className.replace('/', '.');	// convert to binary file name, as required by loadClass method					
-					    
-					    // get the URL to look at the plugin class inside the jar file, and use the Java Reflection API
-					    // to add that URL to the default classloader path.
-					    URL newURL = jarList.get(i).toURI().toURL();
-					    
-					    // original method
-//					    Method method = URLClassLoader.class.getDeclaredMethod("addURL", URL.class);
-//					    method.setAccessible(true);
-//					    method.invoke(cl, newURL);
-					    
-					    // first fix attempt - create a brand new URLClassLoader. As expected, we get a ClassCastException when trying
-					    // to load the parameters so we can't save params using this method
-//					    URL[] newURLArray = new URL[1];
-//					    newURLArray[0] = newURL;
-//						cl = new URLClassLoader(newURLArray);
-						
-					    // second attempt - custom class loader with the system app loader specified as the parent.  Loads controlled unit, but
-					    // as before it doesn't load the parameters
-					    classLoader.addURL(newURL);
-
-					    // third attempt
-//					    Class<?> genericClass = cl.getClass();
-//					    Method method = genericClass.getSuperclass().getDeclaredMethod("addURL", new Class[] {URL.class});
-//					    method.setAccessible(true);
-//					    method.invoke(cl, new Object[] {newURL});
-
-					    
-					    
-					    
-					    // Save the name of the class to the global pluginBeingLoaded variable, and load the class.
-					    this.setPluginBeingLoaded(className);
-//						Class c = cl.loadClass(className);
-						Class c = Class.forName(className, true, classLoader);
-						if (getPluginBeingLoaded()==null) {
-							continue;
-						}
-						
-						// loop through the interfaces
-						Class[] intf = c.getInterfaces();
-						for (int j=0; j<intf.length; j++) {
-							
-							// Put this entire section in a try/catch, in case the developer hasn't coded
-							// the plugin properly.  We need to catch Throwable, not Exception, in order
-							// to catch everything.
-							try {
-								
-								// first check for interfaces that implement PamPluginInterface
-								if (intf[j].getName().equals("PamModel.PamPluginInterface")) {
-									
-									// create an instance of the interface class.  
-									PamPluginInterface pf = (PamPluginInterface) c.newInstance();
-									if (getPluginBeingLoaded()==null) {
-										continue;
-									}
-
-									// Let the user know which valid plugins have been found
-									System.out.println("   Creating instance of " + pf.getDefaultName() + ": "  + pf.getClassName());
-									if (getPluginBeingLoaded()==null) {
-										continue;
-									}
-
-									// only add the plugin to the list if this is a valid run mode
-									if (pf.allowedModes()==PamPluginInterface.ALLMODES ||
-											(pf.allowedModes()==PamPluginInterface.VIEWERONLY && isViewer ) ||
-											(pf.allowedModes()==PamPluginInterface.NOTINVIEWER && !isViewer)) {
-										pf.setJarFile(jarName);	// save the name of the jar, so that javahelp can find the helpset
-										if (getPluginBeingLoaded()==null) {
-											continue;
-										}
-
-										pluginList.add(pf); // add it to the list
-									} else {
-										System.out.println("     Error: "+pf.getDefaultName()+" cannot run in this mode.  Skipping module.");									
-									}
-									if (getPluginBeingLoaded()==null) {
-										continue;
-									}
-								}
-								
-								// now check for interfaces that implement DaqSystemInterface
-								if (intf[j].getName().equals("Acquisition.DaqSystemInterface")) {
-									DaqSystemInterface pf = (DaqSystemInterface) c.newInstance(); // create an instance of the interface class
-									if (getPluginBeingLoaded()==null) {
-										continue;
-									}
-									
-									System.out.println("   Creating instance of " + pf.getDefaultName() + ": "  + className);
-									if (getPluginBeingLoaded()==null) {
-										continue;
-									}
-
-									pf.setJarFile(jarName);	// save the name of the jar, so that javahelp can find the helpset
-									if (getPluginBeingLoaded()==null) {
-										continue;
-									}
-									
-									daqList.add(pf); // add it to the list
-								}
-								
-							// if there were any errors while accessing the plugin, let the user know and then move
-							// on to the next plugin.
-							} catch (Throwable e1) {
-								String title = "Error accessing plug-in module";
-								String msg = "There is an error with the plug-in module " + className + ".<p>" +
-										"This may have been caused by an incompatibility between " +
-										"the plug-in and this version of PAMGuard.  Please check the developer's website " +
-										"for help.<p>" +
-										"This plug-in will not be available for loading";
-								String help = null;
-								int ans = WarnOnce.showWarning(PamController.getInstance().getGuiFrameManager().getFrame(0), title, msg, WarnOnce.WARNING_MESSAGE, help, e1);
-								System.err.println("Exception while loading " +	className);
-								continue;
-							}
-						}						
-					}
+					classLoader.addURL(jar.toURI().toURL());
+				} catch (MalformedURLException e) {
+					System.err.println("   Unable to add " + jar.getName() + " to the plugin class path: " + e.getMessage());
+				}
+			}
+
+			// search the jars in parallel, looking for classes implementing PamPluginInterface or DaqSystemInterface.
+			// Plugins declare their entry classes in a service index (META-INF/services/PamModel.PamPluginInterface or
+			// META-INF/services/Acquisition.DaqSystemInterface) or in the jar manifest, so only those classes are loaded.
+			// Older plugins without an index have every class checked, but classes are not initialised until they are needed.
+			// The classes found in each jar are cached, so jars which haven't changed since the last start aren't opened at all.
+			PluginScanCache scanCache = new PluginScanCache(getScanCacheFile(dir));
+			scanCache.load();
+			scanCache.retainOnly(jarList);
+			PluginScanCache.Entry[] jarClasses = new PluginScanCache.Entry[jarList.size()];
+			Throwable[] jarErrors = new Throwable[jarList.size()];
+			IntStream.range(0, jarList.size()).parallel().forEach(i -> {
+				try {
+					jarClasses[i] = scanJar(jarList.get(i), scanCache);
 				} catch (Throwable ex) {
-					String title = "Error accessing plug-in module";
-					String msg = "There is an error with the plug-in module " + jarList.get(i).getName() + ".<p>" +
-							"This may have been caused by an incompatibility between " +
-							"the plug-in and this version of PAMGuard.  Please check the developer's website " +
-							"for help.<p>" +
-							"This plug-in will not be available for loading";
-					String help = null;
-					int ans = WarnOnce.showWarning(PamController.getInstance().getGuiFrameManager().getFrame(0), title, msg, WarnOnce.WARNING_MESSAGE, help, ex);
-					System.err.println("Exception while loading " +	jarList.get(i).getName());
+					jarErrors[i] = ex;
+				}
+			});
+			scanCache.save();
+
+			// create the plugin and DAQ system classes one at a time, in jar order.
+			// The PamExceptionHandler clears pluginBeingLoaded if it catches a runtime error from the class currently 
+			// being created, so getPluginBeingLoaded is used as a de facto flag to indicate problems with the plugin.
+			for (int i=0; i<jarList.size(); i++) {
+				if (jarErrors[i] != null) {
+					warnPluginError(jarList.get(i).getName(), jarErrors[i]);
 					continue;
 				}
+				String jarName = jarList.get(i).getAbsolutePath();
+				for (String className : jarClasses[i].getPluginClasses()) {
+					loadPluginInterface(className, jarName);
+				}
+				for (String className : jarClasses[i].getDaqClasses()) {
+					loadDaqSystem(className, jarName);
+				}
 			}
 			
 			// if there weren't any valid files, warn the user
@@ -1277,6 +1213,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 			} else {
 				for (PamPluginInterface pf : pluginList ) {
 					
+					long startTime = System.nanoTime();
 				    try {
 						// Save the name of the class to the global pluginBeingLoaded variable
 						this.setPluginBeingLoaded(pf.getClassName());
@@ -1338,6 +1275,7 @@ final public class PamModel implements PamModelInterface, PamSettings {
 							pluginList.remove(pf);
 							continue;
 						}
+						startupTimer.add(StartupTimer.MODULE, pf.getClassName(), System.nanoTime() - startTime);
 						
 					// if there were any errors while accessing the plugin, let the user know and remove
 					// the plugin from the list.
@@ -1370,6 +1308,217 @@ final public class PamModel implements PamModelInterface, PamSettings {
 		this.clearPluginBeingLoaded();
 	}
 
+	/**
+	 * Find the classes implementing PamPluginInterface or DaqSystemInterface in a plugin jar. If the jar 
+	 * hasn't changed since it was last searched the classes are taken from the cache, otherwise the jar is 
+	 * searched and the cache updated. Called from several threads at once. 
+	 * @param jar - the plugin jar
+	 * @param scanCache - cache of classes found in each jar
+	 * @return the classes found in the jar
+	 * @throws IOException
+	 */
+	private PluginScanCache.Entry scanJar(File jar, PluginScanCache scanCache) throws IOException {
+		long startTime = System.nanoTime();
+		PluginScanCache.Entry entry = scanCache.get(jar);
+		if (entry != null) {
+			startupTimer.add(StartupTimer.JAR_SCAN, jar.getName() + " (cached)", System.nanoTime() - startTime);
+			return entry;
+		}
+		try (JarFile jarFile = new JarFile(jar)) {
+			List<String> pluginClasses = findIndexedClasses(jarFile, PamPluginInterface.class.getName(), MANIFEST_PLUGIN_ATTRIBUTE);
+			List<String> daqClasses = findIndexedClasses(jarFile, DaqSystemInterface.class.getName(), MANIFEST_DAQ_ATTRIBUTE);
+			if (pluginClasses == null && daqClasses == null) {
+				if (StartupTimer.isVerbose()) {
+					System.out.println("   " + jar.getName() + " has no plugin index, checking all classes");
+				}
+				pluginClasses = new ArrayList<String>();
+				daqClasses = new ArrayList<String>();
+				findPluginClasses(jarFile, pluginClasses, daqClasses);
+			}
+			entry = scanCache.put(jar, pluginClasses == null ? new ArrayList<String>() : pluginClasses, 
+					daqClasses == null ? new ArrayList<String>() : daqClasses);
+		}
+		startupTimer.add(StartupTimer.JAR_SCAN, jar.getName(), System.nanoTime() - startTime);
+		return entry;
+	}
+	
+	/**
+	 * Get the file used to cache the classes found in each plugin jar. This is in the PAMGuard settings 
+	 * folder, since the plugins folder may not be writable. 
+	 * @param pluginDir - the plugins folder
+	 * @return the cache file
+	 */
+	private File getScanCacheFile(File pluginDir) {
+		String settingsFolder = PamSettingManager.getSettingsFolder();
+		if (settingsFolder == null) {
+			return new File(pluginDir, SCAN_CACHE_FILE);
+		}
+		return new File(settingsFolder, SCAN_CACHE_FILE);
+	}
+	
+	/**
+	 * Read the entry classes a plugin jar declares for an interface. Classes can be listed in a service file 
+	 * (META-INF/services/&lt;interface name&gt;, one class per line, # for comments) or in a manifest attribute 
+	 * (class names separated by spaces or commas). 
+	 * @param jarFile - the plugin jar
+	 * @param interfaceName - binary name of the interface
+	 * @param manifestAttribute - name of the manifest attribute
+	 * @return list of class names, or null if the jar has no index for this interface
+	 * @throws IOException
+	 */
+	private List<String> findIndexedClasses(JarFile jarFile, String interfaceName, String manifestAttribute) throws IOException {
+		List<String> classNames = null;
+		JarEntry serviceEntry = jarFile.getJarEntry("META-INF/services/" + interfaceName);
+		if (serviceEntry != null) {
+			classNames = new ArrayList<String>();
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(jarFile.getInputStream(serviceEntry), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int comment = line.indexOf('#');
+					if (comment >= 0) {
+						line = line.substring(0, comment);
+					}
+					line = line.trim();
+					if (line.length() > 0 && !classNames.contains(line)) {
+						classNames.add(line);
+					}
+				}
+			}
+		}
+		Manifest manifest = jarFile.getManifest();
+		String attribute = manifest == null ? null : manifest.getMainAttributes().getValue(manifestAttribute);
+		if (attribute != null) {
+			if (classNames == null) {
+				classNames = new ArrayList<String>();
+			}
+			for (String className : attribute.split("[\\s,]+")) {
+				if (className.length() > 0 && !classNames.contains(className)) {
+					classNames.add(className);
+				}
+			}
+		}
+		return classNames;
+	}
+	
+	/**
+	 * Find classes implementing PamPluginInterface or DaqSystemInterface in a jar which does not have a plugin index. 
+	 * Classes are loaded but not initialised. 
+	 * @param jarFile - the plugin jar
+	 * @param pluginClasses - classes implementing PamPluginInterface are added to this list
+	 * @param daqClasses - classes implementing DaqSystemInterface are added to this list
+	 */
+	private void findPluginClasses(JarFile jarFile, List<String> pluginClasses, List<String> daqClasses) {
+		Enumeration<JarEntry> e = jarFile.entries();
+		while (e.hasMoreElements()) {
+			JarEntry je = e.nextElement();
+			if (je.isDirectory() || !je.getName().endsWith(".class") || je.getName().endsWith("module-info.class")) {
+				continue;
+			}
+			// convert the class name to binary format
+			String className = je.getName().substring(0, je.getName().length()-6).replace('/', '.');
+			Class<?> c;
+			try {
+				c = Class.forName(className, false, classLoader);
+			} catch (Throwable ex) {
+				// a class which can't be loaded can't be a plugin entry class, e.g. it uses an optional library
+				continue;
+			}
+			if (c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
+				continue;
+			}
+			if (PamPluginInterface.class.isAssignableFrom(c)) {
+				pluginClasses.add(className);
+			}
+			if (DaqSystemInterface.class.isAssignableFrom(c)) {
+				daqClasses.add(className);
+			}
+		}
+	}
+	
+	/**
+	 * Create an instance of a class implementing PamPluginInterface and add it to the plugin list. 
+	 * @param className - binary name of the class
+	 * @param jarName - the jar containing the class
+	 */
+	private void loadPluginInterface(String className, String jarName) {
+		// Put this entire section in a try/catch, in case the developer hasn't coded
+		// the plugin properly.  We need to catch Throwable, not Exception, in order
+		// to catch everything.
+		long startTime = System.nanoTime();
+		try {
+			// Save the name of the class to the global pluginBeingLoaded variable, and load the class.
+			this.setPluginBeingLoaded(className);
+			Class<?> c = Class.forName(className, false, classLoader);
+			
+			// create an instance of the interface class.  If anything in the plugin failed, pluginBeingLoaded 
+			// will have been cleared by the exception handler.
+			PamPluginInterface pf = (PamPluginInterface) c.getDeclaredConstructor().newInstance();
+			boolean allowed = pf.allowedModes()==PamPluginInterface.ALLMODES ||
+					(pf.allowedModes()==PamPluginInterface.VIEWERONLY && isViewer ) ||
+					(pf.allowedModes()==PamPluginInterface.NOTINVIEWER && !isViewer);
+			if (allowed) {
+				pf.setJarFile(jarName);	// save the name of the jar, so that javahelp can find the helpset
+			}
+			if (getPluginBeingLoaded()==null) {
+				return;
+			}
+
+			// only add the plugin to the list if this is a valid run mode
+			if (allowed) {
+				pluginList.add(pf); // add it to the list
+				startupTimer.add(StartupTimer.PLUGIN, pf.getDefaultName() + ": " + className, System.nanoTime() - startTime);
+			} else {
+				System.out.println("     Error: "+pf.getDefaultName()+" cannot run in this mode.  Skipping module.");									
+			}
+			
+		// if there were any errors while accessing the plugin, let the user know and then move
+		// on to the next plugin.
+		} catch (Throwable e1) {
+			warnPluginError(className, e1);
+		}
+	}
+	
+	/**
+	 * Create an instance of a class implementing DaqSystemInterface and add it to the DAQ system list. 
+	 * @param className - binary name of the class
+	 * @param jarName - the jar containing the class
+	 */
+	private void loadDaqSystem(String className, String jarName) {
+		long startTime = System.nanoTime();
+		try {
+			this.setPluginBeingLoaded(className);
+			Class<?> c = Class.forName(className, false, classLoader);
+			
+			DaqSystemInterface pf = (DaqSystemInterface) c.getDeclaredConstructor().newInstance(); // create an instance of the interface class
+			pf.setJarFile(jarName);	// save the name of the jar, so that javahelp can find the helpset
+			if (getPluginBeingLoaded()==null) {
+				return;
+			}
+			
+			daqList.add(pf); // add it to the list
+			startupTimer.add(StartupTimer.PLUGIN, pf.getDefaultName() + ": " + className, System.nanoTime() - startTime);
+		} catch (Throwable e1) {
+			warnPluginError(className, e1);
+		}
+	}
+	
+	/**
+	 * Warn the user that a plugin jar or class could not be loaded. 
+	 * @param pluginName - name of the jar or class
+	 * @param e1 - the error
+	 */
+	private void warnPluginError(String pluginName, Throwable e1) {
+		String title = "Error accessing plug-in module";
+		String msg = "There is an error with the plug-in module " + pluginName + ".<p>" +
+				"This may have been caused by an incompatibility between " +
+				"the plug-in and this version of PAMGuard.  Please check the developer's website " +
+				"for help.<p>" +
+				"This plug-in will not be available for loading";
+		String help = null;
+		int ans = WarnOnce.showWarning(PamController.getInstance().getGuiFrameManager().getFrame(0), title, msg, WarnOnce.WARNING_MESSAGE, help, e1);
+		System.err.println("Exception while loading " +	pluginName);
+	}
+
 	/**
 	 * Return a list of the plugins found in the plugin folder
 	 * @return
@@ -1401,6 +1550,11 @@ final public class PamModel implements PamModelInterface, PamSettings {
 	
 	
 	public class PluginClassloader extends URLClassLoader {
+		
+		static {
+			// plugin jars are searched in parallel
+			registerAsParallelCapable();
+		}
 
 	    public PluginClassloader(URL[] urls, ClassLoader parent) {
 	        super(urls, parent);
@@ -1415,6 +1569,13 @@ final public class PamModel implements PamModelInterface, PamSettings {
 	public PluginClassloader getClassLoader() {
 		return classLoader;
 	}
+
+	/**
+	 * @return times taken to search plugin jars, create plugins and register modules when the model was created
+	 */
+	public StartupTimer getStartupTimer() {
+		return startupTimer;
+	}
 	
 	
 }
\ No newline at end of file
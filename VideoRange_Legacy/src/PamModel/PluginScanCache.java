@@ -0,0 +1,182 @@
+package PamModel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the PamPluginInterface and DaqSystemInterface classes found in each plugin jar so that jars
+ * which have not changed since the last time PAMGuard started don't have to be searched again. A jar is
+ * considered unchanged if its path, size and modification time are the same.
+ * <p>
+ * The cache is a tab separated text file with one line per jar: path, size, modification time,
+ * plugin classes and DAQ system classes (class names separated by commas).
+ *
+ */
+public class PluginScanCache {
+
+	/**
+	 * Classes found in one jar.
+	 */
+	public static class Entry {
+
+		private final long size;
+
+		private final long lastModified;
+
+		private final List<String> pluginClasses;
+
+		private final List<String> daqClasses;
+
+		private Entry(long size, long lastModified, List<String> pluginClasses, List<String> daqClasses) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.pluginClasses = pluginClasses;
+			this.daqClasses = daqClasses;
+		}
+
+		/**
+		 * @return classes implementing PamPluginInterface
+		 */
+		public List<String> getPluginClasses() {
+			return pluginClasses;
+		}
+
+		/**
+		 * @return classes implementing DaqSystemInterface
+		 */
+		public List<String> getDaqClasses() {
+			return daqClasses;
+		}
+	}
+
+	private final File cacheFile;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private volatile boolean changed = false;
+
+	/**
+	 * @param cacheFile - file the cache is read from and saved to.
+	 */
+	public PluginScanCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Read the cache file. A missing or unreadable file gives an empty cache.
+	 */
+	public void load() {
+		entries.clear();
+		changed = false;
+		if (cacheFile == null || !cacheFile.exists()) {
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8))) {
+			String line;
+			String[] fields;
+			while ((line = reader.readLine()) != null) {
+				fields = line.split("\t", -1);
+				if (fields.length != 5) {
+					continue;
+				}
+				try {
+					entries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), splitClasses(fields[3]), splitClasses(fields[4])));
+				}
+				catch (NumberFormatException e) {
+					changed = true;
+				}
+			}
+		}
+		catch (IOException e) {
+			if (StartupTimer.isVerbose()) {
+				System.out.println("Unable to read plugin cache " + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+			}
+			entries.clear();
+		}
+	}
+
+	private static List<String> splitClasses(String field) {
+		if (field.length() == 0) {
+			return new ArrayList<String>();
+		}
+		return new ArrayList<String>(Arrays.asList(field.split(",")));
+	}
+
+	/**
+	 * Get the classes found in a jar the last time it was searched.
+	 * @param jar - the jar file
+	 * @return the classes in the jar, or null if the jar is not in the cache or has changed.
+	 */
+	public Entry get(File jar) {
+		Entry entry = entries.get(jar.getAbsolutePath());
+		if (entry == null || entry.size != jar.length() || entry.lastModified != jar.lastModified()) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Add the classes found in a jar to the cache.
+	 * @param jar - the jar file
+	 * @param pluginClasses - classes implementing PamPluginInterface
+	 * @param daqClasses - classes implementing DaqSystemInterface
+	 * @return the new cache entry
+	 */
+	public Entry put(File jar, List<String> pluginClasses, List<String> daqClasses) {
+		Entry entry = new Entry(jar.length(), jar.lastModified(), pluginClasses, daqClasses);
+		entries.put(jar.getAbsolutePath(), entry);
+		changed = true;
+		return entry;
+	}
+
+	/**
+	 * Remove jars which are no longer in the plugins folder.
+	 * @param jars - jars currently in the plugins folder
+	 */
+	public void retainOnly(Collection<File> jars) {
+		HashSet<String> paths = new HashSet<String>();
+		for (File jar : jars) {
+			paths.add(jar.getAbsolutePath());
+		}
+		if (entries.keySet().retainAll(paths)) {
+			changed = true;
+		}
+	}
+
+	/**
+	 * Save the cache if it has changed.
+	 */
+	public void save() {
+		if (!changed || cacheFile == null) {
+			return;
+		}
+		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), StandardCharsets.UTF_8)))) {
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				writer.println(e.getKey() + "\t" + e.getValue().size + "\t" + e.getValue().lastModified + "\t" +
+						String.join(",", e.getValue().pluginClasses) + "\t" + String.join(",", e.getValue().daqClasses));
+			}
+			changed = false;
+		}
+		catch (IOException e) {
+			if (StartupTimer.isVerbose()) {
+				System.out.println("Unable to save plugin cache " + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+	}
+
+}
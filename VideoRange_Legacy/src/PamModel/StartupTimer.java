@@ -0,0 +1,127 @@
+package PamModel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long each part of creating the PAMGuard model takes, e.g. searching each plugin jar,
+ * creating each plugin and registering each module, so that slow plugins and modules can be found.
+ * Times can be added from several threads.
+ *
+ */
+public class StartupTimer {
+
+	public static final String JAR_SCAN = "Plugin jar search";
+	public static final String PLUGIN = "Plugin";
+	public static final String MODULE = "Module registration";
+
+	/**
+	 * Set this system property to true (-Dpamguard.startup.verbose=true) to print the start-up report
+	 * and details of the plugin search.
+	 */
+	public static final String VERBOSE_PROPERTY = "pamguard.startup.verbose";
+
+	/**
+	 * Only this many of the slowest items in each category are listed in the report.
+	 */
+	private static final int MAX_REPORT_ITEMS = 10;
+
+	/**
+	 * One timed item.
+	 */
+	public static class Item {
+
+		private final String category;
+
+		private final String name;
+
+		private final long nanos;
+
+		private Item(String category, String name, long nanos) {
+			this.category = category;
+			this.name = name;
+			this.nanos = nanos;
+		}
+
+		public String getCategory() {
+			return category;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return time taken in milliseconds
+		 */
+		public double getMillis() {
+			return nanos / 1.e6;
+		}
+	}
+
+	private final List<Item> items = new ArrayList<Item>();
+
+	/**
+	 * @return true if the start-up report and plugin search details should be printed
+	 */
+	public static boolean isVerbose() {
+		return Boolean.getBoolean(VERBOSE_PROPERTY);
+	}
+
+	private long startNanos = System.nanoTime();
+
+	/**
+	 * Clear all times and restart the total time.
+	 */
+	public synchronized void reset() {
+		items.clear();
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Add the time taken by an item.
+	 * @param category - e.g. JAR_SCAN, PLUGIN or MODULE
+	 * @param name - name of the jar, plugin or module
+	 * @param nanos - time taken in nanoseconds
+	 */
+	public synchronized void add(String category, String name, long nanos) {
+		items.add(new Item(category, name, nanos));
+	}
+
+	/**
+	 * @return a copy of all the timed items in the order they were added
+	 */
+	public synchronized List<Item> getItems() {
+		return new ArrayList<Item>(items);
+	}
+
+	/**
+	 * Make a report of the total time, the time for each category and the slowest items in each category.
+	 * Times for items in the same category may overlap if they ran in parallel.
+	 * @return the report
+	 */
+	public synchronized String getReport() {
+		Map<String, List<Item>> categories = new LinkedHashMap<String, List<Item>>();
+		for (Item item : items) {
+			categories.computeIfAbsent(item.category, k -> new ArrayList<Item>()).add(item);
+		}
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("PAMGuard model created in %.1f ms%n", (System.nanoTime() - startNanos) / 1.e6));
+		for (Map.Entry<String, List<Item>> category : categories.entrySet()) {
+			List<Item> categoryItems = category.getValue();
+			long total = 0;
+			for (Item item : categoryItems) {
+				total += item.nanos;
+			}
+			report.append(String.format("   %s: %d items, %.1f ms%n", category.getKey(), categoryItems.size(), total / 1.e6));
+			categoryItems.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+			for (int i = 0; i < Math.min(MAX_REPORT_ITEMS, categoryItems.size()); i++) {
+				report.append(String.format("      %8.1f ms  %s%n", categoryItems.get(i).getMillis(), categoryItems.get(i).name));
+			}
+		}
+		return report.toString();
+	}
+
+}
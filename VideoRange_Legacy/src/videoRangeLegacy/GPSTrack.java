@@ -0,0 +1,251 @@
+package videoRangeLegacy;
+
+import PamUtils.LatLong;
+
+/**
+ * A time indexed GPS track held in primitive arrays. Fixes are usually added in time order (appending is then O(1)) and a position at any time can be found with a binary search followed by interpolation between the two
+ * surrounding fixes. This is used by the LocationManager so that repeated location requests (e.g. during repaints) do not have to search through data blocks or create new objects for every fix.
+ * <p>
+ * Times outside the track return the first or last fix, in the same way as searching for the closest unit in a data block.
+ */
+public class GPSTrack {
+
+	/**
+	 * Linear interpolation of latitude and longitude between fixes.
+	 */
+	public final static int INTERP_LINEAR=0;
+
+	/**
+	 * Interpolate along the great circle between fixes.
+	 */
+	public final static int INTERP_GREAT_CIRCLE=1;
+
+	private long[] times;
+
+	private double[] lats;
+
+	private double[] longs;
+
+	private double[] heights;
+
+	/**
+	 * The number of fixes in the track.
+	 */
+	private int nFixes=0;
+
+	/**
+	 * The interpolation method used between fixes.
+	 */
+	private int interpMethod=INTERP_LINEAR;
+
+	public GPSTrack(){
+		this(1024);
+	}
+
+	/**
+	 * Create a GPS track.
+	 * @param capacity- initial number of fixes which can be stored before the track arrays need to grow.
+	 */
+	public GPSTrack(int capacity){
+		capacity=Math.max(capacity, 16);
+		times=new long[capacity];
+		lats=new double[capacity];
+		longs=new double[capacity];
+		heights=new double[capacity];
+	}
+
+	/**
+	 * Add a GPS fix to the track. If a fix with exactly the same time already exists it is replaced.
+	 * @param timeMillis- time of the fix in millis
+	 * @param latitude- latitude in decimal degrees
+	 * @param longitude- longitude in decimal degrees
+	 * @param height- height in meters
+	 */
+	public synchronized void addFix(long timeMillis, double latitude, double longitude, double height){
+		int index;
+		if (nFixes==0 || timeMillis>times[nFixes-1]){
+			//most common case- data arrives in time order.
+			index=nFixes;
+		}
+		else {
+			index=findIndex(timeMillis);
+			if (index>=0 && times[index]==timeMillis){
+				setFix(index, timeMillis, latitude, longitude, height);
+				return;
+			}
+			index++;
+		}
+		ensureCapacity(nFixes+1);
+		if (index<nFixes){
+			System.arraycopy(times, index, times, index+1, nFixes-index);
+			System.arraycopy(lats, index, lats, index+1, nFixes-index);
+			System.arraycopy(longs, index, longs, index+1, nFixes-index);
+			System.arraycopy(heights, index, heights, index+1, nFixes-index);
+		}
+		setFix(index, timeMillis, latitude, longitude, height);
+		nFixes++;
+	}
+
+	/**
+	 * Add a GPS fix to the track.
+	 * @param timeMillis- time of the fix in millis
+	 * @param latLong- position of the fix.
+	 */
+	public void addFix(long timeMillis, LatLong latLong){
+		if (latLong==null) return;
+		addFix(timeMillis, latLong.getLatitude(), latLong.getLongitude(), latLong.getHeight());
+	}
+
+	private void setFix(int index, long timeMillis, double latitude, double longitude, double height){
+		times[index]=timeMillis;
+		lats[index]=latitude;
+		longs[index]=longitude;
+		heights[index]=height;
+	}
+
+	private void ensureCapacity(int capacity){
+		if (capacity<=times.length) return;
+		int newLength=Math.max(capacity, times.length*2);
+		long[] newTimes=new long[newLength];
+		System.arraycopy(times, 0, newTimes, 0, nFixes);
+		times=newTimes;
+		lats=grow(lats, newLength);
+		longs=grow(longs, newLength);
+		heights=grow(heights, newLength);
+	}
+
+	private double[] grow(double[] array, int newLength){
+		double[] newArray=new double[newLength];
+		System.arraycopy(array, 0, newArray, 0, nFixes);
+		return newArray;
+	}
+
+	/**
+	 * Remove all fixes from the track.
+	 */
+	public synchronized void clear(){
+		nFixes=0;
+	}
+
+	/**
+	 * Find the index of the last fix at or before timeMillis.
+	 * @param timeMillis- time in millis
+	 * @return the index of the fix, -1 if timeMillis is before the start of the track.
+	 */
+	private int findIndex(long timeMillis){
+		int low=0;
+		int high=nFixes-1;
+		int mid;
+		while (low<=high){
+			mid=(low+high)>>>1;
+			if (times[mid]<=timeMillis) low=mid+1;
+			else high=mid-1;
+		}
+		return high;
+	}
+
+	/**
+	 * Get the position at a given time, interpolating between the two closest fixes.
+	 * @param timeMillis- time in millis
+	 * @return the interpolated position or null if there are no fixes in the track.
+	 */
+	public synchronized LatLong getLatLong(long timeMillis){
+		if (nFixes==0) return null;
+		int index=findIndex(timeMillis);
+		if (index<0) return createLatLong(lats[0], longs[0], heights[0]);
+		if (index>=nFixes-1 || times[index]==timeMillis) return createLatLong(lats[index], longs[index], heights[index]);
+
+		double fraction=(double) (timeMillis-times[index])/(double) (times[index+1]-times[index]);
+		double height=heights[index]+fraction*(heights[index+1]-heights[index]);
+
+		switch (interpMethod){
+		case INTERP_GREAT_CIRCLE:
+			return interpGreatCircle(index, fraction, height);
+		default:
+			double dLong=constrainedLongitude(longs[index+1]-longs[index]);
+			return createLatLong(lats[index]+fraction*(lats[index+1]-lats[index]),
+					constrainedLongitude(longs[index]+fraction*dLong), height);
+		}
+	}
+
+	/**
+	 * Interpolate between two fixes along the great circle joining them (spherical linear interpolation of the position vectors).
+	 */
+	private LatLong interpGreatCircle(int index, double fraction, double height){
+		double lat1=Math.toRadians(lats[index]);
+		double lat2=Math.toRadians(lats[index+1]);
+		double long1=Math.toRadians(longs[index]);
+		double long2=Math.toRadians(longs[index+1]);
+
+		double x1=Math.cos(lat1)*Math.cos(long1);
+		double y1=Math.cos(lat1)*Math.sin(long1);
+		double z1=Math.sin(lat1);
+		double x2=Math.cos(lat2)*Math.cos(long2);
+		double y2=Math.cos(lat2)*Math.sin(long2);
+		double z2=Math.sin(lat2);
+
+		double dot=Math.max(-1, Math.min(1, x1*x2+y1*y2+z1*z2));
+		double omega=Math.acos(dot);
+		double a, b;
+		if (omega<1e-12){
+			//fixes are practically in the same place
+			a=1-fraction;
+			b=fraction;
+		}
+		else {
+			double sinOmega=Math.sin(omega);
+			a=Math.sin((1-fraction)*omega)/sinOmega;
+			b=Math.sin(fraction*omega)/sinOmega;
+		}
+		double x=a*x1+b*x2;
+		double y=a*y1+b*y2;
+		double z=a*z1+b*z2;
+
+		return createLatLong(Math.toDegrees(Math.atan2(z, Math.sqrt(x*x+y*y))), Math.toDegrees(Math.atan2(y, x)), height);
+	}
+
+	private static double constrainedLongitude(double longitude){
+		while (longitude>180) longitude-=360;
+		while (longitude<=-180) longitude+=360;
+		return longitude;
+	}
+
+	private static LatLong createLatLong(double latitude, double longitude, double height){
+		LatLong latLong=new LatLong(latitude, longitude);
+		latLong.setHeight(height);
+		return latLong;
+	}
+
+	public synchronized int getNFixes(){
+		return nFixes;
+	}
+
+	/**
+	 * @return the time of the first fix in the track, or Long.MIN_VALUE if the track is empty.
+	 */
+	public synchronized long getFirstTime(){
+		if (nFixes==0) return Long.MIN_VALUE;
+		return times[0];
+	}
+
+	/**
+	 * @return the time of the last fix in the track, or Long.MIN_VALUE if the track is empty.
+	 */
+	public synchronized long getLastTime(){
+		if (nFixes==0) return Long.MIN_VALUE;
+		return times[nFixes-1];
+	}
+
+	public int getInterpMethod() {
+		return interpMethod;
+	}
+
+	/**
+	 * Set the interpolation method.
+	 * @param interpMethod- INTERP_LINEAR or INTERP_GREAT_CIRCLE
+	 */
+	public void setInterpMethod(int interpMethod) {
+		this.interpMethod = interpMethod;
+	}
+
+}
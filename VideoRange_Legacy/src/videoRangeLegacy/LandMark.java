@@ -37,6 +37,12 @@ public class LandMark extends Object implements Serializable, Cloneable{
 	 */
 	private LatLong latLongOrigin; 
 	
+	/**
+	 * Grey scale reference crop of the landmark from the last image it was set on. Used to find the landmark automatically in other images. 
+	 * Transient so image data is not stored in the settings file. Templates are saved separately, see LandMarkTemplates. 
+	 */
+	private transient byte[] template;
+	
 	public LandMark(){
 		
 	}
@@ -59,6 +65,7 @@ public class LandMark extends Object implements Serializable, Cloneable{
 		pitch=newData.getPitch();
 		latLongOrigin=newData.getLatLongOrigin();
 		position=newData.getPosition();
+		template=newData.getTemplate();
 		name = new String(newData.name);
 	}
 	
@@ -115,6 +122,17 @@ public class LandMark extends Object implements Serializable, Cloneable{
 		this.latLongOrigin = latLongOrigin;
 	}
 
+	/**
+	 * @return the grey scale reference crop of the landmark or null if the landmark has not been set on an image. 
+	 */
+	public byte[] getTemplate() {
+		return template;
+	}
+
+	public void setTemplate(byte[] template) {
+		this.template = template;
+	}
+
 	
 	@Override
 	public LandMark clone() {
@@ -0,0 +1,106 @@
+package videoRangeLegacy;
+
+import java.util.IdentityHashMap;
+
+import PamUtils.LatLong;
+
+/**
+ * Bearing, pitch and distance from an image origin to every landmark in a landmark group. These only change if the origin or the landmarks change, so are calculated once and kept by the LandMarkGroup
+ * rather than being calculated again for every landmark on every click.
+ * <p>
+ * Landmarks defined by a bearing and pitch rather than a position use their stored angles and have a distance of NaN. All angles are in RADIANS.
+ */
+public class LandMarkGeometry {
+
+	private final double latitude;
+	private final double longitude;
+	private final double height;
+
+	private final double[] bearings;
+	private final double[] pitches;
+	private final double[] distances;
+
+	private final IdentityHashMap<LandMark, Integer> indices;
+
+	/**
+	 * Calculate the geometry of a landmark group.
+	 * @param landMarks- the landmark group.
+	 * @param origin- the image origin including height.
+	 */
+	public LandMarkGeometry(LandMarkGroup landMarks, LatLong origin){
+		latitude=origin.getLatitude();
+		longitude=origin.getLongitude();
+		height=origin.getHeight();
+		int n=landMarks.size();
+		bearings=new double[n];
+		pitches=new double[n];
+		distances=new double[n];
+		indices=new IdentityHashMap<LandMark, Integer>(n);
+		LandMark landMark;
+		for (int i=0; i<n; i++){
+			landMark=landMarks.get(i);
+			indices.put(landMark, i);
+			if (landMark.getPosition()!=null){
+				bearings[i]=Math.toRadians(origin.bearingTo(landMark.getPosition()));
+				distances[i]=landMark.getPosition().distanceToMetres(origin);
+				pitches[i]=Math.atan((landMark.getHeight()-height)/distances[i]);
+			}
+			else {
+				bearings[i]=Math.toRadians(landMark.getBearing());
+				pitches[i]=Math.toRadians(landMark.getPitch());
+				distances[i]=Double.NaN;
+			}
+		}
+	}
+
+	/**
+	 * Check whether this geometry was calculated for an origin.
+	 * @param origin- the image origin including height.
+	 * @return true if the origin is the same as the one the geometry was calculated for.
+	 */
+	public boolean isOrigin(LatLong origin){
+		return origin.getLatitude()==latitude && origin.getLongitude()==longitude && origin.getHeight()==height;
+	}
+
+	/**
+	 * Get the index of a landmark.
+	 * @param landMark- the landmark.
+	 * @return the index of the landmark in the group or -1 if it is not in the group.
+	 */
+	public int indexOf(LandMark landMark){
+		Integer index=indices.get(landMark);
+		return index==null ? -1 : index;
+	}
+
+	/**
+	 * @param i- landmark index.
+	 * @return the bearing from the origin to the landmark in radians.
+	 */
+	public double getBearing(int i){
+		return bearings[i];
+	}
+
+	/**
+	 * @param i- landmark index.
+	 * @return the pitch from the origin to the landmark in radians.
+	 */
+	public double getPitch(int i){
+		return pitches[i];
+	}
+
+	/**
+	 * @param i- landmark index.
+	 * @return the distance from the origin to the landmark in meters, NaN if the landmark has no position.
+	 */
+	public double getDistance(int i){
+		return distances[i];
+	}
+
+	/**
+	 * @return the number of landmarks.
+	 */
+	public int getNLandMarks(){
+		return bearings.length;
+	}
+
+}
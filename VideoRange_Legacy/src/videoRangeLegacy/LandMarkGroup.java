@@ -19,6 +19,17 @@ public class LandMarkGroup extends ArrayList<LandMark> implements Serializable,
 	
 	private String groupName;
 	private String comment;
+	
+	/**
+	 * Bearings, pitches and distances to the landmarks from the last image origin. Not saved with the settings. 
+	 */
+	private transient LandMarkGeometry geometry;
+	private transient int geometryModCount;
+	
+	/**
+	 * Landmarks sorted by bearing from the last image origin. Not saved with the settings. 
+	 */
+	private transient LandMarkIndex index;
 
 	public String getName() {
 		return groupName;
@@ -30,7 +41,44 @@ public class LandMarkGroup extends ArrayList<LandMark> implements Serializable,
 	
 	@Override
 	public LandMarkGroup clone() {
-		return (LandMarkGroup) super.clone();
+		LandMarkGroup clone=(LandMarkGroup) super.clone();
+		clone.geometry=null;
+		clone.index=null;
+		return clone;
+	}
+	
+	/**
+	 * Get the bearing, pitch and distance to every landmark from an image origin. The geometry is only calculated again if the origin or the list of landmarks has changed. 
+	 * @param origin- the image origin including height. 
+	 * @return the landmark geometry. 
+	 */
+	public synchronized LandMarkGeometry getGeometry(LatLong origin){
+		if (geometry==null || geometryModCount!=modCount || !geometry.isOrigin(origin)){
+			geometry=new LandMarkGeometry(this, origin);
+			geometryModCount=modCount;
+		}
+		return geometry;
+	}
+	
+	/**
+	 * Get an index of the landmarks sorted by bearing from an image origin, used to find the landmarks which could be in an image. The index is only made again if the geometry changes. 
+	 * @param origin- the image origin including height. 
+	 * @return the landmark index. 
+	 */
+	public synchronized LandMarkIndex getIndex(LatLong origin){
+		LandMarkGeometry geometry=getGeometry(origin);
+		if (index==null || index.getGeometry()!=geometry){
+			index=new LandMarkIndex(this, geometry);
+		}
+		return index;
+	}
+	
+	/**
+	 * Clear the landmark geometry and index. Must be called if a landmark position or angle is changed. 
+	 */
+	public synchronized void clearGeometry(){
+		geometry=null;
+		index=null;
 	}
 	
 	@Override
@@ -0,0 +1,164 @@
+package videoRangeLegacy;
+
+import java.util.Arrays;
+
+/**
+ * Index of the landmarks in a landmark group sorted by bearing from an image origin. Used to quickly find the landmarks which could be in an image, i.e. those within the bearing span of the image and
+ * closer than the horizon, without testing every landmark in a large group.
+ * <p>
+ * Landmarks are also ranked by the expected error in their angles from the image origin. Errors in the image origin move near landmarks further across the image than far landmarks,
+ * so far landmarks give a better calibration. Landmarks defined by a bearing and pitch from the origin have no error from the origin and are ranked first.
+ */
+public class LandMarkIndex {
+
+	/**
+	 * Expected error in the position of the image origin and landmarks (meters). Only used to rank landmarks.
+	 */
+	public final static double POSITION_ERROR=5;
+
+	private final LandMarkGeometry geometry;
+
+	/**
+	 * Landmark bearings (0 to 2pi) in ascending order and the landmark index of each.
+	 */
+	private final double[] sortedBearings;
+	private final int[] bearingOrder;
+
+	/**
+	 * Rank of each landmark, 0 is best, and the landmark index for each rank.
+	 */
+	private final int[] rank;
+	private final int[] rankOrder;
+
+	/**
+	 * Expected angular error of each landmark in radians.
+	 */
+	private final double[] angleErrors;
+
+	/**
+	 * Height of each landmark. NaN if defined by a bearing.
+	 */
+	private final double[] heights;
+
+	/**
+	 * Create an index for a landmark group.
+	 * @param landMarks- the landmark group.
+	 * @param geometry- the geometry of the group from the image origin.
+	 */
+	public LandMarkIndex(LandMarkGroup landMarks, LandMarkGeometry geometry){
+		this.geometry=geometry;
+		int n=geometry.getNLandMarks();
+		heights=new double[n];
+		angleErrors=new double[n];
+		double[] bearings=new double[n];
+		for (int i=0; i<n; i++){
+			bearings[i]=wrap2Pi(geometry.getBearing(i));
+			heights[i]=landMarks.get(i).getPosition()==null ? Double.NaN : landMarks.get(i).getHeight();
+			angleErrors[i]=Double.isNaN(geometry.getDistance(i)) ? 0 : Math.atan(POSITION_ERROR/geometry.getDistance(i));
+		}
+
+		bearingOrder=sortIndices(bearings);
+		sortedBearings=new double[n];
+		for (int i=0; i<n; i++) sortedBearings[i]=bearings[bearingOrder[i]];
+
+		rankOrder=sortIndices(angleErrors);
+		rank=new int[n];
+		for (int i=0; i<n; i++) rank[rankOrder[i]]=i;
+	}
+
+	/**
+	 * Sort indices by value. Ties keep the original order.
+	 */
+	private static int[] sortIndices(double[] values){
+		int n=values.length;
+		Integer[] order=new Integer[n];
+		for (int i=0; i<n; i++) order[i]=i;
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+		int[] indices=new int[n];
+		for (int i=0; i<n; i++) indices[i]=order[i];
+		return indices;
+	}
+
+	private static double wrap2Pi(double angle){
+		angle=angle%(2*Math.PI);
+		if (angle<0) angle+=2*Math.PI;
+		return angle;
+	}
+
+	/**
+	 * Find the landmarks which could be in an image. Landmarks are returned in rank order, best first.
+	 * @param heading- heading of the centre of the image in radians. NaN if unknown, in which case landmarks at any bearing are returned.
+	 * @param halfSpan- half the horizontal field of view of the image in radians.
+	 * @param cameraHeight- height of the camera in meters.
+	 * @param rangeMethod- used to calculate the horizon distance. If null landmarks at any distance are returned.
+	 * @param result- filled with the indices of the landmarks. Must be at least as long as the number of landmarks.
+	 * @return the number of landmarks found.
+	 */
+	public int findVisible(double heading, double halfSpan, double cameraHeight, VRHorzCalcMethod rangeMethod, int[] result){
+		int n=sortedBearings.length;
+		if (n==0) return 0;
+		double cameraHorizon=rangeMethod==null ? Double.POSITIVE_INFINITY : rangeMethod.getHorizonDistance(cameraHeight);
+		int nFound=0;
+		int start, count;
+		if (Double.isNaN(heading) || halfSpan>=Math.PI){
+			start=0;
+			count=n;
+		}
+		else {
+			double low=wrap2Pi(heading-halfSpan);
+			start=lowerBound(low);
+			//number of landmarks between low and low+2*halfSpan, which may cross north.
+			double high=low+2*halfSpan;
+			int end=high<2*Math.PI ? lowerBound(Math.nextUp(high)) : n+lowerBound(Math.nextUp(high-2*Math.PI));
+			count=end-start;
+		}
+		int index;
+		for (int i=0; i<count; i++){
+			index=bearingOrder[(start+i)%n];
+			if (rangeMethod!=null && !Double.isNaN(heights[index]) && geometry.getDistance(index)>cameraHorizon+rangeMethod.getHorizonDistance(Math.max(0, heights[index]))) continue;
+			//store the rank so the results can be sorted by rank without boxing.
+			result[nFound++]=rank[index];
+		}
+		Arrays.sort(result, 0, nFound);
+		for (int i=0; i<nFound; i++) result[i]=rankOrder[result[i]];
+		return nFound;
+	}
+
+	/**
+	 * @return the index in the sorted bearings of the first bearing greater than or equal to a bearing.
+	 */
+	private int lowerBound(double bearing){
+		int low=0, high=sortedBearings.length;
+		int mid;
+		while (low<high){
+			mid=(low+high)>>>1;
+			if (sortedBearings[mid]<bearing) low=mid+1;
+			else high=mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @param i- landmark index.
+	 * @return the rank of the landmark, 0 is the best landmark for calibration.
+	 */
+	public int getRank(int i){
+		return rank[i];
+	}
+
+	/**
+	 * @param i- landmark index.
+	 * @return the expected error in the angles to the landmark from errors in position in radians.
+	 */
+	public double getAngleError(int i){
+		return angleErrors[i];
+	}
+
+	/**
+	 * @return the geometry the index was made from.
+	 */
+	public LandMarkGeometry getGeometry() {
+		return geometry;
+	}
+
+}
@@ -0,0 +1,136 @@
+package videoRangeLegacy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import PamController.PamSettingManager;
+
+/**
+ * Stores the reference crops (templates) used to find landmarks automatically. Templates are image pixels so are kept out of the serialized settings
+ * and saved in a file next to the settings file instead, keyed by landmark group name and landmark name. Templates for groups which are not currently
+ * loaded are kept in the file.
+ * <p>
+ * File format: magic, version, number of templates, then for each template the group name and landmark name (DataOutputStream.writeUTF), the template length and the template bytes.
+ */
+public class LandMarkTemplates {
+
+	private final static int MAGIC=0x56524C54;
+
+	private final static int VERSION=1;
+
+	private final File file;
+
+	/**
+	 * Templates by key, see getKey().
+	 */
+	private LinkedHashMap<String, byte[]> templates=new LinkedHashMap<String, byte[]>();
+
+	/**
+	 * @param file- the template file. If null templates are only held for the session.
+	 */
+	public LandMarkTemplates(File file){
+		this.file=file;
+	}
+
+	/**
+	 * @return the default template file in the settings folder, or null if there is no settings folder.
+	 */
+	public static File getDefaultFile(){
+		String settingsFolder=PamSettingManager.getSettingsFolder();
+		if (settingsFolder==null) return null;
+		return new File(settingsFolder, "VRLandMarkTemplates.bin");
+	}
+
+	private static String getKey(LandMarkGroup group, LandMark landMark){
+		return group.getName() + "\u0000" + landMark.getName();
+	}
+
+	/**
+	 * Read the template file. Any templates already held are replaced.
+	 */
+	public synchronized void read(){
+		templates=new LinkedHashMap<String, byte[]>();
+		if (file==null || !file.exists()) return;
+		try (DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt()!=MAGIC || in.readInt()!=VERSION) return;
+			int n=in.readInt();
+			String key;
+			byte[] template;
+			for (int i=0; i<n; i++){
+				key=in.readUTF() + "\u0000" + in.readUTF();
+				template=new byte[in.readInt()];
+				in.readFully(template);
+				templates.put(key, template);
+			}
+		}
+		catch (IOException | RuntimeException e){
+			System.out.println("Video Range: Could not read landmark templates " + file.getName() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Set the saved templates on landmarks which don't have one, e.g. after the settings have been loaded.
+	 * @param groups- the landmark groups.
+	 */
+	public synchronized void apply(ArrayList<LandMarkGroup> groups){
+		if (groups==null) return;
+		byte[] template;
+		for (LandMarkGroup group: groups){
+			for (LandMark landMark: group){
+				if (landMark.getTemplate()!=null) continue;
+				template=templates.get(getKey(group, landMark));
+				if (template!=null) landMark.setTemplate(template);
+			}
+		}
+	}
+
+	/**
+	 * Save the template of a landmark. The template file is written straight away.
+	 * @param group- the group the landmark is in.
+	 * @param landMark- the landmark, with its template set.
+	 */
+	public synchronized void put(LandMarkGroup group, LandMark landMark){
+		if (group==null || landMark.getTemplate()==null) return;
+		templates.put(getKey(group, landMark), landMark.getTemplate());
+		try {
+			write();
+		}
+		catch (IOException e){
+			System.out.println("Video Range: Could not write landmark templates " + file.getName() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Write all templates to a temporary file which then replaces the template file.
+	 */
+	private void write() throws IOException {
+		if (file==null) return;
+		File tempFile=new File(file.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(templates.size());
+			String[] names;
+			for (Map.Entry<String, byte[]> entry: templates.entrySet()){
+				names=entry.getKey().split("\u0000", 2);
+				out.writeUTF(names[0]);
+				out.writeUTF(names[1]);
+				out.writeInt(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+}
@@ -1,21 +1,366 @@
 package videoRangeLegacy;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import PamUtils.LatLong;
+
+/**
+ * Reads and writes landmark groups as CSV files so that large landmark catalogues can be made in a spreadsheet or GIS rather than typed in one landmark at a time.
+ * <p>
+ * Each line is one landmark with the columns: group, name, latitude, longitude, height, bearing, pitch, origin latitude, origin longitude, origin height and group comment. A landmark either has
+ * a latitude and longitude or a bearing and pitch (degrees) from an origin latitude and longitude; unused columns are left empty. Consecutive lines with the same group name are added to the same group.
+ * A header line is written on export. On import the header is used to find the columns, so columns may be in any order, and if there is no header the export column order is assumed.
+ * <p>
+ * Files are read one line at a time and landmarks added straight to their group, so the whole file is never held in memory.
+ */
 public class LandMrkGrpCSVLogging {
-	
+
+	public static final String[] fileExtensions={"csv"};
+
+	private static final String header="Group,Name,Latitude,Longitude,Height,Bearing,Pitch,OriginLatitude,OriginLongitude,OriginHeight,Comment";
+
+	/**
+	 * Column indices. Index into the column array is the field, value is the column in the file.
+	 */
+	private static final int GROUP=0;
+	private static final int NAME=1;
+	private static final int LATITUDE=2;
+	private static final int LONGITUDE=3;
+	private static final int HEIGHT=4;
+	private static final int BEARING=5;
+	private static final int PITCH=6;
+	private static final int ORIGIN_LATITUDE=7;
+	private static final int ORIGIN_LONGITUDE=8;
+	private static final int ORIGIN_HEIGHT=9;
+	private static final int COMMENT=10;
+	private static final int NCOLUMNS=11;
+
+	/**
+	 * Number of lines which could not be read in the last import.
+	 */
+	private int nErrors;
+
+	/**
+	 * Line number of the first error in the last import, 0 if there were no errors.
+	 */
+	private int firstErrorLine;
+
+	public LandMrkGrpCSVLogging(){
+
+	}
+
 	/**
-	 * 
-	 * @param file
+	 * Write landmark groups to a CSV file.
+	 * @param file- the CSV file.
+	 * @param landMarkGroups- groups to write.
+	 * @return the number of landmarks written.
+	 * @throws IOException
 	 */
-	public static void exportCSVFile(String file){
-		
+	public static int exportCSVFile(File file, List<LandMarkGroup> landMarkGroups) throws IOException{
+		int n=0;
+		PrintWriter writer=new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)));
+		try {
+			writer.println(header);
+			LandMark landMark;
+			String groupName;
+			for (LandMarkGroup landMarkGroup: landMarkGroups){
+				groupName=quote(landMarkGroup.getName());
+				for (int i=0; i<landMarkGroup.size(); i++){
+					landMark=landMarkGroup.get(i);
+					writer.print(groupName);
+					writer.print(',');
+					writer.print(quote(landMark.getName()));
+					writer.print(',');
+					if (landMark.getPosition()!=null){
+						writer.print(landMark.getPosition().getLatitude());
+						writer.print(',');
+						writer.print(landMark.getPosition().getLongitude());
+						writer.print(',');
+						writer.print(landMark.getPosition().getHeight());
+					}
+					else writer.print(",,");
+					writer.print(',');
+					writer.print(number(landMark.getBearing()));
+					writer.print(',');
+					writer.print(number(landMark.getPitch()));
+					writer.print(',');
+					if (landMark.getLatLongOrigin()!=null){
+						writer.print(landMark.getLatLongOrigin().getLatitude());
+						writer.print(',');
+						writer.print(landMark.getLatLongOrigin().getLongitude());
+						writer.print(',');
+						writer.print(landMark.getLatLongOrigin().getHeight());
+					}
+					else writer.print(",,");
+					writer.print(',');
+					//the group comment is only written once.
+					if (i==0) writer.print(quote(landMarkGroup.getComment()));
+					writer.println();
+					n++;
+				}
+			}
+			if (writer.checkError()) throw new IOException("Could not write to " + file.getName());
+		}
+		finally {
+			writer.close();
+		}
+		return n;
 	}
-	
+
+	/**
+	 * Write a landmark group to a CSV file.
+	 * @param file- the CSV file.
+	 * @param landMarkGroup- the group to write.
+	 * @return the number of landmarks written.
+	 * @throws IOException
+	 */
+	public static int exportCSVFile(File file, LandMarkGroup landMarkGroup) throws IOException{
+		ArrayList<LandMarkGroup> landMarkGroups=new ArrayList<LandMarkGroup>(1);
+		landMarkGroups.add(landMarkGroup);
+		return exportCSVFile(file, landMarkGroups);
+	}
+
+	/**
+	 * Read landmark groups from a CSV file. Lines which can not be read are counted and skipped, see {@link #getNErrors()}.
+	 * @param file- the CSV file.
+	 * @return landmark groups in the order they first appear in the file.
+	 * @throws IOException if the file can not be read or the header does not have the columns needed to define a landmark.
+	 */
+	public ArrayList<LandMarkGroup> importLndMrkGrpCSV(File file) throws IOException{
+		nErrors=0;
+		firstErrorLine=0;
+		ArrayList<LandMarkGroup> landMarkGroups=new ArrayList<LandMarkGroup>();
+		BufferedReader reader=new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			//default column order if there is no header.
+			int[] columns=new int[NCOLUMNS];
+			for (int i=0; i<NCOLUMNS; i++) columns[i]=i;
+			ArrayList<String> fields=new ArrayList<String>(NCOLUMNS);
+			String defaultGroupName=file.getName().replaceFirst("\\.[^.]*$", "");
+			LandMarkGroup landMarkGroup=null;
+			LandMark landMark;
+			String line;
+			String groupName;
+			String comment;
+			int lineNumber=0;
+			while ((line=reader.readLine())!=null){
+				lineNumber++;
+				if (line.trim().length()==0) continue;
+				splitLine(line, fields);
+				if (lineNumber==1 && isHeader(fields)){
+					readHeader(fields, columns, file);
+					continue;
+				}
+				try {
+					landMark=readLandMark(fields, columns);
+				}
+				catch (Exception e){
+					nErrors++;
+					if (firstErrorLine==0) firstErrorLine=lineNumber;
+					continue;
+				}
+				groupName=getField(fields, columns[GROUP]);
+				if (groupName==null) groupName=landMarkGroup==null ? defaultGroupName : landMarkGroup.getName();
+				if (landMarkGroup==null || !groupName.equals(landMarkGroup.getName())){
+					landMarkGroup=findGroup(landMarkGroups, groupName);
+					if (landMarkGroup==null){
+						landMarkGroup=new LandMarkGroup();
+						landMarkGroup.setGroupName(groupName);
+						landMarkGroups.add(landMarkGroup);
+					}
+				}
+				comment=getField(fields, columns[COMMENT]);
+				if (comment!=null && landMarkGroup.getComment()==null) landMarkGroup.setCommentText(comment);
+				if (landMark.getName()==null) landMark.setName("LandMark " + (landMarkGroup.size()+1));
+				landMarkGroup.add(landMark);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return landMarkGroups;
+	}
+
+	/**
+	 * Create a landmark from one line of the file.
+	 * @throws IllegalArgumentException if the line does not define a valid landmark.
+	 */
+	private static LandMark readLandMark(ArrayList<String> fields, int[] columns){
+		String name=getField(fields, columns[NAME]);
+		Double lat=getNumber(fields, columns[LATITUDE]);
+		Double lon=getNumber(fields, columns[LONGITUDE]);
+		Double height=getNumber(fields, columns[HEIGHT]);
+		Double bearing=getNumber(fields, columns[BEARING]);
+		Double pitch=getNumber(fields, columns[PITCH]);
+		Double originLat=getNumber(fields, columns[ORIGIN_LATITUDE]);
+		Double originLon=getNumber(fields, columns[ORIGIN_LONGITUDE]);
+		Double originHeight=getNumber(fields, columns[ORIGIN_HEIGHT]);
+
+		if (lat!=null && lon!=null){
+			checkLatLong(lat, lon);
+			LandMark landMark=new LandMark(name, new LatLong(lat, lon), height==null ? 0. : height);
+			//keep any bearing information as well.
+			if (bearing!=null && pitch!=null && originLat!=null && originLon!=null){
+				checkLatLong(originLat, originLon);
+				landMark.setBearing(bearing);
+				landMark.setPitch(pitch);
+				landMark.setLatLongOrigin(new LatLong(originLat, originLon));
+				landMark.setHeightOrigin(originHeight==null ? 0. : originHeight);
+			}
+			return landMark;
+		}
+		if (bearing!=null && pitch!=null && originLat!=null && originLon!=null){
+			checkLatLong(originLat, originLon);
+			if (bearing<-360 || bearing>360 || pitch<-90 || pitch>90) throw new IllegalArgumentException("Invalid bearing or pitch");
+			LandMark landMark=new LandMark(name, bearing, pitch, new LatLong(originLat, originLon));
+			landMark.setName(name);
+			landMark.setHeightOrigin(originHeight==null ? 0. : originHeight);
+			return landMark;
+		}
+		throw new IllegalArgumentException("A landmark needs a latitude and longitude or a bearing, pitch and origin");
+	}
+
+	private static void checkLatLong(double lat, double lon){
+		if (Double.isNaN(lat) || Double.isNaN(lon) || lat<-90 || lat>90 || lon<-180 || lon>360) throw new IllegalArgumentException("Invalid latitude or longitude");
+	}
+
+	private static LandMarkGroup findGroup(ArrayList<LandMarkGroup> landMarkGroups, String name){
+		for (int i=landMarkGroups.size()-1; i>=0; i--){
+			if (name.equals(landMarkGroups.get(i).getName())) return landMarkGroups.get(i);
+		}
+		return null;
+	}
+
+	/**
+	 * The header is the first line if it does not contain any numbers.
+	 */
+	private static boolean isHeader(ArrayList<String> fields){
+		for (int i=0; i<fields.size(); i++){
+			try {
+				Double.parseDouble(fields.get(i));
+				return false;
+			}
+			catch (NumberFormatException e){
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Find the columns from the names in the header.
+	 */
+	private static void readHeader(ArrayList<String> fields, int[] columns, File file) throws IOException{
+		for (int i=0; i<NCOLUMNS; i++) columns[i]=-1;
+		String name;
+		for (int i=0; i<fields.size(); i++){
+			name=fields.get(i).toLowerCase().replace(" ", "").replace("_", "");
+			if (name.startsWith("originlat")) setColumn(columns, ORIGIN_LATITUDE, i);
+			else if (name.startsWith("originlon") || name.startsWith("originlng")) setColumn(columns, ORIGIN_LONGITUDE, i);
+			else if (name.startsWith("originheight") || name.startsWith("originalt")) setColumn(columns, ORIGIN_HEIGHT, i);
+			else if (name.startsWith("group")) setColumn(columns, GROUP, i);
+			else if (name.startsWith("name") || name.startsWith("landmark")) setColumn(columns, NAME, i);
+			else if (name.startsWith("lat")) setColumn(columns, LATITUDE, i);
+			else if (name.startsWith("lon") || name.startsWith("lng")) setColumn(columns, LONGITUDE, i);
+			else if (name.startsWith("height") || name.startsWith("alt") || name.startsWith("ele")) setColumn(columns, HEIGHT, i);
+			else if (name.startsWith("bearing")) setColumn(columns, BEARING, i);
+			else if (name.startsWith("pitch")) setColumn(columns, PITCH, i);
+			else if (name.startsWith("comment")) setColumn(columns, COMMENT, i);
+		}
+		boolean hasPosition=columns[LATITUDE]>=0 && columns[LONGITUDE]>=0;
+		boolean hasBearing=columns[BEARING]>=0 && columns[PITCH]>=0 && columns[ORIGIN_LATITUDE]>=0 && columns[ORIGIN_LONGITUDE]>=0;
+		if (!hasPosition && !hasBearing){
+			throw new IOException("CSV file " + file.getName() + " must have latitude and longitude columns or bearing, pitch and origin columns");
+		}
+	}
+
+	private static void setColumn(int[] columns, int field, int column){
+		if (columns[field]<0) columns[field]=column;
+	}
+
+	/**
+	 * @return the trimmed field or null if the column is not in the file or the field is empty.
+	 */
+	private static String getField(ArrayList<String> fields, int column){
+		if (column<0 || column>=fields.size()) return null;
+		String field=fields.get(column);
+		return field.length()==0 ? null : field;
+	}
+
+	/**
+	 * @return the number in a field or null if the field is empty.
+	 * @throws NumberFormatException if the field is not a number.
+	 */
+	private static Double getNumber(ArrayList<String> fields, int column){
+		String field=getField(fields, column);
+		if (field==null) return null;
+		return Double.parseDouble(field);
+	}
+
+	/**
+	 * Split a CSV line into trimmed fields. Fields may be in double quotes, in which case they can contain commas and quotes are written as two double quotes.
+	 * @param line- the line.
+	 * @param fields- list which the fields are added to. Cleared first so one list can be used for every line.
+	 */
+	private static void splitLine(String line, ArrayList<String> fields){
+		fields.clear();
+		StringBuilder field=new StringBuilder();
+		boolean inQuotes=false;
+		char c;
+		for (int i=0; i<line.length(); i++){
+			c=line.charAt(i);
+			if (inQuotes){
+				if (c=='"'){
+					if (i+1<line.length() && line.charAt(i+1)=='"'){
+						field.append('"');
+						i++;
+					}
+					else inQuotes=false;
+				}
+				else field.append(c);
+			}
+			else if (c=='"') inQuotes=true;
+			else if (c==','){
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			}
+			else field.append(c);
+		}
+		fields.add(field.toString().trim());
+	}
+
+	private static String quote(String text){
+		if (text==null) return "";
+		if (text.indexOf(',')<0 && text.indexOf('"')<0 && text.indexOf('\n')<0) return text;
+		return "\"" + text.replace("\"", "\"\"").replace('\n', ' ') + "\"";
+	}
+
+	private static String number(Double value){
+		return value==null ? "" : value.toString();
+	}
+
+	/**
+	 * @return the number of lines which could not be read in the last import.
+	 */
+	public int getNErrors() {
+		return nErrors;
+	}
+
 	/**
-	 * 
-	 * @param file
+	 * @return the line number of the first line which could not be read in the last import, 0 if all lines were read.
 	 */
-	public static void importLndMrkGrpCSV(String file){
-		
+	public int getFirstErrorLine() {
+		return firstErrorLine;
 	}
 
 }
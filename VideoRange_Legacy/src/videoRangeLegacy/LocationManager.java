@@ -1,4 +1,8 @@
 package videoRangeLegacy;
+import java.io.File;
+import java.io.IOException;
+
+import videoRangeLegacy.importGPSData.ImportGPSTrack;
 import Array.ArrayManager;
 import GPS.GpsDataUnit;
 import PamUtils.LatLong;
@@ -34,19 +38,50 @@ public class LocationManager {
 	 */
 	public final static int LANDMARK_GROUP=4;
 	
+	/**
+	 * Interpolate the location from a GPS track imported from a GPX, NMEA or CSV file. 
+	 */
+	public final static int GPS_TRACK_FILE=5;
+	
 	
 	private int lastSearch=0;
 	
 	/**
 	 * All current methods which can be selected by the user. Note: some vrMethods will override all other methods to determine location, e.g. the landmark method. These methods are not included in this array. 
 	 */
-	private final static int[] allMethods={ARRAY_MANAGER,PHOTO_TAG,MANUAL_INPUT};
+	private final static int[] allMethods={ARRAY_MANAGER,PHOTO_TAG,MANUAL_INPUT,GPS_TRACK_FILE};
 	/**
 	 * The manager searches for a location using multiple techniques in order of priority. If more than one available method of extracting a gps locationiis available then the method which is first in the list (has the highest priority) is used.
 	 */
-	private int[] currentMethods={PHOTO_TAG,MANUAL_INPUT,ARRAY_MANAGER};
+	private int[] currentMethods={PHOTO_TAG,GPS_TRACK_FILE,MANUAL_INPUT,ARRAY_MANAGER};
 		
 	private VRControl vrControl;
+	
+	/**
+	 * Track of GPS positions from the GPS data block. Filled as GPS data arrives (or loads in viewer mode) and used instead of searching the data block for every location request. 
+	 */
+	private GPSTrack gpsTrack=new GPSTrack();
+	
+	/**
+	 * Track of GPS positions imported from a file. Replaced on the AWT thread but may be read by batch processes on other threads. 
+	 */
+	private volatile GPSTrack importedTrack=new GPSTrack();
+	
+	/**
+	 * The file the imported track was read from and it's modification time. Used so the file is not read again if it hasn't changed. 
+	 */
+	private File importedTrackFile;
+	private long importedTrackModified;
+	
+	/**
+	 * Cache of the last resolved location. The location of an image is requested many times (e.g. every time the shore overlay is drawn) so keep the result for the 
+	 * current image and time. The cache must be cleared whenever the image, image time, settings or GPS data change. 
+	 */
+	private boolean cacheValid=false;
+	private PamImage cachedImage;
+	private long cachedTime;
+	private LatLong cachedLatLong;
+	private int cachedSource=NO_GPS_DATA_FOUND;
 
 	public LocationManager(VRControl vrControl){
 		this.vrControl=vrControl; 
@@ -77,17 +112,56 @@ public class LocationManager {
 	 * @param timeMillis- time of GPS location
 	 * @return latlong at timeMillis
 	 */
-	public LatLong getLocation(long timeMillis){
-		LatLong latLong=null; ;
+	public synchronized LatLong getLocation(long timeMillis){
+		PamImage currentImage=vrControl.getCurrentImage();
+		//callers may change the height of the location so never hand out the cached object or an object held by a location source. 
+		if (cacheValid && cachedImage==currentImage && cachedTime==timeMillis){
+			lastSearch=cachedSource;
+			return cachedLatLong==null ? null : cachedLatLong.clone();
+		}
+		
+		LatLong latLong=null; 
+		lastSearch=NO_GPS_DATA_FOUND;
 		for (int i=0; i<currentMethods.length; i++){
-			latLong=getGPSPoint(timeMillis, currentMethods[i]);
+			latLong=getGPSPoint(timeMillis, currentMethods[i], currentImage);
 			if (latLong!=null){
 				lastSearch=currentMethods[i];
-				return latLong;
+				break;
 			}
 		}
-		lastSearch=NO_GPS_DATA_FOUND;
-		return latLong;
+		
+		cachedImage=currentImage;
+		cachedTime=timeMillis;
+		cachedLatLong=latLong==null ? null : latLong.clone();
+		cachedSource=lastSearch;
+		cacheValid=true;
+		
+		return latLong==null ? null : latLong.clone();
+	}
+	
+	/**
+	 * Get the location of an image which is not the current image, e.g. when batch processing a folder of images. The result is not cached and does not change the last search type so this can be called from any thread. 
+	 * @param timeMillis- time of GPS location
+	 * @param image- the image. Used for the geo-tag.
+	 * @return latlong at timeMillis or null if no location could be found. 
+	 */
+	public LatLong getLocation(long timeMillis, PamImage image){
+		int[] methods=currentMethods;
+		LatLong latLong;
+		for (int i=0; i<methods.length; i++){
+			latLong=getGPSPoint(timeMillis, methods[i], image);
+			if (latLong!=null) return latLong.clone();
+		}
+		return null;
+	}
+	
+	/**
+	 * Clear the cached location. Must be called if anything which could change the location of an image changes, e.g. a new image, new GPS data or new settings. 
+	 */
+	public synchronized void clearCache(){
+		cacheValid=false;
+		cachedImage=null;
+		cachedLatLong=null;
 	}
 	
 	public String getTypeString(int type){
@@ -102,6 +176,8 @@ public class LocationManager {
 			return  "GPS Table";
 		case LANDMARK_GROUP:
 			return "LandMark GPS";
+		case GPS_TRACK_FILE:
+			return "GPS Track File";
 		}
 		return "No GPS data";
 	}
@@ -109,7 +185,6 @@ public class LocationManager {
 	@Deprecated
 	//TODO- hydrophone locator to be revamped soon-this function will need changed. 
 	public LatLong searchGPSDataBlock(long timeMillis){
-		System.out.println("VideoRangeLegacy: LocationManager: Searching GPS datablock: "+ArrayManager.getArrayManager().getGPSDataBlock());
 		GpsDataUnit gpsDataunit;
 		if (ArrayManager.getArrayManager().getGPSDataBlock()!=null){
 			gpsDataunit=ArrayManager.getArrayManager().getGPSDataBlock().getClosestUnitMillis(timeMillis);
@@ -122,16 +197,21 @@ public class LocationManager {
 	
 	/**
 	 * Returns the current GPS point. Note that the GPS can be null 
+	 * @param timeMillis- time of GPS location
+	 * @param currentMethod- the location method
+	 * @param image- the image the location is for. Used for the geo-tag. 
 	 * @return
 	 */
-	private LatLong getGPSPoint(long timeMillis, int currentMethod){
+	private LatLong getGPSPoint(long timeMillis, int currentMethod, PamImage image){
 		
 		LatLong latLong=null; 
 		switch (currentMethod){
 		case ARRAY_MANAGER:
 			// if using in relatime then get the most updated GPS point
 			//TODO-will likely need changed soon with introduction of new latlong
-			latLong=searchGPSDataBlock(timeMillis);
+			latLong=gpsTrack.getLatLong(timeMillis);
+			//the track may not have been filled yet, e.g. data block created after the track was sorted. 
+			if (latLong==null) latLong=searchGPSDataBlock(timeMillis);
 //			if (latLong==null) ArrayManager.getArrayManager().getCurrentArray().getFixedLatLong();
 			try {
 				if (latLong==null){
@@ -143,8 +223,8 @@ public class LocationManager {
 			}
 		break;
 		case PHOTO_TAG:
-			if (vrControl.getCurrentImage()==null) break;
-			latLong=vrControl.getCurrentImage().getGeoTag();
+			if (image==null) break;
+			latLong=image.getGeoTag();
 		break;
 		case MANUAL_INPUT:
 			if (vrControl.getVRParams().getManualGPSDatas()==null) break;
@@ -154,6 +234,9 @@ public class LocationManager {
 		case LANDMARK_GROUP:
 			if (vrControl.getVRParams().getLandMarkDatas()==null) break;
 		break;
+		case GPS_TRACK_FILE:
+			latLong=importedTrack.getLatLong(timeMillis);
+		break;
 		}
 		
 		return latLong;
@@ -177,7 +260,65 @@ public class LocationManager {
 
 	public void setCurrentMethods(int[] currentMethods) {
 		this.currentMethods=currentMethods;
-		
+		clearCache();
+	}
+
+	/**
+	 * Get the GPS track built from the GPS data block. 
+	 * @return the GPS track.
+	 */
+	public GPSTrack getGPSTrack() {
+		return gpsTrack;
+	}
+
+
+	/**
+	 * Get the GPS track imported from a file. 
+	 * @return the imported GPS track. This will be empty if no file has been imported. 
+	 */
+	public GPSTrack getImportedTrack() {
+		return importedTrack;
+	}
+	
+	/**
+	 * Check whether a GPS track file is the file which has already been imported and has not been modified since. 
+	 * @param file- the GPS track file. 
+	 * @return true if the file does not need to be read again. 
+	 */
+	public boolean isImportedTrackFile(File file){
+		return file!=null && file.equals(importedTrackFile) && file.lastModified()==importedTrackModified;
+	}
+	
+	/**
+	 * Read a GPS track from a GPX, NMEA or CSV file. The imported track is not changed, so this can be called on a background thread. 
+	 * @param file- the GPS track file. 
+	 * @return the track read from the file. 
+	 * @throws IOException if the file does not exist or could not be read. 
+	 */
+	public GPSTrack readGPSTrackFile(File file) throws IOException{
+		if (!file.exists()){
+			throw new IOException("GPS track file does not exist: " + file.getAbsolutePath());
+		}
+		GPSTrack newTrack=new GPSTrack();
+		newTrack.setInterpMethod(vrControl.getVRParams().gpsInterpMethod);
+		ImportGPSTrack importGPSTrack=new ImportGPSTrack();
+		importGPSTrack.importFile(file, newTrack);
+		if (importGPSTrack.getNErrors()>0){
+			System.out.println("Video Range location manager: " + importGPSTrack.getNErrors() + " lines could not be read in " + file.getName());
+		}
+		return newTrack;
+	}
+	
+	/**
+	 * Use a track read by readGPSTrackFile() as the imported track. Must be called on the AWT thread. 
+	 * @param file- the file the track was read from. Null clears the imported track. 
+	 * @param newTrack- the track. 
+	 */
+	public void setImportedTrack(File file, GPSTrack newTrack){
+		importedTrack=(file==null || newTrack==null) ? new GPSTrack() : newTrack;
+		importedTrackFile=file;
+		importedTrackModified=file==null ? 0 : file.lastModified();
+		clearCache();
 	}
 
 
@@ -5,9 +5,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.TimeZone;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import PamUtils.LatLong;
 import PamUtils.PamCalendar;
@@ -35,6 +38,8 @@ public class PamImage extends PamDataUnit {
 	private Metadata metadata;
 	private BufferedImage image; 
 	private boolean imageOK=false; 
+	private int width;
+	private int height;
 	
 	//metadata
 	private ArrayList<String> metaDataText=new ArrayList<String>();
@@ -48,15 +53,30 @@ public class PamImage extends PamDataUnit {
 	 * @throws IOException
 	 */
 	public PamImage(File imageFile){
+		this(imageFile, true);
+	}
+	
+	/**
+	 * Open a photo and calculate metadata information. 
+	 * @param imageFile- the image file
+	 * @param loadImage- true to load the image. If false only the size of the image and metadata are read which is much quicker, e.g. for batch processing. 
+	 */
+	public PamImage(File imageFile, boolean loadImage){
 		super(0);
 		this.imageFile=imageFile; 
 		//try and load the image
 		try {
-			long time0=System.currentTimeMillis();
-			image = ImageIO.read(imageFile);
-			long time1=System.currentTimeMillis();
-			System.out.println("PamImage: ImageIO.read(file): "+(time1-time0));
-
+			if (loadImage){
+				long time0=System.currentTimeMillis();
+				image = ImageIO.read(imageFile);
+				long time1=System.currentTimeMillis();
+				System.out.println("PamImage: ImageIO.read(file): "+(time1-time0));
+				if (image!=null){
+					width=image.getWidth();
+					height=image.getHeight();
+				}
+			}
+			else readImageSize(imageFile);
 		}
 		catch (IOException ex) {
 			ex.printStackTrace();
@@ -70,7 +90,33 @@ public class PamImage extends PamDataUnit {
 			e.printStackTrace();
 		}
 		processPhotoData();
-		if (image!=null) imageOK=true; 
+		if (image!=null || (!loadImage && width>0)) imageOK=true; 
+	}
+	
+	/**
+	 * Read the size of an image from the file header without decoding the image. 
+	 * @param imageFile- the image file
+	 * @throws IOException
+	 */
+	private void readImageSize(File imageFile) throws IOException{
+		ImageInputStream inputStream=ImageIO.createImageInputStream(imageFile);
+		if (inputStream==null) return;
+		try {
+			Iterator<ImageReader> readers=ImageIO.getImageReaders(inputStream);
+			if (!readers.hasNext()) return;
+			ImageReader reader=readers.next();
+			try {
+				reader.setInput(inputStream);
+				width=reader.getWidth(0);
+				height=reader.getHeight(0);
+			}
+			finally {
+				reader.dispose();
+			}
+		}
+		finally {
+			inputStream.close();
+		}
 	}
 	
 	/**
@@ -80,7 +126,11 @@ public class PamImage extends PamDataUnit {
 	public PamImage(BufferedImage bufferedImage) {
 		super(0);
 		this.image=bufferedImage;
-		if (image!=null) imageOK=true; 
+		if (image!=null){
+			imageOK=true; 
+			width=image.getWidth();
+			height=image.getHeight();
+		}
 	}
 	
 	/**
@@ -134,6 +184,20 @@ public class PamImage extends PamDataUnit {
 		return imageOK;
 	}
 	
+	/**
+	 * @return the width of the image in pixels. 
+	 */
+	public int getWidth(){
+		return width;
+	}
+	
+	/**
+	 * @return the height of the image in pixels. 
+	 */
+	public int getHeight(){
+		return height;
+	}
+	
 	public File getImageFile(){
 		return imageFile;
 	}
@@ -0,0 +1,284 @@
+package videoRangeLegacy;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Estimates range and location confidence intervals by Monte Carlo sampling. Camera height (including tide), the angle below the horizon, camera calibration, refraction and heading
+ * are each drawn from a normal distribution and every sample is passed through the range method, so errors are correct for any {@link VRHorzCalcMethod} however non linear.
+ * <p>
+ * Samples are made in blocks of primitive arrays and the blocks are processed on parallel threads. Each block has its own random number generator split from one seeded generator
+ * so the same inputs always give the same result whatever the number of threads.
+ */
+public class RangeUncertainty {
+
+	/**
+	 * Number of samples in each block processed by one thread.
+	 */
+	private final static int BLOCK_SIZE=1024;
+
+	private final static long SEED=0x56525243L;
+
+	/**
+	 * Result of an uncertainty estimate.
+	 */
+	public static class Result {
+
+		private double rangeLower, rangeUpper, rangeMedian, rangeStd;
+
+		private double locationError=Double.NaN;
+
+		private int nSamples, nValid;
+
+		/**
+		 * @return lower limit of the range confidence interval in meters.
+		 */
+		public double getRangeLower() {
+			return rangeLower;
+		}
+
+		/**
+		 * @return upper limit of the range confidence interval in meters.
+		 */
+		public double getRangeUpper() {
+			return rangeUpper;
+		}
+
+		/**
+		 * @return median range of the samples in meters.
+		 */
+		public double getRangeMedian() {
+			return rangeMedian;
+		}
+
+		/**
+		 * @return standard deviation of the sampled ranges in meters.
+		 */
+		public double getRangeStd() {
+			return rangeStd;
+		}
+
+		/**
+		 * @return radius in meters around the measured location which contains the sampled locations at the confidence level. NaN if there is no bearing.
+		 */
+		public double getLocationError() {
+			return locationError;
+		}
+
+		/**
+		 * @return the number of samples.
+		 */
+		public int getNSamples() {
+			return nSamples;
+		}
+
+		/**
+		 * @return the number of samples which gave a range, i.e. were below the horizon.
+		 */
+		public int getNValid() {
+			return nValid;
+		}
+	}
+
+	private VRHorzCalcMethod rangeMethod;
+
+	private int nSamples=10000;
+
+	private double confidenceLevel=0.95;
+
+	private double heightStd, calibrationStd, refractionStd, headingStd;
+
+	/**
+	 * @param rangeMethod- method used to calculate range from height and angle. Must be safe to call from several threads.
+	 */
+	public RangeUncertainty(VRHorzCalcMethod rangeMethod){
+		this.rangeMethod=rangeMethod;
+	}
+
+	/**
+	 * Make an uncertainty estimator with the errors in the module settings.
+	 * @param rangeMethod- method used to calculate range from height and angle.
+	 * @param vrParams- module settings.
+	 * @return the estimator.
+	 */
+	public static RangeUncertainty fromParams(VRHorzCalcMethod rangeMethod, VRParameters vrParams){
+		RangeUncertainty rangeUncertainty=new RangeUncertainty(rangeMethod);
+		rangeUncertainty.setNSamples(vrParams.monteCarloSamples);
+		rangeUncertainty.setConfidenceLevel(vrParams.confidenceLevel);
+		rangeUncertainty.setHeightStd(Math.sqrt(Math.pow(vrParams.cameraHeightStd,2)+Math.pow(vrParams.tideHeightStd,2)));
+		rangeUncertainty.setCalibrationStd(vrParams.calibrationStd);
+		rangeUncertainty.setRefractionStd(Math.toRadians(vrParams.refractionStd));
+		rangeUncertainty.setHeadingStd(vrParams.headingStd);
+		return rangeUncertainty;
+	}
+
+	/**
+	 * Estimate the range and location confidence intervals of a measurement.
+	 * @param height- camera height above the sea in meters.
+	 * @param angle- angle of the animal below the horizon in radians.
+	 * @param calibratedAngle- the part of the angle in radians which is measured in pixels on the image and so scales with the camera calibration error, e.g. the whole angle 
+	 * for the horizon method, the offset of the animal from the image centre for the IMU method or 0 if the angle does not depend on the calibration.
+	 * @param angleStd- standard deviation of the angle in radians from the measurement itself, e.g. one pixel or the spread of a landmark or IMU fit.
+	 * @param bearing- bearing to the animal in degrees, NaN if the bearing is not known.
+	 * @param bearingStd- standard deviation of the bearing in degrees from the measurement itself. The heading error is added to this.
+	 * @return the confidence intervals.
+	 */
+	public Result estimate(final double height, final double angle, final double calibratedAngle, final double angleStd, final double bearing, final double bearingStd){
+		final int n=Math.max(nSamples, 2);
+		final double[] ranges=new double[n];
+		final boolean hasBearing=!Double.isNaN(bearing);
+		final double[] east=hasBearing ? new double[n] : null;
+		final double[] north=hasBearing ? new double[n] : null;
+		final double totalBearingStd=Math.sqrt(bearingStd*bearingStd+headingStd*headingStd);
+		final int nBlocks=(n+BLOCK_SIZE-1)/BLOCK_SIZE;
+		//split generators in order before going parallel so results don't depend on thread scheduling.
+		SplittableRandom random=new SplittableRandom(SEED);
+		final SplittableRandom[] randoms=new SplittableRandom[nBlocks];
+		for (int i=0; i<nBlocks; i++) randoms[i]=random.split();
+
+		IntStream.range(0, nBlocks).parallel().forEach(block -> {
+			int start=block*BLOCK_SIZE;
+			int end=Math.min(n, start+BLOCK_SIZE);
+			int m=end-start;
+			SplittableRandom blockRandom=randoms[block];
+			double[] heights=gaussian(blockRandom, m);
+			double[] angles=gaussian(blockRandom, m);
+			double[] calibrations=gaussian(blockRandom, m);
+			double[] refractions=gaussian(blockRandom, m);
+			for (int i=0; i<m; i++){
+				heights[i]=height+heightStd*heights[i];
+				angles[i]=angle+angleStd*angles[i]+calibratedAngle*calibrationStd*calibrations[i]+refractionStd*refractions[i];
+			}
+			for (int i=0; i<m; i++){
+				ranges[start+i]=heights[i]>0 ? rangeMethod.getRange(heights[i], angles[i]) : Double.NaN;
+			}
+			if (!hasBearing) return;
+			double[] bearings=gaussian(blockRandom, m);
+			double b;
+			for (int i=0; i<m; i++){
+				b=Math.toRadians(bearing+totalBearingStd*bearings[i]);
+				east[start+i]=ranges[start+i]*Math.sin(b);
+				north[start+i]=ranges[start+i]*Math.cos(b);
+			}
+		});
+
+		Result result=new Result();
+		result.nSamples=n;
+		//remove samples which are beyond the horizon.
+		double[] valid=new double[n];
+		int nValid=0;
+		double sum=0, sum2=0;
+		for (int i=0; i<n; i++){
+			if (Double.isNaN(ranges[i]) || ranges[i]<0) continue;
+			valid[nValid++]=ranges[i];
+			sum+=ranges[i];
+			sum2+=ranges[i]*ranges[i];
+		}
+		result.nValid=nValid;
+		if (nValid<2){
+			result.rangeLower=result.rangeUpper=result.rangeMedian=result.rangeStd=Double.NaN;
+			return result;
+		}
+		double mean=sum/nValid;
+		result.rangeStd=Math.sqrt(Math.max(0, sum2/nValid-mean*mean)*nValid/(nValid-1));
+		Arrays.parallelSort(valid, 0, nValid);
+		double tail=(1-confidenceLevel)/2;
+		result.rangeLower=percentile(valid, nValid, tail);
+		result.rangeUpper=percentile(valid, nValid, 1-tail);
+		result.rangeMedian=percentile(valid, nValid, 0.5);
+
+		if (hasBearing){
+			//distance of each sampled location from the measured location.
+			double range=rangeMethod.getRange(height, angle);
+			double east0=range*Math.sin(Math.toRadians(bearing));
+			double north0=range*Math.cos(Math.toRadians(bearing));
+			int nLocations=0;
+			for (int i=0; i<n; i++){
+				if (Double.isNaN(ranges[i]) || ranges[i]<0) continue;
+				valid[nLocations++]=Math.hypot(east[i]-east0, north[i]-north0);
+			}
+			if (!Double.isNaN(range) && nLocations>=2){
+				Arrays.parallelSort(valid, 0, nLocations);
+				result.locationError=percentile(valid, nLocations, confidenceLevel);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get a percentile of sorted data by linear interpolation.
+	 */
+	private static double percentile(double[] sorted, int n, double p){
+		double index=p*(n-1);
+		int i=(int) Math.floor(index);
+		if (i>=n-1) return sorted[n-1];
+		return sorted[i]+(index-i)*(sorted[i+1]-sorted[i]);
+	}
+
+	/**
+	 * Make normally distributed random numbers with the Box-Muller method.
+	 * @param random- random number generator.
+	 * @param m- number of values.
+	 * @return array of values with mean 0 and standard deviation 1.
+	 */
+	private static double[] gaussian(SplittableRandom random, int m){
+		double[] values=new double[m];
+		double r, theta;
+		for (int i=0; i<m; i+=2){
+			r=Math.sqrt(-2*Math.log(1-random.nextDouble()));
+			theta=2*Math.PI*random.nextDouble();
+			values[i]=r*Math.cos(theta);
+			if (i+1<m) values[i+1]=r*Math.sin(theta);
+		}
+		return values;
+	}
+
+	public int getNSamples() {
+		return nSamples;
+	}
+
+	public void setNSamples(int nSamples) {
+		this.nSamples=nSamples;
+	}
+
+	public double getConfidenceLevel() {
+		return confidenceLevel;
+	}
+
+	/**
+	 * @param confidenceLevel- confidence level of the intervals, e.g. 0.95.
+	 */
+	public void setConfidenceLevel(double confidenceLevel) {
+		this.confidenceLevel=confidenceLevel;
+	}
+
+	/**
+	 * @param heightStd- standard deviation of the camera height in meters, including tide errors.
+	 */
+	public void setHeightStd(double heightStd) {
+		this.heightStd=heightStd;
+	}
+
+	/**
+	 * @param calibrationStd- standard deviation of the camera calibration as a fraction of the calibration value.
+	 */
+	public void setCalibrationStd(double calibrationStd) {
+		this.calibrationStd=calibrationStd;
+	}
+
+	/**
+	 * @param refractionStd- standard deviation of the angle below the horizon caused by refraction in radians.
+	 */
+	public void setRefractionStd(double refractionStd) {
+		this.refractionStd=refractionStd;
+	}
+
+	/**
+	 * @param headingStd- standard deviation of the camera heading in degrees.
+	 */
+	public void setHeadingStd(double headingStd) {
+		this.headingStd=headingStd;
+	}
+
+}
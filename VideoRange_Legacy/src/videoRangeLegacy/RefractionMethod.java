@@ -49,7 +49,7 @@ public class RefractionMethod extends RoundEarthMethod implements PamSettings {
 		// then interate to correct
 		// sort out a few parameters to get into same format as used by JG
 		
-		double cameraHeight = vrControl.getCurrentHeight();
+		double cameraHeight = height;
 		
 		double rayRadius = getRayRadius();
 		
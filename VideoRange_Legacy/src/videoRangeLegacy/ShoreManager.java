@@ -3,8 +3,6 @@ package videoRangeLegacy;
 import java.util.Arrays;
 import java.util.Vector;
 
-import Map.MapContour;
-import Map.MapFileManager;
 import PamUtils.LatLong;
 import PamUtils.PamUtils;
 
@@ -17,39 +15,46 @@ import PamUtils.PamUtils;
  */
 public class ShoreManager {
 
-	private MapFileManager mapFileManager;
+	private ShoreMap shoreMap;
 
 	public ShoreManager() {
 		super();
 	}
 
-	public ShoreManager(MapFileManager mapFileManager) {
+	public ShoreManager(ShoreMap shoreMap) {
 		super();
-		this.mapFileManager = mapFileManager;
+		this.shoreMap = shoreMap;
 	}
 
-	public MapFileManager getMapFileManager() {
-		return mapFileManager;
+	public ShoreMap getShoreMap() {
+		return shoreMap;
 	}
 
-	public void setMapFileManager(MapFileManager mapFileManager) {
-		this.mapFileManager = mapFileManager;
+	public void setShoreMap(ShoreMap shoreMap) {
+		this.shoreMap = shoreMap;
 	}
 	
 	public Vector<LatLong> getShoreInterceptList(LatLong origin, double trueBearing) {
-		if (mapFileManager == null) {
+		ShoreMap shoreMap = this.shoreMap;
+		if (shoreMap == null || origin == null) {
 			return null;
 		}
 		Vector<LatLong> crossList = new Vector<LatLong>();
-		MapContour mapContour;
-		Vector<LatLong> latLongs;
 		LatLong lastLatLong = null;
 		LatLong interceptLatLong;
-		for (int i = 0; i < mapFileManager.getContourCount(); i++) {
-			mapContour = mapFileManager.getMapContour(i);
-			latLongs = mapContour.getLatLongs();
-			for (int l = 0; l < latLongs.size()-1; l++) {
-				interceptLatLong = getIntercept(origin, trueBearing, latLongs.get(l), latLongs.get(l+1));
+		LatLong ll1, ll2;
+		int start, end;
+		for (int i = 0; i < shoreMap.getContourCount(); i++) {
+			start = shoreMap.getContourStart(i);
+			end = shoreMap.getContourEnd(i);
+			if (end - start < 2) {
+				continue;
+			}
+			ll2 = shoreMap.getLatLong(start);
+			for (int l = start; l < end-1; l++) {
+				ll1 = ll2;
+				ll2 = shoreMap.getLatLong(l+1);
+				interceptLatLong = getIntercept(origin, trueBearing, ll1, ll2);
 				if (interceptLatLong != null) {
 					if (lastLatLong != null && interceptLatLong.equals(lastLatLong)) {
 						continue;
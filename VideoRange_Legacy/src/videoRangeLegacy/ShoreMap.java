@@ -0,0 +1,253 @@
+package videoRangeLegacy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Vector;
+
+import Map.GebcoMapFile;
+import Map.MapContour;
+import Map.MapFileManager;
+import PamController.PamSettingManager;
+import PamUtils.LatLong;
+
+/**
+ * Coastline contours held in primitive arrays. The points of all contours are stored end to end and each contour is a range of points.
+ * <p>
+ * Reading a large GEBCO text file is slow so the first time a map file is read the contours are written to a binary cache file in the PAMGuard settings folder.
+ * Later loads memory map the cache instead of parsing the text. The cache is rewritten if the size or modification time of the map file changes.
+ * <p>
+ * Cache format (big endian): magic, version, map file size, map file modification time, hash of the map file path, number of contours, number of points,
+ * the first point of each contour followed by the total number of points, all latitudes, then all longitudes.
+ */
+public class ShoreMap {
+
+	private final static int MAGIC=0x56525348;
+
+	private final static int VERSION=1;
+
+	/**
+	 * Size of the cache header in bytes.
+	 */
+	private final static int HEADER_SIZE=4+4+8+8+4+4+4;
+
+	/**
+	 * Index of the first point of each contour. Has one more element than the number of contours, the last element is the number of points.
+	 */
+	private final int[] contourStarts;
+
+	private final double[] latitudes;
+
+	private final double[] longitudes;
+
+	/**
+	 * An empty map.
+	 */
+	public ShoreMap(){
+		this(new int[]{0}, new double[0], new double[0]);
+	}
+
+	private ShoreMap(int[] contourStarts, double[] latitudes, double[] longitudes){
+		this.contourStarts=contourStarts;
+		this.latitudes=latitudes;
+		this.longitudes=longitudes;
+	}
+
+	/**
+	 * Copy the contours from a map file manager.
+	 * @param mapFileManager- map file manager which has read a map file.
+	 * @return the map.
+	 */
+	public static ShoreMap fromMapFile(MapFileManager mapFileManager){
+		int nContours=mapFileManager.getContourCount();
+		int[] starts=new int[nContours+1];
+		for (int i=0; i<nContours; i++){
+			starts[i+1]=starts[i]+mapFileManager.getMapContour(i).getLatLongs().size();
+		}
+		double[] lats=new double[starts[nContours]];
+		double[] longs=new double[starts[nContours]];
+		Vector<LatLong> latLongs;
+		for (int i=0; i<nContours; i++){
+			latLongs=mapFileManager.getMapContour(i).getLatLongs();
+			for (int j=0; j<latLongs.size(); j++){
+				lats[starts[i]+j]=latLongs.get(j).getLatitude();
+				longs[starts[i]+j]=latLongs.get(j).getLongitude();
+			}
+		}
+		return new ShoreMap(starts, lats, longs);
+	}
+
+	/**
+	 * Load a map file. The map is read from the cache if the cache is up to date, otherwise the map file is read and the cache written.
+	 * @param mapFile- GEBCO map file.
+	 * @return the map.
+	 * @throws IOException if the map file does not exist or can't be read.
+	 */
+	public static ShoreMap load(File mapFile) throws IOException {
+		if (!mapFile.exists()) throw new IOException("Map file does not exist: " + mapFile.getAbsolutePath());
+		File cacheFile=getCacheFile(mapFile);
+		ShoreMap shoreMap=null;
+		if (cacheFile!=null && cacheFile.exists()){
+			try {
+				shoreMap=readCache(cacheFile, mapFile);
+			}
+			catch (IOException | RuntimeException e){
+				System.out.println("Video Range: Could not read shore map cache " + cacheFile.getName() + ": " + e.getMessage());
+			}
+		}
+		if (shoreMap!=null) return shoreMap;
+
+		MapFileManager mapFileManager=new GebcoMapFile();
+		mapFileManager.readFileData(mapFile, false);
+		shoreMap=fromMapFile(mapFileManager);
+		if (cacheFile!=null){
+			try {
+				shoreMap.writeCache(cacheFile, mapFile);
+			}
+			catch (IOException e){
+				System.out.println("Video Range: Could not write shore map cache " + cacheFile.getName() + ": " + e.getMessage());
+			}
+		}
+		return shoreMap;
+	}
+
+	/**
+	 * Get the cache file for a map file.
+	 * @param mapFile- the map file.
+	 * @return the cache file, or null if there is no settings folder.
+	 */
+	public static File getCacheFile(File mapFile){
+		String settingsFolder=PamSettingManager.getSettingsFolder();
+		if (settingsFolder==null) return null;
+		String name=mapFile.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+		return new File(settingsFolder, "VRShore_" + name + "_" + Integer.toHexString(mapFile.getAbsolutePath().hashCode()) + ".bin");
+	}
+
+	/**
+	 * Read a cache file.
+	 * @param cacheFile- the cache file.
+	 * @param mapFile- the map file the cache was written from.
+	 * @return the map, or null if the cache is for a different version of the map file.
+	 * @throws IOException
+	 */
+	private static ShoreMap readCache(File cacheFile, File mapFile) throws IOException {
+		try (FileChannel channel=FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+			if (channel.size()<HEADER_SIZE) return null;
+			//check the header before mapping the file. A mapped file can't be replaced on Windows so an out of date cache must not be mapped. 
+			ByteBuffer header=ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining()){
+				if (channel.read(header)<0) return null;
+			}
+			header.flip();
+			if (header.getInt()!=MAGIC || header.getInt()!=VERSION) return null;
+			if (header.getLong()!=mapFile.length() || header.getLong()!=mapFile.lastModified()) return null;
+			if (header.getInt()!=mapFile.getAbsolutePath().hashCode()) return null;
+			int nContours=header.getInt();
+			int nPoints=header.getInt();
+			if (nContours<0 || nPoints<0 || channel.size()!=HEADER_SIZE+4L*(nContours+1)+16L*nPoints) return null;
+			MappedByteBuffer buffer=channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, channel.size()-HEADER_SIZE);
+			int[] starts=new int[nContours+1];
+			buffer.asIntBuffer().get(starts);
+			buffer.position(buffer.position()+4*starts.length);
+			double[] lats=new double[nPoints];
+			buffer.asDoubleBuffer().get(lats);
+			buffer.position(buffer.position()+8*nPoints);
+			double[] longs=new double[nPoints];
+			buffer.asDoubleBuffer().get(longs);
+			if (starts[0]!=0 || starts[nContours]!=nPoints) return null;
+			return new ShoreMap(starts, lats, longs);
+		}
+	}
+
+	/**
+	 * Write the map to a cache file. The file is written to a temporary file first so a partly written cache is never read.
+	 * @param cacheFile- the cache file.
+	 * @param mapFile- the map file the map was read from.
+	 * @throws IOException
+	 */
+	private void writeCache(File cacheFile, File mapFile) throws IOException {
+		File tempFile=new File(cacheFile.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1<<16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(mapFile.length());
+			out.writeLong(mapFile.lastModified());
+			out.writeInt(mapFile.getAbsolutePath().hashCode());
+			out.writeInt(getContourCount());
+			out.writeInt(getNPoints());
+			ByteBuffer buffer=ByteBuffer.allocate(8*Math.max(contourStarts.length, latitudes.length));
+			buffer.asIntBuffer().put(contourStarts);
+			out.write(buffer.array(), 0, 4*contourStarts.length);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(latitudes);
+			out.write(buffer.array(), 0, 8*latitudes.length);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(longitudes);
+			out.write(buffer.array(), 0, 8*longitudes.length);
+		}
+		Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @return the number of contours.
+	 */
+	public int getContourCount(){
+		return contourStarts.length-1;
+	}
+
+	/**
+	 * @return the total number of points in all contours.
+	 */
+	public int getNPoints(){
+		return latitudes.length;
+	}
+
+	/**
+	 * @param contour- contour index.
+	 * @return the index of the first point in the contour.
+	 */
+	public int getContourStart(int contour){
+		return contourStarts[contour];
+	}
+
+	/**
+	 * @param contour- contour index.
+	 * @return the index after the last point in the contour.
+	 */
+	public int getContourEnd(int contour){
+		return contourStarts[contour+1];
+	}
+
+	/**
+	 * @param point- point index.
+	 * @return the latitude of the point in decimal degrees.
+	 */
+	public double getLatitude(int point){
+		return latitudes[point];
+	}
+
+	/**
+	 * @param point- point index.
+	 * @return the longitude of the point in decimal degrees.
+	 */
+	public double getLongitude(int point){
+		return longitudes[point];
+	}
+
+	/**
+	 * @param point- point index.
+	 * @return a new LatLong for the point.
+	 */
+	public LatLong getLatLong(int point){
+		return new LatLong(latitudes[point], longitudes[point]);
+	}
+
+}
@@ -2,25 +2,44 @@ package videoRangeLegacy;
 
 import java.util.List;
 import java.awt.Point;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.ListIterator;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 import pamScrollSystem.AbstractPamScrollerAWT;
 import pamScrollSystem.PamScroller;
 import videoRangeLegacy.externalSensors.AngleListener;
+import videoRangeLegacy.externalSensors.GPSListener;
 import videoRangeLegacy.externalSensors.IMUListener;
+import videoRangeLegacy.externalSensors.IMUTrack;
+import videoRangeLegacy.externalSensors.TimeOffsetCalibration;
 import videoRangeLegacy.importTideData.TideManager;
 import videoRangeLegacy.panels.VRPanel;
 import videoRangeLegacy.panels.VRParametersDialog;
 import videoRangeLegacy.panels.VRTabPanelControl;
+import videoRangeLegacy.vrmethods.AbstractVRMethod;
 import videoRangeLegacy.vrmethods.AddCalibrationMethod;
+import videoRangeLegacy.vrmethods.IMUBatchProcess;
 import videoRangeLegacy.vrmethods.IMUMethod;
 import videoRangeLegacy.vrmethods.VRHorizonMethod;
 import videoRangeLegacy.vrmethods.VRLandMarkMethod;
@@ -100,17 +119,42 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 	 * PamProcess to listen for IMU measurments (IMUModule)
 	 */
 	protected IMUListener imuListener;
+	
+	/**
+	 * PamProcess to listen for GPS data and build the GPS track used by the location manager. 
+	 */
+	protected GPSListener gpsListener;
 			
 	/**
-	 * Manages map information for VR Methods
+	 * Used to select map files. The map contours are held in shoreMap. 
 	 */
 	protected MapFileManager mapFileManager;
 	
+	/**
+	 * Coastline for the shore method. Null while a map file is being loaded. 
+	 */
+	private volatile ShoreMap shoreMap;
+	
 	/**
 	 * Manages TIDE information for VR Methods
 	 */
 	protected TideManager tideManager;
 	
+	/**
+	 * Descriptions of the files currently being loaded on background threads. Only accessed on the AWT thread. 
+	 */
+	private ArrayList<String> loadingTasks=new ArrayList<String>();
+	
+	/**
+	 * Number of the latest load of each kind of file (see loadInBackground()). A load which finishes after a newer load of the same kind has started is ignored. 
+	 * Only accessed on the AWT thread. 
+	 */
+	private HashMap<String, Integer> loadGenerations=new HashMap<String, Integer>();
+	
+	private final static String SHORE_LOAD="shore";
+	private final static String TIDE_LOAD="tide";
+	private final static String GPS_LOAD="gps";
+	
 	/*
 	 *update flags 
 	 */
@@ -146,6 +190,10 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 	 * The vrMethod has changed
 	 */
 	public static final int METHOD_CHANGED=7;
+	/**
+	 * Measurements have been added to or removed from the measurements waiting to be accepted. 
+	 */
+	public static final int PENDING_CHANGE=8;
 
 	/*
 	 * flags for general status of what we're trying to do
@@ -161,6 +209,17 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 	 */
 	private ArrayList<VRMeasurement> measuredAnimals;
 	
+	/**
+	 * Measurements waiting to be accepted or rejected by the user. These are not saved until they are accepted. Measurements stay queued when the image changes; 
+	 * each holds the name and time of the image it was measured on. 
+	 */
+	private ArrayList<VRMeasurement> pendingMeasurements=new ArrayList<VRMeasurement>();
+	
+	/**
+	 * Number given to the next animal measured in the current image. Reset when a new image is selected, skipping numbers held by pending measurements of that image. 
+	 */
+	private int nextImageAnimal=0;
+	
 	/**
 	 * List of methods used to determine location information from an image. 
 	 */
@@ -181,12 +240,30 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 	 */
 	private LocationManager locationManager;
 
+	/**
+	 * Scroller which is never displayed but loads viewer data around the image time. Created when first needed. 
+	 */
 	private PamScroller vrScroller;
 	
 	/**
 	 * The load time for external data either side of the image in millis
 	 */
 	private static long loadTime=10*60*1000;
+	
+	/**
+	 * The maximum camera clock offset searched for when calibrating the camera clock (millis)
+	 */
+	private static long maxCameraOffset=2*60*1000;
+	
+	/**
+	 * A camera clock calibration waiting for IMU data to load. 
+	 */
+	private TimeOffsetCalibration pendingTimeCalibration;
+	
+	/**
+	 * Landmark reference crops, saved separately from the settings. 
+	 */
+	private LandMarkTemplates landMarkTemplates;
 
 
 	public VRControl(String unitName) {
@@ -218,18 +295,129 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		addPamProcess(angleListener = new AngleListener(this));
 		//process for input of IMU data
 		addPamProcess(imuListener = new IMUListener(this));
+		//process for input of GPS data
+		addPamProcess(gpsListener = new GPSListener(this));
 	
 		update(SETTINGS_CHANGE);
 				
-		//load map file
-		mapFileManager.readFileData(vrParameters.shoreFile, false);
-		
-		//load tide data
-		tideManager.savePolpredTextFile(vrParameters.currTideFile);
-		
-		//create a scroller which we never display but helps loads viewer data. 
-		vrScroller=new PamScroller("vrScroller", AbstractPamScrollerAWT.HORIZONTAL, 1000, 360000, false);
+		//load the map file, tide data and imported GPS track in the background so large files don't hold up start up. 
+		loadShoreFile(vrParameters.shoreFile);
+		loadTideFile(vrParameters.currTideFile);
+		loadGPSTrackFile(vrParameters.gpsTrackFile);
+
+	}
+	
+	/**
+	 * Load a shore map file on a background thread. The shore method can't be used until the map has loaded. After the first time a map file is read 
+	 * it is loaded from a binary cache, see {@link ShoreMap}. 
+	 * @param file- the map file. Null to clear the map. 
+	 */
+	public void loadShoreFile(final File file){
+		if (file==null){
+			//make sure a map still loading does not replace the empty map. 
+			nextLoadGeneration(SHORE_LOAD);
+			shoreMap=new ShoreMap();
+			update(SETTINGS_CHANGE);
+			return;
+		}
+		shoreMap=null;
+		loadInBackground(SHORE_LOAD, "Loading map " + file.getName(), () -> ShoreMap.load(file), 
+				//use an empty map if loading failed so the shore method does not wait for the map forever. 
+				newShoreMap -> shoreMap=newShoreMap==null ? new ShoreMap() : newShoreMap);
+	}
+	
+	/**
+	 * Load a POLPRED tide file on a background thread. The current tide data are used until the new data have loaded. 
+	 * @param file- the tide file. 
+	 */
+	public void loadTideFile(final File file){
+		if (file==null) return;
+		loadInBackground(TIDE_LOAD, "Loading tide data " + file.getName(), () -> {
+			tideManager.savePolpredTextFile(file);
+			return null;
+		}, null);
+	}
+	
+	/**
+	 * Import a GPS track file on a background thread. The file is read on the background thread and the new track is swapped into the location manager on the AWT thread. 
+	 * An unchanged file is not read again. 
+	 * @param file- the GPS track file. 
+	 */
+	public void loadGPSTrackFile(final File file){
+		if (file==null || locationManager.isImportedTrackFile(file)) return;
+		loadInBackground(GPS_LOAD, "Loading GPS track " + file.getName(), () -> locationManager.readGPSTrackFile(file), 
+				newTrack -> {
+					if (newTrack!=null) locationManager.setImportedTrack(file, newTrack);
+				});
+	}
+	
+	/**
+	 * Start a new load of a kind of file so the result of any earlier load of the same kind is ignored. 
+	 * @param key- the kind of file. 
+	 * @return the number of the new load. 
+	 */
+	private int nextLoadGeneration(String key){
+		Integer generation=loadGenerations.get(key);
+		generation=generation==null ? 1 : generation+1;
+		loadGenerations.put(key, generation);
+		return generation;
+	}
+	
+	/**
+	 * Run a slow task, usually reading a file, on a background thread. Progress is shown in the side panel and the module is updated when the task has finished. 
+	 * If another task of the same kind is started before this one finishes the result of this task is ignored. Must be called on the AWT thread. 
+	 * @param key- the kind of task, e.g. SHORE_LOAD. 
+	 * @param description- description of the task shown to the user. 
+	 * @param loader- the task.
+	 * @param loaded- called on the AWT thread with the result of the task, or with null if the task failed. Not called if the task is out of date. May be null. 
+	 */
+	private <T> void loadInBackground(final String key, final String description, final Callable<T> loader, final Consumer<T> loaded){
+		final int generation=nextLoadGeneration(key);
+		loadingTasks.add(description);
+		showLoadingStatus();
+		SwingWorker<T, Void> worker=new SwingWorker<T, Void>(){
+			@Override
+			protected T doInBackground() throws Exception {
+				return loader.call();
+			}
 
+			@Override
+			protected void done() {
+				loadingTasks.remove(description);
+				if (loadGenerations.get(key)!=generation){
+					//a newer file of the same kind has been selected. 
+					showLoadingStatus();
+					return;
+				}
+				try {
+					T result=get();
+					if (loaded!=null) loaded.accept(result);
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+					Throwable cause=e.getCause()==null ? e : e.getCause();
+					System.out.println("Video Range: " + description + " failed: " + cause);
+					if (loaded!=null) loaded.accept(null);
+					PamDialog.showWarning(getPamView().getGuiFrame(), "Video Range", description + " failed: " + cause.getMessage());
+				}
+				showLoadingStatus();
+				update(SETTINGS_CHANGE);
+			}
+		};
+		worker.execute();
+	}
+	
+	private void showLoadingStatus(){
+		if (vrTabPanelControl==null) return;
+		vrTabPanelControl.getVRSidePanel().setLoadingStatus(loadingTasks.size()==0 ? null : loadingTasks.get(0) + "...");
+	}
+	
+	/**
+	 * Check whether files such as the shore map or tide data are still being loaded. 
+	 * @return true if any files are being loaded. 
+	 */
+	public boolean isLoadingData(){
+		return loadingTasks.size()>0;
 	}
 	
 	 
@@ -302,6 +490,8 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		if (newParams != null) {
 			vrParameters = newParams.clone();
 			update(SETTINGS_CHANGE);
+			//a GPS track selected in the dialog is only imported once the new settings are used. An unchanged file is not read again. 
+			loadGPSTrackFile(vrParameters.gpsTrackFile);
 		}
 	}
 	
@@ -445,7 +635,17 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 	public double getCurrentHeight(){
 		if (currentImage==null) return vrParameters.getCameraHeight();
 		if (currentImage.getTimeMilliseconds()==0) return vrParameters.getCameraHeight();
-		return vrParameters.getCameraHeight()+tideManager.getHeightOffset(currentImage.getTimeMilliseconds());
+		return vrParameters.getCameraHeight()+tideManager.getHeightOffset(getImageTime());
+	}
+	
+	/**
+	 * Get the height of the camera from sea level at any time, e.g. for an image which is not the current image. Includes any offset calculated by the tide manager. 
+	 * @param timeMillis- the time in millis. 0 if the time is unknown. 
+	 * @return the height of the camera from sea level. 
+	 */
+	public double getCameraHeight(long timeMillis){
+		if (timeMillis==0) return vrParameters.getCameraHeight();
+		return vrParameters.getCameraHeight()+tideManager.getHeightOffset(timeMillis);
 	}
 	
 	/**
@@ -465,8 +665,8 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		long time1=System.currentTimeMillis();
 		if (vrTabPanelControl.loadFile(file)) {
 			//now set the scroller to move to to the correct imu or angle data;
-			if (currentImage.getTimeMilliseconds()!=0 && !checkViewLoadTime(currentImage.getTimeMilliseconds())){
-				vrScroller.setRangeMillis(currentImage.getTimeMilliseconds()-loadTime, currentImage.getTimeMilliseconds()+loadTime, true);
+			if (currentImage.getTimeMilliseconds()!=0 && !checkViewLoadTime(getImageTime())){
+				getVRScroller().setRangeMillis(getImageTime()-loadTime, getImageTime()+loadTime, true);
 			}
 		}
 		long time2=System.currentTimeMillis();
@@ -501,6 +701,7 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 
 	public boolean restoreSettings(PamControlledUnitSettings pamControlledUnitSettings) {	
 		vrParameters = ((VRParameters) pamControlledUnitSettings.getSettings()).clone();
+		getLandMarkTemplates().apply(vrParameters.getLandMarkDatas());
 		return true;
 	}
 	
@@ -513,18 +714,29 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		switch (updateType){
 		case SETTINGS_CHANGE:
 			rangeMethods.setCurrentMethodId(vrParameters.rangeMethod);
+			locationManager.getGPSTrack().setInterpMethod(vrParameters.gpsInterpMethod);
+			locationManager.getImportedTrack().setInterpMethod(vrParameters.gpsInterpMethod);
+			locationManager.clearCache();
+			//landmarks may have been added or imported in the settings dialog. 
+			getLandMarkTemplates().apply(vrParameters.getLandMarkDatas());
 			sortExtAngleSource();
 			//angleListener.sortAngleMeasurement();
 		break;
 		case METHOD_CHANGED:
 			measuredAnimals=null;
 		break;
+		case IMAGE_TIME_CHANGE:
+			locationManager.clearCache();
+		break;
 		case IMAGE_CHANGE:
+			locationManager.clearCache();
 			currentVRMethod.clearOverlay(); 
 			if (currentImage.getImage() != null) {
 				showVRTab();
 				if (!currentImage.imageOK()) currentImage=null;
 			}
+			//pending measurements stay queued, each is tagged with the image it was measured on. 
+			nextImageAnimal=getFirstFreeImageAnimal();
 		break;
 		}
 	
@@ -543,17 +755,38 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		if (changeType == PamControllerInterface.ADD_CONTROLLEDUNIT || changeType == PamControllerInterface.REMOVE_CONTROLLEDUNIT) {
 			angleListener.sortAngleMeasurement();
 			imuListener.sortIMUMeasurement();
+			gpsListener.sortGPSData();
 		}
 		if (changeType == PamControllerInterface.HYDROPHONE_ARRAY_CHANGED) {
+			gpsListener.sortGPSData();
 			update(SETTINGS_CHANGE);
 		}
 		if (changeType == PamControllerInterface.DATA_LOAD_COMPLETE) {
+			gpsListener.fillGPSTrack();
 			update(SETTINGS_CHANGE);
+			if (pendingTimeCalibration!=null){
+				TimeOffsetCalibration calibration=pendingTimeCalibration;
+				pendingTimeCalibration=null;
+				finishTimeCalibration(calibration);
+			}
 		}
 		if (changeType == PamControllerInterface.INITIALIZATION_COMPLETE ){
+			gpsListener.sortGPSData();
+		}
+	}
+	
+	/**
+	 * Get the scroller used to load viewer data around the image time. The scroller is never displayed and is only created when first needed. 
+	 * @return the scroller. 
+	 */
+	private PamScroller getVRScroller(){
+		if (vrScroller==null){
+			vrScroller=new PamScroller("vrScroller", AbstractPamScrollerAWT.HORIZONTAL, 1000, 360000, false);
 			vrScroller.addDataBlock(imuListener.getIMUDataBlock());
 			vrScroller.addDataBlock(angleListener.getAngleDataBlock());
+			vrScroller.addDataBlock(gpsListener.getGPSDataBlock());
 		}
+		return vrScroller;
 	}
 	
 	/**
@@ -603,6 +836,73 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		this.measuredAnimals=measuredAnimals;
 	}
 	
+	/**
+	 * Get the measurements waiting to be accepted or rejected. 
+	 * @return list of pending measurements, oldest first. 
+	 */
+	public ArrayList<VRMeasurement> getPendingMeasurements() {
+		return pendingMeasurements;
+	}
+	
+	/**
+	 * Find the first animal number for the current image which is not held by a pending measurement from an earlier visit to the same image. 
+	 * @return the animal number. 
+	 */
+	private int getFirstFreeImageAnimal() {
+		int next=0;
+		String imageName=currentImage==null ? null : currentImage.getName();
+		if (imageName==null) return next;
+		for (VRMeasurement vrMeasurement: pendingMeasurements){
+			if (imageName.equals(vrMeasurement.imageName)) next=Math.max(next, vrMeasurement.imageAnimal+1);
+		}
+		return next;
+	}
+	
+	/**
+	 * Get the number for the next animal measured in the current image. Numbers are not reused if measurements are rejected. 
+	 * @return the animal number. 
+	 */
+	public int getNextImageAnimal() {
+		return nextImageAnimal++;
+	}
+	
+	/**
+	 * Add a measurement to the measurements waiting to be accepted. 
+	 * @param vrMeasurement- the measurement. 
+	 */
+	public void addPendingMeasurement(VRMeasurement vrMeasurement) {
+		pendingMeasurements.add(vrMeasurement);
+		update(PENDING_CHANGE);
+	}
+	
+	/**
+	 * Accept pending measurements. Accepted measurements are added to the data block and saved. 
+	 * @param measurements- measurements to accept. 
+	 * @return the number of measurements accepted. 
+	 */
+	public int acceptPendingMeasurements(List<VRMeasurement> measurements) {
+		ArrayList<VRMeasurement> accepted=new ArrayList<VRMeasurement>(measurements.size());
+		for (VRMeasurement vrMeasurement: measurements){
+			if (pendingMeasurements.remove(vrMeasurement)) accepted.add(vrMeasurement);
+		}
+		vrProcess.newVRLocs(accepted);
+		update(PENDING_CHANGE);
+		return accepted.size();
+	}
+	
+	/**
+	 * Reject pending measurements. Rejected measurements are removed from the image. 
+	 * @param measurements- measurements to reject. 
+	 */
+	public void rejectPendingMeasurements(List<VRMeasurement> measurements) {
+		for (VRMeasurement vrMeasurement: measurements){
+			if (pendingMeasurements.remove(vrMeasurement) && measuredAnimals!=null){
+				measuredAnimals.remove(vrMeasurement);
+			}
+		}
+		update(PENDING_CHANGE);
+	}
+	
 	public VRHorzMethods getRangeMethods() {
 		return rangeMethods;
 	}
@@ -613,10 +913,34 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 	}
 
 
+	/**
+	 * Get the map file manager. This is only used to select map files, use {@link #getShoreMap()} for the coastline. 
+	 * @return the map file manager. 
+	 */
 	public MapFileManager getMapFileManager() {
 		return mapFileManager;
 	}
 	
+	/**
+	 * Get the coastline used by the shore method. 
+	 * @return the coastline, or null if the map file is still loading. 
+	 */
+	public ShoreMap getShoreMap() {
+		return shoreMap;
+	}
+	
+	/**
+	 * Get the landmark reference crops. The template file is read the first time this is called. 
+	 * @return the landmark templates. 
+	 */
+	public LandMarkTemplates getLandMarkTemplates() {
+		if (landMarkTemplates==null) {
+			landMarkTemplates=new LandMarkTemplates(LandMarkTemplates.getDefaultFile());
+			landMarkTemplates.read();
+		}
+		return landMarkTemplates;
+	}
+	
 	public LocationManager getLocationManager(){
 		return locationManager;
 	}
@@ -643,9 +967,14 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		return vrTabPanelControl;
 	}
 
+	/**
+	 * Get the time of the current image corrected for the camera clock offset. This is the time used to find sensor and GPS data for the image. 
+	 * @return the corrected image time in millis. 0 if the image has no time and -1 if there is no image. 
+	 */
 	public long getImageTime() {
 		if (currentImage==null) return -1; 
-		return currentImage.getTimeMilliseconds();
+		if (currentImage.getTimeMilliseconds()==0) return 0;
+		return currentImage.getTimeMilliseconds()+vrParameters.cameraTimeOffset;
 	}
 
 	public Date getImageDate() {
@@ -657,6 +986,313 @@ public class VRControl extends PamControlledUnit implements PamSettings {
 		return imuListener;
 	}
 
+	public GPSListener getGPSListener() {
+		return gpsListener;
+	}
+	
+	@Override
+	public JMenuItem createDetectionMenu(Frame parentFrame) {
+		JMenu menu=new JMenu(getUnitName());
+		JMenuItem menuItem=new JMenuItem("Settings...");
+		menuItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				settingsButton(null, VRParametersDialog.CALC_TAB);
+			}
+		});
+		menu.add(menuItem);
+		menuItem=new JMenuItem("Calibrate camera clock...");
+		menuItem.setToolTipText("Estimate the offset between the camera clock and IMU data by comparing the horizon in a folder of images with IMU tilt");
+		menuItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				calibrateCameraClock();
+			}
+		});
+		menu.add(menuItem);
+		menuItem=new JMenuItem("Detect animals in image");
+		menuItem.setToolTipText("Search the current image below the horizon for blows, splashes and fins");
+		menuItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				detectAnimals();
+			}
+		});
+		menu.add(menuItem);
+		menuItem=new JMenuItem("Measure detected animals...");
+		menuItem.setToolTipText("Measure all the possible animals found in the current image with the current method");
+		menuItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				measureDetectedAnimals();
+			}
+		});
+		menu.add(menuItem);
+		menuItem=new JMenuItem("Batch process IMU measurements...");
+		menuItem.setToolTipText("Measure animals in a folder of images using IMU data and a CSV file of animal positions in each image");
+		menuItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				batchProcessIMU();
+			}
+		});
+		menu.add(menuItem);
+		menuItem=new JMenuItem("Export measurements to column file...");
+		menuItem.setToolTipText("Save the loaded measurements in a column file which analysis tools can read without the database");
+		menuItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				exportColumnFile();
+			}
+		});
+		menu.add(menuItem);
+		return menu;
+	}
+	
+	/**
+	 * Search the current image for possible animals. These are shown on the image and can then be measured with {@link #measureDetectedAnimals()}. 
+	 */
+	public void detectAnimals(){
+		if (!(getCurrentMethod() instanceof AbstractVRMethod) || getCurrentImage()==null) return;
+		int n=((AbstractVRMethod) getCurrentMethod()).detectAnimals();
+		getVRPanel().repaint();
+		if (n==0){
+			JOptionPane.showMessageDialog(getPamView().getGuiFrame(), "No possible animals were found in the image", "Detect animals", JOptionPane.INFORMATION_MESSAGE);
+		}
+	}
+	
+	/**
+	 * Measure all the possible animals found in the current image with the current method. Measurements can either all be accepted or each shown in the accept dialog. 
+	 */
+	public void measureDetectedAnimals(){
+		if (!(getCurrentMethod() instanceof AbstractVRMethod)) return;
+		AbstractVRMethod vrMethod=(AbstractVRMethod) getCurrentMethod();
+		if (vrMethod.getDetectedAnimals()==null || vrMethod.getDetectedAnimals().size()==0){
+			PamDialog.showWarning(getPamView().getGuiFrame(), "Measure detected animals", "There are no detected animals. Use Detect animals in image first");
+			return;
+		}
+		String[] options={"Accept all", "Review each", "Cancel"};
+		int ans=JOptionPane.showOptionDialog(getPamView().getGuiFrame(), "Accept all " + vrMethod.getDetectedAnimals().size() + " measurements or review each one?", "Measure detected animals", 
+				JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+		if (ans==JOptionPane.CANCEL_OPTION || ans==JOptionPane.CLOSED_OPTION) return;
+		int n=vrMethod.measureDetectedAnimals(ans==JOptionPane.NO_OPTION);
+		if (n==0 && ans==JOptionPane.YES_OPTION){
+			PamDialog.showWarning(getPamView().getGuiFrame(), "Measure detected animals", "No animals could be measured. The current method must be ready to measure an animal, e.g. the horizon or landmarks must be set");
+		}
+	}
+	
+	/**
+	 * Measure animals in a folder of images with the IMU method. Animal positions are read from a CSV file with columns image name, x pixel, y pixel and an optional comment. 
+	 * Measurements are either added to the data block or written to a CSV file. Images are processed on a background thread. 
+	 */
+	public void batchProcessIMU(){
+		if (imuListener.getIMUDataBlock()==null){
+			PamDialog.showWarning(getPamView().getGuiFrame(), "IMU batch process", "An IMU data source must be selected in the angle measurement settings");
+			return;
+		}
+		if (vrParameters.getCurrentheightData()==null){
+			PamDialog.showWarning(getPamView().getGuiFrame(), "IMU batch process", "Add height data before processing images");
+			return;
+		}
+		if (vrParameters.getCurrentCalibrationData()==null){
+			PamDialog.showWarning(getPamView().getGuiFrame(), "IMU batch process", "Add a calibration value before processing images");
+			return;
+		}
+		IMUMethod imuMethod=null;
+		for (VRMethod vrMethod: vrMethods){
+			if (vrMethod instanceof IMUMethod) imuMethod=(IMUMethod) vrMethod;
+		}
+		if (imuMethod==null) return;
+		
+		JFileChooser fileChooser = new PamFileChooser();
+		fileChooser.setCurrentDirectory(vrParameters.imageDirectory);
+		fileChooser.setDialogTitle("Select image folder...");
+		fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		if (fileChooser.showOpenDialog(getPamView().getGuiFrame())!=JFileChooser.APPROVE_OPTION) return;
+		final File folder=fileChooser.getSelectedFile();
+		
+		String[] sources={"From CSV file", "Detect automatically", "Cancel"};
+		int source=JOptionPane.showOptionDialog(getPamView().getGuiFrame(), "Read animal positions from a CSV file or find animals automatically?", "IMU batch process", 
+				JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, sources, sources[0]);
+		if (source==JOptionPane.CANCEL_OPTION || source==JOptionPane.CLOSED_OPTION) return;
+		
+		fileChooser = new PamFileChooser();
+		fileChooser.setCurrentDirectory(folder);
+		File positionsFile=null;
+		if (source==JOptionPane.YES_OPTION){
+			fileChooser.setDialogTitle("Select animal positions file...");
+			fileChooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+			if (fileChooser.showOpenDialog(getPamView().getGuiFrame())!=JFileChooser.APPROVE_OPTION) return;
+			positionsFile=fileChooser.getSelectedFile();
+		}
+		final File detectionFile=positionsFile;
+		
+		File outputFile=null;
+		String[] options={"Add to data", "Save to file", "Cancel"};
+		int ans=JOptionPane.showOptionDialog(getPamView().getGuiFrame(), "Add measurements to the Video Range data or save them to a CSV file?", "IMU batch process", 
+				JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+		if (ans==JOptionPane.CANCEL_OPTION || ans==JOptionPane.CLOSED_OPTION) return;
+		if (ans==JOptionPane.NO_OPTION){
+			fileChooser.setDialogTitle("Save measurements...");
+			if (fileChooser.showSaveDialog(getPamView().getGuiFrame())!=JFileChooser.APPROVE_OPTION) return;
+			outputFile=fileChooser.getSelectedFile();
+			if (!outputFile.getName().toLowerCase().endsWith(".csv")) outputFile=new File(outputFile.getAbsolutePath()+".csv");
+		}
+		final File output=outputFile;
+		
+		final IMUBatchProcess batchProcess=new IMUBatchProcess(this, imuMethod);
+		SwingWorker<Integer, Void> worker=new SwingWorker<Integer, Void>(){
+			@Override
+			protected Integer doInBackground() throws Exception {
+				if (output==null) return batchProcess.process(folder, detectionFile, null);
+				PrintWriter writer=new PrintWriter(new BufferedWriter(new FileWriter(output)));
+				try {
+					return batchProcess.process(folder, detectionFile, writer);
+				}
+				finally {
+					writer.close();
+				}
+			}
+
+			@Override
+			protected void done() {
+				try {
+					get();
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+					PamDialog.showWarning(getPamView().getGuiFrame(), "IMU batch process", "The batch process failed: " + e.getMessage());
+					return;
+				}
+				String message=String.format("Measured %d animals in %d images.\n%d images were not found, %d had no time and %d had no IMU data. %d lines in the positions file could not be read.", 
+						batchProcess.getNMeasurements(), batchProcess.getNImages(), batchProcess.getNMissingImages(), batchProcess.getNNoTime(), batchProcess.getNNoIMU(), batchProcess.getNDetectionErrors());
+				JOptionPane.showMessageDialog(getPamView().getGuiFrame(), message, "IMU batch process", JOptionPane.INFORMATION_MESSAGE);
+			}
+		};
+		worker.execute();
+	}
+	
+	/**
+	 * Save the measurements in the data block to a column file (see {@link VRMeasurementColumns}). The file is written on a background thread. 
+	 */
+	public void exportColumnFile(){
+		final ArrayList<VRDataUnit> dataUnits=vrProcess.getVrDataBlock().getDataCopy();
+		if (dataUnits.size()==0){
+			PamDialog.showWarning(getPamView().getGuiFrame(), "Export measurements", "There are no measurements to export");
+			return;
+		}
+		JFileChooser fileChooser = new PamFileChooser();
+		fileChooser.setDialogTitle("Export measurements...");
+		fileChooser.setFileFilter(new FileNameExtensionFilter("Video range column files", VRMeasurementColumns.FILE_EXTENSION));
+		if (fileChooser.showSaveDialog(getPamView().getGuiFrame())!=JFileChooser.APPROVE_OPTION) return;
+		File file=fileChooser.getSelectedFile();
+		if (!file.getName().toLowerCase().endsWith("."+VRMeasurementColumns.FILE_EXTENSION)) file=new File(file.getAbsolutePath()+"."+VRMeasurementColumns.FILE_EXTENSION);
+		final File output=file;
+		
+		SwingWorker<Integer, Void> worker=new SwingWorker<Integer, Void>(){
+			@Override
+			protected Integer doInBackground() throws Exception {
+				VRMeasurementColumns columns=new VRMeasurementColumns(dataUnits.size());
+				VRMeasurementColumns unitColumns;
+				for (VRDataUnit dataUnit: dataUnits){
+					//units loaded from the database are copied straight from their columns without making a VRMeasurement. 
+					unitColumns=dataUnit.getMeasurementColumns();
+					if (unitColumns!=null) columns.add(unitColumns, dataUnit.getMeasurementRow());
+					else columns.add(dataUnit.getTimeMilliseconds(), dataUnit.getVrMeasurement());
+				}
+				columns.write(output);
+				return columns.getRowCount();
+			}
+
+			@Override
+			protected void done() {
+				int nRows;
+				try {
+					nRows=get();
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+					PamDialog.showWarning(getPamView().getGuiFrame(), "Export measurements", "The measurements could not be saved: " + e.getMessage());
+					return;
+				}
+				JOptionPane.showMessageDialog(getPamView().getGuiFrame(), nRows + " measurements were exported to " + output.getName(), "Export measurements", JOptionPane.INFORMATION_MESSAGE);
+			}
+		};
+		worker.execute();
+	}
+	
+	/**
+	 * Select a folder of images and estimate the offset between the camera clock and the IMU clock. Horizons are found in the images on a background thread. 
+	 * In viewer mode IMU data for the image times are loaded before the offset is calculated. 
+	 */
+	public void calibrateCameraClock(){
+		if (imuListener.getIMUDataBlock()==null){
+			PamDialog.showWarning(getPamView().getGuiFrame(), "Camera clock calibration", "An IMU data source must be selected in the angle measurement settings");
+			return;
+		}
+		JFileChooser fileChooser = new PamFileChooser();
+		fileChooser.setCurrentDirectory(vrParameters.imageDirectory);
+		fileChooser.setDialogTitle("Select image folder...");
+		fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		if (fileChooser.showOpenDialog(getPamView().getGuiFrame())!=JFileChooser.APPROVE_OPTION) return;
+		final File folder=fileChooser.getSelectedFile();
+		
+		final TimeOffsetCalibration calibration=new TimeOffsetCalibration();
+		SwingWorker<Integer, Void> worker=new SwingWorker<Integer, Void>(){
+			@Override
+			protected Integer doInBackground() throws Exception {
+				return calibration.measureImages(folder);
+			}
+
+			@Override
+			protected void done() {
+				try {
+					get();
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+					return;
+				}
+				if (calibration.getNImages()==0){
+					PamDialog.showWarning(getPamView().getGuiFrame(), "Camera clock calibration", "No horizons could be found in images in " + folder.getName());
+					return;
+				}
+				long start=calibration.getFirstImageTime()-maxCameraOffset;
+				long end=calibration.getLastImageTime()+maxCameraOffset;
+				IMUTrack imuTrack=imuListener.getIMUTrack();
+				if (PamController.getInstance().getRunMode()==PamController.RUN_PAMVIEW && (imuTrack.getFirstTime()>start || imuTrack.getLastTime()<end)){
+					//load IMU data for the images first. 
+					pendingTimeCalibration=calibration;
+					getVRScroller().setRangeMillis(start, end, true);
+				}
+				else finishTimeCalibration(calibration);
+			}
+		};
+		worker.execute();
+	}
+	
+	/**
+	 * Calculate the camera clock offset and ask the user whether to use it. 
+	 * @param calibration- calibration with horizons measured for a folder of images. 
+	 */
+	private void finishTimeCalibration(TimeOffsetCalibration calibration){
+		if (!calibration.estimateOffset(imuListener.getIMUTrack(), maxCameraOffset, 100)){
+			if (Double.isNaN(calibration.getBestCorrelation())){
+				PamDialog.showWarning(getPamView().getGuiFrame(), "Camera clock calibration", "The camera clock offset could not be estimated. "
+						+ "Horizons were found in " + calibration.getNImages() + " of " + calibration.getNFiles() + " images but there was not enough IMU data for these images.");
+			}
+			else {
+				//the correlation is too weak to trust the offset.
+				PamDialog.showWarning(getPamView().getGuiFrame(), "Camera clock calibration", String.format("The camera clock offset could not be estimated. "
+						+ "The best match with IMU tilt has a correlation of %.2f from %d images, below the minimum of %.2f.", 
+						calibration.getBestCorrelation(), calibration.getBestPairs(), TimeOffsetCalibration.MIN_CORRELATION));
+			}
+			return;
+		}
+		String message=String.format("Horizons were found in %d of %d images.\nThe best match with IMU tilt is a camera clock offset of %.1f s (correlation %.2f from %d images).%s\n\nUse this offset?", 
+				calibration.getNImages(), calibration.getNFiles(), calibration.getBestOffset()/1000., calibration.getBestCorrelation(), calibration.getBestPairs(), 
+				calibration.getBestCorrelation()<0 ? "\nThe correlation is negative so the IMU tilt has the opposite sign to the horizon tilt." : "");
+		int ans=JOptionPane.showConfirmDialog(getPamView().getGuiFrame(), message, "Camera clock calibration", JOptionPane.YES_NO_OPTION);
+		if (ans==JOptionPane.YES_OPTION){
+			vrParameters.cameraTimeOffset=calibration.getBestOffset();
+			if (currentImage!=null) update(IMAGE_TIME_CHANGE);
+		}
+	}
+
 
 
 
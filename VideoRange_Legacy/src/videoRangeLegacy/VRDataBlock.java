@@ -5,15 +5,61 @@ import PamguardMVC.PamDataUnit;
 import PamguardMVC.PamProcess;
 
 public class VRDataBlock extends PamDataBlock<VRDataUnit> {
+	
+	private VRProcess vrProcess;
+	
+	/**
+	 * Measurements loaded from the database. Data units loaded in viewer mode hold a row in these columns rather than a VRMeasurement. 
+	 */
+	private VRMeasurementColumns measurementColumns=new VRMeasurementColumns();
 
 	public VRDataBlock(String dataName, PamProcess parentProcess) {
 		super(VRDataUnit.class, dataName, parentProcess, 0);
-		// TODO Auto-generated constructor stub
+		vrProcess=(VRProcess) parentProcess;
 	}
 	
 	@Override
 	public boolean getShouldLog(PamDataUnit pamDataUnit) {
 		return true;
 	}
+	
+	@Override
+	public synchronized void clearAll() {
+		super.clearAll();
+		//units which are still referenced elsewhere keep the old columns. 
+		measurementColumns=new VRMeasurementColumns();
+	}
+	
+	/**
+	 * @return columns which measurements loaded from the database are added to. 
+	 */
+	public VRMeasurementColumns getMeasurementColumns() {
+		return measurementColumns;
+	}
+	
+	/**
+	 * Make a measurement from a row of measurement columns, finding the vr and range methods from their names. 
+	 * @param columns- the columns. 
+	 * @param row- the row. 
+	 * @return a new measurement. 
+	 */
+	public VRMeasurement createMeasurement(VRMeasurementColumns columns, int row) {
+		VRMeasurement vrMeasurement=columns.getMeasurement(row);
+		VRControl vrControl=vrProcess.getVRControl();
+		String methodName=columns.getText(VRMeasurementColumns.VR_METHOD, row);
+		if (methodName!=null){
+			for (int i=0; i<vrControl.getMethods().size(); i++){
+				if (methodName.equals(vrControl.getMethods().get(i).getName())) vrMeasurement.vrMethod=vrControl.getMethods().get(i);
+			}
+		}
+		methodName=columns.getText(VRMeasurementColumns.CALC_METHOD, row);
+		if (methodName!=null){
+			VRHorzMethods rangeMethods=vrControl.getRangeMethods();
+			for (int i=0; i<rangeMethods.getNames().size(); i++){
+				if (methodName.equals(rangeMethods.getMethod(i).getName())) vrMeasurement.rangeMethod=rangeMethods.getMethod(i);
+			}
+		}
+		return vrMeasurement;
+	}
 
 }
@@ -5,24 +5,128 @@ import PamguardMVC.PamDataUnit;
 
 public class VRDataUnit extends PamDataUnit {
 
-	private VRMeasurement vrMeasurement;
+	/**
+	 * Compact copy of a measurement made in this session, otherwise null. 
+	 */
+	private VRMeasurementRecord measurementRecord;
 	
+	/**
+	 * Columns holding the measurement if the unit was loaded from the database, otherwise null. The VRMeasurement is only made when it's needed. 
+	 */
+	private VRMeasurementColumns measurementColumns;
+	
+	private int row;
+	
+	/**
+	 * Data unit for a new measurement. The measurement is stored as a VRMeasurementRecord. 
+	 * @param timeMilliseconds- time of the data unit. 
+	 * @param vrMeasurement- the measurement. 
+	 */
 	public VRDataUnit(long timeMilliseconds,  VRMeasurement vrMeasurement) {
 		super(timeMilliseconds);
-		this.vrMeasurement = vrMeasurement;
+		this.measurementRecord = VRMeasurementRecord.of(vrMeasurement);
+	}
+	
+	/**
+	 * Data unit for a measurement held in measurement columns. 
+	 * @param timeMilliseconds- time of the data unit. 
+	 * @param measurementColumns- the columns.
+	 * @param row- row of the measurement in the columns. 
+	 */
+	public VRDataUnit(long timeMilliseconds, VRMeasurementColumns measurementColumns, int row) {
+		super(timeMilliseconds);
+		this.measurementColumns = measurementColumns;
+		this.row = row;
+	}
+	
+	/**
+	 * Get the measurement. A new measurement is made from the record or the measurement columns each time this is called, so measurements are not held 
+	 * for every data unit and changes to the measurement are not kept unless it is passed to setVrMeasurement(). 
+	 * @return the measurement, or null if there is none. 
+	 */
+	public synchronized VRMeasurement getVrMeasurement() {
+		if (measurementRecord != null) {
+			return measurementRecord.getMeasurement();
+		}
+		if (measurementColumns != null) {
+			if (getParentDataBlock() instanceof VRDataBlock) {
+				return ((VRDataBlock) getParentDataBlock()).createMeasurement(measurementColumns, row);
+			}
+			return measurementColumns.getMeasurement(row);
+		}
+		return null;
+	}
+	
+	public synchronized void setVrMeasurement(VRMeasurement vrMeasurement) {
+		this.measurementRecord = vrMeasurement == null ? null : VRMeasurementRecord.of(vrMeasurement);
+		measurementColumns = null;
+	}
+	
+	/**
+	 * @return the compact copy of the measurement, or null if the measurement is held in measurement columns. 
+	 */
+	public synchronized VRMeasurementRecord getMeasurementRecord() {
+		return measurementRecord;
+	}
+	
+	/**
+	 * @return the columns holding the measurement, or null if the measurement is not held in columns or has been changed. 
+	 */
+	public synchronized VRMeasurementColumns getMeasurementColumns() {
+		return measurementColumns;
+	}
+	
+	/**
+	 * @return row of the measurement in the measurement columns. 
+	 */
+	public int getMeasurementRow() {
+		return row;
+	}
+	
+	/**
+	 * Get a value without making the measurement if it is held in measurement columns. 
+	 * @param column- double column in VRMeasurementColumns. 
+	 * @return the value or NaN if it's not set. 
+	 */
+	private double getColumnValue(int column) {
+		return measurementColumns == null ? Double.NaN : measurementColumns.getDouble(column, row);
+	}
+	
+	/**
+	 * @return range to the animal in meters, NaN if not set. 
+	 */
+	public synchronized double getRange() {
+		if (measurementRecord != null) return measurementRecord.getLocDistance();
+		return getColumnValue(VRMeasurementColumns.RANGE);
+	}
+	
+	/**
+	 * @return bearing to the animal in degrees, NaN if not set. 
+	 */
+	public synchronized double getBearing() {
+		if (measurementRecord != null) return measurementRecord.getLocBearing();
+		return getColumnValue(VRMeasurementColumns.BEARING);
 	}
 	
-	public VRMeasurement getVrMeasurement() {
-		return vrMeasurement;
+	/**
+	 * @return latitude of the animal, NaN if not set. 
+	 */
+	public synchronized double getLatitude() {
+		if (measurementRecord != null) return measurementRecord.getLocLatitude();
+		return getColumnValue(VRMeasurementColumns.LATITUDE);
 	}
 	
-	public void setVrMeasurement(VRMeasurement vrMeasurement) {
-		this.vrMeasurement = vrMeasurement;
+	/**
+	 * @return longitude of the animal, NaN if not set. 
+	 */
+	public synchronized double getLongitude() {
+		if (measurementRecord != null) return measurementRecord.getLocLongitude();
+		return getColumnValue(VRMeasurementColumns.LONGITUDE);
 	}
 	
 	public String getHoverText() {
 		return String.format("<html>Video Range Data<br>%s<br>%s", 
-				PamCalendar.formatDateTime(getTimeMilliseconds()), vrMeasurement.getHoverText());
+				PamCalendar.formatDateTime(getTimeMilliseconds()), getVrMeasurement().getHoverText());
 	}
 
 }
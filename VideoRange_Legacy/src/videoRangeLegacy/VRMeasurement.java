@@ -51,6 +51,18 @@ public class VRMeasurement implements Serializable, Cloneable {
 	
 	public Double locPitchError = null;
 	
+	/**
+	 * Lower and upper limits of the range confidence interval from Monte Carlo error estimation, null if not estimated. 
+	 */
+	public Double locDistanceLower = null;
+	
+	public Double locDistanceUpper = null;
+	
+	/**
+	 * Radius in meters around locLatLong which contains the animal at the confidence level, null if not estimated. 
+	 */
+	public Double locLatLongError = null;
+	
 	/**
 	 * Location of the animal. This requires a heading, distance and image origin
 	 */
@@ -208,6 +220,12 @@ public class VRMeasurement implements Serializable, Cloneable {
 	public String getHoverText() {
 		String str = String.format("<html>Image %s (%d)<br>Range: %.1f m<br>Bearing: %.1f\u00B0",
 				imageName, imageAnimal, locDistance, locBearing);
+		if (locDistanceLower != null && locDistanceUpper != null) {
+			str += String.format("<br>Range interval: %.1f to %.1f m", locDistanceLower, locDistanceUpper);
+		}
+		if (locLatLongError != null) {
+			str += String.format("<br>Location error: %.1f m", locLatLongError);
+		}
 		if (comment != null) {
 			str += "<br>" + comment;
 		}
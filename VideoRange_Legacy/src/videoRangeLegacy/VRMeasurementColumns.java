@@ -0,0 +1,532 @@
+package videoRangeLegacy;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import PamUtils.LatLong;
+
+/**
+ * Video range measurements held as columns of primitives rather than one object per measurement. Numbers are stored in long, double and int arrays and
+ * text (image, height, calibration and method names and comments) is dictionary encoded, i.e. each distinct string is stored once and each row holds an index into the dictionary.
+ * Missing values are NaN for double columns, {@link #NULL_LONG} for long columns and -1 for text columns.
+ * <p>
+ * Columns can be written to and read from a column file so that analysis tools can read millions of measurements, or just the columns they need, without going through the database.
+ * Column file format (big endian): magic, version, number of rows, number of columns, then for each column its name (modified UTF-8 as written by DataOutputStream.writeUTF),
+ * type, byte offset of the column data from the start of the file and length of the column data in bytes, then the column data. Double, long and int columns are the values of
+ * every row. Text columns are the number of dictionary entries, each entry as UTF-8 (int byte length followed by the bytes), then an int dictionary index for every row.
+ * Readers should find columns by name and ignore columns they don't know.
+ * <p>
+ * Rows are added on the database load thread while the display reads them on the AWT thread, so all public methods are synchronized. 
+ */
+public class VRMeasurementColumns {
+
+	private final static int MAGIC=0x5652434C;
+
+	private final static int VERSION=1;
+
+	public final static String FILE_EXTENSION="vrcol";
+
+	/**
+	 * Column types in a column file.
+	 */
+	public final static byte TYPE_DOUBLE=1;
+	public final static byte TYPE_LONG=2;
+	public final static byte TYPE_INT=3;
+	public final static byte TYPE_TEXT=4;
+
+	/**
+	 * Value of a missing time.
+	 */
+	public final static long NULL_LONG=Long.MIN_VALUE;
+
+	/**
+	 * Long columns.
+	 */
+	public final static int TIME=0;
+	public final static int IMAGE_TIME=1;
+	public final static String[] longColumns={"Time", "ImageTime"};
+
+	/**
+	 * Double columns. Angles are in degrees, distances and heights in meters.
+	 */
+	public final static int RANGE=0;
+	public final static int RANGE_ERROR=1;
+	public final static int BEARING=2;
+	public final static int BEARING_ERROR=3;
+	public final static int PITCH=4;
+	public final static int PITCH_ERROR=5;
+	public final static int LATITUDE=6;
+	public final static int LONGITUDE=7;
+	public final static int IMAGE_BEARING=8;
+	public final static int IMAGE_PITCH=9;
+	public final static int IMAGE_TILT=10;
+	public final static int IMAGE_LATITUDE=11;
+	public final static int IMAGE_LONGITUDE=12;
+	public final static int HEIGHT=13;
+	public final static int CALIBRATION=14;
+	public final static int ANGLE_CORRECTION=15;
+	public final static int PIXEL_ACCURACY=16;
+	public final static int RANGE_LOWER=17;
+	public final static int RANGE_UPPER=18;
+	public final static int LOCATION_ERROR=19;
+	public final static String[] doubleColumns={"Range", "RangeError", "Bearing", "BearingError", "Pitch", "PitchError", "Latitude", "Longitude",
+		"ImageBearing", "ImagePitch", "ImageTilt", "ImageLatitude", "ImageLongitude", "Height", "Calibration", "AngleCorrection", "PixelAccuracy",
+		"RangeLower", "RangeUpper", "LocationError"};
+
+	/**
+	 * Int columns.
+	 */
+	public final static int ANIMAL=0;
+	public final static String[] intColumns={"Animal"};
+
+	/**
+	 * Text columns.
+	 */
+	public final static int IMAGE_NAME=0;
+	public final static int HEIGHT_NAME=1;
+	public final static int CALIBRATION_NAME=2;
+	public final static int VR_METHOD=3;
+	public final static int CALC_METHOD=4;
+	public final static int COMMENT=5;
+	public final static String[] textColumns={"ImageName", "HeightName", "CalibrationName", "VRMethod", "CalcMethod", "Comment"};
+
+	private int nRows=0;
+
+	private long[][] longs=new long[longColumns.length][];
+
+	private double[][] doubles=new double[doubleColumns.length][];
+
+	private int[][] ints=new int[intColumns.length][];
+
+	private int[][] textCodes=new int[textColumns.length][];
+
+	private Dictionary[] dictionaries=new Dictionary[textColumns.length];
+
+	/**
+	 * Distinct strings in a text column.
+	 */
+	private static class Dictionary {
+
+		private ArrayList<String> values=new ArrayList<String>();
+
+		private HashMap<String, Integer> codes=new HashMap<String, Integer>();
+
+		private int getCode(String value){
+			if (value==null) return -1;
+			Integer code=codes.get(value);
+			if (code==null){
+				code=values.size();
+				values.add(value);
+				codes.put(value, code);
+			}
+			return code;
+		}
+
+		private String getValue(int code){
+			return code<0 ? null : values.get(code);
+		}
+	}
+
+	public VRMeasurementColumns(){
+		this(1024);
+	}
+
+	/**
+	 * @param capacity- initial number of rows. Columns grow as rows are added.
+	 */
+	public VRMeasurementColumns(int capacity){
+		capacity=Math.max(capacity, 16);
+		for (int i=0; i<longColumns.length; i++) longs[i]=new long[capacity];
+		for (int i=0; i<doubleColumns.length; i++) doubles[i]=new double[capacity];
+		for (int i=0; i<intColumns.length; i++) ints[i]=new int[capacity];
+		for (int i=0; i<textColumns.length; i++){
+			textCodes[i]=new int[capacity];
+			dictionaries[i]=new Dictionary();
+		}
+	}
+
+	private void ensureCapacity(int capacity){
+		if (capacity<=longs[0].length) return;
+		int newCapacity=Math.max(capacity, longs[0].length+(longs[0].length>>1));
+		for (int i=0; i<longColumns.length; i++) longs[i]=Arrays.copyOf(longs[i], newCapacity);
+		for (int i=0; i<doubleColumns.length; i++) doubles[i]=Arrays.copyOf(doubles[i], newCapacity);
+		for (int i=0; i<intColumns.length; i++) ints[i]=Arrays.copyOf(ints[i], newCapacity);
+		for (int i=0; i<textColumns.length; i++) textCodes[i]=Arrays.copyOf(textCodes[i], newCapacity);
+	}
+
+	/**
+	 * Shrink the columns to the number of rows to save memory once all rows have been added.
+	 */
+	public synchronized void trimToSize(){
+		if (longs[0].length==nRows) return;
+		for (int i=0; i<longColumns.length; i++) longs[i]=Arrays.copyOf(longs[i], nRows);
+		for (int i=0; i<doubleColumns.length; i++) doubles[i]=Arrays.copyOf(doubles[i], nRows);
+		for (int i=0; i<intColumns.length; i++) ints[i]=Arrays.copyOf(ints[i], nRows);
+		for (int i=0; i<textColumns.length; i++) textCodes[i]=Arrays.copyOf(textCodes[i], nRows);
+	}
+
+	/**
+	 * Add an empty row. All values are missing and the animal number is 0.
+	 * @return the row index.
+	 */
+	public synchronized int addRow(){
+		ensureCapacity(nRows+1);
+		int row=nRows++;
+		for (int i=0; i<longColumns.length; i++) longs[i][row]=NULL_LONG;
+		for (int i=0; i<doubleColumns.length; i++) doubles[i][row]=Double.NaN;
+		for (int i=0; i<intColumns.length; i++) ints[i][row]=0;
+		for (int i=0; i<textColumns.length; i++) textCodes[i][row]=-1;
+		return row;
+	}
+
+	/**
+	 * Add a measurement.
+	 * @param timeMillis- time of the data unit.
+	 * @param vrm- the measurement.
+	 * @return the row index.
+	 */
+	public synchronized int add(long timeMillis, VRMeasurement vrm){
+		int row=addRow();
+		longs[TIME][row]=timeMillis;
+		if (vrm.imageTime!=null) longs[IMAGE_TIME][row]=vrm.imageTime;
+		setDouble(RANGE, row, vrm.locDistance);
+		setDouble(RANGE_ERROR, row, vrm.locDistanceError);
+		setDouble(BEARING, row, vrm.locBearing);
+		setDouble(BEARING_ERROR, row, vrm.locBearingError);
+		setDouble(PITCH, row, vrm.locPitch);
+		setDouble(PITCH_ERROR, row, vrm.locPitchError);
+		setDouble(RANGE_LOWER, row, vrm.locDistanceLower);
+		setDouble(RANGE_UPPER, row, vrm.locDistanceUpper);
+		setDouble(LOCATION_ERROR, row, vrm.locLatLongError);
+		if (vrm.locLatLong!=null){
+			doubles[LATITUDE][row]=vrm.locLatLong.getLatitude();
+			doubles[LONGITUDE][row]=vrm.locLatLong.getLongitude();
+		}
+		setDouble(IMAGE_BEARING, row, vrm.imageBearing);
+		setDouble(IMAGE_PITCH, row, vrm.imagePitch);
+		setDouble(IMAGE_TILT, row, vrm.imageTilt);
+		if (vrm.imageOrigin!=null){
+			doubles[IMAGE_LATITUDE][row]=vrm.imageOrigin.getLatitude();
+			doubles[IMAGE_LONGITUDE][row]=vrm.imageOrigin.getLongitude();
+		}
+		if (vrm.heightData!=null){
+			doubles[HEIGHT][row]=vrm.heightData.height;
+			setText(HEIGHT_NAME, row, vrm.heightData.name);
+		}
+		if (vrm.calibrationData!=null){
+			doubles[CALIBRATION][row]=vrm.calibrationData.degreesPerUnit;
+			setText(CALIBRATION_NAME, row, vrm.calibrationData.name);
+		}
+		doubles[ANGLE_CORRECTION][row]=vrm.angleCorrection;
+		doubles[PIXEL_ACCURACY][row]=vrm.pixelAccuracy;
+		ints[ANIMAL][row]=vrm.imageAnimal;
+		setText(IMAGE_NAME, row, vrm.imageName);
+		if (vrm.vrMethod!=null) setText(VR_METHOD, row, vrm.vrMethod.getName());
+		if (vrm.rangeMethod!=null) setText(CALC_METHOD, row, vrm.rangeMethod.getName());
+		setText(COMMENT, row, vrm.comment);
+		return row;
+	}
+
+	/**
+	 * Copy a row from other columns.
+	 * @param columns- the columns to copy from.
+	 * @param sourceRow- row to copy.
+	 * @return the row index.
+	 */
+	public synchronized int add(VRMeasurementColumns columns, int sourceRow){
+		int row=addRow();
+		synchronized (columns) {
+			for (int i=0; i<longColumns.length; i++) longs[i][row]=columns.longs[i][sourceRow];
+			for (int i=0; i<doubleColumns.length; i++) doubles[i][row]=columns.doubles[i][sourceRow];
+			for (int i=0; i<intColumns.length; i++) ints[i][row]=columns.ints[i][sourceRow];
+			for (int i=0; i<textColumns.length; i++) setText(i, row, columns.getText(i, sourceRow));
+		}
+		return row;
+	}
+
+	/**
+	 * Make a measurement from a row. Method objects can't be stored in columns so the vr and range methods are not set, their names are available from
+	 * {@link #getText(int, int)}.
+	 * @param row- the row index.
+	 * @return a new measurement.
+	 */
+	public synchronized VRMeasurement getMeasurement(int row){
+		VRMeasurement vrm=new VRMeasurement();
+		if (longs[IMAGE_TIME][row]!=NULL_LONG) vrm.imageTime=longs[IMAGE_TIME][row];
+		vrm.locDistance=getDoubleObject(RANGE, row);
+		vrm.locDistanceError=getDoubleObject(RANGE_ERROR, row);
+		vrm.locBearing=getDoubleObject(BEARING, row);
+		vrm.locBearingError=getDoubleObject(BEARING_ERROR, row);
+		vrm.locPitch=getDoubleObject(PITCH, row);
+		vrm.locPitchError=getDoubleObject(PITCH_ERROR, row);
+		vrm.locDistanceLower=getDoubleObject(RANGE_LOWER, row);
+		vrm.locDistanceUpper=getDoubleObject(RANGE_UPPER, row);
+		vrm.locLatLongError=getDoubleObject(LOCATION_ERROR, row);
+		if (!Double.isNaN(doubles[LATITUDE][row])) vrm.locLatLong=new LatLong(doubles[LATITUDE][row], doubles[LONGITUDE][row]);
+		vrm.imageBearing=getDoubleObject(IMAGE_BEARING, row);
+		vrm.imagePitch=getDoubleObject(IMAGE_PITCH, row);
+		vrm.imageTilt=getDoubleObject(IMAGE_TILT, row);
+		if (!Double.isNaN(doubles[IMAGE_LATITUDE][row])) vrm.imageOrigin=new LatLong(doubles[IMAGE_LATITUDE][row], doubles[IMAGE_LONGITUDE][row]);
+		if (!Double.isNaN(doubles[HEIGHT][row]) || textCodes[HEIGHT_NAME][row]>=0){
+			vrm.heightData=new VRHeightData();
+			if (!Double.isNaN(doubles[HEIGHT][row])) vrm.heightData.height=doubles[HEIGHT][row];
+			vrm.heightData.name=getText(HEIGHT_NAME, row);
+		}
+		if (!Double.isNaN(doubles[CALIBRATION][row]) || textCodes[CALIBRATION_NAME][row]>=0){
+			vrm.calibrationData=new VRCalibrationData();
+			if (!Double.isNaN(doubles[CALIBRATION][row])) vrm.calibrationData.degreesPerUnit=doubles[CALIBRATION][row];
+			vrm.calibrationData.name=getText(CALIBRATION_NAME, row);
+		}
+		if (!Double.isNaN(doubles[ANGLE_CORRECTION][row])) vrm.angleCorrection=doubles[ANGLE_CORRECTION][row];
+		if (!Double.isNaN(doubles[PIXEL_ACCURACY][row])) vrm.pixelAccuracy=doubles[PIXEL_ACCURACY][row];
+		vrm.imageAnimal=ints[ANIMAL][row];
+		vrm.imageName=getText(IMAGE_NAME, row);
+		vrm.comment=getText(COMMENT, row);
+		return vrm;
+	}
+
+	private Double getDoubleObject(int column, int row){
+		double value=doubles[column][row];
+		return Double.isNaN(value) ? null : value;
+	}
+
+	/**
+	 * @return the number of rows.
+	 */
+	public synchronized int getRowCount(){
+		return nRows;
+	}
+
+	public synchronized long getLong(int column, int row){
+		return longs[column][row];
+	}
+
+	public synchronized void setLong(int column, int row, long value){
+		longs[column][row]=value;
+	}
+
+	public synchronized double getDouble(int column, int row){
+		return doubles[column][row];
+	}
+
+	/**
+	 * Set a double value.
+	 * @param column- double column index.
+	 * @param row- row index.
+	 * @param value- the value, null for a missing value.
+	 */
+	public synchronized void setDouble(int column, int row, Double value){
+		doubles[column][row]=value==null ? Double.NaN : value;
+	}
+
+	public synchronized int getInt(int column, int row){
+		return ints[column][row];
+	}
+
+	public synchronized void setInt(int column, int row, int value){
+		ints[column][row]=value;
+	}
+
+	public synchronized String getText(int column, int row){
+		return dictionaries[column].getValue(textCodes[column][row]);
+	}
+
+	public synchronized void setText(int column, int row, String value){
+		textCodes[column][row]=dictionaries[column].getCode(value);
+	}
+
+	/**
+	 * @param column- text column index.
+	 * @param row- row index.
+	 * @return index of the row's text in the column dictionary, -1 if there is no text.
+	 */
+	public synchronized int getTextCode(int column, int row){
+		return textCodes[column][row];
+	}
+
+	/**
+	 * @param column- text column index.
+	 * @return a copy of the distinct strings in a text column.
+	 */
+	public synchronized List<String> getDictionary(int column){
+		return Collections.unmodifiableList(new ArrayList<String>(dictionaries[column].values));
+	}
+
+	/**
+	 * Write all rows to a column file. The file is written to a temporary file first so an existing file is only replaced by a complete file.
+	 * @param file- the column file.
+	 * @throws IOException
+	 */
+	public synchronized void write(File file) throws IOException {
+		int nColumns=longColumns.length+doubleColumns.length+intColumns.length+textColumns.length;
+		//dictionaries are encoded first so the length of each column is known before the header is written.
+		byte[][] encodedDictionaries=new byte[textColumns.length][];
+		for (int i=0; i<textColumns.length; i++) encodedDictionaries[i]=encodeDictionary(dictionaries[i]);
+
+		ByteArrayOutputStream headerBytes=new ByteArrayOutputStream();
+		DataOutputStream header=new DataOutputStream(headerBytes);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeInt(nRows);
+		header.writeInt(nColumns);
+		for (int i=0; i<longColumns.length; i++) writeColumnHeader(header, longColumns[i], TYPE_LONG, 0, 0);
+		for (int i=0; i<doubleColumns.length; i++) writeColumnHeader(header, doubleColumns[i], TYPE_DOUBLE, 0, 0);
+		for (int i=0; i<intColumns.length; i++) writeColumnHeader(header, intColumns[i], TYPE_INT, 0, 0);
+		for (int i=0; i<textColumns.length; i++) writeColumnHeader(header, textColumns[i], TYPE_TEXT, 0, 0);
+		//the header is the same size whatever the offsets so write it again with the real offsets.
+		long offset=header.size();
+		headerBytes.reset();
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeInt(nRows);
+		header.writeInt(nColumns);
+		for (int i=0; i<longColumns.length; i++){
+			writeColumnHeader(header, longColumns[i], TYPE_LONG, offset, 8L*nRows);
+			offset+=8L*nRows;
+		}
+		for (int i=0; i<doubleColumns.length; i++){
+			writeColumnHeader(header, doubleColumns[i], TYPE_DOUBLE, offset, 8L*nRows);
+			offset+=8L*nRows;
+		}
+		for (int i=0; i<intColumns.length; i++){
+			writeColumnHeader(header, intColumns[i], TYPE_INT, offset, 4L*nRows);
+			offset+=4L*nRows;
+		}
+		for (int i=0; i<textColumns.length; i++){
+			writeColumnHeader(header, textColumns[i], TYPE_TEXT, offset, encodedDictionaries[i].length+4L*nRows);
+			offset+=encodedDictionaries[i].length+4L*nRows;
+		}
+
+		File tempFile=new File(file.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1<<16))) {
+			headerBytes.writeTo(out);
+			ByteBuffer buffer=ByteBuffer.allocate(8*nRows);
+			for (int i=0; i<longColumns.length; i++){
+				buffer.clear();
+				buffer.asLongBuffer().put(longs[i], 0, nRows);
+				out.write(buffer.array(), 0, 8*nRows);
+			}
+			for (int i=0; i<doubleColumns.length; i++){
+				buffer.clear();
+				buffer.asDoubleBuffer().put(doubles[i], 0, nRows);
+				out.write(buffer.array(), 0, 8*nRows);
+			}
+			for (int i=0; i<intColumns.length; i++){
+				buffer.clear();
+				buffer.asIntBuffer().put(ints[i], 0, nRows);
+				out.write(buffer.array(), 0, 4*nRows);
+			}
+			for (int i=0; i<textColumns.length; i++){
+				out.write(encodedDictionaries[i]);
+				buffer.clear();
+				buffer.asIntBuffer().put(textCodes[i], 0, nRows);
+				out.write(buffer.array(), 0, 4*nRows);
+			}
+		}
+		catch (IOException e){
+			tempFile.delete();
+			throw e;
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void writeColumnHeader(DataOutputStream header, String name, byte type, long offset, long length) throws IOException {
+		header.writeUTF(name);
+		header.writeByte(type);
+		header.writeLong(offset);
+		header.writeLong(length);
+	}
+
+	private static byte[] encodeDictionary(Dictionary dictionary) throws IOException {
+		ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+		DataOutputStream out=new DataOutputStream(bytes);
+		out.writeInt(dictionary.values.size());
+		byte[] value;
+		for (String text: dictionary.values){
+			value=text.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(value.length);
+			out.write(value);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Read a column file. Columns which are not in the file are left as missing values and unknown columns are ignored.
+	 * @param file- the column file.
+	 * @return the measurements.
+	 * @throws IOException if the file can't be read or is not a column file.
+	 */
+	public static VRMeasurementColumns read(File file) throws IOException {
+		try (FileChannel channel=FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer=channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt()!=MAGIC) throw new IOException(file.getName() + " is not a video range column file");
+			if (buffer.getInt()>VERSION) throw new IOException(file.getName() + " was written by a newer version of PAMGuard");
+			int nRows=buffer.getInt();
+			int nColumns=buffer.getInt();
+			VRMeasurementColumns columns=new VRMeasurementColumns(nRows);
+			for (int i=0; i<nRows; i++) columns.addRow();
+
+			String name;
+			byte type;
+			long offset, length;
+			int index;
+			ByteBuffer column;
+			for (int i=0; i<nColumns; i++){
+				name=readUTF(buffer);
+				type=buffer.get();
+				offset=buffer.getLong();
+				length=buffer.getLong();
+				if (offset<0 || length<0 || offset+length>channel.size()) throw new IOException("Column " + name + " is outside the file " + file.getName());
+				column=buffer.duplicate();
+				column.position((int) offset);
+				switch (type){
+				case TYPE_LONG:
+					if ((index=Arrays.asList(longColumns).indexOf(name))>=0) column.asLongBuffer().get(columns.longs[index], 0, nRows);
+					break;
+				case TYPE_DOUBLE:
+					if ((index=Arrays.asList(doubleColumns).indexOf(name))>=0) column.asDoubleBuffer().get(columns.doubles[index], 0, nRows);
+					break;
+				case TYPE_INT:
+					if ((index=Arrays.asList(intColumns).indexOf(name))>=0) column.asIntBuffer().get(columns.ints[index], 0, nRows);
+					break;
+				case TYPE_TEXT:
+					if ((index=Arrays.asList(textColumns).indexOf(name))>=0){
+						int nValues=column.getInt();
+						byte[] value;
+						for (int j=0; j<nValues; j++){
+							value=new byte[column.getInt()];
+							column.get(value);
+							columns.dictionaries[index].getCode(new String(value, StandardCharsets.UTF_8));
+						}
+						column.asIntBuffer().get(columns.textCodes[index], 0, nRows);
+					}
+					break;
+				}
+			}
+			return columns;
+		}
+	}
+
+	private static String readUTF(ByteBuffer buffer){
+		byte[] bytes=new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
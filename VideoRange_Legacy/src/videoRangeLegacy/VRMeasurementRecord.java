@@ -0,0 +1,372 @@
+package videoRangeLegacy;
+
+import java.awt.Point;
+
+import PamUtils.LatLong;
+import videoRangeLegacy.vrmethods.VRMethod;
+
+/**
+ * Compact copy of a {@link VRMeasurement} for storing measurements once they have been made. Values are held as primitives in one object rather than in boxed Doubles,
+ * LatLongs and Points, and which of the optional values are set is held in a bit mask. Calibration and height data are shared between records with the same values rather than
+ * cloned for each record.
+ * <p>
+ * Records are not changed once made. {@link #getMeasurement()} gives a VRMeasurement with the same values for code which uses the VRMeasurement fields.
+ */
+public class VRMeasurementRecord {
+
+	/**
+	 * Bits set in the mask for values which are set.
+	 */
+	public static final int LOC_DISTANCE=1<<0;
+	public static final int LOC_DISTANCE_ERROR=1<<1;
+	public static final int LOC_BEARING=1<<2;
+	public static final int LOC_BEARING_ERROR=1<<3;
+	public static final int LOC_PITCH=1<<4;
+	public static final int LOC_PITCH_ERROR=1<<5;
+	public static final int LOC_LATLONG=1<<6;
+	public static final int IMAGE_TIME=1<<7;
+	public static final int IMAGE_BEARING=1<<8;
+	public static final int IMAGE_BEARING_ERROR=1<<9;
+	public static final int IMAGE_PITCH=1<<10;
+	public static final int IMAGE_PITCH_ERROR=1<<11;
+	public static final int IMAGE_TILT=1<<12;
+	public static final int IMAGE_TILT_ERROR=1<<13;
+	public static final int IMAGE_ORIGIN=1<<14;
+	public static final int ANIMAL_POINT=1<<15;
+	public static final int HORIZON_POINT=1<<16;
+	public static final int LOC_DISTANCE_LOWER=1<<17;
+	public static final int LOC_DISTANCE_UPPER=1<<18;
+	public static final int LOC_LATLONG_ERROR=1<<19;
+
+	private int setMask;
+
+	private int animalX, animalY, horizonX, horizonY;
+
+	private double distancePixels;
+
+	private int imageAnimal;
+
+	private int groupSize;
+
+	private double locDistance, locDistanceError, locBearing, locBearingError, locPitch, locPitchError;
+
+	private double locDistanceLower, locDistanceUpper, locLatLongError;
+
+	private double locLatitude, locLongitude, locHeight;
+
+	private long imageTime;
+
+	private double imageBearing, imageBearingErr, imagePitch, imagePitchErr, imageTilt, imageTiltErr;
+
+	private double originLatitude, originLongitude, originHeight;
+
+	private double pixelAccuracy;
+
+	private double angleCorrection;
+
+	private String imageName;
+
+	private String comment;
+
+	private VRCalibrationData calibrationData;
+
+	private VRHeightData heightData;
+
+	private VRHorzCalcMethod rangeMethod;
+
+	private VRMethod vrMethod;
+
+	/**
+	 * Calibration and height data of the last record made. Consecutive measurements nearly always use the same calibration and height so records share one copy.
+	 */
+	private static VRCalibrationData lastCalibration;
+
+	private static VRHeightData lastHeight;
+
+	private VRMeasurementRecord(){
+	}
+
+	/**
+	 * Make a record of a measurement.
+	 * @param vrm- the measurement.
+	 * @return the record.
+	 */
+	public static VRMeasurementRecord of(VRMeasurement vrm){
+		VRMeasurementRecord record=new VRMeasurementRecord();
+		int mask=0;
+		if (vrm.animalPoint!=null){
+			record.animalX=vrm.animalPoint.x;
+			record.animalY=vrm.animalPoint.y;
+			mask|=ANIMAL_POINT;
+		}
+		if (vrm.horizonPoint!=null){
+			record.horizonX=vrm.horizonPoint.x;
+			record.horizonY=vrm.horizonPoint.y;
+			mask|=HORIZON_POINT;
+		}
+		record.distancePixels=vrm.distancePixels;
+		record.imageAnimal=vrm.imageAnimal;
+		record.groupSize=vrm.groupSize;
+		if (vrm.locDistance!=null) {record.locDistance=vrm.locDistance; mask|=LOC_DISTANCE;}
+		if (vrm.locDistanceError!=null) {record.locDistanceError=vrm.locDistanceError; mask|=LOC_DISTANCE_ERROR;}
+		if (vrm.locBearing!=null) {record.locBearing=vrm.locBearing; mask|=LOC_BEARING;}
+		if (vrm.locBearingError!=null) {record.locBearingError=vrm.locBearingError; mask|=LOC_BEARING_ERROR;}
+		if (vrm.locPitch!=null) {record.locPitch=vrm.locPitch; mask|=LOC_PITCH;}
+		if (vrm.locPitchError!=null) {record.locPitchError=vrm.locPitchError; mask|=LOC_PITCH_ERROR;}
+		if (vrm.locDistanceLower!=null) {record.locDistanceLower=vrm.locDistanceLower; mask|=LOC_DISTANCE_LOWER;}
+		if (vrm.locDistanceUpper!=null) {record.locDistanceUpper=vrm.locDistanceUpper; mask|=LOC_DISTANCE_UPPER;}
+		if (vrm.locLatLongError!=null) {record.locLatLongError=vrm.locLatLongError; mask|=LOC_LATLONG_ERROR;}
+		if (vrm.locLatLong!=null){
+			record.locLatitude=vrm.locLatLong.getLatitude();
+			record.locLongitude=vrm.locLatLong.getLongitude();
+			record.locHeight=vrm.locLatLong.getHeight();
+			mask|=LOC_LATLONG;
+		}
+		if (vrm.imageTime!=null) {record.imageTime=vrm.imageTime; mask|=IMAGE_TIME;}
+		if (vrm.imageBearing!=null) {record.imageBearing=vrm.imageBearing; mask|=IMAGE_BEARING;}
+		if (vrm.imageBearingErr!=null) {record.imageBearingErr=vrm.imageBearingErr; mask|=IMAGE_BEARING_ERROR;}
+		if (vrm.imagePitch!=null) {record.imagePitch=vrm.imagePitch; mask|=IMAGE_PITCH;}
+		if (vrm.imagePitchErr!=null) {record.imagePitchErr=vrm.imagePitchErr; mask|=IMAGE_PITCH_ERROR;}
+		if (vrm.imageTilt!=null) {record.imageTilt=vrm.imageTilt; mask|=IMAGE_TILT;}
+		if (vrm.imageTiltErr!=null) {record.imageTiltErr=vrm.imageTiltErr; mask|=IMAGE_TILT_ERROR;}
+		if (vrm.imageOrigin!=null){
+			record.originLatitude=vrm.imageOrigin.getLatitude();
+			record.originLongitude=vrm.imageOrigin.getLongitude();
+			record.originHeight=vrm.imageOrigin.getHeight();
+			mask|=IMAGE_ORIGIN;
+		}
+		record.setMask=mask;
+		record.pixelAccuracy=vrm.pixelAccuracy;
+		record.angleCorrection=vrm.angleCorrection;
+		record.imageName=vrm.imageName;
+		record.comment=vrm.comment;
+		record.calibrationData=shareCalibration(vrm.calibrationData);
+		record.heightData=shareHeight(vrm.heightData);
+		record.rangeMethod=vrm.rangeMethod;
+		record.vrMethod=vrm.vrMethod;
+		return record;
+	}
+
+	/**
+	 * Get a copy of calibration data which can be shared between records.
+	 * @param calibrationData- calibration data of a measurement.
+	 * @return the last shared copy if it has the same values, otherwise a new copy.
+	 */
+	private static synchronized VRCalibrationData shareCalibration(VRCalibrationData calibrationData){
+		if (calibrationData==null) return null;
+		VRCalibrationData last=lastCalibration;
+		if (last==null || last.degreesPerUnit!=calibrationData.degreesPerUnit || last.timeMillis!=calibrationData.timeMillis ||
+				last.objectSize_cm!=calibrationData.objectSize_cm || last.objectDistance_m!=calibrationData.objectDistance_m ||
+				!equals(last.name, calibrationData.name)){
+			lastCalibration=last=calibrationData.clone();
+		}
+		return last;
+	}
+
+	/**
+	 * Get a copy of height data which can be shared between records.
+	 * @param heightData- height data of a measurement.
+	 * @return the last shared copy if it has the same values, otherwise a new copy.
+	 */
+	private static synchronized VRHeightData shareHeight(VRHeightData heightData){
+		if (heightData==null) return null;
+		VRHeightData last=lastHeight;
+		if (last==null || last.height!=heightData.height || !equals(last.name, heightData.name)){
+			lastHeight=last=heightData.clone();
+		}
+		return last;
+	}
+
+	private static boolean equals(String a, String b){
+		return a==null ? b==null : a.equals(b);
+	}
+
+	/**
+	 * Make a measurement with the values in the record. Changes to the measurement are not stored in the record.
+	 * @return a new measurement.
+	 */
+	public VRMeasurement getMeasurement(){
+		VRMeasurement vrm=new VRMeasurement();
+		if (isSet(ANIMAL_POINT)) vrm.animalPoint=new Point(animalX, animalY);
+		if (isSet(HORIZON_POINT)) vrm.horizonPoint=new Point(horizonX, horizonY);
+		vrm.distancePixels=distancePixels;
+		vrm.imageAnimal=imageAnimal;
+		vrm.groupSize=groupSize;
+		vrm.locDistance=isSet(LOC_DISTANCE) ? locDistance : null;
+		vrm.locDistanceError=isSet(LOC_DISTANCE_ERROR) ? locDistanceError : null;
+		vrm.locBearing=isSet(LOC_BEARING) ? locBearing : null;
+		vrm.locBearingError=isSet(LOC_BEARING_ERROR) ? locBearingError : null;
+		vrm.locPitch=isSet(LOC_PITCH) ? locPitch : null;
+		vrm.locPitchError=isSet(LOC_PITCH_ERROR) ? locPitchError : null;
+		vrm.locDistanceLower=isSet(LOC_DISTANCE_LOWER) ? locDistanceLower : null;
+		vrm.locDistanceUpper=isSet(LOC_DISTANCE_UPPER) ? locDistanceUpper : null;
+		vrm.locLatLongError=isSet(LOC_LATLONG_ERROR) ? locLatLongError : null;
+		if (isSet(LOC_LATLONG)){
+			vrm.locLatLong=new LatLong(locLatitude, locLongitude);
+			vrm.locLatLong.setHeight(locHeight);
+		}
+		vrm.imageTime=isSet(IMAGE_TIME) ? imageTime : null;
+		vrm.imageBearing=isSet(IMAGE_BEARING) ? imageBearing : null;
+		vrm.imageBearingErr=isSet(IMAGE_BEARING_ERROR) ? imageBearingErr : null;
+		vrm.imagePitch=isSet(IMAGE_PITCH) ? imagePitch : null;
+		vrm.imagePitchErr=isSet(IMAGE_PITCH_ERROR) ? imagePitchErr : null;
+		vrm.imageTilt=isSet(IMAGE_TILT) ? imageTilt : null;
+		vrm.imageTiltErr=isSet(IMAGE_TILT_ERROR) ? imageTiltErr : null;
+		if (isSet(IMAGE_ORIGIN)){
+			vrm.imageOrigin=new LatLong(originLatitude, originLongitude);
+			vrm.imageOrigin.setHeight(originHeight);
+		}
+		vrm.pixelAccuracy=pixelAccuracy;
+		vrm.angleCorrection=angleCorrection;
+		vrm.imageName=imageName;
+		vrm.comment=comment;
+		//measurements own their calibration and height data so give them a copy which can be changed.
+		vrm.calibrationData=calibrationData==null ? null : calibrationData.clone();
+		vrm.heightData=heightData==null ? null : heightData.clone();
+		vrm.rangeMethod=rangeMethod;
+		vrm.vrMethod=vrMethod;
+		return vrm;
+	}
+
+	/**
+	 * @param flag- one or more of the value bits, e.g. LOC_DISTANCE.
+	 * @return true if all the values are set.
+	 */
+	public boolean isSet(int flag){
+		return (setMask & flag)==flag;
+	}
+
+	/**
+	 * @return bit mask of the values which are set.
+	 */
+	public int getSetMask(){
+		return setMask;
+	}
+
+	private static double orNaN(boolean set, double value){
+		return set ? value : Double.NaN;
+	}
+
+	public int getImageAnimal(){
+		return imageAnimal;
+	}
+
+	/**
+	 * @return range to the animal in meters, NaN if not set.
+	 */
+	public double getLocDistance(){
+		return orNaN(isSet(LOC_DISTANCE), locDistance);
+	}
+
+	public double getLocDistanceError(){
+		return orNaN(isSet(LOC_DISTANCE_ERROR), locDistanceError);
+	}
+
+	/**
+	 * @return bearing to the animal in degrees, NaN if not set.
+	 */
+	public double getLocBearing(){
+		return orNaN(isSet(LOC_BEARING), locBearing);
+	}
+
+	public double getLocBearingError(){
+		return orNaN(isSet(LOC_BEARING_ERROR), locBearingError);
+	}
+
+	public double getLocPitch(){
+		return orNaN(isSet(LOC_PITCH), locPitch);
+	}
+
+	public double getLocPitchError(){
+		return orNaN(isSet(LOC_PITCH_ERROR), locPitchError);
+	}
+
+	/**
+	 * @return lower limit of the range confidence interval in meters, NaN if not set.
+	 */
+	public double getLocDistanceLower(){
+		return orNaN(isSet(LOC_DISTANCE_LOWER), locDistanceLower);
+	}
+
+	/**
+	 * @return upper limit of the range confidence interval in meters, NaN if not set.
+	 */
+	public double getLocDistanceUpper(){
+		return orNaN(isSet(LOC_DISTANCE_UPPER), locDistanceUpper);
+	}
+
+	/**
+	 * @return radius of the location confidence interval in meters, NaN if not set.
+	 */
+	public double getLocLatLongError(){
+		return orNaN(isSet(LOC_LATLONG_ERROR), locLatLongError);
+	}
+
+	/**
+	 * @return latitude of the animal, NaN if not set.
+	 */
+	public double getLocLatitude(){
+		return orNaN(isSet(LOC_LATLONG), locLatitude);
+	}
+
+	/**
+	 * @return longitude of the animal, NaN if not set.
+	 */
+	public double getLocLongitude(){
+		return orNaN(isSet(LOC_LATLONG), locLongitude);
+	}
+
+	/**
+	 * @return time the image was taken in millis. Check isSet(IMAGE_TIME) first.
+	 */
+	public long getImageTime(){
+		return imageTime;
+	}
+
+	public double getImageBearing(){
+		return orNaN(isSet(IMAGE_BEARING), imageBearing);
+	}
+
+	public double getImagePitch(){
+		return orNaN(isSet(IMAGE_PITCH), imagePitch);
+	}
+
+	public double getImageTilt(){
+		return orNaN(isSet(IMAGE_TILT), imageTilt);
+	}
+
+	public double getAngleCorrection(){
+		return angleCorrection;
+	}
+
+	public String getImageName(){
+		return imageName;
+	}
+
+	public String getComment(){
+		return comment;
+	}
+
+	/**
+	 * @return calibration data. This is shared with other records and must not be changed.
+	 */
+	public VRCalibrationData getCalibrationData(){
+		return calibrationData;
+	}
+
+	/**
+	 * @return height data. This is shared with other records and must not be changed.
+	 */
+	public VRHeightData getHeightData(){
+		return heightData;
+	}
+
+	public VRHorzCalcMethod getRangeMethod(){
+		return rangeMethod;
+	}
+
+	public VRMethod getVrMethod(){
+		return vrMethod;
+	}
+
+}
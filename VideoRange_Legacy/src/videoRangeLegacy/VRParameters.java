@@ -1,6 +1,8 @@
 package videoRangeLegacy;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -45,6 +47,11 @@ public class VRParameters implements Serializable, Cloneable {
 	 */
 	private LandMarkGroup manualGPS;
 	private int currentManualGPSIndex=0;
+	
+	/**
+	 * How positions are interpolated between GPS fixes. 
+	 */
+	public int gpsInterpMethod = GPSTrack.INTERP_LINEAR;
 		
 	public int rangeMethod = VRHorzMethods.METHOD_ROUND;
 	
@@ -54,6 +61,27 @@ public class VRParameters implements Serializable, Cloneable {
 	
 	public String angleDataBlock;
 	
+	/**
+	 * Use the filtered IMU attitude at the image time rather than the average of IMU samples around the image time. 
+	 */
+	public boolean filterIMU = false;
+	
+	/**
+	 * Standard deviation in degrees of IMU angles used by the IMU attitude filter. Larger values smooth the angles more. 
+	 */
+	public double imuMeasurementStd = 1.0;
+	
+	/**
+	 * Standard deviation in degrees/s^1.5 of the random angular acceleration of the camera used by the IMU attitude filter. 
+	 * Larger values follow fast camera movement more closely. 
+	 */
+	public double imuProcessStd = 20.0;
+	
+	/**
+	 * Offset in millis added to the camera (image metadata) time to match the clock of IMU, GPS and other sensor data. 
+	 */
+	public long cameraTimeOffset = 0;
+	
 	/**
 	 * file name for the current image. Null is pasted image. 
 	 */
@@ -69,6 +97,11 @@ public class VRParameters implements Serializable, Cloneable {
 	 */
 	public File currTideFile;
 	
+	/**
+	 * file name for an imported GPS track (GPX, NMEA or CSV)
+	 */
+	public File gpsTrackFile;
+	
 	/**
 	 * Ignore the closest segment (ie. if operating from on shore) 
 	 */
@@ -83,6 +116,65 @@ public class VRParameters implements Serializable, Cloneable {
 	 * also highlight points on the map file (to check resolution). 
 	 */
 	public boolean showShorePoints = true;
+	
+	/**
+	 * Number of measurements queued before they are written to the database with one batch insert when many measurements are saved at once. 0 writes at the end of the batch only. 
+	 */
+	public int dbBatchSize = 500;
+	
+	/**
+	 * Maximum time in millis between batch inserts when many measurements are saved at once. 0 writes at the end of the batch only. 
+	 */
+	public long dbBatchInterval = 5000;
+	
+	/**
+	 * Estimate range and location confidence intervals by Monte Carlo sampling of the errors below (see RangeUncertainty). Off by default 
+	 * because the samples are drawn when each measurement is made. 
+	 */
+	public boolean monteCarloErrors = false;
+	
+	/**
+	 * Number of Monte Carlo samples for each measurement. 
+	 */
+	public int monteCarloSamples = 10000;
+	
+	/**
+	 * Confidence level of the range and location confidence intervals. 
+	 */
+	public double confidenceLevel = 0.95;
+	
+	/**
+	 * Standard deviation of the camera height in meters. 
+	 */
+	public double cameraHeightStd = 0.2;
+	
+	/**
+	 * Standard deviation of the tide height in meters. 
+	 */
+	public double tideHeightStd = 0.1;
+	
+	/**
+	 * Standard deviation of the camera calibration as a fraction of the calibration value. 
+	 */
+	public double calibrationStd = 0.01;
+	
+	/**
+	 * Standard deviation in degrees of the angle below the horizon caused by refraction. 
+	 */
+	public double refractionStd = 0.005;
+	
+	/**
+	 * Standard deviation of the camera heading in degrees. 
+	 */
+	public double headingStd = 1.0;
+	
+	/**
+	 * Version of the fields in these settings. Fields added to the settings are 0 or false when older settings are read, 
+	 * so this is used in readObject() to set their default values. 
+	 */
+	private int settingsVersion = SETTINGS_VERSION;
+	
+	private static final int SETTINGS_VERSION = 2;
 
 
 	public VRCalibrationData getCurrentCalibrationData() {
@@ -161,6 +253,33 @@ public class VRParameters implements Serializable, Cloneable {
 			return null;
 		}
 	}
+	
+	/**
+	 * Read the settings and set defaults for any fields which were not in the saved settings. 
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (settingsVersion < 1) {
+			gpsInterpMethod = GPSTrack.INTERP_LINEAR;
+			filterIMU = false;
+			cameraTimeOffset = 0;
+			dbBatchSize = 500;
+			dbBatchInterval = 5000;
+			monteCarloErrors = false;
+			monteCarloSamples = 10000;
+			confidenceLevel = 0.95;
+			cameraHeightStd = 0.2;
+			tideHeightStd = 0.1;
+			calibrationStd = 0.01;
+			refractionStd = 0.005;
+			headingStd = 1.0;
+		}
+		if (settingsVersion < 2) {
+			imuMeasurementStd = 1.0;
+			imuProcessStd = 20.0;
+		}
+		settingsVersion = SETTINGS_VERSION;
+	}
 
 	public ArrayList<VRCalibrationData> getCalibrationDatas() {
 		return calibrationDatas;
@@ -1,5 +1,7 @@
 package videoRangeLegacy;
 
+import java.util.List;
+
 import PamUtils.PamCalendar;
 import PamguardMVC.PamProcess;
 
@@ -9,11 +11,13 @@ public class VRProcess extends PamProcess {
 	
 	private VRDataBlock vrDataBlock;
 	
+	private VRSQLLogging vrSQLLogging;
+	
 	public VRProcess(VRControl vrControl) {
 		super(vrControl, null);
 		this.vrControl = vrControl;
 		addOutputDataBlock(vrDataBlock = new VRDataBlock(vrControl.getUnitName(), this));
-		vrDataBlock.SetLogging(new VRSQLLogging(vrControl, this));
+		vrDataBlock.SetLogging(vrSQLLogging = new VRSQLLogging(vrControl, this));
 	}
 
 	@Override
@@ -29,6 +33,36 @@ public class VRProcess extends PamProcess {
 		VRDataUnit vrDataUnit = new VRDataUnit(time, vrMeasurement);
 		vrDataBlock.addPamData(vrDataUnit);
 	}
+	
+	/**
+	 * Add many measurements at once. The measurements are written to the database in one transaction, see VRSQLLogging.startBatch(). 
+	 * @param vrMeasurements- the measurements. 
+	 */
+	public void newVRLocs(List<VRMeasurement> vrMeasurements) {
+		startBatch();
+		try {
+			for (VRMeasurement vrMeasurement: vrMeasurements) {
+				newVRLoc(vrMeasurement);
+			}
+		}
+		finally {
+			endBatch();
+		}
+	}
+	
+	/**
+	 * Start a batch of measurements. Measurements added until endBatch() is called are committed to the database together. 
+	 */
+	public void startBatch() {
+		vrSQLLogging.startBatch();
+	}
+	
+	/**
+	 * End a batch of measurements and commit any measurements not yet committed. 
+	 */
+	public void endBatch() {
+		vrSQLLogging.endBatch();
+	}
 
 	@Override
 	public void pamStop() {
@@ -36,8 +70,16 @@ public class VRProcess extends PamProcess {
 
 	}
 
+	public VRControl getVRControl() {
+		return vrControl;
+	}
+
 	public VRDataBlock getVrDataBlock() {
 		return vrDataBlock;
 	}
 
+	public VRSQLLogging getVrSQLLogging() {
+		return vrSQLLogging;
+	}
+
 }
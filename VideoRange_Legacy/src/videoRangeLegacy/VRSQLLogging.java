@@ -1,8 +1,17 @@
 package videoRangeLegacy;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+
+import javax.swing.Timer;
 
 import PamguardMVC.PamDataUnit;
+import generalDatabase.PamConnection;
 import generalDatabase.PamTableDefinition;
 import generalDatabase.PamTableItem;
 import generalDatabase.SQLLogging;
@@ -18,7 +27,28 @@ public class VRSQLLogging extends SQLLogging {
 	
 	PamTableItem imageTime, range, rangeError, pixels, degrees, image, heightValue, heightName, 
 		method, calibrationValue, calibrationName, imageAnimal, angleCorrection, animalBearing, comment,
-		imageBearing, imagePitch, imageTilt,imageLat,imageLong,locLat,locLong,vrMethod;
+		imageBearing, imagePitch, imageTilt,imageLat,imageLong,locLat,locLong,vrMethod,
+		rangeLower, rangeUpper, locationError;
+	
+	/**
+	 * Number of batches which have been started and not ended. Batches can be nested, the last rows are written when the outer batch ends. 
+	 */
+	private int batchDepth=0;
+	
+	/**
+	 * Data units waiting to be written in the current batch. 
+	 */
+	private ArrayList<PamDataUnit> batchUnits=new ArrayList<PamDataUnit>();
+	
+	/**
+	 * Connection the waiting data units are written to. 
+	 */
+	private PamConnection batchConnection;
+	
+	/**
+	 * Writes the waiting data units every VRParameters.dbBatchInterval millis while a batch is open. 
+	 */
+	private Timer batchTimer;
 	
 	public VRSQLLogging(VRControl vrControl, VRProcess vrProcess) {
 		super(vrProcess.getVrDataBlock());
@@ -34,8 +64,11 @@ public class VRSQLLogging extends SQLLogging {
 		vrTable.addTableItem(angleCorrection 	= new PamTableItem("Heading_Correction", Types.DOUBLE));
 		vrTable.addTableItem(range				= new PamTableItem("Range", Types.DOUBLE));
 		vrTable.addTableItem(rangeError 		= new PamTableItem("Range_Error", Types.DOUBLE));
+		vrTable.addTableItem(rangeLower 		= new PamTableItem("Range_Lower", Types.DOUBLE));
+		vrTable.addTableItem(rangeUpper 		= new PamTableItem("Range_Upper", Types.DOUBLE));
 		vrTable.addTableItem(locLat				= new PamTableItem("latitude", Types.DOUBLE));
 		vrTable.addTableItem(locLong 			= new PamTableItem("longitude", Types.DOUBLE));
+		vrTable.addTableItem(locationError 		= new PamTableItem("Location_Error", Types.DOUBLE));
 		vrTable.addTableItem(imageAnimal 		= new PamTableItem("Animal_No.", Types.INTEGER));
 
 		//information on image
@@ -71,6 +104,9 @@ public class VRSQLLogging extends SQLLogging {
 		animalBearing					.setValue(vrm.locBearing);
 		range							.setValue(vrm.locDistance);
 		rangeError						.setValue(vrm.locDistanceError);
+		rangeLower						.setValue(vrm.locDistanceLower);
+		rangeUpper						.setValue(vrm.locDistanceUpper);
+		locationError					.setValue(vrm.locLatLongError);
 		if (vrm.imageOrigin!=null){
 			locLat						.setValue(vrm.locLatLong.getLatitude());
 			locLong						.setValue(vrm.locLatLong.getLongitude());
@@ -84,10 +120,12 @@ public class VRSQLLogging extends SQLLogging {
 			imageLat					.setValue(vrm.imageOrigin.getLatitude());
 			imageLong					.setValue(vrm.imageOrigin.getLongitude());
 		}
-		heightValue						.setValue(vrm.heightData.height);
-		heightName						.setValue(vrm.heightData.name);
-		vrMethod						.setValue(vrm.vrMethod.getName());
-		method							.setValue(vrm.rangeMethod.getName());
+		if (vrm.heightData!=null){
+			heightValue					.setValue(vrm.heightData.height);
+			heightName					.setValue(vrm.heightData.name);
+		}
+		vrMethod						.setValue(vrm.vrMethod == null ? null : vrm.vrMethod.getName());
+		method							.setValue(vrm.rangeMethod == null ? null : vrm.rangeMethod.getName());
 		
 		if (vrm.calibrationData!=null){
 			calibrationValue			.setValue(vrm.calibrationData.degreesPerUnit);
@@ -99,17 +137,209 @@ public class VRSQLLogging extends SQLLogging {
 	}
 	
 	
+	/**
+	 * Start a batch of measurements. Until the batch is ended rows are queued and written with one JDBC batch insert every 
+	 * VRParameters.dbBatchSize rows or VRParameters.dbBatchInterval millis rather than one insert per row. Every call must be matched by a call to endBatch(). 
+	 */
+	public synchronized void startBatch(){
+		batchDepth++;
+		if (batchDepth>1) return;
+		long interval=vrControl.getVRParams().dbBatchInterval;
+		if (interval>0){
+			batchTimer=new Timer((int) Math.min(interval, Integer.MAX_VALUE), new BatchTimerAction());
+			batchTimer.start();
+		}
+	}
+	
+	/**
+	 * End a batch of measurements. When the outer batch ends any queued rows are written. 
+	 */
+	public synchronized void endBatch(){
+		if (batchDepth==0) return;
+		batchDepth--;
+		if (batchDepth>0) return;
+		if (batchTimer!=null){
+			batchTimer.stop();
+			batchTimer=null;
+		}
+		writeBatch();
+	}
+	
+	/**
+	 * @return true if a batch has been started and not ended. 
+	 */
+	public synchronized boolean isBatch(){
+		return batchDepth>0;
+	}
+	
 	@Override
-	protected PamDataUnit createDataUnit(SQLTypes sqlTypes, long dataTime, int iD) {
+	public synchronized boolean logData(PamConnection con, PamDataUnit dataUnit) {
+		if (batchDepth==0 || con==null || con.getConnection()==null) return super.logData(con, dataUnit);
+		if (con!=batchConnection) writeBatch();
+		batchConnection=con;
+		batchUnits.add(dataUnit);
+		int batchSize=vrControl.getVRParams().dbBatchSize;
+		if (batchSize>0 && batchUnits.size()>=batchSize) writeBatch();
+		return true;
+	}
+	
+	/**
+	 * Write the queued data units with one batch insert in a single transaction. Auto commit is only turned off while the batch is written 
+	 * so rows written by other modules on the same connection are not held in the transaction. If the batch can't be written the data units are 
+	 * written one at a time. 
+	 */
+	private synchronized void writeBatch(){
+		if (batchUnits.size()==0 || batchConnection==null) return;
+		ArrayList<PamDataUnit> units=batchUnits;
+		PamConnection con=batchConnection;
+		batchUnits=new ArrayList<PamDataUnit>();
+		batchConnection=null;
 		
-		VRMeasurement vrm = new VRMeasurement();
+		Connection connection=con.getConnection();
+		SQLTypes sqlTypes=con.getSqlTypes();
+		ArrayList<PamTableItem> items=getInsertItems();
+		boolean autoCommit=true;
+		boolean written=false;
+		try {
+			autoCommit=connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try (PreparedStatement statement=connection.prepareStatement(getInsertString(sqlTypes, items))) {
+				Object value;
+				for (PamDataUnit unit: units){
+					fillTableData(sqlTypes, unit);
+					for (int i=0; i<items.size(); i++){
+						value=items.get(i).getValue();
+						if (value==null) statement.setNull(i+1, items.get(i).getSqlType());
+						else statement.setObject(i+1, value, items.get(i).getSqlType());
+					}
+					statement.addBatch();
+				}
+				statement.executeBatch();
+				connection.commit();
+				written=true;
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("VRSQLLogging: could not write " + units.size() + " measurements in one batch: " + e.getMessage());
+			try {
+				connection.rollback();
+			}
+			catch (SQLException e1) {
+				System.out.println("VRSQLLogging: could not roll back database transaction: " + e1.getMessage());
+			}
+		}
+		finally {
+			try {
+				connection.setAutoCommit(autoCommit);
+			}
+			catch (SQLException e) {
+				System.out.println("VRSQLLogging: could not restore database auto commit: " + e.getMessage());
+			}
+		}
+		if (!written){
+			for (PamDataUnit unit: units){
+				super.logData(con, unit);
+			}
+		}
+	}
+	
+	/**
+	 * @return the table items written by an insert, i.e. all items except the counter. 
+	 */
+	private ArrayList<PamTableItem> getInsertItems(){
+		PamTableDefinition tableDef=getTableDefinition();
+		ArrayList<PamTableItem> items=new ArrayList<PamTableItem>();
+		for (int i=0; i<tableDef.getTableItemCount(); i++){
+			if (!tableDef.getTableItem(i).isCounter()) items.add(tableDef.getTableItem(i));
+		}
+		return items;
+	}
+	
+	/**
+	 * @param sqlTypes- SQL types of the database. 
+	 * @param items- the table items to insert. 
+	 * @return a parameterised insert statement for the table items. 
+	 */
+	private String getInsertString(SQLTypes sqlTypes, ArrayList<PamTableItem> items){
+		StringBuilder columns=new StringBuilder();
+		StringBuilder values=new StringBuilder();
+		for (int i=0; i<items.size(); i++){
+			if (i>0){
+				columns.append(", ");
+				values.append(", ");
+			}
+			columns.append(sqlTypes.formatColumnName(items.get(i).getName()));
+			values.append("?");
+		}
+		return "INSERT INTO " + getTableDefinition().getTableName() + " (" + columns + ") VALUES (" + values + ")";
+	}
+	
+	class BatchTimerAction implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			writeBatch();
+		}
+	}
+	
+	/**
+	 * Measurements read from the database are added to the data block's measurement columns rather than each being made into a VRMeasurement, 
+	 * which saves a lot of memory when many measurements are loaded in viewer mode. The VRMeasurement is made when it's needed, see VRDataUnit.getVrMeasurement().
+	 */
+	@Override
+	protected PamDataUnit createDataUnit(SQLTypes sqlTypes, long dataTime, int iD) {
 		
-		vrm.imageTime=(long) imageTime.getDoubleValue();
+		VRMeasurementColumns columns = vrProcess.getVrDataBlock().getMeasurementColumns();
+		int row = columns.addRow();
 		
-		VRDataUnit vrDataUnit=new VRDataUnit(dataTime,vrm);
-		return vrDataUnit;
+		columns.setLong(VRMeasurementColumns.TIME, row, dataTime);
+		Double time = getDouble(imageTime);
+		if (time != null) columns.setLong(VRMeasurementColumns.IMAGE_TIME, row, time.longValue());
+		columns.setDouble(VRMeasurementColumns.BEARING, row, getDouble(animalBearing));
+		columns.setDouble(VRMeasurementColumns.ANGLE_CORRECTION, row, getDouble(angleCorrection));
+		columns.setDouble(VRMeasurementColumns.RANGE, row, getDouble(range));
+		columns.setDouble(VRMeasurementColumns.RANGE_ERROR, row, getDouble(rangeError));
+		columns.setDouble(VRMeasurementColumns.RANGE_LOWER, row, getDouble(rangeLower));
+		columns.setDouble(VRMeasurementColumns.RANGE_UPPER, row, getDouble(rangeUpper));
+		columns.setDouble(VRMeasurementColumns.LOCATION_ERROR, row, getDouble(locationError));
+		columns.setDouble(VRMeasurementColumns.LATITUDE, row, getDouble(locLat));
+		columns.setDouble(VRMeasurementColumns.LONGITUDE, row, getDouble(locLong));
+		Double animal = getDouble(imageAnimal);
+		if (animal != null) columns.setInt(VRMeasurementColumns.ANIMAL, row, animal.intValue());
+		columns.setText(VRMeasurementColumns.IMAGE_NAME, row, getText(image));
+		columns.setDouble(VRMeasurementColumns.IMAGE_BEARING, row, getDouble(imageBearing));
+		columns.setDouble(VRMeasurementColumns.IMAGE_PITCH, row, getDouble(imagePitch));
+		columns.setDouble(VRMeasurementColumns.IMAGE_TILT, row, getDouble(imageTilt));
+		columns.setDouble(VRMeasurementColumns.IMAGE_LATITUDE, row, getDouble(imageLat));
+		columns.setDouble(VRMeasurementColumns.IMAGE_LONGITUDE, row, getDouble(imageLong));
+		columns.setDouble(VRMeasurementColumns.HEIGHT, row, getDouble(heightValue));
+		columns.setText(VRMeasurementColumns.HEIGHT_NAME, row, getText(heightName));
+		columns.setText(VRMeasurementColumns.VR_METHOD, row, getText(vrMethod));
+		columns.setText(VRMeasurementColumns.CALC_METHOD, row, getText(method));
+		columns.setDouble(VRMeasurementColumns.CALIBRATION, row, getDouble(calibrationValue));
+		columns.setText(VRMeasurementColumns.CALIBRATION_NAME, row, getText(calibrationName));
+		columns.setText(VRMeasurementColumns.COMMENT, row, getText(comment));
 		
+		return new VRDataUnit(dataTime, columns, row);
+	}
+	
+	/**
+	 * @param tableItem- table item which has been read from the database. 
+	 * @return the value or null if the value is null or not a number. 
+	 */
+	private static Double getDouble(PamTableItem tableItem) {
+		Object value = tableItem.getValue();
+		if (value instanceof Number) return ((Number) value).doubleValue();
+		return null;
+	}
+	
+	/**
+	 * @param tableItem- table item which has been read from the database. 
+	 * @return the text without the padding of CHAR columns, or null if the value is null or empty. 
+	 */
+	private static String getText(PamTableItem tableItem) {
+		Object value = tableItem.getValue();
+		if (value == null) return null;
+		String text = value.toString().trim();
+		return text.length() == 0 ? null : text;
 	}
 	
-
 }
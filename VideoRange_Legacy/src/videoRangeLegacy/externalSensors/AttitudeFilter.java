@@ -0,0 +1,170 @@
+package videoRangeLegacy.externalSensors;
+
+/**
+ * Incremental Kalman filter for camera attitude. Each of heading, pitch and tilt is modelled as an angle with a constant angular rate driven by random angular acceleration, and the IMU angles are the measurements.
+ * The filter smooths noise (e.g. from wave motion shaking the sensor) without the lag and blurring of a fixed window average, and gives an estimate of the uncertainty of each angle.
+ * <p>
+ * The filter only holds a few primitive values per axis so adding a sample does not create any objects. Angles are wrapped so heading can cross north.
+ * All angles are in RADIANS.
+ */
+public class AttitudeFilter {
+
+	/**
+	 * Default standard deviation of IMU angle measurements (radians).
+	 */
+	public final static double DEFAULT_MEASUREMENT_STD=Math.toRadians(1.0);
+
+	/**
+	 * Default standard deviation of the random angular acceleration over one second (radians/s^1.5).
+	 */
+	public final static double DEFAULT_PROCESS_STD=Math.toRadians(20.0);
+
+	/**
+	 * Initial standard deviation of the angular rate (radians/s).
+	 */
+	private final static double INITIAL_RATE_STD=Math.toRadians(30.0);
+
+	/**
+	 * If there is a gap in the data longer than this (millis) the filter is reset.
+	 */
+	private final static long MAX_GAP=5000;
+
+	public final static int HEADING=0;
+	public final static int PITCH=1;
+	public final static int TILT=2;
+
+	/**
+	 * State for each axis: angle and angular rate.
+	 */
+	private final double[] angle=new double[3];
+	private final double[] rate=new double[3];
+
+	/**
+	 * Covariance matrix for each axis.
+	 */
+	private final double[] p00=new double[3];
+	private final double[] p01=new double[3];
+	private final double[] p11=new double[3];
+
+	private long lastTime;
+
+	private boolean initialised=false;
+
+	/**
+	 * Variance of IMU angle measurements (radians^2).
+	 */
+	private final double measurementVar;
+
+	/**
+	 * Power spectral density of the random angular acceleration (radians^2/s^3).
+	 */
+	private final double processNoise;
+
+	public AttitudeFilter(){
+		this(DEFAULT_MEASUREMENT_STD, DEFAULT_PROCESS_STD);
+	}
+
+	/**
+	 * @param measurementStd- standard deviation of IMU angle measurements in radians. Larger values smooth the angles more.
+	 * @param processStd- standard deviation of the random angular acceleration over one second in radians/s^1.5. Larger values follow fast camera movement more closely.
+	 */
+	public AttitudeFilter(double measurementStd, double processStd){
+		this.measurementVar=measurementStd*measurementStd;
+		this.processNoise=processStd*processStd;
+	}
+
+	/**
+	 * Reset the filter. The next sample will initialise the state.
+	 */
+	public void reset(){
+		initialised=false;
+	}
+
+	/**
+	 * Add a new IMU sample to the filter.
+	 * @param timeMillis- time of the sample in millis
+	 * @param heading- measured heading in radians
+	 * @param pitch- measured pitch in radians
+	 * @param tilt- measured tilt in radians
+	 */
+	public void update(long timeMillis, double heading, double pitch, double tilt){
+		if (!initialised || timeMillis-lastTime>MAX_GAP || timeMillis<lastTime){
+			initialise(HEADING, heading);
+			initialise(PITCH, pitch);
+			initialise(TILT, tilt);
+			lastTime=timeMillis;
+			initialised=true;
+			return;
+		}
+		double dt=(timeMillis-lastTime)/1000.;
+		lastTime=timeMillis;
+		updateAxis(HEADING, heading, dt);
+		updateAxis(PITCH, pitch, dt);
+		updateAxis(TILT, tilt, dt);
+	}
+
+	private void initialise(int axis, double measurement){
+		angle[axis]=measurement;
+		rate[axis]=0;
+		p00[axis]=measurementVar;
+		p01[axis]=0;
+		p11[axis]=INITIAL_RATE_STD*INITIAL_RATE_STD;
+	}
+
+	private void updateAxis(int axis, double measurement, double dt){
+		//predict
+		angle[axis]+=rate[axis]*dt;
+		double dt2=dt*dt;
+		double a00=p00[axis]+dt*(2*p01[axis]+dt*p11[axis])+processNoise*dt2*dt/3;
+		double a01=p01[axis]+dt*p11[axis]+processNoise*dt2/2;
+		double a11=p11[axis]+processNoise*dt;
+
+		//correct
+		double innovation=wrap(measurement-angle[axis]);
+		double s=a00+measurementVar;
+		double k0=a00/s;
+		double k1=a01/s;
+		angle[axis]=wrap(angle[axis]+k0*innovation);
+		rate[axis]+=k1*innovation;
+		p00[axis]=(1-k0)*a00;
+		p01[axis]=(1-k0)*a01;
+		p11[axis]=a11-k1*a01;
+	}
+
+	/**
+	 * Wrap an angle to -pi to pi.
+	 */
+	static double wrap(double angle){
+		while (angle>Math.PI) angle-=2*Math.PI;
+		while (angle<=-Math.PI) angle+=2*Math.PI;
+		return angle;
+	}
+
+	/**
+	 * Get the filtered angle.
+	 * @param axis- HEADING, PITCH or TILT.
+	 * @return the filtered angle in radians (-pi to pi).
+	 */
+	public double getAngle(int axis){
+		return angle[axis];
+	}
+
+	/**
+	 * Get the standard deviation of the filtered angle.
+	 * @param axis- HEADING, PITCH or TILT.
+	 * @return the standard deviation of the filtered angle in radians.
+	 */
+	public double getAngleStd(int axis){
+		return Math.sqrt(Math.max(0, p00[axis]));
+	}
+
+	/**
+	 * Get the filtered angular rate.
+	 * @param axis- HEADING, PITCH or TILT.
+	 * @return the angular rate in radians per second.
+	 */
+	public double getRate(int axis){
+		return rate[axis];
+	}
+
+}
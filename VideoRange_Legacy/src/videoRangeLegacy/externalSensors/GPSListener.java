@@ -0,0 +1,87 @@
+package videoRangeLegacy.externalSensors;
+
+import java.util.ListIterator;
+
+import videoRangeLegacy.GPSTrack;
+import videoRangeLegacy.VRControl;
+import Array.ArrayManager;
+import GPS.GpsDataUnit;
+import PamguardMVC.PamDataBlock;
+import PamguardMVC.PamObservable;
+import PamguardMVC.PamDataUnit;
+import PamguardMVC.PamProcess;
+
+/**
+ * Listens to the GPS data block from the array manager and adds new fixes to the location manager's GPS track as they arrive. In viewer mode the track is rebuilt from the data block whenever data has been loaded.
+ */
+public class GPSListener extends PamProcess {
+
+	@Override
+	public String getProcessName() {
+		return "GPS monitor";
+	}
+
+	VRControl vrControl;
+
+	private PamDataBlock<GpsDataUnit> gpsDataBlock;
+
+	public GPSListener(VRControl vrControl) {
+		super(vrControl, null);
+		this.vrControl = vrControl;
+	}
+
+	@Override
+	public void pamStart() {
+
+	}
+
+	@Override
+	public void pamStop() {
+
+	}
+
+	/**
+	 * Subscribe to the current GPS data block and fill the GPS track with any data already held in it.
+	 */
+	public void sortGPSData() {
+		PamDataBlock<GpsDataUnit> newDataBlock=ArrayManager.getArrayManager().getGPSDataBlock();
+		if (newDataBlock!=gpsDataBlock){
+			setParentDataBlock(newDataBlock);
+			gpsDataBlock=newDataBlock;
+		}
+		fillGPSTrack();
+	}
+
+	/**
+	 * Rebuild the GPS track from all the data units currently held in the GPS data block.
+	 */
+	public void fillGPSTrack(){
+		GPSTrack gpsTrack=vrControl.getLocationManager().getGPSTrack();
+		gpsTrack.clear();
+		vrControl.getLocationManager().clearCache();
+		if (gpsDataBlock==null) return;
+		GpsDataUnit gpsDataUnit;
+		synchronized (gpsDataBlock) {
+			ListIterator<GpsDataUnit> iterator=gpsDataBlock.getListIterator(0);
+			while (iterator.hasNext()){
+				gpsDataUnit=iterator.next();
+				gpsTrack.addFix(gpsDataUnit.getTimeMilliseconds(), gpsDataUnit.getGpsData());
+			}
+		}
+	}
+
+	@Override
+	public void newData(PamObservable o, PamDataUnit arg) {
+		if (o == gpsDataBlock) {
+			GpsDataUnit gpsDataUnit=(GpsDataUnit) arg;
+			vrControl.getLocationManager().getGPSTrack().addFix(gpsDataUnit.getTimeMilliseconds(), gpsDataUnit.getGpsData());
+			//a new fix may change the interpolated position of the current image.
+			vrControl.getLocationManager().clearCache();
+		}
+	}
+
+	public PamDataBlock<GpsDataUnit> getGPSDataBlock(){
+		return gpsDataBlock;
+	}
+
+}
@@ -1,9 +1,14 @@
 package videoRangeLegacy.externalSensors;
 
+import java.util.ListIterator;
+
 import videoRangeLegacy.VRControl;
+import videoRangeLegacy.VRParameters;
 import IMU.IMUDataBlock;
 import PamController.PamController;
 import PamguardMVC.PamDataBlock;
+import PamguardMVC.PamDataUnit;
+import PamguardMVC.PamObservable;
 import PamguardMVC.PamProcess;
 import angleMeasurement.AngleDataUnit;
 
@@ -17,6 +22,18 @@ public class IMUListener extends PamProcess {
 	VRControl vrControl;
 	private IMUDataBlock imuDataBlock;
 	
+	/**
+	 * Default number of IMU samples held in the IMU track. Enough for several minutes of data at 100Hz. 
+	 */
+	private final static int TRACK_CAPACITY=65536;
+	
+	/**
+	 * Primitive store of IMU samples with running sums used to calculate IMU stats for an image. Samples are only ever added from the thread which delivers IMU data. 
+	 * When the track is rebuilt a new track is filled and then swapped in, so other threads can read the track without locking. Samples are added and the track is swapped 
+	 * while holding the lock on the IMU data block so no samples are lost during a rebuild. 
+	 */
+	private volatile IMUTrack imuTrack=new IMUTrack(TRACK_CAPACITY);
+	
 	public IMUListener(VRControl vrControl) {
 		super(vrControl, null);
 		this.vrControl = vrControl;
@@ -53,6 +70,58 @@ public class IMUListener extends PamProcess {
 				setParentDataBlock(imuDataBlock);
 			}
 		}
+		fillIMUTrack();
+	}
+	
+	/**
+	 * Rebuild the IMU track from all the data units currently held in the IMU data block. The new track is filled before it replaces the current track. 
+	 */
+	public void fillIMUTrack(){
+		IMUDataBlock imuDataBlock=this.imuDataBlock;
+		if (imuDataBlock==null){
+			imuTrack=new IMUTrack(TRACK_CAPACITY, createAttitudeFilter());
+			return;
+		}
+		IMUTrack newTrack;
+		AngleDataUnit angleDataUnit;
+		synchronized (imuDataBlock) {
+			newTrack=new IMUTrack(Math.max(TRACK_CAPACITY, imuDataBlock.getUnitsCount()), createAttitudeFilter());
+			ListIterator<AngleDataUnit> iterator=imuDataBlock.getListIterator(0);
+			while (iterator.hasNext()){
+				angleDataUnit=iterator.next();
+				addSample(newTrack, angleDataUnit);
+			}
+			//swap while still holding the lock so samples arriving after the iteration are added to the new track. 
+			imuTrack=newTrack;
+		}
+	}
+	
+	/**
+	 * @return an attitude filter using the filter noise in the settings. 
+	 */
+	private AttitudeFilter createAttitudeFilter(){
+		VRParameters vrParams=vrControl.getVRParams();
+		return new AttitudeFilter(Math.toRadians(vrParams.imuMeasurementStd), Math.toRadians(vrParams.imuProcessStd));
+	}
+	
+	/**
+	 * Add the angles from an IMU data unit to a track. The data unit is not referenced by the track. 
+	 */
+	private void addSample(IMUTrack imuTrack, AngleDataUnit angleDataUnit){
+		Double heading=angleDataUnit.getTrueHeading();
+		Double pitch=angleDataUnit.getPitch();
+		Double tilt=angleDataUnit.getTilt();
+		if (heading==null || pitch==null || tilt==null) return;
+		imuTrack.addSample(angleDataUnit.getTimeMilliseconds(), heading, pitch, tilt);
+	}
+	
+	@Override
+	public void newData(PamObservable o, PamDataUnit arg) {
+		if (o == imuDataBlock) {
+			synchronized (o) {
+				addSample(imuTrack, (AngleDataUnit) arg);
+			}
+		}
 	}
 	
 	
@@ -74,4 +143,12 @@ public class IMUListener extends PamProcess {
 	public IMUDataBlock getIMUDataBlock(){
 		return imuDataBlock;
 	}
+	
+	/**
+	 * Get the track of IMU samples. 
+	 * @return the IMU track
+	 */
+	public IMUTrack getIMUTrack(){
+		return imuTrack;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,338 @@
+package videoRangeLegacy.externalSensors;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A time indexed ring buffer of IMU heading, pitch and tilt samples held in primitive arrays. As well as the samples the buffer holds running (prefix) sums of sin and cos of heading and of pitch, pitch squared, tilt and tilt squared.
+ * The mean and standard deviation of any window of samples can then be calculated from the difference of two running sums, so the cost does not depend on the number of samples in the window.
+ * <p>
+ * Heading is averaged as a circular quantity (mean of sin and cos) so windows which cross north are handled correctly. Pitch and tilt are treated as linear quantities.
+ * <p>
+ * The track is a lock free single producer ring buffer. Only one thread should ever add samples. A sample is written to the arrays before the sample count is published (volatile write) so readers on other threads
+ * (e.g. the GUI) never lock and never see a partly written sample. If the buffer is full the oldest samples are overwritten. The buffer has a margin of samples which are never read so that a reader is only
+ * interrupted if the producer wraps right round the margin during a read, in which case the read is repeated.
+ * <p>
+ * Each sample is also passed through an AttitudeFilter and the filtered angles are stored, so the smoothed attitude at any time is a cheap interpolation between two filtered samples (see getAttitude()).
+ * <p>
+ * Samples must be added in time order. All angles are in RADIANS.
+ */
+public class IMUTrack {
+
+	/**
+	 * Index of values in the stats array filled by getWindowStats().
+	 */
+	public final static int HEADING=0;
+	public final static int PITCH=1;
+	public final static int TILT=2;
+	public final static int HEADING_STD=3;
+	public final static int PITCH_STD=4;
+	public final static int TILT_STD=5;
+
+	/**
+	 * Size of the stats array required by getWindowStats().
+	 */
+	public final static int NSTATS=6;
+
+	/**
+	 * Maximum number of times a read is attempted if the producer overwrites the samples being read.
+	 */
+	private final static int MAX_READ_ATTEMPTS=10;
+
+	/**
+	 * Number of slots in the arrays.
+	 */
+	private final int capacity;
+
+	/**
+	 * Number of the oldest slots which are never read once the buffer has wrapped.
+	 */
+	private final int margin;
+
+	private final long[] times;
+
+	/**
+	 * Running sums. The value at slot i%capacity is the sum of all samples up to and including sample i.
+	 */
+	private final double[] sumSinHeading;
+	private final double[] sumCosHeading;
+	private final double[] sumPitch;
+	private final double[] sumPitch2;
+	private final double[] sumTilt;
+	private final double[] sumTilt2;
+
+	/**
+	 * Filtered angles and their standard deviations.
+	 */
+	private final double[] filtHeading;
+	private final double[] filtPitch;
+	private final double[] filtTilt;
+	private final double[] filtHeadingStd;
+	private final double[] filtPitchStd;
+	private final double[] filtTiltStd;
+
+	/**
+	 * Orientation filter. Only used by the producer thread.
+	 */
+	private final AttitudeFilter attitudeFilter;
+
+	/**
+	 * Total number of samples which have been added. Only written by the producer thread.
+	 */
+	private volatile long nAdded=0;
+
+	/**
+	 * Create an IMU track
+	 * @param capacity- the number of samples which can be held before old samples are overwritten.
+	 */
+	public IMUTrack(int capacity){
+		this(capacity, new AttitudeFilter());
+	}
+
+	/**
+	 * Create an IMU track
+	 * @param capacity- the number of samples which can be held before old samples are overwritten.
+	 * @param attitudeFilter- filter used to smooth the samples. Must not be used by anything else.
+	 */
+	public IMUTrack(int capacity, AttitudeFilter attitudeFilter){
+		this.attitudeFilter=attitudeFilter;
+		capacity=Math.max(capacity, 16);
+		this.margin=Math.max(16, capacity/16);
+		this.capacity=capacity+margin;
+		times=new long[this.capacity];
+		sumSinHeading=new double[this.capacity];
+		sumCosHeading=new double[this.capacity];
+		sumPitch=new double[this.capacity];
+		sumPitch2=new double[this.capacity];
+		sumTilt=new double[this.capacity];
+		sumTilt2=new double[this.capacity];
+		filtHeading=new double[this.capacity];
+		filtPitch=new double[this.capacity];
+		filtTilt=new double[this.capacity];
+		filtHeadingStd=new double[this.capacity];
+		filtPitchStd=new double[this.capacity];
+		filtTiltStd=new double[this.capacity];
+	}
+
+	/**
+	 * Add a sample to the end of the track. Must only be called from a single thread.
+	 * @param timeMillis- time of the sample in millis.
+	 * @param heading- heading in radians.
+	 * @param pitch- pitch in radians.
+	 * @param tilt- tilt in radians.
+	 * @return true if the sample was added. Samples older than the last sample are ignored.
+	 */
+	public boolean addSample(long timeMillis, double heading, double pitch, double tilt){
+		long n=nAdded;
+		int slot=(int) (n%capacity);
+		if (n==0){
+			sumSinHeading[slot]=Math.sin(heading);
+			sumCosHeading[slot]=Math.cos(heading);
+			sumPitch[slot]=pitch;
+			sumPitch2[slot]=pitch*pitch;
+			sumTilt[slot]=tilt;
+			sumTilt2[slot]=tilt*tilt;
+		}
+		else {
+			int last=(int) ((n-1)%capacity);
+			if (timeMillis<times[last]) return false;
+			sumSinHeading[slot]=sumSinHeading[last]+Math.sin(heading);
+			sumCosHeading[slot]=sumCosHeading[last]+Math.cos(heading);
+			sumPitch[slot]=sumPitch[last]+pitch;
+			sumPitch2[slot]=sumPitch2[last]+pitch*pitch;
+			sumTilt[slot]=sumTilt[last]+tilt;
+			sumTilt2[slot]=sumTilt2[last]+tilt*tilt;
+		}
+		attitudeFilter.update(timeMillis, heading, pitch, tilt);
+		filtHeading[slot]=attitudeFilter.getAngle(AttitudeFilter.HEADING);
+		filtPitch[slot]=attitudeFilter.getAngle(AttitudeFilter.PITCH);
+		filtTilt[slot]=attitudeFilter.getAngle(AttitudeFilter.TILT);
+		filtHeadingStd[slot]=attitudeFilter.getAngleStd(AttitudeFilter.HEADING);
+		filtPitchStd[slot]=attitudeFilter.getAngleStd(AttitudeFilter.PITCH);
+		filtTiltStd[slot]=attitudeFilter.getAngleStd(AttitudeFilter.TILT);
+		times[slot]=timeMillis;
+		//publish the sample.
+		nAdded=n+1;
+		return true;
+	}
+
+	/**
+	 * Get the oldest sample which can be used in a window.
+	 * @param n- the number of samples added.
+	 * @return the sample number of the oldest usable sample.
+	 */
+	private long getOldest(long n){
+		return n<=capacity-margin ? 0 : n-capacity+margin;
+	}
+
+	/**
+	 * Find the first sample at or after timeMillis.
+	 * @return the sample number or n if all samples are before timeMillis.
+	 */
+	private long firstAtOrAfter(long timeMillis, long oldest, long n){
+		long low=oldest;
+		long high=n;
+		long mid;
+		while (low<high){
+			mid=(low+high)>>>1;
+			if (times[(int) (mid%capacity)]<timeMillis) low=mid+1;
+			else high=mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Calculate the mean and standard deviation of heading, pitch and tilt for all samples between startMillis and endMillis (inclusive). Can be called from any thread.
+	 * @param startMillis- start of the window in millis
+	 * @param endMillis- end of the window in millis
+	 * @param stats- array of at least NSTATS values which is filled with the results (see HEADING, PITCH etc.). Heading is a circular mean in the range 0 to 2 pi and it's standard deviation is the circular standard deviation.
+	 * @return the number of samples in the window. If 0 the stats array is not changed.
+	 */
+	public int getWindowStats(long startMillis, long endMillis, double[] stats){
+		long n, first, end, oldest;
+		double sinH, cosH, p, p2, t, t2;
+		for (int i=0; i<MAX_READ_ATTEMPTS; i++){
+			n=nAdded;
+			if (n==0) return 0;
+			oldest=getOldest(n);
+			first=firstAtOrAfter(startMillis, oldest, n);
+			end=firstAtOrAfter(endMillis+1, oldest, n);
+			if (end<=first) return 0;
+
+			int lastSlot=(int) ((end-1)%capacity);
+			sinH=sumSinHeading[lastSlot];
+			cosH=sumCosHeading[lastSlot];
+			p=sumPitch[lastSlot];
+			p2=sumPitch2[lastSlot];
+			t=sumTilt[lastSlot];
+			t2=sumTilt2[lastSlot];
+			if (first>0){
+				//subtract the running sum up to the start of the window.
+				int prevSlot=(int) ((first-1)%capacity);
+				sinH-=sumSinHeading[prevSlot];
+				cosH-=sumCosHeading[prevSlot];
+				p-=sumPitch[prevSlot];
+				p2-=sumPitch2[prevSlot];
+				t-=sumTilt[prevSlot];
+				t2-=sumTilt2[prevSlot];
+			}
+
+			//make sure the producer has not overwritten any of the slots which have been read.
+			VarHandle.loadLoadFence();
+			if (nAdded-capacity>=Math.max(0, oldest-1)) continue;
+
+			int nSamples=(int) (end-first);
+			stats[HEADING]=Math.atan2(sinH, cosH);
+			if (stats[HEADING]<0) stats[HEADING]+=2*Math.PI;
+			stats[PITCH]=p/nSamples;
+			stats[TILT]=t/nSamples;
+
+			double r=Math.min(1, Math.sqrt(sinH*sinH+cosH*cosH)/nSamples);
+			stats[HEADING_STD]=r>0 ? Math.sqrt(-2*Math.log(r)) : Math.PI;
+			stats[PITCH_STD]=std(p, p2, nSamples);
+			stats[TILT_STD]=std(t, t2, nSamples);
+			return nSamples;
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the filtered attitude at a given time by interpolating between the two closest filtered samples. Can be called from any thread.
+	 * @param timeMillis- time in millis
+	 * @param tolerance- the maximum time in millis between timeMillis and the closest sample if timeMillis is outside the track or in a gap in the data.
+	 * @param attitude- array of at least NSTATS values which is filled with the filtered heading, pitch, tilt and their standard deviations (see HEADING, PITCH etc.). Heading is in the range 0 to 2 pi.
+	 * @return true if an attitude was found. If false the attitude array is not changed.
+	 */
+	public boolean getAttitude(long timeMillis, long tolerance, double[] attitude){
+		long n, oldest, after;
+		double heading, pitch, tilt, headingStd, pitchStd, tiltStd;
+		for (int i=0; i<MAX_READ_ATTEMPTS; i++){
+			n=nAdded;
+			if (n==0) return false;
+			oldest=getOldest(n);
+			after=firstAtOrAfter(timeMillis, oldest, n);
+
+			int slot0, slot1;
+			if (after==oldest) slot0=slot1=(int) (oldest%capacity);
+			else if (after==n) slot0=slot1=(int) ((n-1)%capacity);
+			else {
+				slot0=(int) ((after-1)%capacity);
+				slot1=(int) (after%capacity);
+			}
+			long t0=times[slot0];
+			long t1=times[slot1];
+			double fraction;
+			if (slot0==slot1){
+				if (Math.abs(timeMillis-t0)>tolerance) fraction=Double.NaN;
+				else fraction=0;
+			}
+			else if (Math.min(timeMillis-t0, t1-timeMillis)>tolerance) fraction=Double.NaN;
+			else fraction=(double) (timeMillis-t0)/(double) (t1-t0);
+
+			heading=filtHeading[slot0]+fraction*AttitudeFilter.wrap(filtHeading[slot1]-filtHeading[slot0]);
+			pitch=filtPitch[slot0]+fraction*(filtPitch[slot1]-filtPitch[slot0]);
+			tilt=filtTilt[slot0]+fraction*AttitudeFilter.wrap(filtTilt[slot1]-filtTilt[slot0]);
+			headingStd=filtHeadingStd[slot0]+fraction*(filtHeadingStd[slot1]-filtHeadingStd[slot0]);
+			pitchStd=filtPitchStd[slot0]+fraction*(filtPitchStd[slot1]-filtPitchStd[slot0]);
+			tiltStd=filtTiltStd[slot0]+fraction*(filtTiltStd[slot1]-filtTiltStd[slot0]);
+
+			//make sure the producer has not overwritten any of the slots which have been read.
+			VarHandle.loadLoadFence();
+			if (nAdded-capacity>=oldest) continue;
+
+			if (Double.isNaN(fraction)) return false;
+			heading=AttitudeFilter.wrap(heading);
+			if (heading<0) heading+=2*Math.PI;
+			attitude[HEADING]=heading;
+			attitude[PITCH]=pitch;
+			attitude[TILT]=AttitudeFilter.wrap(tilt);
+			attitude[HEADING_STD]=headingStd;
+			attitude[PITCH_STD]=pitchStd;
+			attitude[TILT_STD]=tiltStd;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sample standard deviation from a sum and sum of squares.
+	 */
+	private static double std(double sum, double sumSq, int n){
+		if (n<2) return 0;
+		double var=(sumSq-sum*sum/n)/(n-1);
+		return var>0 ? Math.sqrt(var) : 0;
+	}
+
+	/**
+	 * @return the number of samples which can currently be read from the track.
+	 */
+	public int getNSamples(){
+		long n=nAdded;
+		return (int) (n-getOldest(n));
+	}
+
+	/**
+	 * @return the time of the oldest sample which can be read, or Long.MAX_VALUE if the track is empty.
+	 */
+	public long getFirstTime(){
+		long n=nAdded;
+		if (n==0) return Long.MAX_VALUE;
+		return times[(int) (getOldest(n)%capacity)];
+	}
+
+	/**
+	 * @return the time of the last sample, or Long.MIN_VALUE if the track is empty.
+	 */
+	public long getLastTime(){
+		long n=nAdded;
+		if (n==0) return Long.MIN_VALUE;
+		return times[(int) ((n-1)%capacity)];
+	}
+
+	/**
+	 * @return the number of samples which can be held in the track.
+	 */
+	public int getCapacity(){
+		return capacity-margin;
+	}
+
+}
@@ -0,0 +1,237 @@
+package videoRangeLegacy.externalSensors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import videoRangeLegacy.ImageFileFilter;
+import videoRangeLegacy.PamImage;
+import videoRangeLegacy.vrmethods.HorizonDetector;
+
+/**
+ * Estimates the offset between the camera clock and the clock of the IMU (and GPS) data. The camera time in image metadata is often seconds or more out.
+ * <p>
+ * The horizon is found automatically in every image in a folder and it's tilt is compared to the IMU tilt (roll) at the image time plus a range of time offsets. The offset which gives the highest correlation
+ * between horizon tilt and IMU tilt is the best estimate of the camera clock error. Images are processed in parallel.
+ * <p>
+ * The horizon tilt and the IMU tilt may have opposite sign conventions depending on how the IMU is mounted, so the offset with the largest absolute correlation is used
+ * and the sign of the correlation is reported. The estimate is rejected if the absolute correlation is below MIN_CORRELATION.
+ */
+public class TimeOffsetCalibration {
+
+	/**
+	 * Maximum time between an image (plus offset) and the closest IMU sample.
+	 */
+	private final static long IMU_TOLERANCE=500;
+
+	/**
+	 * Minimum number of images with both a horizon and IMU data needed for an estimate.
+	 */
+	private final static int MIN_PAIRS=5;
+
+	/**
+	 * Minimum absolute correlation between horizon tilt and IMU tilt for an offset to be accepted.
+	 */
+	public final static double MIN_CORRELATION=0.5;
+
+	/**
+	 * Image times and the tilt of the horizon in each image, sorted by time.
+	 */
+	private long[] imageTimes=new long[0];
+	private double[] horizonTilts=new double[0];
+
+	/**
+	 * Number of images in the folder.
+	 */
+	private int nFiles=0;
+
+	private long bestOffset;
+	private double bestCorrelation=Double.NaN;
+	private int bestPairs;
+
+	public TimeOffsetCalibration() {
+
+	}
+
+	/**
+	 * Find the horizon in every image in a folder. Images are processed in parallel.
+	 * @param folder- the image folder.
+	 * @return the number of images with both a time and a horizon.
+	 * @throws InterruptedException
+	 */
+	public int measureImages(File folder) throws InterruptedException{
+		final ImageFileFilter fileFilter=new ImageFileFilter();
+		File[] files=folder.listFiles();
+		if (files==null) files=new File[0];
+		List<File> imageFiles=new ArrayList<File>();
+		for (int i=0; i<files.length; i++){
+			if (!files[i].isDirectory() && fileFilter.accept(files[i])) imageFiles.add(files[i]);
+		}
+		nFiles=imageFiles.size();
+
+		ExecutorService executor=Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+		List<Future<double[]>> futures=new ArrayList<Future<double[]>>(nFiles);
+		try {
+			for (final File file: imageFiles){
+				futures.add(executor.submit(() -> measureImage(file)));
+			}
+			double[][] results=new double[nFiles][];
+			int n=0;
+			for (int i=0; i<futures.size(); i++){
+				try {
+					results[i]=futures.get(i).get();
+				}
+				catch (ExecutionException e) {
+					System.out.println("TimeOffsetCalibration: could not read " + imageFiles.get(i).getName() + ": " + e.getCause());
+				}
+				if (results[i]!=null) n++;
+			}
+
+			//sort by image time
+			double[][] measured=new double[n][];
+			n=0;
+			for (int i=0; i<results.length; i++){
+				if (results[i]!=null) measured[n++]=results[i];
+			}
+			Arrays.sort(measured, (a, b) -> Double.compare(a[0], b[0]));
+			imageTimes=new long[n];
+			horizonTilts=new double[n];
+			for (int i=0; i<n; i++){
+				imageTimes[i]=(long) measured[i][0];
+				horizonTilts[i]=measured[i][1];
+			}
+			return n;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Read an image and find the horizon.
+	 * @return the image time and horizon tilt or null if the image has no time or no horizon could be found.
+	 */
+	private double[] measureImage(File file){
+		PamImage pamImage=new PamImage(file);
+		if (!pamImage.imageOK() || pamImage.getTimeMilliseconds()==0) return null;
+		HorizonDetector horizonDetector=new HorizonDetector();
+		if (!horizonDetector.findHorizon(pamImage.getImage())) return null;
+		return new double[]{pamImage.getTimeMilliseconds(), horizonDetector.getTilt()};
+	}
+
+	/**
+	 * Find the time offset which gives the best correlation between horizon tilt and IMU tilt. Offsets are tested in parallel.
+	 * @param imuTrack- the IMU track. Must contain IMU data for the image times.
+	 * @param maxOffset- the maximum offset to test in millis.
+	 * @param step- the step between tested offsets in millis.
+	 * @return true if an offset could be estimated. False if there were not enough images with IMU data or the best absolute correlation is below MIN_CORRELATION.
+	 */
+	public boolean estimateOffset(final IMUTrack imuTrack, long maxOffset, final long step){
+		bestCorrelation=Double.NaN;
+		if (imageTimes.length<MIN_PAIRS || imuTrack==null) return false;
+
+		final int nSteps=(int) (maxOffset/step);
+		final double[] correlations=new double[2*nSteps+1];
+		final int[] pairs=new int[2*nSteps+1];
+		IntStream.rangeClosed(-nSteps, nSteps).parallel().forEach(i -> {
+			double[] attitude=new double[IMUTrack.NSTATS];
+			double sx=0, sy=0, sxx=0, syy=0, sxy=0, x, y;
+			int n=0;
+			for (int j=0; j<imageTimes.length; j++){
+				if (!imuTrack.getAttitude(imageTimes[j]+i*step, IMU_TOLERANCE, attitude)) continue;
+				x=horizonTilts[j];
+				y=attitude[IMUTrack.TILT];
+				sx+=x;
+				sy+=y;
+				sxx+=x*x;
+				syy+=y*y;
+				sxy+=x*y;
+				n++;
+			}
+			pairs[i+nSteps]=n;
+			double denom=Math.sqrt((n*sxx-sx*sx)*(n*syy-sy*sy));
+			correlations[i+nSteps]=(n>=MIN_PAIRS && denom>0) ? (n*sxy-sx*sy)/denom : Double.NaN;
+		});
+
+		//only use offsets where most of the images have IMU data so offsets which drop difficult images aren't favoured.
+		int maxPairs=0;
+		for (int i=0; i<pairs.length; i++) maxPairs=Math.max(maxPairs, pairs[i]);
+		int best=-1;
+		for (int i=0; i<correlations.length; i++){
+			if (Double.isNaN(correlations[i]) || pairs[i]<maxPairs/2) continue;
+			//the sign of the correlation depends on the IMU mounting so use the largest absolute correlation.
+			if (best<0 || Math.abs(correlations[i])>Math.abs(correlations[best])) best=i;
+		}
+		if (best<0) return false;
+
+		//refine the offset with a parabola through the best absolute correlation and it's neighbours.
+		double refine=0;
+		if (best>0 && best<correlations.length-1 && !Double.isNaN(correlations[best-1]) && !Double.isNaN(correlations[best+1])){
+			double c0=Math.abs(correlations[best-1]), c1=Math.abs(correlations[best]), c2=Math.abs(correlations[best+1]);
+			double denom=c0-2*c1+c2;
+			if (denom<0) refine=0.5*(c0-c2)/denom;
+		}
+		bestOffset=Math.round((best-nSteps+refine)*step);
+		bestCorrelation=correlations[best];
+		bestPairs=pairs[best];
+		return Math.abs(bestCorrelation)>=MIN_CORRELATION;
+	}
+
+	/**
+	 * @return the best estimate of the offset in millis which should be added to the camera time to match the sensor time.
+	 */
+	public long getBestOffset() {
+		return bestOffset;
+	}
+
+	/**
+	 * @return the correlation between horizon tilt and IMU tilt at the best offset. Negative if the IMU tilt has the opposite sign convention to the horizon tilt. NaN if no offset was found.
+	 */
+	public double getBestCorrelation() {
+		return bestCorrelation;
+	}
+
+	/**
+	 * @return the number of images used at the best offset.
+	 */
+	public int getBestPairs() {
+		return bestPairs;
+	}
+
+	/**
+	 * @return the number of images in the folder.
+	 */
+	public int getNFiles() {
+		return nFiles;
+	}
+
+	/**
+	 * @return the number of images with a time and a horizon.
+	 */
+	public int getNImages() {
+		return imageTimes.length;
+	}
+
+	/**
+	 * @return the time of the first image with a horizon, or 0 if there are none.
+	 */
+	public long getFirstImageTime(){
+		if (imageTimes.length==0) return 0;
+		return imageTimes[0];
+	}
+
+	/**
+	 * @return the time of the last image with a horizon, or 0 if there are none.
+	 */
+	public long getLastImageTime(){
+		if (imageTimes.length==0) return 0;
+		return imageTimes[imageTimes.length-1];
+	}
+
+}
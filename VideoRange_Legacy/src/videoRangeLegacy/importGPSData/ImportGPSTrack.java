@@ -0,0 +1,398 @@
+package videoRangeLegacy.importGPSData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import videoRangeLegacy.GPSTrack;
+
+/**
+ * Imports GPS tracks from GPX, NMEA or CSV files. Files are read line by line (or element by element for GPX) and each fix is added straight into a GPSTrack, so large track files are never held in memory as text or objects.
+ * <p>
+ * CSV files should contain a time, latitude and longitude column and optionally a height column. If there is a header line the columns are found by name, otherwise they are assumed to be in the order time, latitude, longitude, height.
+ * Times can be millis since 1970 or a date string, e.g. 2016-05-21 13:10:05 or 2016-05-21T13:10:05Z. All times without a time zone are assumed to be UTC.
+ */
+public class ImportGPSTrack {
+
+	public final static int GPX_FILE=0;
+
+	public final static int NMEA_FILE=1;
+
+	public final static int CSV_FILE=2;
+
+	/**
+	 * File extensions which can be imported.
+	 */
+	public final static String[] fileExtensions={"gpx", "nmea", "txt", "log", "csv"};
+
+	private static final TimeZone utc=TimeZone.getTimeZone("UTC");
+
+	/**
+	 * Number of lines or points in the last file which could not be read.
+	 */
+	private int nErrors=0;
+
+	public ImportGPSTrack() {
+
+	}
+
+	/**
+	 * Get the file type from the file extension.
+	 * @param file- the GPS file
+	 * @return the file type. Files which are not GPX or CSV files are treated as NMEA logs.
+	 */
+	public static int getFileType(File file){
+		String name=file.getName().toLowerCase();
+		if (name.endsWith(".gpx")) return GPX_FILE;
+		if (name.endsWith(".csv")) return CSV_FILE;
+		return NMEA_FILE;
+	}
+
+	/**
+	 * Import a GPS track file into a GPS track.
+	 * @param file- the GPX, NMEA or CSV file.
+	 * @param gpsTrack- the track to add fixes to.
+	 * @return the number of fixes added to the track.
+	 * @throws IOException
+	 */
+	public int importFile(File file, GPSTrack gpsTrack) throws IOException{
+		nErrors=0;
+		switch (getFileType(file)){
+		case GPX_FILE:
+			return importGPX(file, gpsTrack);
+		case CSV_FILE:
+			return importCSV(file, gpsTrack);
+		default:
+			return importNMEA(file, gpsTrack);
+		}
+	}
+
+	/**
+	 * Import track points, route points and way points from a GPX file. Points without a time are ignored.
+	 */
+	private int importGPX(File file, GPSTrack gpsTrack) throws IOException{
+		int n=0;
+		InputStream inputStream=new BufferedInputStream(new FileInputStream(file));
+		XMLStreamReader reader=null;
+		try {
+			reader=XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+
+			boolean inPoint=false;
+			double lat=0, lon=0, height=0;
+			Long time=null;
+			String element;
+
+			while (reader.hasNext()){
+				switch (reader.next()){
+				case XMLStreamConstants.START_ELEMENT:
+					element=reader.getLocalName();
+					if (element.equals("trkpt") || element.equals("rtept") || element.equals("wpt")){
+						inPoint=true;
+						time=null;
+						height=0;
+						try {
+							lat=Double.parseDouble(reader.getAttributeValue(null, "lat"));
+							lon=Double.parseDouble(reader.getAttributeValue(null, "lon"));
+						}
+						catch (Exception e){
+							inPoint=false;
+							nErrors++;
+						}
+					}
+					else if (inPoint && element.equals("ele")){
+						try {
+							height=Double.parseDouble(reader.getElementText().trim());
+						}
+						catch (NumberFormatException e){
+							height=0;
+						}
+					}
+					else if (inPoint && element.equals("time")){
+						time=parseTime(reader.getElementText().trim());
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					element=reader.getLocalName();
+					if (inPoint && (element.equals("trkpt") || element.equals("rtept") || element.equals("wpt"))){
+						inPoint=false;
+						if (time==null){
+							nErrors++;
+						}
+						else {
+							gpsTrack.addFix(time, lat, lon, height);
+							n++;
+						}
+					}
+					break;
+				}
+			}
+		}
+		catch (XMLStreamException e){
+			throw new IOException("Could not read GPX file " + file.getName() + ": " + e.getMessage(), e);
+		}
+		finally {
+			try {
+				if (reader!=null) reader.close();
+			}
+			catch (XMLStreamException e) {
+				e.printStackTrace();
+			}
+			inputStream.close();
+		}
+		return n;
+	}
+
+	/**
+	 * Import RMC and GGA sentences from an NMEA log. GGA sentences have no date so use the date from the last RMC sentence.
+	 * A receiver usually sends both sentences for each fix, so consecutive sentences with the same time are merged into one fix. The height
+	 * comes from GGA (RMC has no height) and is 0 if there is no GGA sentence for the fix.
+	 */
+	private int importNMEA(File file, GPSTrack gpsTrack) throws IOException{
+		int n=0;
+		//the fix being merged from sentences with the same time.
+		long fixTime=Long.MIN_VALUE;
+		double fixLat=0, fixLong=0, fixHeight=Double.NaN;
+		long time;
+		BufferedReader reader=new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.US_ASCII));
+		try {
+			String line;
+			String[] fields;
+			//date of the last RMC sentence in millis.
+			long dateMillis=Long.MIN_VALUE;
+			Calendar cal=new GregorianCalendar(utc);
+			while ((line=reader.readLine())!=null){
+				//a log may have a time stamp or other text before the sentence.
+				int start=line.indexOf('$');
+				if (start<0) continue;
+				line=line.substring(start);
+				if (!checkNMEAChecksum(line)){
+					nErrors++;
+					continue;
+				}
+				int star=line.indexOf('*');
+				if (star>0) line=line.substring(0, star);
+				fields=line.split(",", -1);
+				if (fields[0].length()<6) continue;
+				try {
+					String sentence=fields[0].substring(3);
+					if (sentence.equals("RMC") && fields.length>9){
+						if (!fields[2].equals("A")) continue; //not a valid fix
+						cal.clear();
+						cal.set(2000+Integer.parseInt(fields[9].substring(4, 6)), Integer.parseInt(fields[9].substring(2, 4))-1, Integer.parseInt(fields[9].substring(0, 2)));
+						dateMillis=cal.getTimeInMillis();
+						time=dateMillis+parseNMEATime(fields[1]);
+						double latitude=parseNMEAAngle(fields[3], fields[4]);
+						double longitude=parseNMEAAngle(fields[5], fields[6]);
+						if (time!=fixTime){
+							if (addNMEAFix(gpsTrack, fixTime, fixLat, fixLong, fixHeight)) n++;
+							fixTime=time;
+							fixHeight=Double.NaN;
+						}
+						fixLat=latitude;
+						fixLong=longitude;
+					}
+					else if (sentence.equals("GGA") && fields.length>9){
+						if (dateMillis==Long.MIN_VALUE || fields[6].equals("0") || fields[2].length()==0) continue;
+						double height=fields[9].length()>0 ? Double.parseDouble(fields[9]) : Double.NaN;
+						time=dateMillis+parseNMEATime(fields[1]);
+						double latitude=parseNMEAAngle(fields[2], fields[3]);
+						double longitude=parseNMEAAngle(fields[4], fields[5]);
+						if (time!=fixTime){
+							if (addNMEAFix(gpsTrack, fixTime, fixLat, fixLong, fixHeight)) n++;
+							fixTime=time;
+						}
+						fixLat=latitude;
+						fixLong=longitude;
+						fixHeight=height;
+					}
+				}
+				catch (Exception e){
+					nErrors++;
+				}
+			}
+			if (addNMEAFix(gpsTrack, fixTime, fixLat, fixLong, fixHeight)) n++;
+		}
+		finally {
+			reader.close();
+		}
+		return n;
+	}
+
+	/**
+	 * Add a fix merged from NMEA sentences.
+	 * @return true if a fix was added, false if there is no fix (time is Long.MIN_VALUE).
+	 */
+	private static boolean addNMEAFix(GPSTrack gpsTrack, long time, double latitude, double longitude, double height){
+		if (time==Long.MIN_VALUE) return false;
+		gpsTrack.addFix(time, latitude, longitude, Double.isNaN(height) ? 0 : height);
+		return true;
+	}
+
+	/**
+	 * Check the checksum of an NMEA sentence. Sentences without a checksum are accepted.
+	 * @param sentence- NMEA sentence starting with $
+	 * @return true if the checksum is OK or not present.
+	 */
+	private static boolean checkNMEAChecksum(String sentence){
+		int star=sentence.indexOf('*');
+		if (star<0) return true;
+		if (star+3>sentence.length()) return false;
+		int sum=0;
+		for (int i=1; i<star; i++){
+			sum^=sentence.charAt(i);
+		}
+		try {
+			return sum==Integer.parseInt(sentence.substring(star+1, star+3), 16);
+		}
+		catch (NumberFormatException e){
+			return false;
+		}
+	}
+
+	/**
+	 * Convert an NMEA time, hhmmss.sss, to millis since midnight.
+	 */
+	private static long parseNMEATime(String time){
+		int hours=Integer.parseInt(time.substring(0, 2));
+		int minutes=Integer.parseInt(time.substring(2, 4));
+		double seconds=Double.parseDouble(time.substring(4));
+		return (hours*3600+minutes*60)*1000L+Math.round(seconds*1000);
+	}
+
+	/**
+	 * Convert an NMEA latitude or longitude, (d)ddmm.mmmm, to decimal degrees.
+	 */
+	private static double parseNMEAAngle(String value, String hemisphere){
+		int point=value.indexOf('.');
+		if (point<0) point=value.length();
+		double degrees=Double.parseDouble(value.substring(0, point-2));
+		double minutes=Double.parseDouble(value.substring(point-2));
+		degrees+=minutes/60.;
+		if (hemisphere.equals("S") || hemisphere.equals("W")) degrees=-degrees;
+		return degrees;
+	}
+
+	/**
+	 * Import fixes from a CSV file.
+	 */
+	private int importCSV(File file, GPSTrack gpsTrack) throws IOException{
+		int n=0;
+		BufferedReader reader=new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			//default column order if there is no header.
+			int timeCol=0, latCol=1, lonCol=2, heightCol=3;
+			String line;
+			String[] fields;
+			boolean firstLine=true;
+			Long time;
+			while ((line=reader.readLine())!=null){
+				if (line.trim().length()==0) continue;
+				fields=line.split(",", -1);
+				if (firstLine){
+					firstLine=false;
+					if (isHeader(fields)){
+						timeCol=latCol=lonCol=heightCol=-1;
+						String name;
+						for (int i=0; i<fields.length; i++){
+							name=fields[i].trim().replace("\"", "").toLowerCase();
+							if (timeCol<0 && (name.startsWith("time") || name.startsWith("date") || name.equals("utc"))) timeCol=i;
+							else if (latCol<0 && name.startsWith("lat")) latCol=i;
+							else if (lonCol<0 && (name.startsWith("lon") || name.startsWith("lng"))) lonCol=i;
+							else if (heightCol<0 && (name.startsWith("height") || name.startsWith("alt") || name.startsWith("ele"))) heightCol=i;
+						}
+						if (timeCol<0 || latCol<0 || lonCol<0){
+							throw new IOException("CSV file " + file.getName() + " must have time, latitude and longitude columns");
+						}
+						continue;
+					}
+				}
+				try {
+					time=parseTime(fields[timeCol].trim().replace("\"", ""));
+					if (time==null){
+						nErrors++;
+						continue;
+					}
+					double height=0;
+					if (heightCol>=0 && heightCol<fields.length && fields[heightCol].trim().length()>0){
+						height=Double.parseDouble(fields[heightCol].trim());
+					}
+					gpsTrack.addFix(time, Double.parseDouble(fields[latCol].trim()), Double.parseDouble(fields[lonCol].trim()), height);
+					n++;
+				}
+				catch (Exception e){
+					nErrors++;
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return n;
+	}
+
+	/**
+	 * A first line is a header if the latitude column is not a number.
+	 */
+	private static boolean isHeader(String[] fields){
+		if (fields.length<3) return true;
+		try {
+			Double.parseDouble(fields[1].trim());
+			return false;
+		}
+		catch (NumberFormatException e){
+			return true;
+		}
+	}
+
+	/**
+	 * Parse a time string. This can be millis since 1970 or an ISO 8601 style date and time, with or without a time zone (UTC is assumed if there is no time zone).
+	 * @param timeString- the time string.
+	 * @return time in millis or null if the string could not be read.
+	 */
+	public static Long parseTime(String timeString){
+		if (timeString==null || timeString.length()==0) return null;
+		try {
+			return Long.parseLong(timeString);
+		}
+		catch (NumberFormatException e){
+			//not millis- try a date string
+		}
+		try {
+			String isoString=timeString.replace(' ', 'T');
+			TemporalAccessor temporal=DateTimeFormatter.ISO_DATE_TIME.parseBest(isoString, java.time.ZonedDateTime::from, LocalDateTime::from);
+			if (temporal instanceof LocalDateTime){
+				return ((LocalDateTime) temporal).toInstant(ZoneOffset.UTC).toEpochMilli();
+			}
+			return ((java.time.ZonedDateTime) temporal).toInstant().toEpochMilli();
+		}
+		catch (DateTimeParseException e){
+			return null;
+		}
+	}
+
+	/**
+	 * @return the number of points or lines in the last imported file which could not be read.
+	 */
+	public int getNErrors() {
+		return nErrors;
+	}
+
+}
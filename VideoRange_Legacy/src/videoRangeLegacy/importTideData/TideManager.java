@@ -7,7 +7,6 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 
 import PamUtils.LatLong;
-import PamUtils.PamCalendar;
 import PamUtils.TxtFileUtils;
 import PamView.dialog.PamFileBrowser;
 import videoRangeLegacy.VRControl;
@@ -20,7 +19,10 @@ import videoRangeLegacy.VRControl;
 public class TideManager extends ImportTideData {
 	
 	private VRControl vrControl;
-	private TideDataBlock tideDataBlock; 
+	/**
+	 * Tide data. Replaced when a new file has been read so files can be read on a background thread. 
+	 */
+	private volatile TideDataBlock tideDataBlock; 
 
 	public TideManager(VRControl vrControl) {
 		this.vrControl=vrControl; 
@@ -63,27 +65,29 @@ public class TideManager extends ImportTideData {
 	}
 	
 	/**
-	 * Go through the file and save data. 
+	 * Go through the file and save data. The data replace any previous tide data once the whole file has been read. 
 	 */
 	@SuppressWarnings("unchecked")
 	public void savePolpredTextFile(String filePath){
 	
 		//load the file and create an array of strings
 		ArrayList<ArrayList<String>> txtData= TxtFileUtils.importTxtDataToString(filePath,"\\s+");
-		TxtFileUtils.printData(txtData);
+		if (txtData==null || txtData.size()<2) return;
 		
 		//next get the location
 		LatLong latLong=getLocationPOLPRED(txtData.get(1));
 
-		//now convert data from string to numvbers and add to datablock. 
+		//now convert data from string to numvbers and add to a new datablock. 
+		TideDataBlock newDataBlock=new TideDataBlock();
 		TideDataUnit tideDataUnit; 
 		for (int i=0; i<txtData.size(); i++){
 			tideDataUnit=convertToTideDataPOLPRED(txtData.get(i),latLong);
 			if (tideDataUnit!=null){
-				tideDataBlock.addPamData(tideDataUnit);
-				System.out.println("Time: "+PamCalendar.formatDate(tideDataUnit.getTimeMilliseconds())+" Level: "+tideDataUnit.getLevel()+ " speed: "+tideDataUnit.getSpeed()+" direction: "+Math.toDegrees(tideDataUnit.getAngle()));
+				newDataBlock.addPamData(tideDataUnit);
 			}
 		}
+		System.out.println("Tide data: " + newDataBlock.getUnitsCount() + " tide levels read from " + filePath);
+		tideDataBlock=newDataBlock;
 		
 	}
 	
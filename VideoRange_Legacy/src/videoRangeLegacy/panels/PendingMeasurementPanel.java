@@ -0,0 +1,210 @@
+package videoRangeLegacy.panels;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+
+import javax.swing.JButton;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.table.AbstractTableModel;
+
+import PamView.dialog.PamLabel;
+import PamView.panel.PamPanel;
+import videoRangeLegacy.VRControl;
+import videoRangeLegacy.VRMeasurement;
+
+/**
+ * Table of measurements waiting to be accepted. Measurements are added as soon as an animal is clicked so several animals can be measured without stopping.
+ * The bearing correction and comment can be edited in the table and any number of measurements accepted or rejected at once.
+ */
+@SuppressWarnings("serial")
+public class PendingMeasurementPanel extends PamPanel {
+
+	private VRControl vrControl;
+
+	private PendingTableModel tableModel;
+
+	private JTable table;
+
+	private PamLabel countLabel;
+
+	private JButton acceptSelected, acceptAll, rejectSelected, rejectAll;
+
+	public PendingMeasurementPanel(VRControl vrControl){
+		super(new BorderLayout());
+		this.vrControl=vrControl;
+
+		tableModel=new PendingTableModel();
+		table=new JTable(tableModel);
+		table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+		table.setFillsViewportHeight(true);
+		JScrollPane scrollPane=new JScrollPane(table);
+		scrollPane.setPreferredSize(new Dimension(450, 150));
+
+		PamPanel buttonPanel=new PamPanel(new GridLayout(1,4));
+		buttonPanel.add(acceptSelected=new JButton("Accept"));
+		buttonPanel.add(acceptAll=new JButton("Accept all"));
+		buttonPanel.add(rejectSelected=new JButton("Reject"));
+		buttonPanel.add(rejectAll=new JButton("Reject all"));
+		acceptSelected.setToolTipText("Accept the selected measurements");
+		acceptAll.setToolTipText("Accept all pending measurements");
+		rejectSelected.setToolTipText("Reject the selected measurements");
+		rejectAll.setToolTipText("Reject all pending measurements");
+		acceptSelected.addActionListener(new AcceptListener(false));
+		acceptAll.addActionListener(new AcceptListener(true));
+		rejectSelected.addActionListener(new RejectListener(false));
+		rejectAll.addActionListener(new RejectListener(true));
+
+		this.add(BorderLayout.NORTH, countLabel=new PamLabel(" "));
+		this.add(BorderLayout.CENTER, scrollPane);
+		this.add(BorderLayout.SOUTH, buttonPanel);
+
+		update();
+	}
+
+	/**
+	 * Get the measurements to accept or reject.
+	 * @param all- true for all pending measurements, false for the selected measurements.
+	 * @return list of measurements.
+	 */
+	private ArrayList<VRMeasurement> getMeasurements(boolean all){
+		if (table.isEditing()) table.getCellEditor().stopCellEditing();
+		ArrayList<VRMeasurement> pending=vrControl.getPendingMeasurements();
+		if (all) return new ArrayList<VRMeasurement>(pending);
+		ArrayList<VRMeasurement> selected=new ArrayList<VRMeasurement>();
+		for (int row: table.getSelectedRows()){
+			if (row<pending.size()) selected.add(pending.get(row));
+		}
+		return selected;
+	}
+
+	private class AcceptListener implements ActionListener {
+
+		private boolean all;
+
+		AcceptListener(boolean all){
+			this.all=all;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			vrControl.acceptPendingMeasurements(getMeasurements(all));
+		}
+	}
+
+	private class RejectListener implements ActionListener {
+
+		private boolean all;
+
+		RejectListener(boolean all){
+			this.all=all;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			vrControl.rejectPendingMeasurements(getMeasurements(all));
+		}
+	}
+
+	/**
+	 * Update the table after measurements have been added, accepted or rejected.
+	 */
+	public void update(){
+		if (table.isEditing()) table.getCellEditor().cancelCellEditing();
+		tableModel.fireTableDataChanged();
+		int n=vrControl.getPendingMeasurements().size();
+		countLabel.setText(n==0 ? "No measurements waiting" : n + " measurement" + (n==1 ? "" : "s") + " waiting to be accepted");
+		acceptSelected.setEnabled(n>0);
+		acceptAll.setEnabled(n>0);
+		rejectSelected.setEnabled(n>0);
+		rejectAll.setEnabled(n>0);
+	}
+
+	private class PendingTableModel extends AbstractTableModel {
+
+		private final String[] columnNames={"Image", "Animal", "Method", "Range (m)", "Bearing (\u00B0)", "Correction (\u00B0)", "Comment"};
+
+		private static final int CORRECTION=5;
+		private static final int COMMENT=6;
+
+		@Override
+		public int getRowCount() {
+			return vrControl.getPendingMeasurements().size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return columnNames.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return columnNames[column];
+		}
+
+		@Override
+		public Class<?> getColumnClass(int column) {
+			switch (column){
+			case 1:
+				return Integer.class;
+			case CORRECTION:
+				return Double.class;
+			default:
+				return String.class;
+			}
+		}
+
+		@Override
+		public boolean isCellEditable(int row, int column) {
+			return column==CORRECTION || column==COMMENT;
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			VRMeasurement measurement=vrControl.getPendingMeasurements().get(row);
+			switch (column){
+			case 0:
+				return measurement.imageName;
+			case 1:
+				return measurement.imageAnimal;
+			case 2:
+				return measurement.vrMethod==null ? "" : measurement.vrMethod.getName();
+			case 3:
+				return measurement.locDistance==null ? "" : String.format("%.1f", measurement.locDistance);
+			case 4:
+				return measurement.locBearing==null ? "" : String.format("%.1f", measurement.locBearing);
+			case CORRECTION:
+				return measurement.angleCorrection;
+			case COMMENT:
+				return measurement.comment;
+			}
+			return null;
+		}
+
+		@Override
+		public void setValueAt(Object value, int row, int column) {
+			VRMeasurement measurement=vrControl.getPendingMeasurements().get(row);
+			switch (column){
+			case CORRECTION:
+				if (value==null) return;
+				//the bearing is the camera bearing plus the correction.
+				double correction=(Double) value;
+				if (measurement.locBearing!=null) measurement.locBearing+=correction-measurement.angleCorrection;
+				measurement.angleCorrection=correction;
+				fireTableRowsUpdated(row, row);
+				break;
+			case COMMENT:
+				String comment=value==null ? null : value.toString();
+				if (comment!=null && comment.length()>VRControl.DBCOMMENTLENGTH) comment=comment.substring(0, VRControl.DBCOMMENTLENGTH);
+				measurement.comment=comment;
+				break;
+			}
+		}
+	}
+
+}
@@ -65,10 +65,12 @@ public class VRPanel extends JPanel {
 	public static PamSymbol animalMarker = new PamSymbol(PamSymbolType.SYMBOL_CIRCLE, 12, 12, false, Color.GREEN, Color.GREEN);
 	public static PamSymbol candidateMarker = new PamSymbol(PamSymbolType.SYMBOL_CIRCLE, 12, 12, false, Color.RED, Color.RED);
 	public static PamSymbol calibrationMarker = new PamSymbol(PamSymbolType.SYMBOL_CIRCLE, 12, 12, false, Color.RED, Color.RED);
+	public static PamSymbol detectedMarker = new PamSymbol(PamSymbolType.SYMBOL_SQUARE, 14, 14, false, Color.YELLOW, Color.YELLOW);
 	public static VRSymbolManager horizonSymbol = new VRSymbolManager(horizonMarker, "Video Range Horizon");
 	public static VRSymbolManager animalSymbol = new VRSymbolManager(animalMarker, "Video Range Animal");
 	public static VRSymbolManager candidateSymbol = new VRSymbolManager(candidateMarker, "Video Range Candidate Animal");
 	public static VRSymbolManager calibrationSymbol = new VRSymbolManager(calibrationMarker, "Video Range Calibration Mark. ");
+	public static VRSymbolManager detectedSymbol = new VRSymbolManager(detectedMarker, "Video Range Detected Animal");
 
 	public static Dimension settingsButtonSize=new Dimension(40,25);
 	
@@ -10,6 +10,7 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -17,6 +18,7 @@ import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -30,21 +32,26 @@ import javax.swing.SpinnerNumberModel;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.AbstractTableModel;
 
+import videoRangeLegacy.GPSTrack;
 import videoRangeLegacy.LandMark;
 import videoRangeLegacy.LandMarkGroup;
+import videoRangeLegacy.LandMrkGrpCSVLogging;
 import videoRangeLegacy.LocationManager;
 import videoRangeLegacy.VRCalibrationData;
 import videoRangeLegacy.VRControl;
 import videoRangeLegacy.VRHeightData;
 import videoRangeLegacy.VRHorzCalcMethod;
 import videoRangeLegacy.VRParameters;
+import videoRangeLegacy.importGPSData.ImportGPSTrack;
 import angleMeasurement.AngleDataUnit;
 import PamView.dialog.PamDialog;
 import PamView.dialog.PamGridBagContraints;
 import PamView.dialog.SourcePanel;
 import PamView.panel.PamPanel;
+import PamUtils.PamFileChooser;
 import PamguardMVC.PamDataBlock;
 
 public class VRParametersDialog extends PamDialog {
@@ -81,6 +88,10 @@ public class VRParametersDialog extends PamDialog {
 
 	private TidePanel tidePanel;
 	
+	private DatabasePanel databasePanel;
+	
+	private ErrorsPanel errorsPanel;
+	
 	public final static int CALC_TAB=0;
 	public final static int HEIGHT_TAB=1;
 	public final static int CAL_TAB=2;
@@ -107,6 +118,8 @@ public class VRParametersDialog extends PamDialog {
 		tidePanel= new TidePanel(); 
 		landMarkPanel=new LandGroupMarkPanel();
 		cameraLocationPanel=new ImageLocationPanel();
+		databasePanel = new DatabasePanel();
+		errorsPanel = new ErrorsPanel();
 		tabbedPanel.add("Calculation", calcPanel);
 		tabbedPanel.add("Heights", heightPanel);
 		tabbedPanel.add("Calibration", calibrationPanel);
@@ -116,6 +129,8 @@ public class VRParametersDialog extends PamDialog {
 		tabbedPanel.add("Angles", anglesPanel);
 		tabbedPanel.add("Shore", shorePanel);
 		tabbedPanel.add("Tide", tidePanel);
+		tabbedPanel.add("Errors", errorsPanel);
+		tabbedPanel.add("Database", databasePanel);
 
 		
 		setResizable(true);
@@ -167,6 +182,8 @@ public class VRParametersDialog extends PamDialog {
 		landMarkPanel.setParams();
 		cameraLocationPanel.setParams();
 		tidePanel.setParams();
+		errorsPanel.setParams();
+		databasePanel.setParams();
 	}
 
 	@Override
@@ -195,6 +212,12 @@ public class VRParametersDialog extends PamDialog {
 		if (cameraLocationPanel.getParams() == false) {
 			return false;
 		}
+		if (errorsPanel.getParams() == false) {
+			return false;
+		}
+		if (databasePanel.getParams() == false) {
+			return false;
+		}
 		return true;
 	}
 
@@ -230,6 +253,10 @@ public class VRParametersDialog extends PamDialog {
 		private JCheckBoxLocation photoGeoTag;
 		private JCheckBoxLocation manualLoc;
 		private JCheckBoxLocation landMark; 
+		private JCheckBoxLocation gpsTrackFile;
+		private JCheckBox greatCircle;
+		private JTextField gpsTrackFileName;
+		private JButton gpsTrackBrowse;
 		
 		protected ArrayList<JCheckBoxLocation> checkBoxes=new ArrayList<JCheckBoxLocation>();
 		protected ArrayList<JSpinner> prioritySpinners=new ArrayList<JSpinner>();
@@ -251,6 +278,9 @@ public class VRParametersDialog extends PamDialog {
 			manualLoc=new JCheckBoxLocation("Manual Location");
 			manualLoc.setLocationType(LocationManager.MANUAL_INPUT);
 			manualLoc.addActionListener(new CheckBoxSel());
+			gpsTrackFile=new JCheckBoxLocation("Imported GPS Track");
+			gpsTrackFile.setLocationType(LocationManager.GPS_TRACK_FILE);
+			gpsTrackFile.addActionListener(new CheckBoxSel());
 			landMark=new JCheckBoxLocation("LandMark Measurment");
 			landMark.setLocationType(LocationManager.LANDMARK_GROUP);
 			//landMark is a mandatory method if using landmarks- set disabled and selected. 
@@ -260,6 +290,7 @@ public class VRParametersDialog extends PamDialog {
 			checkBoxes.add(pamguardBoatGPS);
 			checkBoxes.add(photoGeoTag);
 			checkBoxes.add(manualLoc);
+			checkBoxes.add(gpsTrackFile);
 			
 			vrControl.getLocationManager();
 			
@@ -309,7 +340,31 @@ public class VRParametersDialog extends PamDialog {
 			c.gridy++;
 			c.gridx=0;
 			c.gridwidth = gridWidthChkBx;
+			PamDialog.addComponent(priorityPanel, gpsTrackFile, c);
+			c.insets = new Insets(0,insestX,0,0);
+			c.gridwidth = 1;
+			c.gridx=4;
+			PamDialog.addComponent(priorityPanel,  prioritySpinners.get(3), c);
+			c.insets = new Insets(0,0,0,0);
+			c.gridy++;
+			c.gridx=0;
+			c.gridwidth = gridWidthChkBx;
+			PamDialog.addComponent(priorityPanel, gpsTrackFileName=new JTextField(20), c);
+			gpsTrackFileName.setEditable(false);
+			c.gridwidth = 1;
+			c.gridx=4;
+			c.fill = GridBagConstraints.NONE;
+			PamDialog.addComponent(priorityPanel, gpsTrackBrowse=new JButton("Browse..."), c);
+			gpsTrackBrowse.setToolTipText("Import a GPS track from a GPX, NMEA or CSV file");
+			gpsTrackBrowse.addActionListener(new BrowseGPSTrack());
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridy++;
+			c.gridx=0;
+			c.gridwidth = gridWidthChkBx;
 			PamDialog.addComponent(priorityPanel, landMark, c);
+			c.gridy++;
+			PamDialog.addComponent(priorityPanel, greatCircle=new JCheckBox("Interpolate GPS data along great circles"), c);
+			greatCircle.setToolTipText("Interpolate positions between GPS fixes along great circles rather than linearly in latitude and longitude");
 
 			tableData=new LocationInputTable();
 			super.createPanel(tableData);
@@ -351,6 +406,36 @@ public class VRParametersDialog extends PamDialog {
 							
 		}
 		
+		class BrowseGPSTrack implements ActionListener{
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				JFileChooser fileChooser = new PamFileChooser();
+				fileChooser.setFileFilter(new FileNameExtensionFilter("GPS track (gpx, nmea, csv)", ImportGPSTrack.fileExtensions));
+				if (vrParameters.gpsTrackFile!=null) fileChooser.setCurrentDirectory(vrParameters.gpsTrackFile.getParentFile());
+				fileChooser.setDialogTitle("Select GPS track...");
+				if (fileChooser.showOpenDialog(ImageLocationPanel.this)!=JFileChooser.APPROVE_OPTION) return;
+				
+				File newFile=fileChooser.getSelectedFile();
+				//only check the file can be read here. The track is imported when the dialog is closed with OK. 
+				int nFixes;
+				try {
+					nFixes=new ImportGPSTrack().importFile(newFile, new GPSTrack());
+				}
+				catch (IOException e) {
+					nFixes=-1;
+				}
+				if (nFixes<=0){
+					PamDialog.showWarning(parentFrams, "GPS Track", "No GPS fixes could be read from " + newFile.getName());
+					return;
+				}
+				vrParameters.gpsTrackFile=newFile;
+				gpsTrackFileName.setText(newFile.getAbsolutePath());
+				gpsTrackFileName.setToolTipText(nFixes + " GPS fixes");
+			}
+			
+		}
+		
 		class CheckBoxSel implements ActionListener{
 
 			@Override
@@ -379,6 +464,12 @@ public class VRParametersDialog extends PamDialog {
 			localGPSMarkList = vrParameters.getManualGPSDatas();
 			currentlySelected=vrParameters.getCurrentManualGPSIndex();
 			tableData.fireTableDataChanged();
+			greatCircle.setSelected(vrParameters.gpsInterpMethod==GPSTrack.INTERP_GREAT_CIRCLE);
+			if (vrParameters.gpsTrackFile!=null){
+				gpsTrackFileName.setText(vrParameters.gpsTrackFile.getAbsolutePath());
+				gpsTrackFileName.setToolTipText(vrControl.getLocationManager().getImportedTrack().getNFixes() + " GPS fixes");
+			}
+			else gpsTrackFileName.setText("");
 			setPriorityParams();
 		}
 		
@@ -419,6 +510,7 @@ public class VRParametersDialog extends PamDialog {
 		public boolean getParams() {
 			vrParameters.setGPSLocData(localGPSMarkList);
 			vrParameters.setGPSLocDataSelIndex(currentlySelected);
+			vrParameters.gpsInterpMethod=greatCircle.isSelected() ? GPSTrack.INTERP_GREAT_CIRCLE : GPSTrack.INTERP_LINEAR;
 			getPrioirtyParams();
 			//TODO
 			vrControl.getLocationManager().setCurrentMethods(localMethodsList);
@@ -544,6 +636,8 @@ public class VRParametersDialog extends PamDialog {
 		ArrayList<LandMarkGroup> landMarkGroupList;
 		protected AbstractTableModel tableData;
 		private JButton importGroup;
+		private JButton exportGroup;
+		private File lastCSVFile;
 
 		
 		public LandGroupMarkPanel() {
@@ -553,14 +647,80 @@ public class VRParametersDialog extends PamDialog {
 			super.createPanel(tableData);
 			buttonPanel.removeAll();
 			buttonPanel.add(importGroup=new JButton("Import..."));
+			buttonPanel.add(exportGroup=new JButton("Export..."));
 			buttonPanel.add(addButton);
 			buttonPanel.add(editbutton);
 			buttonPanel.add(deleteButton);
+			importGroup.addActionListener(new ImportButton());
+			exportGroup.addActionListener(new ExportButton());
 			addButton.addActionListener(new AddButton());
 			editbutton.addActionListener(new EditButton());
 			deleteButton.addActionListener(new DeleteButton());
 		}
 		
+		class ImportButton implements ActionListener {
+
+			public void actionPerformed(ActionEvent e) {
+				JFileChooser fileChooser = new PamFileChooser();
+				fileChooser.setFileFilter(new FileNameExtensionFilter("Landmark groups (csv)", LandMrkGrpCSVLogging.fileExtensions));
+				if (lastCSVFile!=null) fileChooser.setCurrentDirectory(lastCSVFile.getParentFile());
+				fileChooser.setDialogTitle("Import landmark groups...");
+				if (fileChooser.showOpenDialog(LandGroupMarkPanel.this)!=JFileChooser.APPROVE_OPTION) return;
+				
+				File file=fileChooser.getSelectedFile();
+				lastCSVFile=file;
+				LandMrkGrpCSVLogging csvImport=new LandMrkGrpCSVLogging();
+				ArrayList<LandMarkGroup> newGroups;
+				try {
+					newGroups=csvImport.importLndMrkGrpCSV(file);
+				}
+				catch (IOException ex) {
+					PamDialog.showWarning(parentFrams, "Import landmarks", ex.getMessage());
+					return;
+				}
+				if (newGroups.size()==0){
+					PamDialog.showWarning(parentFrams, "Import landmarks", "No landmarks could be read from " + file.getName());
+					return;
+				}
+				if (landMarkGroupList == null) {
+					landMarkGroupList = new ArrayList<LandMarkGroup>();
+				}
+				landMarkGroupList.addAll(newGroups);
+				tableData.fireTableDataChanged();
+				int lastRow = landMarkGroupList.size()-1;
+				list.setRowSelectionInterval(lastRow, lastRow);
+				if (csvImport.getNErrors()>0){
+					PamDialog.showWarning(parentFrams, "Import landmarks", csvImport.getNErrors() + " lines could not be read from " + file.getName() + 
+							". The first was line " + csvImport.getFirstErrorLine() + ".");
+				}
+			}
+		}
+		
+		class ExportButton implements ActionListener {
+
+			public void actionPerformed(ActionEvent e) {
+				if (landMarkGroupList == null || landMarkGroupList.size()==0) return;
+				JFileChooser fileChooser = new PamFileChooser();
+				fileChooser.setFileFilter(new FileNameExtensionFilter("Landmark groups (csv)", LandMrkGrpCSVLogging.fileExtensions));
+				if (lastCSVFile!=null) fileChooser.setCurrentDirectory(lastCSVFile.getParentFile());
+				fileChooser.setDialogTitle("Export landmark groups...");
+				if (fileChooser.showSaveDialog(LandGroupMarkPanel.this)!=JFileChooser.APPROVE_OPTION) return;
+				
+				File file=fileChooser.getSelectedFile();
+				if (!file.getName().toLowerCase().endsWith(".csv")) file=new File(file.getPath() + ".csv");
+				lastCSVFile=file;
+				//export the selected group or all groups if none is selected.
+				int row = list.getSelectedRow();
+				try {
+					if (row >= 0 && row < landMarkGroupList.size()) LandMrkGrpCSVLogging.exportCSVFile(file, landMarkGroupList.get(row));
+					else LandMrkGrpCSVLogging.exportCSVFile(file, landMarkGroupList);
+				}
+				catch (IOException ex) {
+					PamDialog.showWarning(parentFrams, "Export landmarks", ex.getMessage());
+				}
+			}
+		}
+		
 		class AddButton implements ActionListener {
 
 			public void actionPerformed(ActionEvent e) {
@@ -1083,6 +1243,8 @@ public class VRParametersDialog extends PamDialog {
 		private static final long serialVersionUID = 1L;
 		
 		JCheckBox readAngles;
+		JCheckBox filterIMU;
+		JTextField cameraOffset, imuMeasurementStd, imuProcessStd;
 		SourcePanel angleSource;
 		public AnglesPanel() {
 			super();
@@ -1091,17 +1253,63 @@ public class VRParametersDialog extends PamDialog {
 			add(BorderLayout.NORTH, readAngles = new JCheckBox("Read angles"));
 			angleSource = new SourcePanel(THIS, AngleDataUnit.class, false, false);
 			add(BorderLayout.CENTER, angleSource.getPanel());
+			PamPanel southPanel = new PamPanel(new GridBagLayout());
+			GridBagConstraints c = new PamGridBagContraints();
+			c.gridwidth = 2;
+			addComponent(southPanel, filterIMU = new JCheckBox("Filter IMU attitude"), c);
+			filterIMU.setToolTipText("Smooth IMU angles with a Kalman filter and use the filtered attitude at the image time rather than the average of IMU data around the image time");
+			c.gridy++;
+			c.gridwidth = 1;
+			addComponent(southPanel, new JLabel("IMU angle std (\u00B0) "), c);
+			c.gridx++;
+			addComponent(southPanel, imuMeasurementStd = new JTextField(6), c);
+			imuMeasurementStd.setToolTipText("Noise of the IMU angles. Larger values smooth the filtered angles more");
+			c.gridy++;
+			c.gridx = 0;
+			addComponent(southPanel, new JLabel("Camera motion std (\u00B0/s^1.5) "), c);
+			c.gridx++;
+			addComponent(southPanel, imuProcessStd = new JTextField(6), c);
+			imuProcessStd.setToolTipText("Random angular acceleration of the camera. Larger values follow fast camera movement more closely");
+			c.gridy++;
+			c.gridx = 0;
+			addComponent(southPanel, new JLabel("Camera clock offset (s) "), c);
+			c.gridx++;
+			addComponent(southPanel, cameraOffset = new JTextField(6), c);
+			cameraOffset.setToolTipText("Time added to image times to match IMU and GPS data. Can be estimated with Calibrate camera clock in the module menu");
+			add(BorderLayout.SOUTH, southPanel);
 			readAngles.addActionListener(new ReadAngles());
+			filterIMU.addActionListener(new ReadAngles());
 		}
 		
 		void setParams() {
 			readAngles.setSelected(vrParameters.measureAngles);
+			filterIMU.setSelected(vrParameters.filterIMU);
+			imuMeasurementStd.setText(String.format("%.2f", vrParameters.imuMeasurementStd));
+			imuProcessStd.setText(String.format("%.1f", vrParameters.imuProcessStd));
+			cameraOffset.setText(String.format("%.1f", vrParameters.cameraTimeOffset/1000.));
 			angleSource.setSource(vrParameters.angleDataBlock);
 			enableControls();
 		}
 		
 		boolean getParams() {
 			vrParameters.measureAngles = readAngles.isSelected();
+			vrParameters.filterIMU = filterIMU.isSelected();
+			try {
+				vrParameters.cameraTimeOffset = Math.round(Double.valueOf(cameraOffset.getText())*1000);
+			}
+			catch (NumberFormatException e) {
+				return showWarning("Invalid camera clock offset");
+			}
+			try {
+				vrParameters.imuMeasurementStd = Double.valueOf(imuMeasurementStd.getText());
+				vrParameters.imuProcessStd = Double.valueOf(imuProcessStd.getText());
+			}
+			catch (NumberFormatException e) {
+				return showWarning("Invalid IMU filter noise");
+			}
+			if (vrParameters.imuMeasurementStd <= 0 || vrParameters.imuProcessStd <= 0) {
+				return showWarning("The IMU filter noise values must be greater than 0");
+			}
 			PamDataBlock dataBlock = angleSource.getSource();
 			if (dataBlock != null) {
 				vrParameters.angleDataBlock = dataBlock.getDataName();
@@ -1115,6 +1323,9 @@ public class VRParametersDialog extends PamDialog {
 				readAngles.setSelected(false);
 			}
 			angleSource.setEnabled(readAngles.isSelected());
+			filterIMU.setEnabled(readAngles.isSelected());
+			imuMeasurementStd.setEnabled(readAngles.isSelected() && filterIMU.isSelected());
+			imuProcessStd.setEnabled(readAngles.isSelected() && filterIMU.isSelected());
 		}
 		
 		class ReadAngles implements ActionListener {
@@ -1174,7 +1385,7 @@ public class VRParametersDialog extends PamDialog {
 				if (newFile != null) {
 					gebcoFile.setText(newFile.getAbsolutePath());
 					vrParameters.shoreFile = newFile;
-					vrControl.getMapFileManager().readFileData(newFile, false);
+					vrControl.loadShoreFile(newFile);
 				}
 				enableControls();
 			}
@@ -1282,7 +1493,7 @@ public class VRParametersDialog extends PamDialog {
 				String file=vrControl.getTideManager().findFile(vrParameters.currTideFile);
 				
 				if (file!=null){
-					vrControl.getTideManager().savePolpredTextFile(file);
+					vrControl.loadTideFile(new File(file));
 					vrParameters.currTideFile = new File(file);
 					setParams();
 				}
@@ -1294,4 +1505,146 @@ public class VRParametersDialog extends PamDialog {
 		}
 		
 	}
+	
+	class ErrorsPanel extends JPanel {
+		
+		private static final long serialVersionUID = 1L;
+		
+		JCheckBox monteCarloErrors;
+		JTextField samples, confidence, cameraHeightStd, tideHeightStd, calibrationStd, refractionStd, headingStd;
+		
+		public ErrorsPanel() {
+			super();
+			setLayout(new BorderLayout());
+			PamPanel p = new PamPanel(new GridBagLayout());
+			p.setBorder(new TitledBorder("Range confidence intervals"));
+			GridBagConstraints c = new PamGridBagContraints();
+			c.gridwidth = 2;
+			addComponent(p, monteCarloErrors = new JCheckBox("Estimate confidence intervals"), c);
+			monteCarloErrors.setToolTipText("Estimate range and location confidence intervals by Monte Carlo sampling of the errors below. Samples are drawn when each measurement is made");
+			c.gridwidth = 1;
+			samples = addField(p, "Samples per measurement ", c);
+			confidence = addField(p, "Confidence level (%) ", c);
+			cameraHeightStd = addField(p, "Camera height std (m) ", c);
+			tideHeightStd = addField(p, "Tide height std (m) ", c);
+			calibrationStd = addField(p, "Calibration std (%) ", c);
+			refractionStd = addField(p, "Refraction std (\u00B0) ", c);
+			headingStd = addField(p, "Heading std (\u00B0) ", c);
+			add(BorderLayout.NORTH, p);
+			monteCarloErrors.addActionListener(new MonteCarloErrors());
+		}
+		
+		private JTextField addField(JPanel p, String name, GridBagConstraints c) {
+			c.gridy++;
+			c.gridx = 0;
+			addComponent(p, new JLabel(name), c);
+			c.gridx++;
+			JTextField field;
+			addComponent(p, field = new JTextField(6), c);
+			return field;
+		}
+		
+		void setParams() {
+			monteCarloErrors.setSelected(vrParameters.monteCarloErrors);
+			samples.setText(String.format("%d", vrParameters.monteCarloSamples));
+			confidence.setText(String.format("%.1f", vrParameters.confidenceLevel*100));
+			cameraHeightStd.setText(String.format("%.2f", vrParameters.cameraHeightStd));
+			tideHeightStd.setText(String.format("%.2f", vrParameters.tideHeightStd));
+			calibrationStd.setText(String.format("%.2f", vrParameters.calibrationStd*100));
+			refractionStd.setText(String.format("%.3f", vrParameters.refractionStd));
+			headingStd.setText(String.format("%.2f", vrParameters.headingStd));
+			enableControls();
+		}
+		
+		boolean getParams() {
+			vrParameters.monteCarloErrors = monteCarloErrors.isSelected();
+			try {
+				vrParameters.monteCarloSamples = Integer.valueOf(samples.getText());
+				vrParameters.confidenceLevel = Double.valueOf(confidence.getText())/100;
+				vrParameters.cameraHeightStd = Double.valueOf(cameraHeightStd.getText());
+				vrParameters.tideHeightStd = Double.valueOf(tideHeightStd.getText());
+				vrParameters.calibrationStd = Double.valueOf(calibrationStd.getText())/100;
+				vrParameters.refractionStd = Double.valueOf(refractionStd.getText());
+				vrParameters.headingStd = Double.valueOf(headingStd.getText());
+			}
+			catch (NumberFormatException e) {
+				return showWarning("Invalid confidence interval settings");
+			}
+			if (vrParameters.monteCarloSamples < 2) {
+				return showWarning("At least 2 samples are needed for confidence intervals");
+			}
+			if (vrParameters.confidenceLevel <= 0 || vrParameters.confidenceLevel >= 1) {
+				return showWarning("The confidence level must be between 0 and 100%");
+			}
+			if (vrParameters.cameraHeightStd < 0 || vrParameters.tideHeightStd < 0 || vrParameters.calibrationStd < 0 || 
+					vrParameters.refractionStd < 0 || vrParameters.headingStd < 0) {
+				return showWarning("Standard deviations must not be negative");
+			}
+			return true;
+		}
+		
+		void enableControls() {
+			boolean en = monteCarloErrors.isSelected();
+			samples.setEnabled(en);
+			confidence.setEnabled(en);
+			cameraHeightStd.setEnabled(en);
+			tideHeightStd.setEnabled(en);
+			calibrationStd.setEnabled(en);
+			refractionStd.setEnabled(en);
+			headingStd.setEnabled(en);
+		}
+		
+		class MonteCarloErrors implements ActionListener {
+			public void actionPerformed(ActionEvent e) {
+				enableControls();
+			}
+		}
+		
+	}
+	
+	class DatabasePanel extends JPanel {
+		
+		private static final long serialVersionUID = 1L;
+		
+		JTextField batchSize, batchInterval;
+		
+		public DatabasePanel() {
+			super();
+			setLayout(new BorderLayout());
+			PamPanel p = new PamPanel(new GridBagLayout());
+			p.setBorder(new TitledBorder("Saving many measurements"));
+			GridBagConstraints c = new PamGridBagContraints();
+			addComponent(p, new JLabel("Rows per database write "), c);
+			c.gridx++;
+			addComponent(p, batchSize = new JTextField(6), c);
+			batchSize.setToolTipText("Number of measurements written together when many measurements are saved at once. 0 writes at the end only");
+			c.gridy++;
+			c.gridx = 0;
+			addComponent(p, new JLabel("Max time between writes (s) "), c);
+			c.gridx++;
+			addComponent(p, batchInterval = new JTextField(6), c);
+			batchInterval.setToolTipText("Maximum time between database writes when many measurements are saved at once. 0 writes at the end only");
+			add(BorderLayout.NORTH, p);
+		}
+		
+		void setParams() {
+			batchSize.setText(String.format("%d", vrParameters.dbBatchSize));
+			batchInterval.setText(String.format("%.1f", vrParameters.dbBatchInterval/1000.));
+		}
+		
+		boolean getParams() {
+			try {
+				vrParameters.dbBatchSize = Integer.valueOf(batchSize.getText());
+				vrParameters.dbBatchInterval = Math.round(Double.valueOf(batchInterval.getText())*1000);
+			}
+			catch (NumberFormatException e) {
+				return showWarning("Invalid database batch size or interval");
+			}
+			if (vrParameters.dbBatchSize < 0 || vrParameters.dbBatchInterval < 0) {
+				return showWarning("The database batch size and interval must not be negative");
+			}
+			return true;
+		}
+		
+	}
 }
@@ -24,6 +24,7 @@ import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JSlider;
 import javax.swing.JSpinner;
 import javax.swing.SpinnerDateModel;
@@ -51,6 +52,10 @@ public class VRSidePanel implements PamSidePanel {
 	
 	private PamLabel mouseLabel, imageNameLabel, imageTime;
 	
+	//shows progress while files are loaded in the background
+	private PamLabel loadingLabel;
+	private JProgressBar loadingBar;
+	
 	private JComboBox heights;
 	
 	//components for time and date label and spinners
@@ -135,6 +140,17 @@ public class VRSidePanel implements PamSidePanel {
 		//TODO-DISABLE PANELS
 	}
 	
+	/**
+	 * Show that files are being loaded in the background. 
+	 * @param status- description of what is being loaded. Null hides the progress bar. 
+	 */
+	public void setLoadingStatus(String status){
+		loadingLabel.setText(status==null ? " " : status);
+		loadingLabel.setVisible(status!=null);
+		loadingBar.setVisible(status!=null);
+		getPanel().revalidate();
+	}
+	
 	public void newMousePoint(Point mousePoint) {
 		if (mousePoint == null) {
 			mouseLabel.setText(" ");
@@ -264,6 +280,13 @@ public class VRSidePanel implements PamSidePanel {
 			addComponent(mp, settingsButton = new JButton("  Settings...",settings), c);
 			c.gridy++;
 			addComponent(mp, mouseLabel = new PamLabel(" "), c);
+			c.gridy++;
+			addComponent(mp, loadingLabel = new PamLabel(" "), c);
+			c.gridy++;
+			addComponent(mp, loadingBar = new JProgressBar(), c);
+			loadingBar.setIndeterminate(true);
+			loadingLabel.setVisible(false);
+			loadingBar.setVisible(false);
 			//
 				
 			//add action listeners. 
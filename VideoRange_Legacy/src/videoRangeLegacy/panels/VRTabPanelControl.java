@@ -40,6 +40,8 @@ public class VRTabPanelControl implements PamTabPanel {
 	private VRImageEditPanel imageControls;
 
 	private VRMetaDataPanel metaDataDisplay;
+	
+	private PendingMeasurementPanel pendingMeasurements;
 
 //	private HidingPanel iEhp;
 //
@@ -70,6 +72,9 @@ public class VRTabPanelControl implements PamTabPanel {
 				.getSystemResource("Resources/SettingsButtonSmallWhite.png")),metaDataDisplay,false);
 		imageSidePanels.addTab("Image Controls",new ImageIcon(ClassLoader
 				.getSystemResource("Resources/SettingsButtonSmallWhite.png")),imageControls,false);
+		pendingMeasurements=new PendingMeasurementPanel(vrControl);
+		imageSidePanels.addTab("Pending Measurements",new ImageIcon(ClassLoader
+				.getSystemResource("Resources/SettingsButtonSmallWhite.png")),pendingMeasurements,false);
 		imageSidePanels.setOpaque(false);
 		imageSidePanels.revalidate();
 		
@@ -181,12 +186,17 @@ public class VRTabPanelControl implements PamTabPanel {
 			vrSidePanel.update(updateType);
 			imageControls.update(updateType);
 			metaDataDisplay.setMetaText(vrControl.getCurrentImage().getMetaDataText());
+			pendingMeasurements.update();
 			repaintSide();
 			break;
 		case VRControl.METHOD_CHANGED:
 			changeMethod();
 			vrPanel.repaint();
 			break;
+		case VRControl.PENDING_CHANGE:
+			pendingMeasurements.update();
+			vrPanel.repaint();
+			break;
 		}
 	}
 
@@ -208,6 +218,10 @@ public class VRTabPanelControl implements PamTabPanel {
 	public VRMetaDataPanel getMetadataPanel(){
 		return metaDataDisplay; 
 	}
+	
+	public PendingMeasurementPanel getPendingMeasurementPanel(){
+		return pendingMeasurements; 
+	}
 
 
 	public VRPanel getVRPanel() {
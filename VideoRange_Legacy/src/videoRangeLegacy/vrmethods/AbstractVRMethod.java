@@ -6,6 +6,7 @@ import java.awt.GridBagLayout;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
 import javax.swing.JButton;
@@ -20,12 +21,13 @@ import PamView.dialog.PamDialog;
 import PamView.dialog.PamLabel;
 import PamView.panel.PamPanel;
 import videoRangeLegacy.LocationManager;
+import videoRangeLegacy.RangeUncertainty;
 import videoRangeLegacy.VRCalibrationData;
 import videoRangeLegacy.VRControl;
 import videoRangeLegacy.VRHeightData;
 import videoRangeLegacy.VRHorzCalcMethod;
 import videoRangeLegacy.VRMeasurement;
-import videoRangeLegacy.panels.AcceptMeasurementDialog;
+import videoRangeLegacy.VRParameters;
 import videoRangeLegacy.panels.VRPanel;
 import videoRangeLegacy.panels.VRParametersDialog;
 import videoRangeLegacy.panels.VRSidePanel;
@@ -59,6 +61,14 @@ public abstract class AbstractVRMethod implements VRMethod {
 	protected Point horizonPoint1, horizonPoint2;
 	//possible animal measurment
 	protected VRMeasurement candidateMeasurement;
+	
+	//possible animals found by the automatic detector. 
+	protected ArrayList<AnimalDetector.Candidate> detectedAnimals;
+	
+	/**
+	 * True if measurements should be accepted without showing the accept dialog, e.g. when accepting all detected animals. 
+	 */
+	private boolean autoAccept=false;
 
 	public AbstractVRMethod(VRControl vrControl){
 		this.vrControl=vrControl;
@@ -204,6 +214,7 @@ public abstract class AbstractVRMethod implements VRMethod {
 		break;
 		case VRControl.IMAGE_CHANGE:
 			setGPSText(getGPSinfo(),gps);
+			detectedAnimals=null;
 		break;
 		case VRControl.METHOD_CHANGED:
 			break;
@@ -409,7 +420,7 @@ public abstract class AbstractVRMethod implements VRMethod {
 		candidateMeasurement.vrMethod=vrControl.getCurrentMethod(); 
 		candidateMeasurement.imageTime = vrControl.getImageTime();
 		candidateMeasurement.imageName = new String(vrControl.getImageName());
-		candidateMeasurement.imageAnimal = vrControl.getMeasuredAnimals().size();
+		candidateMeasurement.imageAnimal = vrControl.getNextImageAnimal();
 		candidateMeasurement.calibrationData = calData.clone();
 		candidateMeasurement.heightData = heightData.clone();
 		candidateMeasurement.rangeMethod = vrMethod;
@@ -437,23 +448,115 @@ public abstract class AbstractVRMethod implements VRMethod {
 		double range2 = vrMethod.getRange(vrControl.getCurrentHeight(), angle - Math.PI/180*calData.degreesPerUnit);
 		double error = Math.abs(range1-range2)/2;
 		candidateMeasurement.pixelAccuracy = error;
+		//the pixel error is one pixel, other errors come from the settings. 
+		calcUncertainty(candidateMeasurement, vrMethod, vrControl.getCurrentHeight(), angle, angle, Math.toRadians(calData.degreesPerUnit), 0, true);
 		
 		// calculate the angle correction
 		int imageWidth = vrControl.getVRPanel().getImageWidth();
 		double angCorr = (animalPoint.x - imageWidth/2) * calData.degreesPerUnit;
 		candidateMeasurement.angleCorrection = angCorr;
 				
-		VRMeasurement newMeasurement = AcceptMeasurementDialog.showDialog(null, vrControl, candidateMeasurement);
-		if (newMeasurement != null) {
-			System.out.println("new measurment!");
-			vrControl.getMeasuredAnimals().add(newMeasurement);
-			vrControl.getVRProcess().newVRLoc(newMeasurement);
-		}
+		acceptMeasurement(candidateMeasurement);
 		candidateMeasurement = null;
 				
 		return true;
 	}
 	
+	/**
+	 * Accept a candidate measurement. A copy of the measurement is added to the measured animals for the image. If measurements are being accepted automatically 
+	 * it is saved straight away. Otherwise it is added to the pending measurements, where the user can edit it and accept or reject it along with other measurements, 
+	 * and is shown on the image until then. 
+	 * @param measurement- the candidate measurement. 
+	 * @return true if the measurement was saved, false if it is waiting to be accepted. 
+	 */
+	protected boolean acceptMeasurement(VRMeasurement measurement){
+		VRMeasurement newMeasurement=measurement.clone();
+		if (vrControl.getMeasuredAnimals()!=null) vrControl.getMeasuredAnimals().add(newMeasurement);
+		if (autoAccept) vrControl.getVRProcess().newVRLoc(newMeasurement);
+		else vrControl.addPendingMeasurement(newMeasurement);
+		return autoAccept;
+	}
+	
+	/**
+	 * Search the current image for possible animals. Only the part of the image below the horizon is searched. The horizon is taken from the horizon points if they have been set, otherwise 
+	 * it is found automatically. 
+	 * @return the number of possible animals found. 
+	 */
+	public int detectAnimals(){
+		detectedAnimals=null;
+		if (vrControl.getCurrentImage()==null || vrControl.getCurrentImage().getImage()==null) return 0;
+		BufferedImage image=vrControl.getCurrentImage().getImage();
+		double tilt=0, intercept=Double.NaN;
+		if (horizonPoint1!=null && horizonPoint2!=null && horizonPoint1.x!=horizonPoint2.x){
+			double slope=(double) (horizonPoint2.y-horizonPoint1.y)/(horizonPoint2.x-horizonPoint1.x);
+			tilt=Math.atan(-slope);
+			intercept=horizonPoint1.y-slope*horizonPoint1.x;
+		}
+		else {
+			HorizonDetector horizonDetector=new HorizonDetector();
+			if (horizonDetector.findHorizon(image)){
+				tilt=horizonDetector.getTilt();
+				intercept=horizonDetector.getIntercept();
+			}
+		}
+		detectedAnimals=new AnimalDetector().findAnimals(image, tilt, intercept);
+		return detectedAnimals.size();
+	}
+	
+	/**
+	 * Measure all the possible animals found by {@link #detectAnimals()}. 
+	 * @param review- true to add each measurement to the pending measurements for review, false to accept all measurements. 
+	 * @return the number of measurements made. 
+	 */
+	public int measureDetectedAnimals(boolean review){
+		if (detectedAnimals==null) return 0;
+		int n0=vrControl.getMeasuredAnimals()==null ? 0 : vrControl.getMeasuredAnimals().size();
+		autoAccept=!review;
+		vrControl.getVRProcess().startBatch();
+		try {
+			for (AnimalDetector.Candidate candidate: detectedAnimals){
+				if (!measureDetectedAnimal(candidate.point)) break;
+			}
+		}
+		finally {
+			autoAccept=false;
+			vrControl.getVRProcess().endBatch();
+		}
+		detectedAnimals=null;
+		vrControl.getVRPanel().repaint();
+		return (vrControl.getMeasuredAnimals()==null ? 0 : vrControl.getMeasuredAnimals().size())-n0;
+	}
+	
+	/**
+	 * Measure an animal found by the detector. By default the animal is measured from the horizon, methods which measure animals a different way should override this. 
+	 * @param imPoint- the animal point on the image. 
+	 * @return false if the method is not ready to measure animals. 
+	 */
+	protected boolean measureDetectedAnimal(Point imPoint){
+		if (horizonPoint1 == null || horizonPoint2 == null) return false;
+		return newAnimalMeasurement_Horizon(imPoint);
+	}
+	
+	/**
+	 * Draw the possible animals found by the detector. 
+	 * @param g- graphics handle. 
+	 */
+	public void drawDetectedAnimals(Graphics g){
+		ArrayList<AnimalDetector.Candidate> detected=detectedAnimals;
+		if (detected==null) return;
+		PamSymbol symbol=VRPanel.detectedSymbol.getPamSymbol();
+		for (AnimalDetector.Candidate candidate: detected){
+			symbol.draw(g, vrControl.getVRPanel().imageToScreen(candidate.point));
+		}
+	}
+	
+	/**
+	 * @return possible animals found in the current image or null if the detector has not been run. 
+	 */
+	public ArrayList<AnimalDetector.Candidate> getDetectedAnimals() {
+		return detectedAnimals;
+	}
+	
 	protected void addAnimals(Graphics g) {
 		ArrayList<VRMeasurement> vrms = vrControl.getMeasuredAnimals();
 		if (vrms != null) {
@@ -497,6 +600,7 @@ public abstract class AbstractVRMethod implements VRMethod {
 		horizonPoint1 = horizonPoint2 =null;
 		vrControl.setMeasuredAnimals(null);
 		candidateMeasurement = null;
+		detectedAnimals = null;
 	}
 	
 	public VRMeasurement getCandidateMeasurement() {
@@ -515,11 +619,36 @@ public abstract class AbstractVRMethod implements VRMethod {
 		return imageHeading;
 	}
 	
+	/**
+	 * Estimate the range and location confidence intervals of a measurement by Monte Carlo sampling if this is turned on in the settings (see RangeUncertainty). 
+	 * The range error set by the method is kept. The location interval is only estimated if the measurement has a bearing and location. 
+	 * @param measurement- the measurement. 
+	 * @param rangeMethod- method used to calculate the range. 
+	 * @param height- camera height in meters. 
+	 * @param angle- angle passed to the range method in radians. 
+	 * @param calibratedAngle- the part of the angle in radians measured in pixels, which scales with the calibration error. 0 if the angle does not depend on the calibration. 
+	 * @param angleStd- standard deviation of the angle from the measurement itself in radians. 
+	 * @param bearingStd- standard deviation of the bearing from the measurement itself in degrees. 
+	 * @param compassHeading- true if the bearing depends on the camera heading, false if it is found another way e.g. from landmarks. 
+	 */
+	protected void calcUncertainty(VRMeasurement measurement, VRHorzCalcMethod rangeMethod, double height, double angle, double calibratedAngle, double angleStd, double bearingStd, boolean compassHeading){
+		VRParameters vrParams=vrControl.getVRParams();
+		if (!vrParams.monteCarloErrors || vrParams.monteCarloSamples<2) return;
+		RangeUncertainty rangeUncertainty=RangeUncertainty.fromParams(rangeMethod, vrParams);
+		if (!compassHeading) rangeUncertainty.setHeadingStd(0);
+		boolean hasLocation=measurement.locBearing!=null && measurement.locLatLong!=null;
+		RangeUncertainty.Result result=rangeUncertainty.estimate(height, angle, calibratedAngle, angleStd, hasLocation ? measurement.locBearing : Double.NaN, bearingStd);
+		if (result.getNValid()<2) return;
+		measurement.locDistanceLower=result.getRangeLower();
+		measurement.locDistanceUpper=result.getRangeUpper();
+		if (hasLocation && !Double.isNaN(result.getLocationError())) measurement.locLatLongError=result.getLocationError();
+	}
+	
 	/**
 	 * Calculates the lat long of an animal based on heading, range and the image origin. 
 	 * @param vrMeasurment- the lat long is added to a the imageLatLong field in the measurment. 
 	 */
-	public void calcLocLatLong(VRMeasurement vrMeasurment){
+	public static void calcLocLatLong(VRMeasurement vrMeasurment){
 		//nned three components to calcualte a latLong for the animal
 		if (vrMeasurment.locBearing==null || vrMeasurment.locDistance==null || vrMeasurment.imageOrigin==null) return;
 		vrMeasurment.locLatLong=vrMeasurment.imageOrigin.travelDistanceMeters(vrMeasurment.locBearing, vrMeasurment.locDistance);
@@ -0,0 +1,323 @@
+package videoRangeLegacy.vrmethods;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Finds possible animals in an image, i.e. blows, splashes and fins which stand out from the sea around them. Only the part of the image below the horizon is searched.
+ * <p>
+ * The image is split into square tiles which are processed in parallel. In each tile the mean and standard deviation of the sea are estimated (ignoring outliers) and pixels which are much brighter (blows and splashes)
+ * or much darker (fins and backs) than the sea are grouped into blobs. Blobs split by the edge of a tile are then joined and blobs which are the wrong size are rejected. Candidates are ranked by
+ * contrast and size.
+ */
+public class AnimalDetector {
+
+	/**
+	 * Width and height of each tile (pixels).
+	 */
+	private final static int TILE_SIZE=128;
+
+	/**
+	 * Number of standard deviations from the sea mean for a pixel to be part of a blob.
+	 */
+	private final static double THRESHOLD=4;
+
+	/**
+	 * Minimum difference from the sea mean for a pixel to be part of a blob (grey levels). Stops noise being detected in very flat sea.
+	 */
+	private final static double MIN_CONTRAST=12;
+
+	/**
+	 * Minimum and maximum blob area (pixels).
+	 */
+	private final static int MIN_AREA=6;
+	private final static int MAX_AREA=5000;
+
+	/**
+	 * Pixels closer than this to the horizon are not searched as the horizon itself is a strong edge (pixels).
+	 */
+	private final static int HORIZON_MARGIN=6;
+
+	/**
+	 * Maximum number of candidates returned.
+	 */
+	public final static int MAX_CANDIDATES=50;
+
+	private final static byte BRIGHT=1;
+	private final static byte DARK=2;
+
+	/**
+	 * A possible animal.
+	 */
+	public static class Candidate {
+
+		/**
+		 * Centre of the blob on the image.
+		 */
+		public final Point point;
+
+		/**
+		 * Mean contrast (standard deviations) times the square root of the area. Higher is more likely to be an animal.
+		 */
+		public final double score;
+
+		/**
+		 * Number of pixels in the blob.
+		 */
+		public final int area;
+
+		/**
+		 * True if the blob is brighter than the sea (blow or splash), false if darker (fin or back).
+		 */
+		public final boolean bright;
+
+		private Candidate(Point point, double score, int area, boolean bright){
+			this.point=point;
+			this.score=score;
+			this.area=area;
+			this.bright=bright;
+		}
+	}
+
+	/**
+	 * Part of a blob found in one tile. Blobs touching the edge of a tile are joined with blobs in neighbouring tiles.
+	 */
+	private static class Blob {
+		double sumX, sumY, sumContrast;
+		int area;
+		int minX, minY, maxX, maxY;
+		byte type;
+		boolean edge;
+		Blob parent=this;
+
+		Blob root(){
+			Blob b=this;
+			while (b.parent!=b) b=b.parent;
+			parent=b;
+			return b;
+		}
+
+		void add(Blob other){
+			sumX+=other.sumX;
+			sumY+=other.sumY;
+			sumContrast+=other.sumContrast;
+			area+=other.area;
+			minX=Math.min(minX, other.minX);
+			minY=Math.min(minY, other.minY);
+			maxX=Math.max(maxX, other.maxX);
+			maxY=Math.max(maxY, other.maxY);
+			other.parent=this;
+		}
+	}
+
+	public AnimalDetector(){
+
+	}
+
+	/**
+	 * Find possible animals in an image.
+	 * @param image- the image.
+	 * @param horizonTilt- tilt of the horizon in radians, positive if the horizon rises from left to right.
+	 * @param horizonIntercept- y pixel of the horizon at the left hand edge of the image. NaN if the horizon is unknown, in which case the whole image is searched.
+	 * @return candidates, highest score first.
+	 */
+	public ArrayList<Candidate> findAnimals(BufferedImage image, double horizonTilt, double horizonIntercept){
+		ArrayList<Candidate> candidates=new ArrayList<Candidate>();
+		if (image==null) return candidates;
+		final int w=image.getWidth();
+		final int h=image.getHeight();
+
+		//first row to search in each column.
+		final int[] top=new int[w];
+		double slope=-Math.tan(horizonTilt);
+		for (int x=0; x<w; x++){
+			top[x]=Double.isNaN(horizonIntercept) ? 0 : (int) Math.max(0, Math.min(h, Math.ceil(horizonIntercept+slope*x)+HORIZON_MARGIN));
+		}
+
+		//grey scale image. Rows are converted in parallel.
+		final float[] grey=new float[w*h];
+		IntStream.range(0, h).parallel().forEach(y -> {
+			int[] rgb=image.getRGB(0, y, w, 1, null, 0, w);
+			for (int x=0; x<w; x++){
+				grey[y*w+x]=0.299f*((rgb[x]>>16)&0xff)+0.587f*((rgb[x]>>8)&0xff)+0.114f*(rgb[x]&0xff);
+			}
+		});
+
+		//find blobs in each tile in parallel. Each tile only writes to its own part of the mask.
+		final int nTilesX=(w+TILE_SIZE-1)/TILE_SIZE;
+		final int nTilesY=(h+TILE_SIZE-1)/TILE_SIZE;
+		final byte[] mask=new byte[w*h];
+		@SuppressWarnings("unchecked")
+		final ArrayList<Blob>[] tileBlobs=new ArrayList[nTilesX*nTilesY];
+		IntStream.range(0, nTilesX*nTilesY).parallel().forEach(tile -> {
+			int x0=(tile%nTilesX)*TILE_SIZE;
+			int y0=(tile/nTilesX)*TILE_SIZE;
+			tileBlobs[tile]=findBlobs(grey, mask, top, w, x0, y0, Math.min(w, x0+TILE_SIZE), Math.min(h, y0+TILE_SIZE));
+		});
+
+		//join blobs which were split by the edge of a tile.
+		ArrayList<Blob> blobs=new ArrayList<Blob>();
+		ArrayList<Blob> edgeBlobs=new ArrayList<Blob>();
+		for (int i=0; i<tileBlobs.length; i++){
+			if (tileBlobs[i]==null) continue;
+			for (Blob blob: tileBlobs[i]){
+				if (blob.edge) edgeBlobs.add(blob);
+				else blobs.add(blob);
+			}
+		}
+		Blob a, b;
+		for (int i=0; i<edgeBlobs.size(); i++){
+			for (int j=i+1; j<edgeBlobs.size(); j++){
+				a=edgeBlobs.get(i).root();
+				b=edgeBlobs.get(j).root();
+				if (a==b || a.type!=b.type) continue;
+				if (a.minX>b.maxX+1 || b.minX>a.maxX+1 || a.minY>b.maxY+1 || b.minY>a.maxY+1) continue;
+				if (touching(mask, w, edgeBlobs.get(i), edgeBlobs.get(j))) a.add(b);
+			}
+		}
+		for (Blob blob: edgeBlobs){
+			if (blob.root()==blob) blobs.add(blob);
+		}
+
+		for (Blob blob: blobs){
+			if (blob.area<MIN_AREA || blob.area>MAX_AREA) continue;
+			candidates.add(new Candidate(new Point((int) Math.round(blob.sumX/blob.area), (int) Math.round(blob.sumY/blob.area)),
+					blob.sumContrast/blob.area*Math.sqrt(blob.area), blob.area, blob.type==BRIGHT));
+		}
+		candidates.sort((c1, c2) -> Double.compare(c2.score, c1.score));
+		while (candidates.size()>MAX_CANDIDATES) candidates.remove(candidates.size()-1);
+		return candidates;
+	}
+
+	/**
+	 * Check whether two blobs in neighbouring tiles have pixels next to each other across a tile edge.
+	 */
+	private static boolean touching(byte[] mask, int w, Blob a, Blob b){
+		//the blobs are in different tiles so any edge they share is a vertical or horizontal tile edge.
+		int minX=Math.max(a.minX, b.minX)-1;
+		int maxX=Math.min(a.maxX, b.maxX)+1;
+		int minY=Math.max(a.minY, b.minY)-1;
+		int maxY=Math.min(a.maxY, b.maxY)+1;
+		int h=mask.length/w;
+		for (int y=Math.max(0, minY); y<=Math.min(h-1, maxY); y++){
+			for (int x=Math.max(0, minX); x<=Math.min(w-1, maxX); x++){
+				if (mask[y*w+x]==a.type && (x+1)<w && (x+1)%TILE_SIZE==0 && mask[y*w+x+1]==a.type) return true;
+				if (mask[y*w+x]==a.type && (y+1)<h && (y+1)%TILE_SIZE==0 && mask[(y+1)*w+x]==a.type) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Find blobs in one tile.
+	 * @return blobs in the tile, or null if no part of the tile is below the horizon.
+	 */
+	private static ArrayList<Blob> findBlobs(float[] grey, byte[] mask, int[] top, int w, int x0, int y0, int x1, int y1){
+		//sea statistics. A second pass ignores outliers so that animals and glints do not increase the standard deviation.
+		double sum=0, sum2=0;
+		int n=0;
+		float g;
+		for (int y=y0; y<y1; y++){
+			for (int x=x0; x<x1; x++){
+				if (y<top[x]) continue;
+				g=grey[y*w+x];
+				sum+=g;
+				sum2+=g*g;
+				n++;
+			}
+		}
+		if (n<MIN_AREA*4) return null;
+		double mean=sum/n;
+		double std=Math.sqrt(Math.max(0, sum2/n-mean*mean));
+		double limit=3*std;
+		sum=sum2=0;
+		n=0;
+		for (int y=y0; y<y1; y++){
+			for (int x=x0; x<x1; x++){
+				if (y<top[x]) continue;
+				g=grey[y*w+x];
+				if (Math.abs(g-mean)>limit) continue;
+				sum+=g;
+				sum2+=g*g;
+				n++;
+			}
+		}
+		if (n>0){
+			mean=sum/n;
+			std=Math.sqrt(Math.max(0, sum2/n-mean*mean));
+		}
+		double threshold=Math.max(THRESHOLD*std, MIN_CONTRAST);
+
+		double diff;
+		for (int y=y0; y<y1; y++){
+			for (int x=x0; x<x1; x++){
+				if (y<top[x]) continue;
+				diff=grey[y*w+x]-mean;
+				if (diff>threshold) mask[y*w+x]=BRIGHT;
+				else if (diff<-threshold) mask[y*w+x]=DARK;
+			}
+		}
+
+		//flood fill the blobs. Filled pixels are marked by negating the mask value.
+		ArrayList<Blob> blobs=new ArrayList<Blob>();
+		int[] stack=new int[(x1-x0)*(y1-y0)];
+		int nStack, index, px, py;
+		byte type;
+		Blob blob;
+		double contrastScale=std>0 ? 1/std : 1/MIN_CONTRAST;
+		for (int y=y0; y<y1; y++){
+			for (int x=x0; x<x1; x++){
+				type=mask[y*w+x];
+				if (type<=0) continue;
+				blob=new Blob();
+				blob.type=type;
+				blob.minX=blob.maxX=x;
+				blob.minY=blob.maxY=y;
+				mask[y*w+x]=(byte) -type;
+				stack[0]=y*w+x;
+				nStack=1;
+				while (nStack>0){
+					index=stack[--nStack];
+					px=index%w;
+					py=index/w;
+					blob.sumX+=px;
+					blob.sumY+=py;
+					blob.sumContrast+=Math.abs(grey[index]-mean)*contrastScale;
+					blob.area++;
+					if (px<blob.minX) blob.minX=px;
+					if (px>blob.maxX) blob.maxX=px;
+					if (py<blob.minY) blob.minY=py;
+					if (py>blob.maxY) blob.maxY=py;
+					if (px==x0 || px==x1-1 || py==y0 || py==y1-1) blob.edge=true;
+					if (px>x0 && mask[index-1]==type){
+						mask[index-1]=(byte) -type;
+						stack[nStack++]=index-1;
+					}
+					if (px<x1-1 && mask[index+1]==type){
+						mask[index+1]=(byte) -type;
+						stack[nStack++]=index+1;
+					}
+					if (py>y0 && mask[index-w]==type){
+						mask[index-w]=(byte) -type;
+						stack[nStack++]=index-w;
+					}
+					if (py<y1-1 && mask[index+w]==type){
+						mask[index+w]=(byte) -type;
+						stack[nStack++]=index+w;
+					}
+				}
+				blobs.add(blob);
+			}
+		}
+		//restore the mask values so blobs can be joined across tile edges.
+		for (int y=y0; y<y1; y++){
+			for (int x=x0; x<x1; x++){
+				if (mask[y*w+x]<0) mask[y*w+x]=(byte) -mask[y*w+x];
+			}
+		}
+		return blobs;
+	}
+
+}
@@ -0,0 +1,191 @@
+package videoRangeLegacy.vrmethods;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Automatically finds the horizon in an image. The image is split into a number of vertical strips and in each strip the row with the strongest vertical change in brightness (usually the boundary between sky and sea)
+ * is found. A straight line is then fitted through these points, rejecting strips where the strongest edge is not on the horizon (e.g. boats, birds or land).
+ * <p>
+ * The image is sub sampled so the time taken does not depend much on the image size. The tilt follows the same convention as the horizon method, i.e. the angle of the horizon above the image x axis.
+ */
+public class HorizonDetector {
+
+	/**
+	 * Number of vertical strips to search for the horizon.
+	 */
+	private final static int NSTRIPS=64;
+
+	/**
+	 * Maximum number of rows sampled in each strip.
+	 */
+	private final static int MAX_ROWS=600;
+
+	/**
+	 * Number of pixels across each strip which are averaged.
+	 */
+	private final static int STRIP_WIDTH=5;
+
+	/**
+	 * Minimum fraction of strips which must agree with the fitted horizon line.
+	 */
+	private final static double MIN_INLIER_FRACTION=0.4;
+
+	/**
+	 * Result of a horizon search.
+	 */
+	private double tilt;
+	private double intercept;
+	private double residual;
+	private int nInliers;
+
+	public HorizonDetector(){
+
+	}
+
+	/**
+	 * Search for the horizon in an image.
+	 * @param image- the image.
+	 * @return true if a horizon was found.
+	 */
+	public boolean findHorizon(BufferedImage image){
+		if (image==null) return false;
+		int width=image.getWidth();
+		int height=image.getHeight();
+		if (width<NSTRIPS || height<10) return false;
+
+		int rowStep=Math.max(1, height/MAX_ROWS);
+		int nRows=height/rowStep;
+		double[] brightness=new double[nRows];
+		double[] xs=new double[NSTRIPS];
+		double[] ys=new double[NSTRIPS];
+		int nPoints=0;
+
+		int x0, rgb, row;
+		double sum, diff, best;
+		int bestRow;
+		for (int i=0; i<NSTRIPS; i++){
+			x0=(int) ((i+0.5)*width/NSTRIPS)-STRIP_WIDTH/2;
+			x0=Math.max(0, Math.min(width-STRIP_WIDTH, x0));
+			for (int j=0; j<nRows; j++){
+				row=j*rowStep;
+				sum=0;
+				for (int k=0; k<STRIP_WIDTH; k++){
+					rgb=image.getRGB(x0+k, row);
+					sum+=0.299*((rgb>>16)&0xff)+0.587*((rgb>>8)&0xff)+0.114*(rgb&0xff);
+				}
+				brightness[j]=sum/STRIP_WIDTH;
+			}
+			//find the largest change in brightness using a difference of the mean of a few rows above and below.
+			best=0;
+			bestRow=-1;
+			for (int j=3; j<nRows-3; j++){
+				diff=Math.abs((brightness[j-1]+brightness[j-2]+brightness[j-3])-(brightness[j]+brightness[j+1]+brightness[j+2]));
+				if (diff>best){
+					best=diff;
+					bestRow=j;
+				}
+			}
+			if (bestRow<0) continue;
+			xs[nPoints]=x0+STRIP_WIDTH/2.;
+			ys[nPoints]=(bestRow-0.5)*rowStep;
+			nPoints++;
+		}
+		if (nPoints<NSTRIPS*MIN_INLIER_FRACTION) return false;
+
+		return fitLine(xs, ys, nPoints, Math.max(2*rowStep, height/200.));
+	}
+
+	/**
+	 * Fit a straight line through the edge points. Every pair of points defines a candidate line and the line with the most points close to it is chosen (there are few points so this is quick), then the line is refined
+	 * with a least squares fit to the points close to it.
+	 * @param xs- x co-ordinates of the points.
+	 * @param ys- y co-ordinates of the points.
+	 * @param n- number of points.
+	 * @param maxDistance- maximum vertical distance of a point from a line to be counted as on the line (pixels).
+	 * @return true if a line was found.
+	 */
+	private boolean fitLine(double[] xs, double[] ys, int n, double maxDistance){
+		int bestCount=0;
+		double bestSlope=0, bestIntercept=0;
+		double slope, c;
+		int count;
+		for (int i=0; i<n; i++){
+			for (int j=i+1; j<n; j++){
+				if (xs[j]==xs[i]) continue;
+				slope=(ys[j]-ys[i])/(xs[j]-xs[i]);
+				c=ys[i]-slope*xs[i];
+				count=0;
+				for (int k=0; k<n; k++){
+					if (Math.abs(ys[k]-(slope*xs[k]+c))<=maxDistance) count++;
+				}
+				if (count>bestCount){
+					bestCount=count;
+					bestSlope=slope;
+					bestIntercept=c;
+				}
+			}
+		}
+		if (bestCount<NSTRIPS*MIN_INLIER_FRACTION) return false;
+
+		//least squares fit to the inliers.
+		double sx=0, sy=0, sxx=0, sxy=0;
+		int m=0;
+		for (int k=0; k<n; k++){
+			if (Math.abs(ys[k]-(bestSlope*xs[k]+bestIntercept))>maxDistance) continue;
+			sx+=xs[k];
+			sy+=ys[k];
+			sxx+=xs[k]*xs[k];
+			sxy+=xs[k]*ys[k];
+			m++;
+		}
+		double denom=m*sxx-sx*sx;
+		if (denom!=0){
+			bestSlope=(m*sxy-sx*sy)/denom;
+			bestIntercept=(sy-bestSlope*sx)/m;
+		}
+
+		double[] residuals=new double[m];
+		int r=0;
+		for (int k=0; k<n && r<m; k++){
+			double res=Math.abs(ys[k]-(bestSlope*xs[k]+bestIntercept));
+			if (res<=maxDistance) residuals[r++]=res;
+		}
+		Arrays.sort(residuals, 0, r);
+
+		tilt=Math.atan(-bestSlope);
+		intercept=bestIntercept;
+		residual=r>0 ? residuals[r/2] : 0;
+		nInliers=m;
+		return true;
+	}
+
+	/**
+	 * @return the tilt of the horizon in radians. Positive if the horizon rises from left to right in the image.
+	 */
+	public double getTilt() {
+		return tilt;
+	}
+
+	/**
+	 * @return the y pixel of the horizon at the left hand edge (x=0) of the image.
+	 */
+	public double getIntercept() {
+		return intercept;
+	}
+
+	/**
+	 * @return the median distance in pixels of the edge points from the fitted horizon.
+	 */
+	public double getResidual() {
+		return residual;
+	}
+
+	/**
+	 * @return the number of image strips used to fit the horizon.
+	 */
+	public int getNInliers() {
+		return nInliers;
+	}
+
+}
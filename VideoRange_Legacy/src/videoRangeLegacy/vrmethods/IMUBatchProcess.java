@@ -0,0 +1,338 @@
+package videoRangeLegacy.vrmethods;
+
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
+
+import angleMeasurement.AngleDataUnit;
+import videoRangeLegacy.ImageFileFilter;
+import videoRangeLegacy.LocationManager;
+import videoRangeLegacy.PamImage;
+import videoRangeLegacy.VRCalibrationData;
+import videoRangeLegacy.VRControl;
+import videoRangeLegacy.VRHeightData;
+import videoRangeLegacy.VRHorzCalcMethod;
+import videoRangeLegacy.VRMeasurement;
+import videoRangeLegacy.externalSensors.IMUTrack;
+
+/**
+ * Measures animals in a folder of images using the IMU method without opening each image. Animal positions in each image are read from a CSV file (e.g. from an automatic detector or a list made by an observer)
+ * and the IMU attitude, location and camera height is found for each image. Images are processed in parallel and the measurements for each image are passed to the VRProcess data block, or written to a CSV file, in the order of the detection file.
+ * <p>
+ * The detection file has one line per animal with the columns: image file name, x pixel, y pixel and an optional comment. A header line is ignored. If there is no detection file
+ * every image in the folder is read and animals are found automatically with the {@link AnimalDetector}. All animals found are accepted.
+ * <p>
+ * Settings are copied when the batch process is created so this should be created on the AWT thread. {@link #process(File, File, PrintWriter)} can then be called on a background thread. 
+ * Measurements for the data block are handed to the AWT thread in order.
+ */
+public class IMUBatchProcess {
+
+	private VRControl vrControl;
+
+	private IMUMethod imuMethod;
+
+	private IMUTrack imuTrack;
+
+	private double[] calVals;
+
+	private VRCalibrationData calibrationData;
+
+	private VRHorzCalcMethod rangeMethod;
+
+	private VRHeightData heightData;
+
+	private long cameraTimeOffset;
+
+	private long searchInterval;
+
+	private boolean filterIMU;
+
+	private volatile boolean cancelled=false;
+	
+	/**
+	 * True if animals are found automatically rather than read from a detection file. 
+	 */
+	private boolean autoDetect=false;
+
+	/**
+	 * Counts from the last batch.
+	 */
+	private int nImages;
+	private int nMeasurements;
+	private int nMissingImages;
+	private int nNoTime;
+	private int nNoIMU;
+	private int nDetectionErrors;
+
+	/**
+	 * Create a batch process using the current settings. The settings must have a current height and calibration. 
+	 * @param vrControl- the video range control.
+	 * @param imuMethod- the IMU method. Measurements are labelled with this method.
+	 */
+	public IMUBatchProcess(VRControl vrControl, IMUMethod imuMethod){
+		this.vrControl=vrControl;
+		this.imuMethod=imuMethod;
+		imuTrack=vrControl.getIMUListener().getIMUTrack();
+		calVals=vrControl.getIMUListener().getIMUDataBlock().getCalibrationVals().clone();
+		calibrationData=vrControl.getVRParams().getCurrentCalibrationData();
+		rangeMethod=vrControl.getRangeMethods().getCurrentMethod();
+		heightData=vrControl.getVRParams().getCurrentheightData().clone();
+		cameraTimeOffset=vrControl.getVRParams().cameraTimeOffset;
+		searchInterval=IMUMethod.getSearchInterval();
+		filterIMU=vrControl.getVRParams().filterIMU;
+	}
+
+	/**
+	 * Read a detection file. The file is read one line at a time.
+	 * @param file- CSV file with image name, x pixel, y pixel and optionally a comment for each animal.
+	 * @return animal points for each image name in the order they first appear in the file.
+	 * @throws IOException
+	 */
+	public LinkedHashMap<String, ArrayList<VRMeasurement>> readDetections(File file) throws IOException{
+		LinkedHashMap<String, ArrayList<VRMeasurement>> detections=new LinkedHashMap<String, ArrayList<VRMeasurement>>();
+		nDetectionErrors=0;
+		BufferedReader reader=new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String line;
+			String[] fields;
+			String imageName;
+			boolean firstLine=true;
+			VRMeasurement measurement;
+			ArrayList<VRMeasurement> imageDetections;
+			while ((line=reader.readLine())!=null){
+				if (line.trim().length()==0) continue;
+				fields=line.split(",", 4);
+				try {
+					imageName=fields[0].trim().replace("\"", "");
+					measurement=new VRMeasurement(new Point((int) Math.round(Double.parseDouble(fields[1].trim())), (int) Math.round(Double.parseDouble(fields[2].trim()))));
+					if (fields.length>3) measurement.comment=fields[3].trim().replace("\"", "");
+				}
+				catch (Exception e){
+					//the first line may be a header
+					if (!firstLine) nDetectionErrors++;
+					firstLine=false;
+					continue;
+				}
+				firstLine=false;
+				imageDetections=detections.get(imageName);
+				if (imageDetections==null){
+					imageDetections=new ArrayList<VRMeasurement>();
+					detections.put(imageName, imageDetections);
+				}
+				imageDetections.add(measurement);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return detections;
+	}
+
+	/**
+	 * List the images in a folder for automatic detection. 
+	 * @param folder- the image folder. 
+	 * @return an empty list of animals for each image name, in file name order. 
+	 */
+	private LinkedHashMap<String, ArrayList<VRMeasurement>> findImages(File folder){
+		LinkedHashMap<String, ArrayList<VRMeasurement>> images=new LinkedHashMap<String, ArrayList<VRMeasurement>>();
+		ImageFileFilter fileFilter=new ImageFileFilter();
+		File[] files=folder.listFiles();
+		if (files==null) return images;
+		Arrays.sort(files);
+		for (int i=0; i<files.length; i++){
+			if (!files[i].isDirectory() && fileFilter.accept(files[i])) images.put(files[i].getName(), new ArrayList<VRMeasurement>());
+		}
+		return images;
+	}
+
+	/**
+	 * Measure all the detections in a folder of images.
+	 * @param folder- the image folder.
+	 * @param detectionFile- CSV file of animal points in each image. If null animals are found automatically in every image in the folder.
+	 * @param output- CSV output. If null measurements are added to the VRProcess data block.
+	 * @return the number of animals measured.
+	 * @throws IOException if the detection file could not be read.
+	 * @throws InterruptedException
+	 */
+	public int process(File folder, File detectionFile, PrintWriter output) throws IOException, InterruptedException{
+		nImages=nMeasurements=nMissingImages=nNoTime=nNoIMU=0;
+		cancelled=false;
+		autoDetect=detectionFile==null;
+		LinkedHashMap<String, ArrayList<VRMeasurement>> detections=autoDetect ? findImages(folder) : readDetections(detectionFile);
+		if (output!=null) output.println("Image,Animal,ImageTime,X,Y,Heading,Pitch,Tilt,Bearing,BearingError,AnimalPitch,Range,RangeError,Latitude,Longitude,Comment");
+
+		ExecutorService executor=Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+		List<Future<ArrayList<VRMeasurement>>> futures=new ArrayList<Future<ArrayList<VRMeasurement>>>(detections.size());
+		//save all measurements in one database batch rather than committing each row. The data block is only used on the AWT thread.
+		if (output==null) SwingUtilities.invokeLater(() -> vrControl.getVRProcess().startBatch());
+		try {
+			for (final Map.Entry<String, ArrayList<VRMeasurement>> entry: detections.entrySet()){
+				futures.add(executor.submit(() -> measureImage(new File(folder, entry.getKey()), entry.getValue())));
+			}
+			//results are passed on in order as each image is finished so measurements are not all held until the end.
+			ArrayList<VRMeasurement> measurements;
+			for (int i=0; i<futures.size(); i++){
+				if (cancelled) break;
+				try {
+					measurements=futures.get(i).get();
+				}
+				catch (ExecutionException e) {
+					System.out.println("IMUBatchProcess: could not measure image: " + e.getCause());
+					continue;
+				}
+				futures.set(i, null);
+				if (measurements==null) continue;
+				nImages++;
+				if (output!=null){
+					for (VRMeasurement measurement: measurements) writeMeasurement(output, measurement);
+				}
+				else {
+					final ArrayList<VRMeasurement> imageMeasurements=measurements;
+					SwingUtilities.invokeLater(() -> vrControl.getVRProcess().newVRLocs(imageMeasurements));
+				}
+				nMeasurements+=measurements.size();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+			if (output==null) SwingUtilities.invokeLater(() -> vrControl.getVRProcess().endBatch());
+		}
+		return nMeasurements;
+	}
+
+	/**
+	 * Measure all the animals in one image. Only the image header is read unless animals are found automatically.
+	 * @param file- the image file.
+	 * @param measurements- measurements containing the animal points in the image.
+	 * @return the measurements or null if the image could not be measured.
+	 */
+	private ArrayList<VRMeasurement> measureImage(File file, ArrayList<VRMeasurement> measurements){
+		if (cancelled) return null;
+		if (!file.exists()){
+			synchronized (this) {nMissingImages++;}
+			return null;
+		}
+		PamImage image=new PamImage(file, autoDetect);
+		if (!image.imageOK() || image.getTimeMilliseconds()==0){
+			synchronized (this) {nNoTime++;}
+			return null;
+		}
+		long imageTime=image.getTimeMilliseconds()+cameraTimeOffset;
+		AngleDataUnit imuData=IMUMethod.searchIMUTrack(imuTrack, calVals, imageTime, searchInterval, filterIMU);
+		if (imuData==null){
+			synchronized (this) {nNoIMU++;}
+			return null;
+		}
+		if (autoDetect) detectAnimals(image, measurements);
+
+		Point imageCentre=new Point(image.getWidth()/2, image.getHeight()/2);
+		double height=vrControl.getCameraHeight(imageTime);
+		LocationManager locationManager=vrControl.getLocationManager();
+		VRMeasurement measurement;
+		for (int i=0; i<measurements.size(); i++){
+			measurement=measurements.get(i);
+			IMUMethod.calcIMUMeasurement(measurement, imuData, measurement.animalPoint, imageCentre, calibrationData, rangeMethod, height);
+			measurement.vrMethod=imuMethod;
+			measurement.imageTime=imageTime;
+			measurement.imageName=file.getName();
+			measurement.imageAnimal=i;
+			measurement.heightData=heightData;
+			measurement.rangeMethod=rangeMethod;
+			measurement.imageOrigin=locationManager.getLocation(imageTime, image);
+			AbstractVRMethod.calcLocLatLong(measurement);
+		}
+		return measurements;
+	}
+
+	/**
+	 * Find animals below the horizon in an image. 
+	 * @param image- the image. 
+	 * @param measurements- a measurement is added for each animal found. 
+	 */
+	private static void detectAnimals(PamImage image, ArrayList<VRMeasurement> measurements){
+		double tilt=0, intercept=Double.NaN;
+		HorizonDetector horizonDetector=new HorizonDetector();
+		if (horizonDetector.findHorizon(image.getImage())){
+			tilt=horizonDetector.getTilt();
+			intercept=horizonDetector.getIntercept();
+		}
+		VRMeasurement measurement;
+		for (AnimalDetector.Candidate candidate: new AnimalDetector().findAnimals(image.getImage(), tilt, intercept)){
+			measurement=new VRMeasurement(candidate.point);
+			measurement.comment=candidate.bright ? "Auto detected blow/splash" : "Auto detected fin";
+			measurements.add(measurement);
+		}
+	}
+
+	private void writeMeasurement(PrintWriter output, VRMeasurement m){
+		output.printf("%s,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.4f,%.2f,%.2f,%s,%s,%s%n", m.imageName, m.imageAnimal, m.imageTime, m.animalPoint.x, m.animalPoint.y,
+				m.imageBearing, m.imagePitch, m.imageTilt, m.locBearing, m.locBearingError, m.locPitch, m.locDistance, m.locDistanceError,
+				m.locLatLong==null ? "" : Double.toString(m.locLatLong.getLatitude()), m.locLatLong==null ? "" : Double.toString(m.locLatLong.getLongitude()), m.comment==null ? "" : m.comment);
+	}
+
+	/**
+	 * Stop processing. Images which have already been measured are still output.
+	 */
+	public void cancel(){
+		cancelled=true;
+	}
+
+	/**
+	 * @return the number of images measured in the last batch.
+	 */
+	public int getNImages() {
+		return nImages;
+	}
+
+	/**
+	 * @return the number of animals measured in the last batch.
+	 */
+	public int getNMeasurements() {
+		return nMeasurements;
+	}
+
+	/**
+	 * @return the number of images in the detection file which were not in the folder.
+	 */
+	public synchronized int getNMissingImages() {
+		return nMissingImages;
+	}
+
+	/**
+	 * @return the number of images without a time.
+	 */
+	public synchronized int getNNoTime() {
+		return nNoTime;
+	}
+
+	/**
+	 * @return the number of images without IMU data.
+	 */
+	public synchronized int getNNoIMU() {
+		return nNoIMU;
+	}
+
+	/**
+	 * @return the number of lines in the detection file which could not be read.
+	 */
+	public int getNDetectionErrors() {
+		return nDetectionErrors;
+	}
+
+}
@@ -18,14 +18,14 @@ import javax.swing.JTextField;
 import javax.swing.plaf.LayerUI;
 
 import angleMeasurement.AngleDataUnit;
+import videoRangeLegacy.VRCalibrationData;
 import videoRangeLegacy.VRControl;
+import videoRangeLegacy.VRHorzCalcMethod;
 import videoRangeLegacy.VRMeasurement;
-import videoRangeLegacy.panels.AcceptMeasurementDialog;
+import videoRangeLegacy.externalSensors.IMUTrack;
 import videoRangeLegacy.panels.VRPanel;
 import videoRangeLegacy.panels.VRParametersDialog;
 import videoRangeLegacy.panels.VRSidePanel;
-import IMU.IMUDataBlock;
-import PamUtils.PamArrayUtils;
 import PamView.PamColors;
 import PamView.PamSymbol;
 import PamView.dialog.PamDialog;
@@ -250,6 +250,13 @@ public  class IMUMethod extends AbstractVRMethod  {
 		
 	}
 	
+	@Override
+	protected boolean measureDetectedAnimal(Point imPoint){
+		if (currentIMUData==null) return false;
+		measureAnimal(imPoint);
+		return true;
+	}
+	
 	private void measureAnimal(Point imPoint){
 		VRMeasurement possibleMeasurement=new VRMeasurement(imPoint);
 		newAnimalMeasuremnt_IMU(imPoint, possibleMeasurement);
@@ -263,80 +270,38 @@ public  class IMUMethod extends AbstractVRMethod  {
 	private boolean newAnimalMeasuremnt_IMU(Point imPoint, VRMeasurement possibleMeasurement){
 		if (currentIMUData==null) return false;
 		
-		//set image tilt
-		possibleMeasurement.imageBearing=Math.toDegrees(currentIMUData.getTrueHeading()); 
-		possibleMeasurement.imageBearingErr=Math.toDegrees(currentIMUData.getErrorHeading()); 
-		possibleMeasurement.imagePitch=Math.toDegrees(currentIMUData.getPitch()); 
-		possibleMeasurement.imagePitchErr=Math.toDegrees(currentIMUData.getErrorPitch()); 
-		possibleMeasurement.imageTilt=Math.toDegrees(currentIMUData.getTilt()); 
-		possibleMeasurement.imageTiltErr=Math.toDegrees(currentIMUData.getErrorTilt()); 
-		
-		//set calibration value
-		possibleMeasurement.calibrationData=vrControl.getVRParams().getCalibrationDatas().get( vrControl.getVRParams().getCurrentCalibrationIndex());
-		Point imageCentre=new Point(vrControl.getVRPanel().getImageWidth()/2, vrControl.getVRPanel().getImageHeight()/2);
-		
-		//calculate the bearing relative to the centre of the image 
-		double animalBearing=VRLandMarkMethod.calcAnimalBearing(currentIMUData.getTilt(), imageCentre, imPoint, 1/vrControl.getVRParams().getCalibrationDatas().get( vrControl.getVRParams().getCurrentCalibrationIndex()).degreesPerUnit);
-		possibleMeasurement.locBearing=Math.toDegrees(animalBearing)+possibleMeasurement.imageBearing;
-		possibleMeasurement.locBearingError=possibleMeasurement.imageBearingErr;
-		possibleMeasurement.angleCorrection=Math.toDegrees(animalBearing);
-		
-		//calculate the pitch relative to the centre of the image 
-		double animalPitch=-VRLandMarkMethod.calcAnimalPitch(currentIMUData.getTilt(), imageCentre,  imPoint, 1/vrControl.getVRParams().getCalibrationDatas().get( vrControl.getVRParams().getCurrentCalibrationIndex()).degreesPerUnit);
-		possibleMeasurement.locPitch=Math.toDegrees(animalPitch)+possibleMeasurement.imagePitch;
-		possibleMeasurement.locPitchError=possibleMeasurement.imagePitchErr;
-		
 		//paint the photo with possible measurements.
 		candidateMeasurement=possibleMeasurement;
-		//add symbols
-		vrControl.getVRPanel().repaint();
 		
 		if (vrControl.getMeasuredAnimals()==null){
 			vrControl.setMeasuredAnimals(new ArrayList<VRMeasurement>());
 		}
 		
+		Point imageCentre=new Point(vrControl.getVRPanel().getImageWidth()/2, vrControl.getVRPanel().getImageHeight()/2);
+		calcIMUMeasurement(candidateMeasurement, currentIMUData, imPoint, imageCentre, vrControl.getVRParams().getCalibrationDatas().get( vrControl.getVRParams().getCurrentCalibrationIndex()), 
+				vrControl.getRangeMethods().getCurrentMethod(), vrControl.getCurrentHeight());
+		//add symbols
+		vrControl.getVRPanel().repaint();
+		
 		candidateMeasurement.vrMethod=this; 
 
 		candidateMeasurement.imageTime=vrControl.getImageTime();
 		candidateMeasurement.imageName = new String(vrControl.getImageName());
-		candidateMeasurement.imageAnimal = vrControl.getMeasuredAnimals().size();
+		candidateMeasurement.imageAnimal = vrControl.getNextImageAnimal();
 		candidateMeasurement.heightData = vrControl.getVRParams().getCurrentheightData().clone();
 		candidateMeasurement.rangeMethod = vrControl.getRangeMethods().getCurrentMethod();
 		
-		//calc and set the range.
-		candidateMeasurement.locDistance=vrControl.getRangeMethods().getCurrentMethod().getRange(vrControl.getCurrentHeight(), -Math.toRadians(candidateMeasurement.locPitch));
-		
-		//set distance errors
-		//calc errors due to pitch error. The pitch error is calculated from the standard deviation of the averaged IMU data. 
-		double range1Er=candidateMeasurement.locDistance-Math.abs(vrControl.getRangeMethods().getCurrentMethod().getRange(vrControl.getCurrentHeight(), -Math.toRadians(candidateMeasurement.locPitch+candidateMeasurement.imagePitchErr)));
-		double range2Er=candidateMeasurement.locDistance-Math.abs(vrControl.getRangeMethods().getCurrentMethod().getRange(vrControl.getCurrentHeight(), -Math.toRadians(candidateMeasurement.locPitch-candidateMeasurement.imagePitchErr)));
-		candidateMeasurement.locDistanceError=Math.abs(range1Er-range2Er)/2;
-		//calc pixel errors
-		double range1Pxl = vrControl.getRangeMethods().getCurrentMethod().getRange(vrControl.getCurrentHeight(), -Math.toRadians(candidateMeasurement.locPitch + candidateMeasurement.calibrationData.degreesPerUnit));
-		double range2Pxl = vrControl.getRangeMethods().getCurrentMethod().getRange(vrControl.getCurrentHeight(), -Math.toRadians(candidateMeasurement.locPitch - candidateMeasurement.calibrationData.degreesPerUnit));
-		double pxlError = Math.abs(range1Pxl-range2Pxl)/2;
-		System.out.println("pxl Error: "+pxlError);
-		
-		//add pixel error and error due to averaging imu pitch. 
-		candidateMeasurement.locDistanceError=Math.sqrt(Math.pow(pxlError,2)+Math.pow(candidateMeasurement.locDistanceError,2));
-		
 		//try and work out a location for the animal
 		candidateMeasurement.imageOrigin=vrControl.getLocationManager().getLocation(vrControl.getImageTime());
 		calcLocLatLong(candidateMeasurement);
+		//the bearing error is the spread of the IMU heading, compass error is added from the settings. Only the pitch of the animal relative to the image centre depends on the calibration. 
+		calcUncertainty(candidateMeasurement, candidateMeasurement.rangeMethod, vrControl.getCurrentHeight(), -Math.toRadians(candidateMeasurement.locPitch), 
+				-Math.toRadians(candidateMeasurement.locPitch-candidateMeasurement.imagePitch), 
+				Math.toRadians(Math.sqrt(Math.pow(candidateMeasurement.imagePitchErr,2)+Math.pow(candidateMeasurement.calibrationData.degreesPerUnit,2))), 
+				candidateMeasurement.locBearingError, true);
 		
-		System.out.println("IMU Method: Animal Loc.: Bearing: "+candidateMeasurement.locBearing+ " Pitch: "+candidateMeasurement.locPitch);
-		
-		VRMeasurement newMeasurement = AcceptMeasurementDialog.showDialog(null, vrControl, candidateMeasurement);
-
-		
-		if (newMeasurement != null) {
-			vrControl.getMeasuredAnimals().add(newMeasurement);
-			vrControl.getVRProcess().newVRLoc(newMeasurement);
-		}
-		else {
-			candidateMeasurement = null;
-			return false;
-		}
+		//the measurement is either saved or waiting to be accepted.
+		acceptMeasurement(candidateMeasurement);
 		
 		candidateMeasurement = null;
 				
@@ -344,6 +309,60 @@ public  class IMUMethod extends AbstractVRMethod  {
 		
 	}
 	
+	/**
+	 * Calculate the bearing, pitch and range of an animal from the IMU angles of an image. This does not use the GUI so can be used for the current image or when batch processing images. 
+	 * @param measurement- the measurement to fill in. 
+	 * @param imuData- IMU angles for the image in radians, including any calibration offsets. 
+	 * @param imPoint- the animal point on the image. 
+	 * @param imageCentre- the centre of the image. 
+	 * @param calibrationData- the camera calibration. 
+	 * @param rangeMethod- the method used to calculate range from pitch. 
+	 * @param height- height of the camera above sea level in meters. 
+	 */
+	public static void calcIMUMeasurement(VRMeasurement measurement, AngleDataUnit imuData, Point imPoint, Point imageCentre, VRCalibrationData calibrationData, VRHorzCalcMethod rangeMethod, double height){
+		Double heading=imuData.getTrueHeading();
+		Double pitch=imuData.getPitch();
+		Double tilt=imuData.getTilt();
+		
+		//set image angles
+		measurement.imageBearing=Math.toDegrees(heading); 
+		measurement.imageBearingErr=Math.toDegrees(imuData.getErrorHeading()); 
+		measurement.imagePitch=Math.toDegrees(pitch); 
+		measurement.imagePitchErr=Math.toDegrees(imuData.getErrorPitch()); 
+		measurement.imageTilt=Math.toDegrees(tilt); 
+		measurement.imageTiltErr=Math.toDegrees(imuData.getErrorTilt()); 
+		
+		//set calibration value
+		measurement.calibrationData=calibrationData;
+		
+		//calculate the bearing relative to the centre of the image 
+		double animalBearing=VRLandMarkMethod.calcAnimalBearing(tilt, imageCentre, imPoint, 1/calibrationData.degreesPerUnit);
+		measurement.locBearing=Math.toDegrees(animalBearing)+measurement.imageBearing;
+		measurement.locBearingError=measurement.imageBearingErr;
+		measurement.angleCorrection=Math.toDegrees(animalBearing);
+		
+		//calculate the pitch relative to the centre of the image 
+		double animalPitch=-VRLandMarkMethod.calcAnimalPitch(tilt, imageCentre,  imPoint, 1/calibrationData.degreesPerUnit);
+		measurement.locPitch=Math.toDegrees(animalPitch)+measurement.imagePitch;
+		measurement.locPitchError=measurement.imagePitchErr;
+		
+		//calc and set the range.
+		measurement.locDistance=rangeMethod.getRange(height, -Math.toRadians(measurement.locPitch));
+		
+		//set distance errors
+		//calc errors due to pitch error. The pitch error is calculated from the standard deviation of the averaged IMU data. 
+		double range1Er=measurement.locDistance-Math.abs(rangeMethod.getRange(height, -Math.toRadians(measurement.locPitch+measurement.imagePitchErr)));
+		double range2Er=measurement.locDistance-Math.abs(rangeMethod.getRange(height, -Math.toRadians(measurement.locPitch-measurement.imagePitchErr)));
+		double pitchError=Math.abs(range1Er-range2Er)/2;
+		//calc pixel errors
+		double range1Pxl = rangeMethod.getRange(height, -Math.toRadians(measurement.locPitch + calibrationData.degreesPerUnit));
+		double range2Pxl = rangeMethod.getRange(height, -Math.toRadians(measurement.locPitch - calibrationData.degreesPerUnit));
+		double pxlError = Math.abs(range1Pxl-range2Pxl)/2;
+		
+		//add pixel error and error due to averaging imu pitch. 
+		measurement.locDistanceError=Math.sqrt(Math.pow(pxlError,2)+Math.pow(pitchError,2));
+	}
+	
 	private void addMeasurementMarks(Graphics g) {
 		drawImageTilt(g, VRLandMarkMethod.landMarkMarker);
 	}
@@ -496,6 +515,10 @@ public  class IMUMethod extends AbstractVRMethod  {
 			findIMUData();
 			updateLabels();
 		break;
+		case VRControl.IMAGE_TIME_CHANGE:
+			findIMUData();
+			updateLabels();
+		break;
 		case VRControl.METHOD_CHANGED:
 			findIMUData();
 			updateLabels();
@@ -517,64 +540,52 @@ public  class IMUMethod extends AbstractVRMethod  {
 		if (vrControl.getCurrentMethod()==this){
 			if (vrControl.getIMUListener()!=null){
 				if (vrControl.getIMUListener().getIMUDataBlock()!=null){
-					 this.currentIMUData=searchIMUDataBlock(vrControl.getIMUListener().getIMUDataBlock(), vrControl.getImageTime(),getSearchInterval());
+					 this.currentIMUData=searchIMUTrack(vrControl.getIMUListener().getIMUTrack(), vrControl.getIMUListener().getIMUDataBlock().getCalibrationVals(), vrControl.getImageTime(),getSearchInterval(), vrControl.getVRParams().filterIMU);
 				}
 			}
 		}
 	}
 	
 	/**
-	 * Search the datablock for angle data. 
-	 * @param imuDataBlock- the current IMU datablock
+	 * Find the IMU angles for an image from the IMU track. 
+	 * @param imuTrack- track of IMU samples.
+	 * @param calVals- calibration values for heading, pitch and tilt which are added to the angles.
 	 * @param timeMillis- the image time
 	 * @param searchInterval- the interval to search for units between
-	 * @return an AngledatUnit containing average values of units within the search window.
+	 * @param filtered- true to use the filtered attitude at the image time. False to use the average of samples within the search interval.  
+	 * @return an AngleDataUnit containing the angles and errors for the image. Null if there are less than two samples in the search interval. 
 	 */
-	public static AngleDataUnit searchIMUDataBlock(IMUDataBlock imuDataBlock, long timeMillis, long searchInterval){
+	public static AngleDataUnit searchIMUTrack(IMUTrack imuTrack, double[] calVals, long timeMillis, long searchInterval, boolean filtered){
 		
 		long millisStart=timeMillis-searchInterval/2;
 		long millisEnd=timeMillis+searchInterval/2;
-		ArrayList<AngleDataUnit> units=imuDataBlock.findUnitsinInterval(millisStart,millisEnd);
 		
-		if (units==null) return null;
-		if (units.size()<=1) return null; 
-		else {
-			
-			double[] calVals=imuDataBlock.getCalibrationVals();
-			
-			ArrayList<Double> headings=new ArrayList<Double>();
-			ArrayList<Double> pitch=new ArrayList<Double>();
-			ArrayList<Double> tilts=new ArrayList<Double>();
-			
-			for (int i=0; i<units.size(); i++){
-				headings.add(units.get(i).getTrueHeading());
-				pitch.add(units.get(i).getPitch());
-				tilts.add(units.get(i).getTilt());
-			}
-			
-			System.out.println("heading.get(0): "+headings.get(0)+ " pitch.get(0): "+pitch.get(0)+" tilts.get(0): "+tilts.get(0));
-			//work out mean values and errors
-			Double[] imuVals=new Double[3];
-			Double[] imuErrors=new Double[3]; 
-			imuVals[0]=PamArrayUtils.mean(headings, 0)+calVals[0];
-			imuVals[1]=PamArrayUtils.mean(pitch, 0)+calVals[1];
-			imuVals[2]=PamArrayUtils.mean(tilts, 0)+calVals[2];
-			
-			System.out.println("heading mean: "+imuVals[0]+ " pitch mean: "+imuVals[1]+" tilts. mean: "+imuVals[2]);
-
-			imuErrors[0]=PamArrayUtils.std(headings, 0);
-			imuErrors[1]=PamArrayUtils.std(pitch, 0);
-			imuErrors[2]=PamArrayUtils.std(tilts, 0);
-			//create a new AngleDataUnit to hold data.
-			AngleDataUnit anglDataUnit=new AngleDataUnit(timeMillis, imuVals, imuErrors);
-			anglDataUnit.setNUnits(headings.size());
-			return anglDataUnit;
-	
+		double[] stats=new double[IMUTrack.NSTATS];
+		int n=imuTrack.getWindowStats(millisStart, millisEnd, stats);
+		if (n<=1) return null; 
+		if (filtered){
+			//replace the window averages with the filtered attitude at the image time. 
+			if (!imuTrack.getAttitude(timeMillis, searchInterval/2, stats)) return null;
 		}
+
+		//work out mean values and errors
+		Double[] imuVals=new Double[3];
+		Double[] imuErrors=new Double[3]; 
+		imuVals[0]=stats[IMUTrack.HEADING]+calVals[0];
+		imuVals[1]=stats[IMUTrack.PITCH]+calVals[1];
+		imuVals[2]=stats[IMUTrack.TILT]+calVals[2];
+
+		imuErrors[0]=stats[IMUTrack.HEADING_STD];
+		imuErrors[1]=stats[IMUTrack.PITCH_STD];
+		imuErrors[2]=stats[IMUTrack.TILT_STD];
+		//create a new AngleDataUnit to hold data.
+		AngleDataUnit anglDataUnit=new AngleDataUnit(timeMillis, imuVals, imuErrors);
+		anglDataUnit.setNUnits(n);
+		return anglDataUnit;
 	}
 	
 	//TODO-make changeable param; 
-	public long getSearchInterval(){
+	public static long getSearchInterval(){
 		return searchInterval; 
 	}
 	
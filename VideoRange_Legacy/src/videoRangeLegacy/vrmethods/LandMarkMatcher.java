@@ -0,0 +1,202 @@
+package videoRangeLegacy.vrmethods;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+/**
+ * Finds landmarks automatically in an image. The expected position of a landmark is projected from a landmark which has already been found, the known angles between the two landmarks and a prior
+ * estimate of the image tilt and calibration. The position is then refined by matching a small reference crop of the landmark, saved the last time the landmark was set by hand, against the image using normalised cross correlation.
+ */
+public class LandMarkMatcher {
+
+	/**
+	 * Width and height of the reference crop saved for each landmark (pixels).
+	 */
+	public final static int TEMPLATE_SIZE=31;
+
+	/**
+	 * Minimum correlation between the reference crop and the image for a match to be accepted.
+	 */
+	public final static double MIN_SCORE=0.7;
+
+	/**
+	 * Minimum and maximum distance to search around the projected position of a landmark (pixels).
+	 */
+	private final static int MIN_SEARCH_RADIUS=30;
+	private final static int MAX_SEARCH_RADIUS=200;
+
+	/**
+	 * Fraction of the distance between landmarks added to the search radius to allow for errors in the prior tilt and calibration.
+	 */
+	private final static double SEARCH_FRACTION=0.1;
+
+	/**
+	 * Correlation of the last match.
+	 */
+	private double score;
+
+	public LandMarkMatcher(){
+
+	}
+
+	/**
+	 * Cut a grey scale reference crop of a landmark from an image.
+	 * @param image- the image.
+	 * @param centre- the landmark point on the image.
+	 * @return grey scale pixels of the crop (TEMPLATE_SIZE by TEMPLATE_SIZE) or null if the landmark is too close to the edge of the image.
+	 */
+	public static byte[] cropTemplate(BufferedImage image, Point centre){
+		int x0=centre.x-TEMPLATE_SIZE/2;
+		int y0=centre.y-TEMPLATE_SIZE/2;
+		if (image==null || x0<0 || y0<0 || x0+TEMPLATE_SIZE>image.getWidth() || y0+TEMPLATE_SIZE>image.getHeight()) return null;
+		int[] rgb=image.getRGB(x0, y0, TEMPLATE_SIZE, TEMPLATE_SIZE, null, 0, TEMPLATE_SIZE);
+		byte[] template=new byte[rgb.length];
+		for (int i=0; i<rgb.length; i++){
+			template[i]=(byte) grey(rgb[i]);
+		}
+		return template;
+	}
+
+	private static int grey(int rgb){
+		return (299*((rgb>>16)&0xff)+587*((rgb>>8)&0xff)+114*(rgb&0xff))/1000;
+	}
+
+	/**
+	 * Project the position of a landmark on the image from the position of another landmark.
+	 * @param knownPoint- position of the known landmark on the image.
+	 * @param bearingDiff- bearing of the landmark minus the bearing of the known landmark in radians.
+	 * @param pitchDiff- pitch of the landmark minus the pitch of the known landmark in radians.
+	 * @param tilt- tilt of the image in radians.
+	 * @param pixelsPerDegree- calibration value.
+	 * @return the expected position of the landmark on the image.
+	 */
+	public static Point projectLandMark(Point knownPoint, double bearingDiff, double pitchDiff, double tilt, double pixelsPerDegree){
+		//bearing and pitch in pixels along and perpendicular to the tilted horizon. This is the inverse of calcBearingDiffAnimal() and calcPitchDiffAnimal().
+		double b=Math.toDegrees(bearingDiff)*pixelsPerDegree;
+		double p=-Math.toDegrees(pitchDiff)*pixelsPerDegree;
+		double cos=Math.cos(tilt);
+		double sin=Math.sin(tilt);
+		return new Point((int) Math.round(knownPoint.x+b*cos+p*sin), (int) Math.round(knownPoint.y-b*sin+p*cos));
+	}
+
+	/**
+	 * Get the search radius around a projected landmark position.
+	 * @param distance- distance in pixels between the known landmark and the projected landmark.
+	 * @return the search radius in pixels.
+	 */
+	public static int getSearchRadius(double distance){
+		return (int) Math.min(MAX_SEARCH_RADIUS, Math.max(MIN_SEARCH_RADIUS, SEARCH_FRACTION*distance));
+	}
+
+	/**
+	 * Find the best match of a reference crop near an expected position. Every pixel within the search radius is tested.
+	 * @param image- the image.
+	 * @param template- grey scale reference crop from {@link #cropTemplate(BufferedImage, Point)}.
+	 * @param expected- the expected position of the landmark.
+	 * @param searchRadius- maximum distance from the expected position to search (pixels).
+	 * @return the best matching position or null if no position correlates better than MIN_SCORE.
+	 */
+	public Point matchTemplate(BufferedImage image, byte[] template, Point expected, int searchRadius){
+		score=Double.NaN;
+		if (image==null || template==null || template.length!=TEMPLATE_SIZE*TEMPLATE_SIZE) return null;
+		int half=TEMPLATE_SIZE/2;
+		//region of the image which is searched.
+		int x0=Math.max(0, expected.x-searchRadius-half);
+		int y0=Math.max(0, expected.y-searchRadius-half);
+		int x1=Math.min(image.getWidth(), expected.x+searchRadius+half+1);
+		int y1=Math.min(image.getHeight(), expected.y+searchRadius+half+1);
+		int w=x1-x0;
+		int h=y1-y0;
+		if (w<TEMPLATE_SIZE || h<TEMPLATE_SIZE) return null;
+
+		//zero mean template with unit norm.
+		int n=template.length;
+		double[] t=new double[n];
+		double mean=0;
+		for (int i=0; i<n; i++) mean+=template[i]&0xff;
+		mean/=n;
+		double norm=0;
+		for (int i=0; i<n; i++){
+			t[i]=(template[i]&0xff)-mean;
+			norm+=t[i]*t[i];
+		}
+		if (norm==0) return null;
+		norm=Math.sqrt(norm);
+		for (int i=0; i<n; i++) t[i]/=norm;
+
+		//grey scale region and integral images for the mean and variance under the template.
+		int[] rgb=image.getRGB(x0, y0, w, h, null, 0, w);
+		double[] grey=new double[w*h];
+		double[] sum=new double[(w+1)*(h+1)];
+		double[] sum2=new double[(w+1)*(h+1)];
+		double row, row2, g;
+		for (int j=0; j<h; j++){
+			row=row2=0;
+			for (int i=0; i<w; i++){
+				g=grey(rgb[j*w+i]);
+				grey[j*w+i]=g;
+				row+=g;
+				row2+=g*g;
+				sum[(j+1)*(w+1)+i+1]=sum[j*(w+1)+i+1]+row;
+				sum2[(j+1)*(w+1)+i+1]=sum2[j*(w+1)+i+1]+row2;
+			}
+		}
+
+		//rows of the search region are correlated in parallel.
+		final int nY=h-TEMPLATE_SIZE+1;
+		final int nX=w-TEMPLATE_SIZE+1;
+		final double[] rowBest=new double[nY];
+		final int[] rowBestX=new int[nY];
+		IntStream.range(0, nY).parallel().forEach(y -> {
+			double s;
+			rowBest[y]=-2;
+			for (int x=0; x<nX; x++){
+				s=correlate(t, grey, sum, sum2, w, x, y);
+				if (s>rowBest[y]){
+					rowBest[y]=s;
+					rowBestX[y]=x;
+				}
+			}
+		});
+		int bestY=0;
+		for (int y=1; y<nY; y++){
+			if (rowBest[y]>rowBest[bestY]) bestY=y;
+		}
+		int bestX=rowBestX[bestY];
+		double best=rowBest[bestY];
+		score=best;
+		if (best<MIN_SCORE) return null;
+		return new Point(x0+bestX+half, y0+bestY+half);
+	}
+
+	/**
+	 * Normalised cross correlation of the template with the image region at (x,y).
+	 */
+	private static double correlate(double[] t, double[] grey, double[] sum, double[] sum2, int w, int x, int y){
+		int n=TEMPLATE_SIZE*TEMPLATE_SIZE;
+		int w1=w+1;
+		double s=sum[(y+TEMPLATE_SIZE)*w1+x+TEMPLATE_SIZE]-sum[y*w1+x+TEMPLATE_SIZE]-sum[(y+TEMPLATE_SIZE)*w1+x]+sum[y*w1+x];
+		double s2=sum2[(y+TEMPLATE_SIZE)*w1+x+TEMPLATE_SIZE]-sum2[y*w1+x+TEMPLATE_SIZE]-sum2[(y+TEMPLATE_SIZE)*w1+x]+sum2[y*w1+x];
+		double var=s2-s*s/n;
+		if (var<=1e-6) return -1;
+		//the template has zero mean so the image mean does not need to be subtracted.
+		double c=0;
+		int k=0, index;
+		for (int j=0; j<TEMPLATE_SIZE; j++){
+			index=(y+j)*w+x;
+			for (int i=0; i<TEMPLATE_SIZE; i++){
+				c+=t[k++]*grey[index++];
+			}
+		}
+		return c/Math.sqrt(var);
+	}
+
+	/**
+	 * @return the correlation of the last match (-1 to 1). NaN if no match was attempted.
+	 */
+	public double getScore() {
+		return score;
+	}
+
+}
@@ -0,0 +1,415 @@
+package videoRangeLegacy.vrmethods;
+
+import java.util.Random;
+
+/**
+ * Calculates the heading, pitch, tilt and calibration (pixels per degree) of an image from all the landmarks set on the image at once.
+ * <p>
+ * For small angles the pixel position of a landmark is a rotated and scaled copy of its bearing and pitch,
+ * <p>
+ * x = a*bearing - b*pitch + tx
+ * <p>
+ * y = -b*bearing - a*pitch + ty
+ * <p>
+ * where a=k*cos(tilt), b=k*sin(tilt) and k is the calibration in pixels per degree. This is linear in a, b, tx and ty so can be solved by least squares with a 4x4 normal matrix which is summed over the
+ * landmarks, i.e. the time taken is proportional to the number of landmarks. Landmarks which have been set in the wrong place are rejected by RANSAC: poses are calculated from pairs of landmarks and the pose which agrees with most
+ * landmarks is refined using only those landmarks. The fit gives residuals for each landmark and the covariance of heading, pitch, tilt and calibration.
+ * <p>
+ * This follows the same conventions as the rest of the landmark method, i.e. the pixel offsets are the inverse of VRLandMarkMethod.calcBearingDiffAnimal() and calcPitchDiffAnimal().
+ */
+public class LandMarkPoseSolver {
+
+	/**
+	 * Indices of the results in the covariance matrix.
+	 */
+	public final static int HEADING=0;
+	public final static int PITCH=1;
+	public final static int TILT=2;
+	public final static int SCALE=3;
+
+	/**
+	 * Maximum number of pairs of landmarks tested by RANSAC. If there are fewer pairs than this all pairs are tested.
+	 */
+	private final static int MAX_ITERATIONS=100;
+
+	/**
+	 * A landmark is an inlier if it is within this angle (degrees) of the position predicted by a pose...
+	 */
+	private final static double INLIER_ANGLE=0.5;
+
+	/**
+	 * ...or within this number of pixels, whichever is larger.
+	 */
+	private final static double INLIER_PIXELS=5;
+
+	/**
+	 * Minimum pixel error assumed for the landmark positions. Used when there are too few landmarks to estimate the error from the residuals.
+	 */
+	private final static double PIXEL_ERROR=1;
+
+	/**
+	 * Results. Angles in radians.
+	 */
+	private double heading;
+	private double pitch;
+	private double tilt;
+	private double pixelsPerDegree;
+	private double[][] covariance;
+	private double[] residuals;
+	private boolean[] inliers;
+	private int nInliers;
+	private double rms;
+
+	public LandMarkPoseSolver(){
+
+	}
+
+	/**
+	 * Calculate the pose of an image.
+	 * @param bearings- bearings of the landmarks from the image location in radians.
+	 * @param pitches- pitches of the landmarks from the image location in radians.
+	 * @param x- x pixel of each landmark on the image.
+	 * @param y- y pixel of each landmark on the image.
+	 * @param n- number of landmarks.
+	 * @param cx- x pixel of the point on the image the heading and pitch are calculated for, usually the centre of the image.
+	 * @param cy- y pixel of the point on the image the heading and pitch are calculated for.
+	 * @return true if a pose could be calculated. Needs at least two landmarks at different angles.
+	 */
+	public boolean solve(double[] bearings, double[] pitches, double[] x, double[] y, int n, double cx, double cy){
+		nInliers=0;
+		if (n<2) return false;
+
+		//work in degrees with bearings unwrapped around the first landmark so poses which cross north work.
+		double[] u=new double[n];
+		double[] v=new double[n];
+		double ref=Math.toDegrees(bearings[0]);
+		for (int i=0; i<n; i++){
+			u[i]=ref+wrap180(Math.toDegrees(bearings[i])-ref);
+			v[i]=Math.toDegrees(pitches[i]);
+		}
+
+		//RANSAC- find the pose from a pair of landmarks which agrees with the most landmarks.
+		double[] params=new double[4];
+		double[] bestParams=null;
+		boolean[] isInlier=new boolean[n];
+		int bestCount=0;
+		double bestError=Double.MAX_VALUE;
+		int nPairs=n*(n-1)/2;
+		int nIterations=Math.min(nPairs, MAX_ITERATIONS);
+		Random random=new Random(0);
+		int i1, i2, count;
+		double error;
+		for (int k=0; k<nIterations; k++){
+			if (nPairs<=MAX_ITERATIONS){
+				//test every pair
+				i1=pairIndex1(k, n);
+				i2=pairIndex2(k, n, i1);
+			}
+			else {
+				i1=random.nextInt(n);
+				i2=random.nextInt(n-1);
+				if (i2>=i1) i2++;
+			}
+			if (!fit(u, v, x, y, new int[]{i1, i2}, 2, params)) continue;
+			count=0;
+			error=0;
+			for (int i=0; i<n; i++){
+				double r=residual(params, u[i], v[i], x[i], y[i]);
+				if (r<=inlierThreshold(params)){
+					count++;
+					error+=r*r;
+				}
+			}
+			if (count>bestCount || (count==bestCount && error<bestError)){
+				bestCount=count;
+				bestError=error;
+				bestParams=params.clone();
+			}
+		}
+		if (bestParams==null) return false;
+
+		//least squares fit to the inliers.
+		int[] index=new int[n];
+		int m=0;
+		double threshold=inlierThreshold(bestParams);
+		for (int i=0; i<n; i++){
+			isInlier[i]=residual(bestParams, u[i], v[i], x[i], y[i])<=threshold;
+			if (isInlier[i]) index[m++]=i;
+		}
+		double[][] normal=new double[4][4];
+		if (!fit(u, v, x, y, index, m, params, normal)) return false;
+
+		residuals=new double[n];
+		double rss=0;
+		for (int i=0; i<n; i++){
+			residuals[i]=residual(params, u[i], v[i], x[i], y[i]);
+			if (isInlier[i]) rss+=residuals[i]*residuals[i];
+		}
+		inliers=isInlier;
+		nInliers=m;
+		rms=Math.sqrt(rss/m);
+
+		double[] pose=toPose(params, cx, cy);
+		heading=Math.toRadians(pose[HEADING]);
+		while (heading<0) heading+=2*Math.PI;
+		while (heading>=2*Math.PI) heading-=2*Math.PI;
+		pitch=Math.toRadians(pose[PITCH]);
+		tilt=pose[TILT];
+		pixelsPerDegree=pose[SCALE];
+
+		//covariance of a, b, tx, ty from the residuals and then propagated to the pose.
+		int dof=2*m-4;
+		double sigma2=PIXEL_ERROR*PIXEL_ERROR;
+		if (dof>0) sigma2=Math.max(sigma2, rss/dof);
+		double[][] paramCov=invert(normal);
+		if (paramCov==null) return false;
+		for (int i=0; i<4; i++){
+			for (int j=0; j<4; j++) paramCov[i][j]*=sigma2;
+		}
+		covariance=propagate(params, paramCov, cx, cy);
+		return true;
+	}
+
+	/**
+	 * Index of the first landmark of pair k when listing all pairs.
+	 */
+	private static int pairIndex1(int k, int n){
+		int i=0;
+		while (k>=n-1-i){
+			k-=n-1-i;
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Index of the second landmark of pair k when listing all pairs.
+	 */
+	private static int pairIndex2(int k, int n, int i1){
+		for (int i=0; i<i1; i++) k-=n-1-i;
+		return i1+1+k;
+	}
+
+	private static double inlierThreshold(double[] params){
+		return Math.max(INLIER_PIXELS, INLIER_ANGLE*Math.hypot(params[0], params[1]));
+	}
+
+	/**
+	 * Distance in pixels between a landmark and the position predicted by the pose parameters.
+	 */
+	private static double residual(double[] params, double u, double v, double x, double y){
+		double px=params[0]*u-params[1]*v+params[2];
+		double py=-params[1]*u-params[0]*v+params[3];
+		return Math.hypot(x-px, y-py);
+	}
+
+	private static boolean fit(double[] u, double[] v, double[] x, double[] y, int[] index, int m, double[] params){
+		return fit(u, v, x, y, index, m, params, new double[4][4]);
+	}
+
+	/**
+	 * Least squares fit of a, b, tx and ty.
+	 * @param index- indices of the landmarks to use.
+	 * @param m- number of landmarks to use.
+	 * @param params- the fitted parameters.
+	 * @param normal- filled with the normal matrix.
+	 * @return true if the fit succeeded.
+	 */
+	private static boolean fit(double[] u, double[] v, double[] x, double[] y, int[] index, int m, double[] params, double[][] normal){
+		double[] rhs=new double[4];
+		for (int i=0; i<4; i++){
+			for (int j=0; j<4; j++) normal[i][j]=0;
+		}
+		double[] row1=new double[4];
+		double[] row2=new double[4];
+		int k;
+		for (int i=0; i<m; i++){
+			k=index[i];
+			row1[0]=u[k];
+			row1[1]=-v[k];
+			row1[2]=1;
+			row1[3]=0;
+			row2[0]=-v[k];
+			row2[1]=-u[k];
+			row2[2]=0;
+			row2[3]=1;
+			for (int r=0; r<4; r++){
+				for (int c=0; c<4; c++) normal[r][c]+=row1[r]*row1[c]+row2[r]*row2[c];
+				rhs[r]+=row1[r]*x[k]+row2[r]*y[k];
+			}
+		}
+		double[][] inverse=invert(normal);
+		if (inverse==null) return false;
+		for (int r=0; r<4; r++){
+			params[r]=0;
+			for (int c=0; c<4; c++) params[r]+=inverse[r][c]*rhs[c];
+		}
+		return Math.hypot(params[0], params[1])>0;
+	}
+
+	/**
+	 * Convert a, b, tx and ty to heading (degrees), pitch (degrees), tilt (radians) and pixels per degree at the point (cx, cy).
+	 */
+	private static double[] toPose(double[] params, double cx, double cy){
+		double a=params[0];
+		double b=params[1];
+		double k2=a*a+b*b;
+		double dx=params[2]-cx;
+		double dy=params[3]-cy;
+		double[] pose=new double[4];
+		pose[HEADING]=-(a*dx-b*dy)/k2;
+		pose[PITCH]=(b*dx+a*dy)/k2;
+		pose[TILT]=Math.atan2(b, a);
+		pose[SCALE]=Math.sqrt(k2);
+		return pose;
+	}
+
+	/**
+	 * Propagate the covariance of a, b, tx and ty to heading, pitch, tilt and scale using a numerical Jacobian. Heading and pitch covariances are in radians.
+	 */
+	private static double[][] propagate(double[] params, double[][] paramCov, double cx, double cy){
+		double[][] jacobian=new double[4][4];
+		double[] p=params.clone();
+		double[] plus, minus;
+		double step;
+		for (int j=0; j<4; j++){
+			step=1e-6*Math.max(1, Math.abs(params[j]));
+			p[j]=params[j]+step;
+			plus=toPose(p, cx, cy);
+			p[j]=params[j]-step;
+			minus=toPose(p, cx, cy);
+			p[j]=params[j];
+			for (int i=0; i<4; i++){
+				jacobian[i][j]=(plus[i]-minus[i])/(2*step);
+			}
+		}
+		for (int j=0; j<4; j++){
+			jacobian[HEADING][j]=Math.toRadians(jacobian[HEADING][j]);
+			jacobian[PITCH][j]=Math.toRadians(jacobian[PITCH][j]);
+		}
+		double[][] cov=new double[4][4];
+		for (int i=0; i<4; i++){
+			for (int j=0; j<4; j++){
+				for (int k=0; k<4; k++){
+					for (int l=0; l<4; l++) cov[i][j]+=jacobian[i][k]*paramCov[k][l]*jacobian[j][l];
+				}
+			}
+		}
+		return cov;
+	}
+
+	/**
+	 * Invert a 4x4 matrix by Gauss-Jordan elimination.
+	 * @return the inverse or null if the matrix is singular.
+	 */
+	private static double[][] invert(double[][] matrix){
+		int n=matrix.length;
+		double[][] a=new double[n][2*n];
+		for (int i=0; i<n; i++){
+			for (int j=0; j<n; j++) a[i][j]=matrix[i][j];
+			a[i][n+i]=1;
+		}
+		for (int c=0; c<n; c++){
+			int pivot=c;
+			for (int r=c+1; r<n; r++){
+				if (Math.abs(a[r][c])>Math.abs(a[pivot][c])) pivot=r;
+			}
+			if (Math.abs(a[pivot][c])<1e-12) return null;
+			double[] tmp=a[c];
+			a[c]=a[pivot];
+			a[pivot]=tmp;
+			double d=a[c][c];
+			for (int j=0; j<2*n; j++) a[c][j]/=d;
+			for (int r=0; r<n; r++){
+				if (r==c || a[r][c]==0) continue;
+				double f=a[r][c];
+				for (int j=0; j<2*n; j++) a[r][j]-=f*a[c][j];
+			}
+		}
+		double[][] inverse=new double[n][n];
+		for (int i=0; i<n; i++){
+			for (int j=0; j<n; j++) inverse[i][j]=a[i][n+j];
+		}
+		return inverse;
+	}
+
+	private static double wrap180(double angle){
+		while (angle>180) angle-=360;
+		while (angle<=-180) angle+=360;
+		return angle;
+	}
+
+	/**
+	 * @return the heading of the image in radians (0 to 2pi).
+	 */
+	public double getHeading() {
+		return heading;
+	}
+
+	/**
+	 * @return the pitch of the image in radians.
+	 */
+	public double getPitch() {
+		return pitch;
+	}
+
+	/**
+	 * @return the tilt of the image in radians.
+	 */
+	public double getTilt() {
+		return tilt;
+	}
+
+	/**
+	 * @return the calibration in pixels per degree.
+	 */
+	public double getPixelsPerDegree() {
+		return pixelsPerDegree;
+	}
+
+	/**
+	 * @return covariance matrix of heading, pitch, tilt (radians) and scale (pixels per degree). Use HEADING, PITCH, TILT and SCALE as indices.
+	 */
+	public double[][] getCovariance() {
+		return covariance;
+	}
+
+	/**
+	 * Get the standard deviation of one of the results.
+	 * @param index- HEADING, PITCH, TILT or SCALE.
+	 * @return the standard deviation.
+	 */
+	public double getStd(int index){
+		return Math.sqrt(Math.max(0, covariance[index][index]));
+	}
+
+	/**
+	 * @return the distance in pixels of each landmark from the position predicted by the pose.
+	 */
+	public double[] getResiduals() {
+		return residuals;
+	}
+
+	/**
+	 * @param i- landmark index.
+	 * @return true if the landmark was used in the final fit.
+	 */
+	public boolean isInlier(int i){
+		return inliers[i];
+	}
+
+	/**
+	 * @return the number of landmarks used in the final fit.
+	 */
+	public int getNInliers() {
+		return nInliers;
+	}
+
+	/**
+	 * @return the root mean square residual of the landmarks used in the final fit (pixels).
+	 */
+	public double getRMS() {
+		return rms;
+	}
+
+}
@@ -51,7 +51,10 @@ class VRAbstractLayerUI extends LayerUI<JPanel> {
 		          RenderingHints.VALUE_ANTIALIAS_ON);
 		        g2.setRenderingHint(RenderingHints.KEY_RENDERING,
 		          RenderingHints.VALUE_RENDER_QUALITY);
-		
+		//possible animals found by the automatic detector. 
+		if (vrControl.getCurrentMethod() instanceof AbstractVRMethod){
+			((AbstractVRMethod) vrControl.getCurrentMethod()).drawDetectedAnimals(g);
+		}
 
 	}
 	 
@@ -10,28 +10,32 @@ import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JLayer;
+import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.plaf.LayerUI;
 
+import angleMeasurement.AngleDataUnit;
 import videoRangeLegacy.LandMark;
+import videoRangeLegacy.LandMarkGeometry;
 import videoRangeLegacy.LandMarkGroup;
+import videoRangeLegacy.LandMarkIndex;
+import videoRangeLegacy.VRCalibrationData;
 import videoRangeLegacy.VRControl;
 import videoRangeLegacy.VRHeightData;
 import videoRangeLegacy.VRMeasurement;
 import videoRangeLegacy.VRSymbolManager;
-import videoRangeLegacy.panels.AcceptMeasurementDialog;
 import videoRangeLegacy.panels.VRPanel;
 import videoRangeLegacy.panels.VRParametersDialog;
 import videoRangeLegacy.panels.VRSidePanel;
 import PamUtils.LatLong;
-import PamUtils.PamArrayUtils;
 import PamUtils.PamUtils;
 import PamView.PamColors;
 import PamView.PamSymbol;
@@ -81,29 +85,67 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 	 */
 	private Double tilt;
 	/**
-	 * The tilt values from all combinations of landmarks
+	 * Calculates the image pose from all the set landmarks. 
 	 */
-	private ArrayList<Double> tiltVals;
+	private LandMarkPoseSolver poseSolver=new LandMarkPoseSolver();
+	
+	/**
+	 * True if the pose has been calculated for the current landmarks. 
+	 */
+	private boolean poseValid=false;
+	
+	/**
+	 * Bearing, pitch (radians) and pixel position of each set landmark and whether the landmark was used in the pose. Filled when the pose is calculated and reused for every animal. 
+	 */
+	private double[] lmBearings=new double[0];
+	private double[] lmPitches=new double[0];
+	private double[] lmX=new double[0];
+	private double[] lmY=new double[0];
+	private boolean[] lmUse=new boolean[0];
 	
 	/**
 	 * Bearing values for animal based on calculations from each landmark in radians. 0= north, pi=south, pi/2=east. Ideally all values in array should be the same. 
 	 */
-	private ArrayList<Double> animalBearingVals;
+	private double[] animalBearingVals=new double[0];
 	
 	/**
 	 * Pitch values for animal based on calculations from each landmark in radians. Ideally should be the same. -pi degrees =downwards, +pi degrees. Ideally all values in array should be the same. 
 	 */
-	private ArrayList<Double> animalPitchVals;
+	private double[] animalPitchVals=new double[0];
+	
+	/**
+	 * Mean and standard deviation of the animal bearing and pitch values. 
+	 */
+	private final double[] animalStats=new double[4];
+	
+	/**
+	 * Indices of the animal stats. 
+	 */
+	public final static int BEARING_MEAN=0;
+	public final static int BEARING_STD=1;
+	public final static int PITCH_MEAN=2;
+	public final static int PITCH_STD=3;
 	
 	//calibration values;
 	/**
 	 * mean calibration value
 	 */
 	private Double calMean;
+	
+	/**
+	 * Indices of the landmarks which could be in the current image. Reused for every popup menu. 
+	 */
+	private int[] visibleLandMarks=new int[0];
+	
 	/**
-	 * Calibration values (pixels per degree) for each combination of landmarks 
+	 * Maximum number of landmarks shown in the popup menu. Others are in a sub menu. 
 	 */
-	private ArrayList<Double> calValues;
+	private final static int MAX_MENU_LANDMARKS=20;
+	
+	/**
+	 * Margin added to each side of the image when finding landmarks which could be in the image, to allow for errors in the prior heading and calibration (degrees). 
+	 */
+	private final static double HEADING_MARGIN=5;
 
 	
 	
@@ -265,29 +307,15 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 	
 	private VRMeasurement setImagePosVals(VRMeasurement measurement) {
 		
-		if (tiltVals==null) return null;
+		if (!poseValid) return null;
 		
-		//calculate the middle of the image
-		Point imageMiddle=new Point(vrControl.getCurrentImage().getImage().getWidth()/2, vrControl.getCurrentImage().getImage().getHeight()/2);
-		//work out image tilt
-		double averageTilt=PamArrayUtils.mean(tiltVals, 0);
-		double stdTilt=PamArrayUtils.std(tiltVals, 0);
-		//work out image bearing
-		ArrayList<Double> vals=calcBearingLoc(imageMiddle, averageTilt);
-		double averageBearing=PamArrayUtils.mean(vals, 0);
-		double stdBearing=PamArrayUtils.std(vals, 0);
-		//work out image pitch
-		vals=calcPitchLoc(imageMiddle, averageTilt);
-		double averagePitch=PamArrayUtils.mean(vals, 0);
-		double stdPitch=PamArrayUtils.std(vals, 0);
-	
-		//TODO-units?
-		measurement.imageBearing=Math.toDegrees(averageBearing);
-		measurement.imageBearingErr=Math.toDegrees(stdBearing);
-		measurement.imagePitch=Math.toDegrees(averagePitch);
-		measurement.imagePitchErr=Math.toDegrees(stdPitch);
-		measurement.imageTilt=Math.toDegrees(averageTilt);
-		measurement.imageTiltErr=Math.toDegrees(stdTilt);
+		//the pose is calculated for the middle of the image. Errors are from the covariance of the fit. 
+		measurement.imageBearing=Math.toDegrees(poseSolver.getHeading());
+		measurement.imageBearingErr=Math.toDegrees(poseSolver.getStd(LandMarkPoseSolver.HEADING));
+		measurement.imagePitch=Math.toDegrees(poseSolver.getPitch());
+		measurement.imagePitchErr=Math.toDegrees(poseSolver.getStd(LandMarkPoseSolver.PITCH));
+		measurement.imageTilt=Math.toDegrees(poseSolver.getTilt());
+		measurement.imageTiltErr=Math.toDegrees(poseSolver.getStd(LandMarkPoseSolver.TILT));
 
 		return measurement;
 
@@ -396,14 +424,45 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		LandMarkGroup landMarks=vrControl.getVRParams().getLandMarkDatas().get(vrControl.getVRParams().getCurrentLandMarkGroupIndex());
 		int n=0;
 		if (currentStatus!=MEASURE_ANIMAL){
-			for (int i=0; i<landMarks.size(); i++){
-				if (!isInList(landMarks.get(i))){
-					menuItem=new JMenuItem(landMarks.get(i).getName());
-					menuItem.addActionListener(new SetLandMark(landMarks.get(i),point));
-					popMenu.add(menuItem);
+			//only landmarks which could be in the image are shown, best landmarks for calibration first. 
+			int nVisible=findVisibleLandMarks(landMarks);
+			JMenu moreMenu=null;
+			LandMark landMark;
+			for (int i=0; i<nVisible; i++){
+				landMark=landMarks.get(visibleLandMarks[i]);
+				if (!isInList(landMark)){
+					menuItem=new JMenuItem(landMark.getName());
+					menuItem.addActionListener(new SetLandMark(landMark,point));
+					if (n<MAX_MENU_LANDMARKS) popMenu.add(menuItem);
+					else {
+						if (moreMenu==null) moreMenu=new JMenu("More landmarks");
+						moreMenu.add(menuItem);
+					}
 					n++;
 				}
 			}
+			if (moreMenu!=null) popMenu.add(moreMenu);
+			//landmarks which were filtered out can still be chosen, e.g. if the image heading or calibration is wrong. 
+			boolean[] visible=new boolean[landMarks.size()];
+			for (int i=0; i<nVisible; i++) visible[visibleLandMarks[i]]=true;
+			JMenu otherMenu=null;
+			for (int i=0; i<landMarks.size(); i++){
+				landMark=landMarks.get(i);
+				if (visible[i] || isInList(landMark)) continue;
+				menuItem=new JMenuItem(landMark.getName());
+				menuItem.addActionListener(new SetLandMark(landMark,point));
+				if (otherMenu==null) otherMenu=new JMenu("Other landmarks");
+				otherMenu.add(menuItem);
+				n++;
+			}
+			if (otherMenu!=null) popMenu.add(otherMenu);
+			//if a landmark has been set then other landmarks with reference crops can be found automatically.
+			if (setLandMarks!=null && setLandMarks.size()>0 && canAutoMatch(landMarks)){
+				if (n!=0) popMenu.addSeparator();
+				menuItem=new JMenuItem("Auto-match landmarks");
+				menuItem.addActionListener(new AutoMatch());
+				popMenu.add(menuItem);
+			}
 			//if ready to calculate then give the user the option of calculating a position
 			if (isCalcReady()){
 				if (n!=0) popMenu.addSeparator();
@@ -428,12 +487,52 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		return popMenu;
 	}
 	
+	/**
+	 * Find the landmarks in a group which could be in the current image, i.e. within the bearing span of the image and closer than the horizon. If the heading of the image is not 
+	 * known then landmarks at any bearing are included. If there is no calibration the span of the image is unknown so all landmarks are included. 
+	 * @param landMarks- the landmark group. 
+	 * @return the number of landmarks found. Indices of the landmarks are in visibleLandMarks in order of expected calibration quality. 
+	 */
+	private int findVisibleLandMarks(LandMarkGroup landMarks){
+		if (visibleLandMarks.length<landMarks.size()) visibleLandMarks=new int[landMarks.size()];
+		LatLong imagePos=getImagePos();
+		double pixelsPerDegree=getPriorCalibration();
+		if (imagePos==null || vrControl.getCurrentImage()==null || vrControl.getCurrentImage().getImage()==null || Double.isNaN(pixelsPerDegree)){
+			for (int i=0; i<landMarks.size(); i++) visibleLandMarks[i]=i;
+			return landMarks.size();
+		}
+		LandMarkIndex index=landMarks.getIndex(imagePos);
+		double halfSpan=Math.toRadians(vrControl.getCurrentImage().getImage().getWidth()/2./pixelsPerDegree+HEADING_MARGIN);
+		return index.findVisible(getPriorHeading(index.getGeometry()), halfSpan, imagePos.getHeight(), vrControl.getRangeMethods().getCurrentMethod(), visibleLandMarks);
+	}
+	
+	/**
+	 * Get the best estimate of the heading of the centre of the image before the pose has been calculated. Uses the pose if it has been calculated, otherwise the first landmark set on the image, 
+	 * otherwise IMU data. 
+	 * @param geometry- geometry of the current landmark group. 
+	 * @return the heading in radians or NaN if unknown. 
+	 */
+	private double getPriorHeading(LandMarkGeometry geometry){
+		if (poseValid) return poseSolver.getHeading();
+		if (setLandMarks!=null && setLandMarks.size()>0 && !Double.isNaN(getPriorCalibration())){
+			int index=geometry.indexOf(setLandMarks.get(0));
+			if (index>=0) return geometry.getBearing(index)+calcAnimalBearing(getPriorTilt(), landMarkPoints.get(0), getImageMiddle(), getPriorCalibration());
+		}
+		if (vrControl.getIMUListener()!=null && vrControl.getIMUListener().getIMUDataBlock()!=null && vrControl.getImageTime()>0){
+			AngleDataUnit imuData=IMUMethod.searchIMUTrack(vrControl.getIMUListener().getIMUTrack(), vrControl.getIMUListener().getIMUDataBlock().getCalibrationVals(), 
+					vrControl.getImageTime(), IMUMethod.getSearchInterval(), vrControl.getVRParams().filterIMU);
+			Double imuHeading=imuData==null ? null : imuData.getTrueHeading();
+			if (imuHeading!=null) return imuHeading;
+		}
+		return Double.NaN;
+	}
+	
 	private class Calculate implements ActionListener{
 
 		@Override
 		public void actionPerformed(ActionEvent e) {
+			if (!calcVals()) return;
 			currentStatus=MEASURE_ANIMAL;
-			calcVals();
 			vrControl.getVRPanel().repaint();
 			VRMeasurement imageMeasurement=new VRMeasurement();
 			setImagePosVals(imageMeasurement);
@@ -443,6 +542,93 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		
 	}
 	
+	private class AutoMatch implements ActionListener{
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			autoMatchLandMarks();
+			vrControl.getVRPanel().repaint();
+		}
+		
+	}
+	
+	/**
+	 * Check whether any landmarks which have not been set on the image have a reference crop. 
+	 * @param landMarks- the current landmark group. 
+	 * @return true if there are landmarks which can be found automatically. 
+	 */
+	private boolean canAutoMatch(LandMarkGroup landMarks){
+		for (int i=0; i<landMarks.size(); i++){
+			if (!isInList(landMarks.get(i)) && landMarks.get(i).getTemplate()!=null) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Find landmarks in the image automatically. The position of each landmark is projected from the first landmark set by the user using the prior tilt and calibration and then 
+	 * refined by matching the reference crop of the landmark saved the last time it was set by hand. 
+	 * @return the number of landmarks found. 
+	 */
+	private int autoMatchLandMarks(){
+		if (setLandMarks==null || setLandMarks.size()==0 || vrControl.getCurrentImage()==null) return 0;
+		BufferedImage image=vrControl.getCurrentImage().getImage();
+		LandMarkGroup landMarks=getSelectedLMGroup();
+		LandMarkGeometry geometry=getGeometry();
+		if (image==null || landMarks==null || geometry==null) return 0;
+		
+		int known=geometry.indexOf(setLandMarks.get(0));
+		if (known<0) return 0;
+		Point knownPoint=landMarkPoints.get(0);
+		double priorTilt=getPriorTilt();
+		double pixelsPerDegree=getPriorCalibration();
+		if (Double.isNaN(pixelsPerDegree)) return 0;
+		
+		LandMarkMatcher matcher=new LandMarkMatcher();
+		LandMark landMark;
+		Point expected, matched;
+		int n=0;
+		for (int i=0; i<landMarks.size(); i++){
+			landMark=landMarks.get(i);
+			if (isInList(landMark) || landMark.getTemplate()==null) continue;
+			expected=LandMarkMatcher.projectLandMark(knownPoint, calcBearingDiff(geometry.getBearing(known), geometry.getBearing(i)), geometry.getPitch(i)-geometry.getPitch(known), priorTilt, pixelsPerDegree);
+			matched=matcher.matchTemplate(image, landMark.getTemplate(), expected, LandMarkMatcher.getSearchRadius(knownPoint.distance(expected)));
+			if (matched==null) continue;
+			landMarkPoints.add(matched);
+			setLandMarks.add(landMark);
+			poseValid=false;
+			n++;
+		}
+		if (setLandMarks.size()>=2 && currentStatus==SET_LANDMARK) currentStatus=SET_LANDMARK_READY;
+		setInstruction(currentStatus);
+		return n;
+	}
+	
+	/**
+	 * Get the best estimate of image tilt before the landmarks have been set. Uses IMU data if available, otherwise the tilt calculated for the last image. 
+	 * @return the prior tilt in radians. 
+	 */
+	private double getPriorTilt(){
+		if (vrControl.getIMUListener()!=null && vrControl.getIMUListener().getIMUDataBlock()!=null && vrControl.getImageTime()>0){
+			AngleDataUnit imuData=IMUMethod.searchIMUTrack(vrControl.getIMUListener().getIMUTrack(), vrControl.getIMUListener().getIMUDataBlock().getCalibrationVals(), 
+					vrControl.getImageTime(), IMUMethod.getSearchInterval(), vrControl.getVRParams().filterIMU);
+			Double imuTilt=imuData==null ? null : imuData.getTilt();
+			if (imuTilt!=null) return imuTilt;
+		}
+		if (tilt!=null) return tilt;
+		return 0;
+	}
+	
+	/**
+	 * Get the best estimate of the calibration before the landmarks have been set. Uses the calibration calculated for the last image, otherwise the current camera calibration. 
+	 * @return the prior calibration in pixels per degree, or NaN if there is no calibration. 
+	 */
+	private double getPriorCalibration(){
+		if (calMean!=null && !Double.isNaN(calMean)) return calMean;
+		VRCalibrationData calData=vrControl.getVRParams().getCurrentCalibrationData();
+		if (calData==null || calData.degreesPerUnit<=0) return Double.NaN;
+		return 1/calData.degreesPerUnit;
+	}
+	
 	class SetAnimal implements ActionListener{
 
 		Point point;
@@ -459,15 +645,24 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 	}
 	
 	private void measureAnimal(Point point){
+		measureAnimalImage(vrControl.getVRPanel().screenToImage(point));
+	}
+	
+	@Override
+	protected boolean measureDetectedAnimal(Point imPoint){
+		if (!isCalcReady()) return false;
+		measureAnimalImage(imPoint);
+		return true;
+	}
+	
+	/**
+	 * Measure an animal. 
+	 * @param imPoint- the animal point on the full sized image. 
+	 */
+	private void measureAnimalImage(Point imPoint){
+		if (!calcVals()) return;
 		currentStatus=MEASURE_ANIMAL;
-		calcVals();
-		Point imPoint=vrControl.getVRPanel().screenToImage(point);
-		animalBearingVals=calcBearingLoc(imPoint, tilt);
-		//TODO-delete
-		for (int i=0; i<animalBearingVals.size(); i++){
-			System.out.println("Animal bearing vals: "+ Math.toDegrees(animalBearingVals.get(i)));
-		}
-		animalPitchVals=calcPitchLoc(imPoint, tilt);
+		calcAnimalAngles(imPoint);
 		VRMeasurement possibleMeasurement=new VRMeasurement(imPoint);
 		//add image position labels
 		setImagePosVals(possibleMeasurement);
@@ -485,70 +680,70 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		vrControl.getVRPanel().repaint();
 	}
 	
-	private void calcVals(){
-		
-		ArrayList<Integer> indexM1 = PamUtils.indexM1(landMarkPoints.size());
-		ArrayList<Integer> indexM2 = PamUtils.indexM2(landMarkPoints.size());
-		
-		//tilt values
-		tiltVals=new ArrayList<Double>();
-		double tiltMean=0;
-		double tiltVal;
-		//calibration value
-		double bearingDiff;
-		double pitchDiff;
-		double pixelPerDegree;
-		double pPDMean=0;
-		calValues=new ArrayList<Double>();
-
-		for (int i=0; i<indexM1.size(); i++){
-			
-			tiltVal=calcTilt(landMarkPoints.get(indexM1.get(i)), landMarkPoints.get(indexM2.get(i)),  setLandMarks.get(indexM1.get(i)),  setLandMarks.get(indexM2.get(i)), getImagePos());
-			tiltVals.add(tiltVal);
-			tiltMean+=tiltVal;
-			
-			bearingDiff=calcBearingDiff(  setLandMarks.get(indexM1.get(i)),  setLandMarks.get(indexM2.get(i)),  getImagePos());
-			pitchDiff=calcPitchDiff(  setLandMarks.get(indexM1.get(i)),  setLandMarks.get(indexM2.get(i)),  getImagePos());
-			pixelPerDegree=calcPixelsperDegree(landMarkPoints.get(indexM1.get(i)).distance(landMarkPoints.get(indexM2.get(i))),  bearingDiff,  pitchDiff);
-			calValues.add(pixelPerDegree);
-			pPDMean+=pixelPerDegree;
-			
+	/**
+	 * Calculate the heading, pitch, tilt and calibration of the image from all the set landmarks. Landmarks which do not agree with the others are not used. 
+	 * @return true if the pose of the image could be calculated. 
+	 */
+	private boolean calcVals(){
+		poseValid=false;
+		LandMarkGeometry geometry=getGeometry();
+		if (landMarkPoints==null || geometry==null || vrControl.getCurrentImage()==null) return false;
+		int n=landMarkPoints.size();
+		if (lmBearings.length<n){
+			lmBearings=new double[n];
+			lmPitches=new double[n];
+			lmX=new double[n];
+			lmY=new double[n];
+			lmUse=new boolean[n];
 		}
-		
-		this.calMean=pPDMean/(double) indexM1.size();
-		this.tilt=tiltMean/(double) indexM1.size();
-		
+		int index;
+		for (int i=0; i<n; i++){
+			index=geometry.indexOf(setLandMarks.get(i));
+			//the landmark may have been removed from the group since it was set. 
+			if (index<0) return false;
+			lmBearings[i]=geometry.getBearing(index);
+			lmPitches[i]=geometry.getPitch(index);
+			lmX[i]=landMarkPoints.get(i).x;
+			lmY[i]=landMarkPoints.get(i).y;
+		}
+		Point imageMiddle=getImageMiddle();
+		if (!poseSolver.solve(lmBearings, lmPitches, lmX, lmY, n, imageMiddle.x, imageMiddle.y)) return false;
+		for (int i=0; i<n; i++) lmUse[i]=poseSolver.isInlier(i);
+		
+		this.calMean=poseSolver.getPixelsPerDegree();
+		this.tilt=poseSolver.getTilt();
+		poseValid=true;
+		return true;
 	}
 	
 	/**
-	 * Calculate the bearing of the animal from the tilt and calibration information from currently set landmarks. 
-	 * @param animalPoint-point on full sized image
-	 * @param tilt- tilt of image in radians
-	 * @return ArrayList of bearing values calculated form each currently set landmark
+	 * Get the bearing, pitch and distance to each landmark in the selected group from the current image origin. These are cached by the landmark group so are only calculated again if the origin or landmarks change. 
+	 * @return the landmark geometry or null if there is no landmark group or image origin. 
 	 */
-	private ArrayList<Double> calcBearingLoc(Point anP, Double tilt){
-		ArrayList<Double> bearingVals=new ArrayList<Double>();
-		double bearingVal; 
-		for (int i=0; i<setLandMarks.size(); i++){
-			bearingVal=wrap360(calcBearing(setLandMarks.get(i), getImagePos())+calcAnimalBearing(tilt,landMarkPoints.get(i), anP, calMean));
-//			System.out.println("landmark bearing: original: " +setLandMarks.get(i).getName() +" "+ Math.toDegrees(calcBearing(setLandMarks.get(i), getImagePos())) + " animal from landmark: "+Math.toDegrees(calcAnimalBearing(tilt,landMarkPoints.get(i), anP, calMean))  +" wrap360 bearingVal: "+Math.toDegrees(bearingVal));
-			bearingVals.add(bearingVal);
-		}
-		return bearingVals;
+	private LandMarkGeometry getGeometry(){
+		LandMarkGroup landMarks=getSelectedLMGroup();
+		if (landMarks==null) return null;
+		LatLong imagePos=getImagePos();
+		if (imagePos==null) return null;
+		return landMarks.getGeometry(imagePos);
+	}
+	
+	private Point getImageMiddle(){
+		return new Point(vrControl.getCurrentImage().getImage().getWidth()/2, vrControl.getCurrentImage().getImage().getHeight()/2);
 	}
 	
 	/**
-	 * Calculate the pitch of the animal from the tilt and calibration information from currently set landmarks.
-	 * @param anP- point of the animal
-	 * @param tilt- tilt of image in radians
-	 * @return ArrayList of pitch values calculated form each currently set landmark
+	 * Calculate the bearing and pitch of an animal from each of the set landmarks used in the pose. Results are written into reused buffers. 
+	 * @param anP- the animal point on the full sized image. 
+	 * @return the number of landmarks used. 
 	 */
-	private ArrayList<Double> calcPitchLoc(Point anP, Double tilt){
-		ArrayList<Double> pitchVals=new ArrayList<Double>();
-		for (int i=0; i<setLandMarks.size(); i++){
-			pitchVals.add(calcPitch(setLandMarks.get(i), getImagePos())-calcAnimalPitch( tilt, landMarkPoints.get(i), anP, calMean));
+	private int calcAnimalAngles(Point anP){
+		int n=landMarkPoints.size();
+		if (animalBearingVals.length<n){
+			animalBearingVals=new double[n];
+			animalPitchVals=new double[n];
 		}
-		return pitchVals;
+		return calcAnimalAngles(lmBearings, lmPitches, lmX, lmY, lmUse, n, anP.x, anP.y, tilt, calMean, animalBearingVals, animalPitchVals, animalStats);
 	}
 	
 	private boolean isInList(LandMark landMark) {
@@ -583,8 +778,16 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 				landMarkPoints=new ArrayList<Point>();
 				setLandMarks=new ArrayList<LandMark>();
 			}
-			landMarkPoints.add(vrControl.getVRPanel().screenToImage(point));
+			Point imPoint=vrControl.getVRPanel().screenToImage(point);
+			landMarkPoints.add(imPoint);
 			setLandMarks.add(landMark);
+			poseValid=false;
+			//save a reference crop so the landmark can be found automatically in other images. 
+			byte[] template=LandMarkMatcher.cropTemplate(vrControl.getCurrentImage().getImage(), imPoint);
+			if (template!=null){
+				landMark.setTemplate(template);
+				vrControl.getLandMarkTemplates().put(getSelectedLMGroup(), landMark);
+			}
 			if (setLandMarks.size()>=2) currentStatus=SET_LANDMARK_READY;
 			setInstruction(currentStatus);
 		}
@@ -677,17 +880,20 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		}
 		
 		if (currentStatus==MEASURE_ANIMAL){
-			if (tiltVals==null) return;
+			if (!poseValid) return;
 			Point perpPoint;
-			ArrayList<Integer> indexM1 = PamUtils.indexM1(landMarkPoints.size());
-			ArrayList<Integer> indexM2 = PamUtils.indexM2(landMarkPoints.size());
-			for (int i=0; i<indexM1.size(); i++){
+			//draw the triangles from the first landmark used in the pose to every other landmark used in the pose. 
+			int first=-1;
+			for (int i=0; i<landMarkPoints.size() && first<0; i++){
+				if (poseSolver.isInlier(i)) first=i;
+			}
+			for (int i=first+1; i<landMarkPoints.size(); i++){
+				if (!poseSolver.isInlier(i)) continue;
 				g.setColor(symbol.getLineColor());
-				sp1=vrControl.getVRPanel().imageToScreen(landMarkPoints.get(indexM1.get(i)));
-				sp2=vrControl.getVRPanel().imageToScreen(landMarkPoints.get(indexM2.get(i)));
-				//calc the tilt
-//				System.out.println("LandMark: "+indexM1.get(i)+" : "+indexM2.get(i)+" tilt: "+Math.toDegrees(tiltVals.get(i)));
-				perpPoint=calcPerpPoint(tiltVals.get(i), landMarkPoints.get(indexM1.get(i)), landMarkPoints.get(indexM2.get(i)),  setLandMarks.get(indexM1.get(i)),  setLandMarks.get(indexM2.get(i)), setLandMarks.get(0).getLatLongOrigin());
+				sp1=vrControl.getVRPanel().imageToScreen(landMarkPoints.get(first));
+				sp2=vrControl.getVRPanel().imageToScreen(landMarkPoints.get(i));
+				perpPoint=calcPerpPoint(tilt, landMarkPoints.get(first), landMarkPoints.get(i),  setLandMarks.get(first),  setLandMarks.get(i), setLandMarks.get(0).getLatLongOrigin());
+				if (perpPoint==null) continue;
 				perpPoint=vrControl.getVRPanel().imageToScreen(perpPoint);
 				g2.setColor(landMarkCol);
 				g2.setStroke(solid);
@@ -707,6 +913,7 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		//clear landmark measurements
 		setLandMarks=null;
 		landMarkPoints=null;
+		poseValid=false;
 		currentStatus=SET_LANDMARK;
 		setInstruction(currentStatus);
 		//clear ribbon panle
@@ -736,6 +943,10 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		super.update(updateType);
 		switch (updateType){
 			case VRControl.SETTINGS_CHANGE:
+				//landmarks may have been edited
+				if (vrControl.getVRParams().getLandMarkDatas()!=null){
+					for (LandMarkGroup landMarkGroup: vrControl.getVRParams().getLandMarkDatas()) landMarkGroup.clearGeometry();
+				}
 				setLandMarks();
 			break;
 			case VRControl.HEADING_UPDATE:
@@ -757,10 +968,10 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		if (animalPoint==null) return false;
 		
 		//calculate pitch and bearing values to animal
-		double averageBearing=PamArrayUtils.mean(animalBearingVals, 0);
-		double averagePitch=PamArrayUtils.mean(animalPitchVals, 0);
-		double stdBearing=PamArrayUtils.std(animalBearingVals, 0);
-		double stdPitch=PamArrayUtils.std(animalPitchVals, 0);
+		double averageBearing=animalStats[BEARING_MEAN];
+		double averagePitch=animalStats[PITCH_MEAN];
+		double stdBearing=animalStats[BEARING_STD];
+		double stdPitch=animalStats[PITCH_STD];
 			
 		candidateMeasurement=possibleMeasurement;
 		
@@ -771,7 +982,7 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		
 		candidateMeasurement.imageTime=vrControl.getImageTime();
 		candidateMeasurement.imageName = new String(vrControl.getImageName());
-		candidateMeasurement.imageAnimal = vrControl.getMeasuredAnimals().size();
+		candidateMeasurement.imageAnimal = vrControl.getNextImageAnimal();
 		candidateMeasurement.heightData = getImageHeight();
 		candidateMeasurement.rangeMethod = vrControl.getRangeMethods().getCurrentMethod();
 		
@@ -800,17 +1011,12 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		//work out location of animal (LatLong)
 		candidateMeasurement.imageOrigin=getImagePos();
 		calcLocLatLong(candidateMeasurement);
+		//bearing comes from the landmarks so there is no compass heading error. The pitch is fitted to the landmarks so does not scale with the calibration. 
+		calcUncertainty(candidateMeasurement, vrControl.getRangeMethods().getCurrentMethod(), getImageHeight().height, -averagePitch, 0, 
+				Math.sqrt(Math.pow(stdPitch,2)+Math.pow((Math.PI/180)/calMean,2)), Math.toDegrees(stdBearing), false);
 				
-		VRMeasurement newMeasurement = AcceptMeasurementDialog.showDialog(null, vrControl, candidateMeasurement);
-		
-		if (newMeasurement != null) {
-			vrControl.getMeasuredAnimals().add(newMeasurement);
-			vrControl.getVRProcess().newVRLoc(newMeasurement);
-		}
-		else {
-			candidateMeasurement = null;
-			return false;
-		}
+		//the measurement is either saved or waiting to be accepted.
+		acceptMeasurement(candidateMeasurement);
 		
 		candidateMeasurement = null;
 				
@@ -831,7 +1037,6 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 	 */
 	public static double calcAnimalBearing(double tilt, Point  lndmrkPoint, Point animalPoint, double calValue){
 		double bearing=calcBearingDiffAnimal( tilt,  lndmrkPoint,  animalPoint);
-		System.out.println("Bearing pixels: "+bearing+ " Bearing degrees: "+(bearing/calValue));
 		bearing=Math.toRadians(bearing/calValue);
 		return bearing; 
 	}
@@ -858,15 +1063,8 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 	 * @return bearing in pixels. 
 	 */
 	public static double calcBearingDiffAnimal(double tilt, Point landmrkp1, Point animal){
-		
-		double dist=landmrkp1.distance(animal);
-
-		double angr=Math.atan2((animal.y-landmrkp1.y),(animal.x-landmrkp1.x));
-		
-		double adj=Math.cos(angr+tilt)*dist;
-//		System.out.println("Animal bearing diff: "+adj);
-		return adj;
-
+		//dist*cos(angr+tilt) where angr is the angle of the line from the landmark to the animal. 
+		return (animal.x-landmrkp1.x)*Math.cos(tilt)-(animal.y-landmrkp1.y)*Math.sin(tilt);
 	}
 	
 	/**
@@ -877,15 +1075,62 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 	 * @return bearing in pixels. 
 	 */
 	public static double calcPitchDiffAnimal(double tilt, Point landmrkp1, Point animal){
-		
-		double dist=landmrkp1.distance(animal);
-				
-		double angr=Math.atan2((animal.y-landmrkp1.y),(animal.x-landmrkp1.x));
-		
-		double opp=Math.sin(angr+tilt)*dist;
-//		System.out.println("Animal pitch diff: "+opp);
-		return opp;
-		
+		//dist*sin(angr+tilt) where angr is the angle of the line from the landmark to the animal. 
+		return (animal.x-landmrkp1.x)*Math.sin(tilt)+(animal.y-landmrkp1.y)*Math.cos(tilt);
+	}
+	
+	/**
+	 * Calculate the bearing and pitch of an animal from each landmark, and the mean and standard deviation of these, in a single pass without creating any objects. 
+	 * @param lmBearings- bearing of each landmark in radians.
+	 * @param lmPitches- pitch of each landmark in radians.
+	 * @param lmX- x pixel of each landmark.
+	 * @param lmY- y pixel of each landmark.
+	 * @param use- landmarks to use. Can be null to use all landmarks. 
+	 * @param n- number of landmarks.
+	 * @param animalX- x pixel of the animal.
+	 * @param animalY- y pixel of the animal.
+	 * @param tilt- tilt of the image in radians.
+	 * @param pixelsPerDegree- calibration value.
+	 * @param bearings- filled with the bearing of the animal from each used landmark (0 to 2pi). Must be at least n long. 
+	 * @param pitches- filled with the pitch of the animal from each used landmark. Must be at least n long. 
+	 * @param stats- filled with the mean and standard deviation of bearing and pitch. Use BEARING_MEAN, BEARING_STD, PITCH_MEAN and PITCH_STD as indices. 
+	 * @return the number of landmarks used. 
+	 */
+	public static int calcAnimalAngles(double[] lmBearings, double[] lmPitches, double[] lmX, double[] lmY, boolean[] use, int n, double animalX, double animalY, 
+			double tilt, double pixelsPerDegree, double[] bearings, double[] pitches, double[] stats){
+		double cos=Math.cos(tilt);
+		double sin=Math.sin(tilt);
+		double radiansPerPixel=Math.toRadians(1/pixelsPerDegree);
+		double dx, dy, bearing, pitch, delta;
+		//bearings are averaged as differences from the first bearing so means near north are correct. 
+		double ref=0, bearingMean=0, bearingM2=0, pitchMean=0, pitchM2=0;
+		int m=0;
+		for (int i=0; i<n; i++){
+			if (use!=null && !use[i]) continue;
+			dx=animalX-lmX[i];
+			dy=animalY-lmY[i];
+			bearing=wrap360(lmBearings[i]+(dx*cos-dy*sin)*radiansPerPixel);
+			pitch=lmPitches[i]-(dx*sin+dy*cos)*radiansPerPixel;
+			bearings[m]=bearing;
+			pitches[m]=pitch;
+			if (m==0) ref=bearing;
+			m++;
+			//Welford's running mean and variance
+			bearing-=ref;
+			if (bearing>Math.PI) bearing-=2*Math.PI;
+			else if (bearing<-Math.PI) bearing+=2*Math.PI;
+			delta=bearing-bearingMean;
+			bearingMean+=delta/m;
+			bearingM2+=delta*(bearing-bearingMean);
+			delta=pitch-pitchMean;
+			pitchMean+=delta/m;
+			pitchM2+=delta*(pitch-pitchMean);
+		}
+		stats[BEARING_MEAN]=m==0 ? Double.NaN : wrap360(ref+bearingMean);
+		stats[BEARING_STD]=m>1 ? Math.sqrt(bearingM2/(m-1)) : 0;
+		stats[PITCH_MEAN]=m==0 ? Double.NaN : pitchMean;
+		stats[PITCH_STD]=m>1 ? Math.sqrt(pitchM2/(m-1)) : 0;
+		return m;
 	}
 	
 	
@@ -898,11 +1143,16 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 	 * @param landmrk1-landmark 1
 	 * @param landmrk2-landmark 2
 	 * @param imagePos-the from which the image was taken from. Note that this can be null if the landmarks are defined by bearings rathar than GPS co-ordinates. 
-	 * @return the perpindicular vertex of a tringle where the other two vertex have been defined by landmark points. 
+	 * @return the perpindicular vertex of a tringle where the other two vertex have been defined by landmark points, or null if either landmark is not in the selected group. 
 	 */
 	public Point calcPerpPoint(double tilt, Point landmrkP1, Point landmrkP2, LandMark landmrk1, LandMark landmrk2, LatLong imagePos){
-		double bearingDiff=calcBearingDiff( landmrk1,  landmrk2,  getImagePos());
-		double pitchDiff=calcPitchDiff( landmrk1,  landmrk2,  getImagePos());
+		LandMarkGeometry geometry=getGeometry();
+		if (geometry==null) return null;
+		int i1=geometry.indexOf(landmrk1);
+		int i2=geometry.indexOf(landmrk2);
+		if (i1<0 || i2<0) return null;
+		double bearingDiff=calcBearingDiff(geometry.getBearing(i1), geometry.getBearing(i2));
+		double pitchDiff=geometry.getPitch(i2)-geometry.getPitch(i1);
 		double pixelPerDegree=calcPixelsperDegree(landmrkP1.distance(landmrkP2),  bearingDiff,  pitchDiff);
 		Point perpPoint=calcPerpPoint( tilt, pixelPerDegree*Math.toDegrees(bearingDiff),  landmrkP2);
 		return perpPoint;
@@ -1049,7 +1299,6 @@ public class VRLandMarkMethod extends AbstractVRMethod {
 		
 		//work out actual true angle between landmarks
 		double angActual=Math.atan2(pitchDiff, bearingDiff);
-		System.out.println("pitchDiff "+ Math.toDegrees(pitchDiff) + "bearing diff: "+Math.toDegrees(bearingDiff) + "Actual Angle: "+Math.toDegrees(angActual));
 		
 		//work out tilt
 		double tilt=PamUtils.constrainedAngleR(-angActual-angHorz,Math.PI);
@@ -7,15 +7,12 @@ import java.awt.GridBagLayout;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Vector;
 
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JTextField;
 import javax.swing.plaf.LayerUI;
 
-import Map.MapContour;
-import Map.MapFileManager;
 import PamUtils.LatLong;
 import PamUtils.PamUtils;
 import PamView.PamColors;
@@ -25,6 +22,7 @@ import PamView.dialog.PamDialog;
 import PamView.dialog.PamLabel;
 import PamView.panel.PamPanel;
 import videoRangeLegacy.ShoreManager;
+import videoRangeLegacy.ShoreMap;
 import videoRangeLegacy.VRCalibrationData;
 import videoRangeLegacy.VRControl;
 import videoRangeLegacy.VRHeightData;
@@ -72,7 +70,7 @@ public class VRShoreMethod extends AbstractVRMethod {
 	public VRShoreMethod(VRControl vrControl) {
 		super(vrControl);
 		this.vrControl=vrControl;
-		this.shoreManager = new ShoreManager(vrControl.getMapFileManager());
+		this.shoreManager = new ShoreManager(vrControl.getShoreMap());
 		this.shoreMethodUI=new ShoreMethodUI(vrControl);
 		this.imageAnglePanel=new ImageAnglePanel(vrControl,this);
 		this.sidePanel=createSidePanel();
@@ -197,6 +195,8 @@ public class VRShoreMethod extends AbstractVRMethod {
 		@Override
 		public void mouseClick(Point mouseClick) {
 			super.mouseClick(mouseClick);
+			//can't measure anything until the map has loaded
+			if (!isMapLoaded()) return;
 			switch (currentStatus) {
 				case MEASURE_SHORE:
 					System.out.println("shore Point clicked: "+currentStatus);
@@ -234,8 +234,10 @@ public class VRShoreMethod extends AbstractVRMethod {
 		}
 		//check if there are problems with required params
 		if (getGPSinfo(vrControl.getImageTime())==null) instruction.setText("No GPS info");
-		if (vrControl.getMapFileManager().getAvailableContours()==null || vrControl.getMapFileManager().getContourCount() <=1) instruction.setText("No Map Points");
+		if (!isMapLoaded()) instruction.setText("Loading map...");
+		else if (vrControl.getShoreMap().getContourCount() <=1) instruction.setText("No Map Points");
 		if (imageAnglePanel.getAngle()==null) instruction.setText("No bearing info");
+		clearShore.setEnabled(isMapLoaded());
 
 
 		//check there are no general instructions-e.g. no image
@@ -293,8 +295,8 @@ public class VRShoreMethod extends AbstractVRMethod {
 			return; 
 		}
 		LatLong origin = getGPSinfo();
-		MapFileManager mapManager = shoreManager.getMapFileManager();
-		if (mapManager == null) {
+		ShoreMap shoreMap = shoreManager.getShoreMap();
+		if (shoreMap == null || origin == null) {
 			return;
 		}
 		VRHeightData heightData = vrControl.getVRParams().getCurrentheightData();
@@ -307,13 +309,19 @@ public class VRShoreMethod extends AbstractVRMethod {
 			return;
 		}
 		g.setColor(Color.BLACK);
-		Vector<LatLong> contour;
-		MapContour mapContour;
-		for (int i = 0; i < mapManager.getContourCount(); i++) {
-			mapContour = mapManager.getMapContour(i);
-			contour = mapContour.getLatLongs();
-			for (int l = 0; l < contour.size()-1; l++) {
-				drawMapSegment(g, origin, heightData.height, calData.degreesPerUnit, landAngle, contour.get(l), contour.get(l+1));
+		LatLong ll1, ll2;
+		int start, end;
+		for (int i = 0; i < shoreMap.getContourCount(); i++) {
+			start = shoreMap.getContourStart(i);
+			end = shoreMap.getContourEnd(i);
+			if (end - start < 2) {
+				continue;
+			}
+			ll2 = shoreMap.getLatLong(start);
+			for (int l = start; l < end-1; l++) {
+				ll1 = ll2;
+				ll2 = shoreMap.getLatLong(l+1);
+				drawMapSegment(g, origin, heightData.height, calData.degreesPerUnit, landAngle, ll1, ll2);
 			}
 		}
 	}
@@ -363,6 +371,14 @@ public class VRShoreMethod extends AbstractVRMethod {
 		return new Point(x,y);
 	}
 	
+	/**
+	 * The shore method can't be used until the map has been loaded. 
+	 * @return true if the map has loaded. 
+	 */
+	public boolean isMapLoaded(){
+		return vrControl.getShoreMap()!=null;
+	}
+	
 	private void calcShoreRanges(){
 		if (imageHeading==null) {
 			shoreRanges=null;
@@ -458,6 +474,8 @@ public class VRShoreMethod extends AbstractVRMethod {
 		super.update(updateType);
 		switch (updateType){
 			case VRControl.SETTINGS_CHANGE:
+				 //a new map file may have been loaded
+				 shoreManager.setShoreMap(vrControl.getShoreMap());
 				 calcShoreRanges();
 				 vrControl.getVRPanel().repaint();
 				 break;